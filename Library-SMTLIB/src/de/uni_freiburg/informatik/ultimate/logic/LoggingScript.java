@@ -505,6 +505,22 @@ public class LoggingScript extends WrapperScript {
 		return super.findImpliedEquality(x, y);
 	}
 
+	@Override
+	public void minimize(final Term term) throws SMTLIBException, UnsupportedOperationException {
+		mPw.print("(minimize ");
+		mTermPrinter.append(mPw, formatTerm(term));
+		mPw.println(")");
+		super.minimize(term);
+	}
+
+	@Override
+	public void maximize(final Term term) throws SMTLIBException, UnsupportedOperationException {
+		mPw.print("(maximize ");
+		mTermPrinter.append(mPw, formatTerm(term));
+		mPw.println(")");
+		super.maximize(term);
+	}
+
 	@Override
 	public QuotedObject echo(final QuotedObject msg) {
 		mPw.print("(echo ");
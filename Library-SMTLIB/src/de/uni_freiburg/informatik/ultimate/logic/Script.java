@@ -596,6 +596,32 @@ public interface Script {
 	 * @return Array of length 3 or array of length 0 if no equality is implied.
 	 */
 	public Term[] findImpliedEquality(Term[] x, Term[] y);
+	/**
+	 * Add an objective that is minimized by the following check-sat commands.
+	 * The objective is removed when the current assertion stack level is
+	 * popped.
+	 * @param term The Int or Real term to minimize.
+	 * @throws SMTLIBException If the term is not numeric.
+	 * @throws UnsupportedOperationException If the solver does not support
+	 * optimization.
+	 */
+	public default void minimize(Term term)
+		throws SMTLIBException, UnsupportedOperationException {
+		throw new UnsupportedOperationException();
+	}
+	/**
+	 * Add an objective that is maximized by the following check-sat commands.
+	 * The objective is removed when the current assertion stack level is
+	 * popped.
+	 * @param term The Int or Real term to maximize.
+	 * @throws SMTLIBException If the term is not numeric.
+	 * @throws UnsupportedOperationException If the solver does not support
+	 * optimization.
+	 */
+	public default void maximize(Term term)
+		throws SMTLIBException, UnsupportedOperationException {
+		throw new UnsupportedOperationException();
+	}
 	/**
 	 * Echo a message on the regular output channel of the solver.  Although
 	 * this function is not specified in the SMTLIB standard, we do not expect
@@ -26,6 +26,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
 import de.uni_freiburg.informatik.ultimate.util.HashUtils;
 import de.uni_freiburg.informatik.ultimate.util.datastructures.ScopedHashMap;
@@ -105,6 +106,11 @@ public class Theory {
 	private final UnifyHash<MatchTerm> mMtCache = new UnifyHash<>();
 	private final UnifyHash<Term> mTermCache = new UnifyHash<>();
 	private final UnifyHash<TermVariable> mTvUnify = new UnifyHash<>();
+	/**
+	 * The lock guarding the unification caches while several threads create terms, or null if this theory is only
+	 * used by one thread.
+	 */
+	private ReentrantLock mSharedLock;
 	/**
 	 * Factory for to_real wrapper function symbol, if IRA logic is used.
 	 */
@@ -316,18 +322,23 @@ public class Theory {
 	}
 
 	private Term quantify(final int quant, final TermVariable[] vars, final Term f) {
-		if (f == mTrue || f == mFalse) {
-			return f;
-		}
-		final int hash = QuantifiedFormula.hashQuantifier(quant, vars, f);
-		for (final QuantifiedFormula qf : mQfCache.iterateHashCode(hash)) {
-			if (qf.getQuantifier() == quant && qf.getSubformula() == f && Arrays.equals(vars, qf.getVariables())) {
-				return qf;
+		lockShared();
+		try {
+			if (f == mTrue || f == mFalse) {
+				return f;
 			}
+			final int hash = QuantifiedFormula.hashQuantifier(quant, vars, f);
+			for (final QuantifiedFormula qf : mQfCache.iterateHashCode(hash)) {
+				if (qf.getQuantifier() == quant && qf.getSubformula() == f && Arrays.equals(vars, qf.getVariables())) {
+					return qf;
+				}
+			}
+			final QuantifiedFormula qf = new QuantifiedFormula(quant, vars, f, hash);
+			mQfCache.put(hash, qf);
+			return qf;
+		} finally {
+			unlockShared();
 		}
-		final QuantifiedFormula qf = new QuantifiedFormula(quant, vars, f, hash);
-		mQfCache.put(hash, qf);
-		return qf;
 	}
 
 	public Term exists(final TermVariable[] vars, final Term f) {
@@ -340,29 +351,38 @@ public class Theory {
 
 	public Term match(final Term dataArg, final TermVariable[][] vars, final Term[] cases,
 			final DataType.Constructor[] constructors) {
-
-		final int hash = MatchTerm.hashMatch(dataArg, vars, cases);
-		final MatchTerm mt = new MatchTerm(hash, dataArg, vars, cases, constructors);
-		// add to hashmap
-		mMtCache.put(hash, mt);
-		return mt;
+		lockShared();
+		try {
+			final int hash = MatchTerm.hashMatch(dataArg, vars, cases);
+			final MatchTerm mt = new MatchTerm(hash, dataArg, vars, cases, constructors);
+			// add to hashmap
+			mMtCache.put(hash, mt);
+			return mt;
+		} finally {
+			unlockShared();
+		}
 	}
 
 	public Term let(final TermVariable[] vars, final Term[] values, final Term subform) {
-		assert (vars.length == values.length);
-		if (vars.length == 0) {
-			return subform;
-		}
-		final int hash = LetTerm.hashLet(vars, values, subform);
-		for (final LetTerm lt : mLetCache.iterateHashCode(hash)) {
-			if (lt.getSubTerm() == subform && Arrays.equals(lt.getVariables(), vars)
-					&& Arrays.equals(lt.getValues(), values)) {
-				return lt;
+		lockShared();
+		try {
+			assert (vars.length == values.length);
+			if (vars.length == 0) {
+				return subform;
+			}
+			final int hash = LetTerm.hashLet(vars, values, subform);
+			for (final LetTerm lt : mLetCache.iterateHashCode(hash)) {
+				if (lt.getSubTerm() == subform && Arrays.equals(lt.getVariables(), vars)
+						&& Arrays.equals(lt.getValues(), values)) {
+					return lt;
+				}
 			}
+			final LetTerm lf = new LetTerm(vars, values, subform, hash);
+			mLetCache.put(hash, lf);
+			return lf;
+		} finally {
+			unlockShared();
 		}
-		final LetTerm lf = new LetTerm(vars, values, subform, hash);
-		mLetCache.put(hash, lf);
-		return lf;
 	}
 
 	public Term let(final TermVariable var, final Term value, final Term subform) {
@@ -436,30 +456,35 @@ public class Theory {
 	/******************** CONSTANTS *************************************/
 
 	public Term constant(final Object value, final Sort sort) {
-		if (value instanceof Rational) {
-			if (!sort.isNumericSort()) {
-				throw new SMTLIBException("Not a numeric sort");
-			}
-			final Rational v = (Rational) value;
-			if (!v.isRational()) {
-				throw new SMTLIBException("Infinite/NaN value");
-			}
-			if (sort.getName().equals("Int") && !v.isIntegral()) {
-				throw new SMTLIBException("Non-integral value with integer sort");
+		lockShared();
+		try {
+			if (value instanceof Rational) {
+				if (!sort.isNumericSort()) {
+					throw new SMTLIBException("Not a numeric sort");
+				}
+				final Rational v = (Rational) value;
+				if (!v.isRational()) {
+					throw new SMTLIBException("Infinite/NaN value");
+				}
+				if (sort.getName().equals("Int") && !v.isIntegral()) {
+					throw new SMTLIBException("Non-integral value with integer sort");
+				}
 			}
-		}
-		final int hash = ConstantTerm.hashConstant(value, sort);
-		for (final Term t : mTermCache.iterateHashCode(hash)) {
-			if (t instanceof ConstantTerm) {
-				final ConstantTerm nt = (ConstantTerm) t;
-				if (nt.getSort() == sort && value.equals(nt.getValue())) {
-					return nt;
+			final int hash = ConstantTerm.hashConstant(value, sort);
+			for (final Term t : mTermCache.iterateHashCode(hash)) {
+				if (t instanceof ConstantTerm) {
+					final ConstantTerm nt = (ConstantTerm) t;
+					if (nt.getSort() == sort && value.equals(nt.getValue())) {
+						return nt;
+					}
 				}
 			}
+			final ConstantTerm nt = new ConstantTerm(value, sort, hash);
+			mTermCache.put(hash, nt);
+			return nt;
+		} finally {
+			unlockShared();
 		}
-		final ConstantTerm nt = new ConstantTerm(value, sort, hash);
-		mTermCache.put(hash, nt);
-		return nt;
 	}
 
 	public Term numeral(final BigInteger num) {
@@ -1414,33 +1439,38 @@ public class Theory {
 
 	public FunctionSymbol getFunctionWithResult(final String name, final String[] indices, final Sort resultType,
 			final Sort... paramTypes) {
-		if (resultType != null && indices == null && paramTypes.length == 0 && name.matches(MODEL_VALUE_PATTERN)) {
-			return getModelValueSymbol(name, resultType);
-		}
-		final FunctionSymbolFactory factory = mFunFactory.get(name);
-		if (factory != null) {
-			final FunctionSymbol fsym = factory.getFunctionWithResult(this, indices, paramTypes, resultType);
-			if (fsym != null) {
-				return fsym;
+		lockShared();
+		try {
+			if (resultType != null && indices == null && paramTypes.length == 0 && name.matches(MODEL_VALUE_PATTERN)) {
+				return getModelValueSymbol(name, resultType);
 			}
-		} else {
-			final FunctionSymbol fsym = mDeclaredFuns.get(name);
-			if (fsym != null && indices == null && resultType == null && fsym.typecheck(paramTypes)) {
-				return fsym;
+			final FunctionSymbolFactory factory = mFunFactory.get(name);
+			if (factory != null) {
+				final FunctionSymbol fsym = factory.getFunctionWithResult(this, indices, paramTypes, resultType);
+				if (fsym != null) {
+					return fsym;
+				}
+			} else {
+				final FunctionSymbol fsym = mDeclaredFuns.get(name);
+				if (fsym != null && indices == null && resultType == null && fsym.typecheck(paramTypes)) {
+					return fsym;
+				}
 			}
-		}
-		if (mIRAWrappers != null) {
-			final FunctionSymbol fsym = mIRAWrappers.createWrapper(this, name, indices, paramTypes, resultType);
-			if (fsym != null) {
-				return fsym;
+			if (mIRAWrappers != null) {
+				final FunctionSymbol fsym = mIRAWrappers.createWrapper(this, name, indices, paramTypes, resultType);
+				if (fsym != null) {
+					return fsym;
+				}
 			}
+			if (mBitVecSort != null && name.matches(BITVEC_CONST_PATTERN) && indices != null && indices.length == 1
+					&& resultType == null) {
+				/* Create bitvector constants */
+				return getBitVecConstant(name, indices);
+			}
+			return null;
+		} finally {
+			unlockShared();
 		}
-		if (mBitVecSort != null && name.matches(BITVEC_CONST_PATTERN) && indices != null && indices.length == 1
-				&& resultType == null) {
-			/* Create bitvector constants */
-			return getBitVecConstant(name, indices);
-		}
-		return null;
 	}
 
 	private FunctionSymbol getBitVecConstant(final String name, final String[] indices) {
@@ -1485,21 +1515,26 @@ public class Theory {
 	}
 
 	public ApplicationTerm term(final FunctionSymbol func, Term... parameters) {
-		if (parameters.length == 0) {
-			parameters = EMPTY_TERM_ARRAY;
-		}
-		final int hash = ApplicationTerm.hashApplication(func, parameters);
-		for (final Term t : mTermCache.iterateHashCode(hash)) {
-			if (t instanceof ApplicationTerm) {
-				final ApplicationTerm app = (ApplicationTerm) t;
-				if (func == app.getFunction() && Arrays.equals(app.getParameters(), parameters)) {
-					return app;
+		lockShared();
+		try {
+			if (parameters.length == 0) {
+				parameters = EMPTY_TERM_ARRAY;
+			}
+			final int hash = ApplicationTerm.hashApplication(func, parameters);
+			for (final Term t : mTermCache.iterateHashCode(hash)) {
+				if (t instanceof ApplicationTerm) {
+					final ApplicationTerm app = (ApplicationTerm) t;
+					if (func == app.getFunction() && Arrays.equals(app.getParameters(), parameters)) {
+						return app;
+					}
 				}
 			}
+			final ApplicationTerm app = new ApplicationTerm(func, parameters, hash);
+			mTermCache.put(hash, app);
+			return app;
+		} finally {
+			unlockShared();
 		}
-		final ApplicationTerm app = new ApplicationTerm(func, parameters, hash);
-		mTermCache.put(hash, app);
-		return app;
 	}
 
 	/******************** TERM VARIABLES AND VARIABLE TERMS *****************/
@@ -1514,8 +1549,13 @@ public class Theory {
 	 * @return a fresh term variable.
 	 */
 	public TermVariable createFreshTermVariable(final String prefix, final Sort sort) {
-		final String name = "." + prefix + "." + mTvarCtr++;
-		return new TermVariable(name, sort, TermVariable.hashVariable(name, sort));
+		lockShared();
+		try {
+			final String name = "." + prefix + "." + mTvarCtr++;
+			return new TermVariable(name, sort, TermVariable.hashVariable(name, sort));
+		} finally {
+			unlockShared();
+		}
 	}
 
 	/**
@@ -1528,15 +1568,20 @@ public class Theory {
 	 * @return a term variable.
 	 */
 	public TermVariable createTermVariable(final String name, final Sort sort) {
-		final int hash = TermVariable.hashVariable(name, sort);
-		for (final TermVariable tv : mTvUnify.iterateHashCode(hash)) {
-			if (tv.getSort().equals(sort) && tv.getName().equals(name)) {
-				return tv;
+		lockShared();
+		try {
+			final int hash = TermVariable.hashVariable(name, sort);
+			for (final TermVariable tv : mTvUnify.iterateHashCode(hash)) {
+				if (tv.getSort().equals(sort) && tv.getName().equals(name)) {
+					return tv;
+				}
 			}
+			final TermVariable tv = new TermVariable(name, sort, hash);
+			mTvUnify.put(hash, tv);
+			return tv;
+		} finally {
+			unlockShared();
 		}
-		final TermVariable tv = new TermVariable(name, sort, hash);
-		mTvUnify.put(hash, tv);
-		return tv;
 	}
 
 	public DataType.Constructor createConstructor(final String name, final String[] selectors,
@@ -1571,18 +1616,23 @@ public class Theory {
 	/******************** ANNOTATED TERMS *********************************/
 
 	public Term annotatedTerm(final Annotation[] annots, final Term sub) {
-		final int hash = AnnotatedTerm.hashAnnotations(annots, sub);
-		for (final Term t : mTermCache.iterateHashCode(hash)) {
-			if (t instanceof AnnotatedTerm) {
-				final AnnotatedTerm annot = (AnnotatedTerm) t;
-				if (sub == annot.getSubterm() && Arrays.equals(annot.getAnnotations(), annots)) {
-					return annot;
+		lockShared();
+		try {
+			final int hash = AnnotatedTerm.hashAnnotations(annots, sub);
+			for (final Term t : mTermCache.iterateHashCode(hash)) {
+				if (t instanceof AnnotatedTerm) {
+					final AnnotatedTerm annot = (AnnotatedTerm) t;
+					if (sub == annot.getSubterm() && Arrays.equals(annot.getAnnotations(), annots)) {
+						return annot;
+					}
 				}
 			}
+			final AnnotatedTerm annot = new AnnotatedTerm(annots, sub, hash);
+			mTermCache.put(hash, annot);
+			return annot;
+		} finally {
+			unlockShared();
 		}
-		final AnnotatedTerm annot = new AnnotatedTerm(annots, sub, hash);
-		mTermCache.put(hash, annot);
-		return annot;
 	}
 
 	/******************** ASSERTION STACK *********************************/
@@ -1603,16 +1653,21 @@ public class Theory {
 
 	/******************** SKOLEMIZATION SUPPORT ***************************/
 	public Term skolemize(final TermVariable tv, final QuantifiedFormula qf) {
-		final TermVariable[] freeVars = qf.getFreeVars();
-		final Term[] args = new Term[freeVars.length];
-		final Sort[] freeVarSorts = new Sort[freeVars.length];
-		for (int i = 0; i < freeVars.length; i++) {
-			args[i] = freeVars[i];
-			freeVarSorts[i] = freeVars[i].getSort();
+		lockShared();
+		try {
+			final TermVariable[] freeVars = qf.getFreeVars();
+			final Term[] args = new Term[freeVars.length];
+			final Sort[] freeVarSorts = new Sort[freeVars.length];
+			for (int i = 0; i < freeVars.length; i++) {
+				args[i] = freeVars[i];
+				freeVarSorts[i] = freeVars[i].getSort();
+			}
+			final FunctionSymbol fsym = new FunctionSymbol("@" + tv.getName() + "_skolem_" + mSkolemCounter++, null,
+					freeVarSorts, tv.getSort(), null, null, 0);
+			return term(fsym, args);
+		} finally {
+			unlockShared();
 		}
-		final FunctionSymbol fsym = new FunctionSymbol("@" + tv.getName() + "_skolem_" + mSkolemCounter++, null,
-				freeVarSorts, tv.getSort(), null, null, 0);
-		return term(fsym, args);
 	}
 
 	public void resetAssertions() {
@@ -1643,4 +1698,30 @@ public class Theory {
 	public void setGlobalSymbols(final boolean globalDecls) {
 		mGlobalDecls = globalDecls;
 	}
+
+	/******************** CONCURRENT ACCESS *******************************/
+
+	/**
+	 * Allow several threads to create terms in this theory. While enabled, the creation of terms, term variables and
+	 * function symbols is guarded by a lock. This is used while solvers sharing this theory run in parallel. It must
+	 * only be changed while no other thread uses this theory.
+	 *
+	 * @param concurrent
+	 *            true to guard the term creation by a lock, false to remove the lock.
+	 */
+	public void setConcurrentAccess(final boolean concurrent) {
+		mSharedLock = concurrent ? new ReentrantLock() : null;
+	}
+
+	private void lockShared() {
+		if (mSharedLock != null) {
+			mSharedLock.lock();
+		}
+	}
+
+	private void unlockShared() {
+		if (mSharedLock != null) {
+			mSharedLock.unlock();
+		}
+	}
 }
@@ -353,6 +353,16 @@ public abstract class WrapperScript implements Script {
 		return mScript.findImpliedEquality(x, y);
 	}
 
+	@Override
+	public void minimize(final Term term) throws SMTLIBException, UnsupportedOperationException {
+		mScript.minimize(term);
+	}
+
+	@Override
+	public void maximize(final Term term) throws SMTLIBException, UnsupportedOperationException {
+		mScript.maximize(term);
+	}
+
 	@Override
 	public QuotedObject echo(final QuotedObject msg) {
 		return mScript.echo(msg);
@@ -43,20 +43,47 @@ public interface Config {
 	public static final int OCC_INLINE_THRESHOLD = 1;
 	/// Number of occurrences when nested term ITEs are still inlined.
 	public static final int OCC_INLINE_TERMITE_THRESHOLD = 1;
+	/// Eliminate variables defined by top-level linear equalities before they reach the simplex. This only substitutes
+	/// terms; there is no Gaussian elimination on the tableau, so it is off by default.
+	public static final boolean EQUALITY_ELIMINATION = false;
 
 	////// DPLL configuration
 	/// Activity limit
 	public final static double LIMIT = 1e250;
 	/// Unlearn clauses with activity below this threshold
 	public final static double CLAUSE_UNLEARN_ACTIVITY = 1e-150;
+	/// Learned clauses with at most this literal block distance are never removed
+	public static final int LBD_CORE = 2;
+	/// Learned clauses with at most this literal block distance are kept while they are used
+	public static final int LBD_TIER2 = 6;
+	/// Number of conflicts before the first reduction of the learned clauses
+	public static final int REDUCE_FIRST = 2000;
+	/// Increment of the number of conflicts between two reductions of the learned clauses
+	public static final int REDUCE_INCREMENT = 300;
 	/// Activity factor for atoms
 	public final static double ATOM_ACTIVITY_FACTOR = 1.1;
+	/// Number of conflicts after which the VSIDS heuristic halves the atom activities
+	public static final int VSIDS_DECAY_INTERVAL = 256;
 	/// Activity factor for clauses
 	public final static double CLS_ACTIVITY_FACTOR = 1.01;
 	/// Backtrack as far as possible
 	public final static boolean DEEP_BACKTRACK = true;
 	/// When to restart
 	public final static int RESTART_FACTOR = 500;
+	/// Growth of the restart interval for geometric and inner/outer restarts
+	public static final double RESTART_GEOMETRIC_INCREASE = 1.5;
+	/// Number of recent learned clauses whose average LBD is compared for Glucose restarts
+	public static final int RESTART_GLUCOSE_WINDOW = 50;
+	/// Restart if the recent average LBD times this margin exceeds the overall average LBD
+	public static final double RESTART_GLUCOSE_MARGIN = 0.8;
+	/// Number of recent conflicts whose average trail size is compared to block Glucose restarts
+	public static final int RESTART_BLOCK_WINDOW = 5000;
+	/// Block a restart if the trail is longer than the recent average trail times this margin
+	public static final double RESTART_BLOCK_MARGIN = 1.4;
+	/// Number of conflicts before Glucose restarts may be blocked
+	public static final int RESTART_BLOCK_MIN_CONFLICTS = 10000;
+	/// Keep the decisions that would be repeated after a restart on the trail
+	public static final boolean RESTART_REUSE_TRAIL = true;
 	/// The default random seed
 	// Currently delays random splits until the 10000th split...
 	public final static long RANDOM_SEED = 11350294L;
@@ -67,6 +94,30 @@ public interface Config {
 	public final static int RANDOM_SPLIT_FREQ = 2;
 	/// Compute an initial phase bias based on Jeruslaw Wang heuristics
 	public static final boolean INITIAL_PHASE_BIAS_JW = true;
+	/// Prefer the phases of the longest conflict-free trail since the last restart
+	public static final boolean PHASE_TARGET = false;
+	/// Base number of conflicts between rephasings (0 disables rephasing)
+	public static final int REPHASE_INTERVAL = 1000;
+	/// Maximal number of flips of the local search used for rephasing
+	public static final int WALK_MAX_FLIPS = 100000;
+	/// Number of flips of the local search per input clause
+	public static final int WALK_FLIPS_PER_CLAUSE = 10;
+	/// Probability in percent that the local search flips a random literal of the clause
+	public static final int WALK_NOISE_PERCENT = 50;
+	/// Base number of conflicts between two inprocessing rounds (0 disables inprocessing)
+	public static final int INPROCESS_INTERVAL = 5000;
+	/// Maximal number of literal comparisons of one subsumption round
+	public static final long SUBSUME_MAX_STEPS = 10000000;
+	/// Propagations of vivification in percent of the propagations of the search since the last round
+	public static final int VIVIFY_EFFORT_PERCENT = 10;
+	/// Minimal number of propagations of one vivification round
+	public static final int VIVIFY_MIN_PROPAGATIONS = 20000;
+	/// Maximal length of learned clauses shared with parallel engines
+	public static final int EXCHANGE_MAX_SIZE = 8;
+	/// Maximal literal block distance of learned clauses shared with parallel engines
+	public static final int EXCHANGE_MAX_LBD = 4;
+	/// Number of clauses the clause exchange keeps for slow readers
+	public static final int EXCHANGE_CAPACITY = 4096;
 	/// Print information statistics on restarts
 	public static final boolean PRINT_STATISTICS = !COMPETITION;
 
@@ -75,6 +126,12 @@ public interface Config {
 	public final static boolean DEBUG_QVAR_ELIMINATION = true;
 	/// Don't infer looping patterns
 	public final static boolean FEATURE_BLOCK_LOOPING_PATTERN = true;
+	/// Number of (partial) substitutions evaluated in a quantifier final check (0 means no limit)
+	public static final int FINAL_CHECK_BUDGET = 0;
+	/// Maximal generation of quantifier instances (0 means no limit)
+	public static final int MAX_INSTANCE_GENERATION = 0;
+	/// Number of quantifier instances produced between two garbage collections of unused instances (0 disables it)
+	public static final int INSTANCE_GC_INTERVAL = 1000;
 
 	////// Proofs
 	/// Check proofs for propositional validity
@@ -99,6 +156,20 @@ public interface Config {
 	////// Linear arithmetic configuration
 	/// When to switch back to Bland's Rule (#vars * this_factor)
 	public static final int BLAND_USE_FACTOR = 5;
+	/// Create Gomory cuts from the tableau rows of non-integral basic variables
+	public static final boolean GOMORY_CUTS = false;
+	/// Number of consecutive integrality checks answered by a Gomory cut before branching
+	public static final int GOMORY_MAX_ROUNDS = 4;
+	/// Maximal number of variables in a Gomory cut; denser cuts slow down the simplex
+	public static final int GOMORY_MAX_SIZE = 8;
+	/// Number of branches chosen by the branching policy before the cuts from proofs are created again
+	public static final int CUTS_FROM_PROOFS_INTERVAL = 4;
+	/// Number of branches chosen by the branching policy in one check before only the cuts from proofs are used
+	public static final int POLICY_BRANCH_BUDGET = 100;
+	/// Maximal number of cuts kept in the cut pool
+	public static final int CUT_POOL_SIZE = 100;
+	/// Number of integrality checks after which a cut that was not violated is evicted from the pool
+	public static final int CUT_MAX_AGE = 50;
 
 	/**
 	 * Should we do paranoid and expensive asserts.
@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
@@ -49,6 +50,7 @@ import de.uni_freiburg.informatik.ultimate.smtinterpol.Config;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.LogProxy;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.BooleanVarAtom;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.ClauseDeletionHook;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.ClauseExchange;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.DPLLAtom;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.DPLLAtom.TrueAtom;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.DPLLEngine;
@@ -91,7 +93,7 @@ import de.uni_freiburg.informatik.ultimate.util.datastructures.ScopedHashMap;
  *
  * @author Juergen Christ, Jochen Hoenicke
  */
-public class Clausifier {
+public class Clausifier implements ClauseExchange.TermMapping {
 	public class CCTermBuilder {
 		private final SourceAnnotation mSource;
 
@@ -220,6 +222,13 @@ public class Clausifier {
 				term = toPositive(term);
 				positive = false;
 			}
+			if (positive) {
+				final Term var = mPendingDefinitions.remove(term);
+				if (var != null) {
+					addDefinition(mAxiom, var);
+					return;
+				}
+			}
 			final int oldFlags = getTermFlags(term);
 			int assertedFlag, auxFlag;
 			if (positive) {
@@ -1136,6 +1145,24 @@ public class Clausifier {
 		return res;
 	}
 
+	/**
+	 * Convert an arithmetic input term into the normalized affine term that is used by the linear arithmetic atoms.
+	 * The summands are only known to the linear arithmetic solver if they appear in some asserted formula.
+	 *
+	 * @param term
+	 *            the arithmetic input term.
+	 * @return the normalized affine term.
+	 */
+	public SMTAffineTerm createAffineTerm(final Term term) {
+		Term simpTerm;
+		try {
+			simpTerm = mCompiler.transform(mUnlet.unlet(term));
+		} finally {
+			mCompiler.reset();
+		}
+		return SMTAffineTerm.create(mTracker.getProvedTerm(simpTerm));
+	}
+
 	public CCTerm getCCTerm(final Term term) {
 		return mCCTerms.get(term);
 	}
@@ -1150,6 +1177,20 @@ public class Clausifier {
 
 	public void setLiteral(final Term term, final ILiteral lit) {
 		mLiterals.put(term, lit);
+		if (lit instanceof Literal && !mLiteralTerms.containsKey(lit)) {
+			mLiteralTerms.put((Literal) lit, term);
+		}
+	}
+
+	@Override
+	public Term getLiteralTerm(final Literal lit) {
+		return mLiteralTerms.get(lit);
+	}
+
+	@Override
+	public Literal getTermLiteral(final Term term) {
+		final ILiteral lit = mLiterals.get(term);
+		return lit instanceof Literal ? (Literal) lit : null;
 	}
 
 	public static boolean needCCTerm(final Term term) {
@@ -1269,6 +1310,11 @@ public class Clausifier {
 	 * Mapping from subformulas to their literal, if there was any created.
 	 */
 	private final ScopedHashMap<Term, ILiteral> mLiterals = new ScopedHashMap<>();
+	/**
+	 * Mapping from literals to the first subformula they were created for. This is used to share clauses between
+	 * solvers running in parallel.
+	 */
+	private final ScopedHashMap<Literal, Term> mLiteralTerms = new ScopedHashMap<>();
 	/**
 	 * Mapping from subterms to their CCTerm, if it was created.
 	 */
@@ -1293,6 +1339,19 @@ public class Clausifier {
 	 * Map of differences to equality proxies.
 	 */
 	final ScopedHashMap<SMTAffineTerm, EqualityProxy> mEqualities = new ScopedHashMap<>();
+	/**
+	 * Mapping from eliminated variables to their definition. The definition is annotated with the proof of the
+	 * defining equality. The compiler replaces the variables by their definitions in all terms.
+	 */
+	private final ScopedHashMap<Term, Term> mSubstitutions = new ScopedHashMap<>();
+	/**
+	 * The top-level equalities of the current formula that define a variable, mapped to that variable.
+	 */
+	private final HashMap<Term, Term> mPendingDefinitions = new HashMap<>();
+	/**
+	 * True, if variables defined by top-level equalities should be eliminated.
+	 */
+	private boolean mEqualityElimination = false;
 	/**
 	 * Current assertion stack level.
 	 */
@@ -1323,12 +1382,33 @@ public class Clausifier {
 		mTracker = proofLevel == 2 ? new ProofTracker() : new NoopProofTracker();
 		mUtils = new LogicSimplifier(mTracker);
 		mCompiler.setProofTracker(mTracker);
+		mCompiler.setSubstitutions(mSubstitutions);
 	}
 
 	public void setAssignmentProduction(final boolean on) {
 		mCompiler.setAssignmentProduction(on);
 	}
 
+	/**
+	 * Enable the elimination of variables that are defined by asserted linear equalities. This must not be used
+	 * when computing interpolants, since it moves symbols between the partitions.
+	 *
+	 * @param on
+	 *            true, if equality elimination should be used for the formulas asserted from now on.
+	 */
+	public void setEqualityElimination(final boolean on) {
+		mEqualityElimination = on;
+	}
+
+	/**
+	 * Get the variables that were eliminated by a defining equality. They are not known to any theory solver.
+	 *
+	 * @return the eliminated variables.
+	 */
+	public Set<Term> getEliminatedVariables() {
+		return mSubstitutions.keySet();
+	}
+
 	void pushOperation(final Operation op) {
 		mTodoStack.push(op);
 	}
@@ -1942,8 +2022,13 @@ public class Clausifier {
 				trackAssignment(me.getKey(), me.getValue(), source);
 			}
 		}
+		if (mEqualityElimination && mQuantTheory == null && mEprTheory == null
+				&& (source == null || source.getAnnotation().isEmpty())) {
+			collectDefinitions(mTracker.getProvedTerm(simpFormula));
+		}
 		pushOperation(new AddAsAxiom(simpFormula, source));
 		run();
+		mPendingDefinitions.clear();
 		mOccCounter.reset(simpFormula);
 		simpFormula = null;
 
@@ -1951,6 +2036,112 @@ public class Clausifier {
 		// + " auxiliary atoms.");
 	}
 
+	/**
+	 * Find the top-level equalities of a formula that define a variable that occurs nowhere else in the formula and
+	 * is not yet known to the solver. These equalities are not added to the solver. Instead, the variable is replaced
+	 * by its definition in all formulas that are asserted later. This must be called while the occurrences of the
+	 * formula are counted.
+	 *
+	 * A variable that an earlier assertion already made known to the solver is never eliminated, since the clauses and
+	 * the tableau rows created for it are not rewritten. Thus the elimination depends on the order of the assertions.
+	 * Fixed variables and unbounded columns are not removed from the tableau either.
+	 *
+	 * @param formula
+	 *            the compiled formula.
+	 */
+	private void collectDefinitions(final Term formula) {
+		if (!isNotTerm(formula)) {
+			collectDefinition(formula);
+			return;
+		}
+		final Term or = ((ApplicationTerm) formula).getParameters()[0];
+		if (or instanceof ApplicationTerm && ((ApplicationTerm) or).getFunction() == mTheory.mOr) {
+			for (final Term conjunct : ((ApplicationTerm) or).getParameters()) {
+				if (isNotTerm(conjunct) && conjunct.mTmpCtr == 1) {
+					collectDefinition(((ApplicationTerm) conjunct).getParameters()[0]);
+				}
+			}
+		}
+	}
+
+	private void collectDefinition(final Term term) {
+		if (!(term instanceof ApplicationTerm) || term.mTmpCtr != 1) {
+			return;
+		}
+		final ApplicationTerm eq = (ApplicationTerm) term;
+		if (eq.getFunction().getName() != "=" || !eq.getParameters()[0].getSort().isNumericSort()) {
+			return;
+		}
+		final Sort sort = eq.getParameters()[0].getSort();
+		final boolean isInt = sort.getName().equals("Int");
+		for (final Term side : eq.getParameters()) {
+			if (side.mTmpCtr != 1) {
+				continue;
+			}
+			final Term[] summands = side instanceof ApplicationTerm
+					&& ((ApplicationTerm) side).getFunction().getName() == "+"
+							? ((ApplicationTerm) side).getParameters() : new Term[] { side };
+			for (final Term summand : summands) {
+				if (summand.mTmpCtr != 1 || !(summand instanceof ApplicationTerm)) {
+					continue;
+				}
+				Term var = summand;
+				final ApplicationTerm app = (ApplicationTerm) summand;
+				if (app.getFunction().getName() == "*") {
+					final Rational coeff = SMTAffineTerm
+							.convertConstant((ConstantTerm) SMTAffineTerm.parseConstant(app.getParameters()[0]));
+					if (isInt && !coeff.abs().equals(Rational.ONE)) {
+						continue;
+					}
+					var = app.getParameters()[1];
+				} else if (app.getFunction().getName() == "-") {
+					var = app.getParameters()[0];
+				}
+				if (isEliminable(var, sort)) {
+					mPendingDefinitions.put(eq, var);
+					return;
+				}
+			}
+		}
+	}
+
+	private boolean isEliminable(final Term var, final Sort sort) {
+		if (!(var instanceof ApplicationTerm) || var.mTmpCtr != 1 || var.getSort() != sort
+				|| mSubstitutions.containsKey(var)) {
+			return false;
+		}
+		final ApplicationTerm app = (ApplicationTerm) var;
+		final FunctionSymbol fsym = app.getFunction();
+		if (app.getParameters().length != 0 || fsym.isIntern() || fsym.isModelValue()
+				|| fsym.getDefinition() != null) {
+			return false;
+		}
+		return getLATerm(var) == null && getCCTerm(var) == null;
+	}
+
+	/**
+	 * Solve a defining equality for its variable and substitute the variable in all terms compiled from now on.
+	 *
+	 * @param axiom
+	 *            the equality annotated with its proof.
+	 * @param var
+	 *            the variable defined by the equality.
+	 */
+	private void addDefinition(final Term axiom, final Term var) {
+		final ApplicationTerm eq = (ApplicationTerm) mTracker.getProvedTerm(axiom);
+		final SMTAffineTerm definition = new SMTAffineTerm(eq.getParameters()[1]);
+		definition.add(Rational.MONE, new SMTAffineTerm(eq.getParameters()[0]));
+		final Rational coeff = definition.getSummands().get(var);
+		definition.add(coeff.negate(), var);
+		definition.div(coeff.negate());
+		final Term solved = mTheory.term("=", var, definition.toTerm(mCompiler, var.getSort()));
+		final Term rewrite = mTracker.buildRewrite(eq, solved, ProofConstants.RW_SOLVE_EQ);
+		mSubstitutions.put(var, mTracker.substitution(mTracker.getRewriteProof(axiom, rewrite)));
+		if (mLogger.isDebugEnabled()) {
+			mLogger.debug("Eliminated %s", solved);
+		}
+	}
+
 	public void push() {
 		if (mEngine.inconsistent()) {
 			if (!mWarnedInconsistent) {
@@ -1964,8 +2155,10 @@ public class Clausifier {
 			mEqualities.beginScope();
 			mTermDataFlags.beginScope();
 			mLiterals.beginScope();
+			mLiteralTerms.beginScope();
 			mLATerms.beginScope();
 			mCCTerms.beginScope();
+			mSubstitutions.beginScope();
 		}
 	}
 
@@ -1979,6 +2172,7 @@ public class Clausifier {
 		mNumFailedPushes = 0;
 		mEngine.pop(numpops);
 		for (int i = 0; i < numpops; ++i) {
+			mSubstitutions.endScope();
 			mCCTerms.endScope();
 			/* unshare all ccterms that are no longer shared with LA but were in the previous scope */
 			for (final Term term : mLATerms.undoMap().keySet()) {
@@ -1989,6 +2183,7 @@ public class Clausifier {
 			}
 			mLATerms.endScope();
 			mLiterals.endScope();
+			mLiteralTerms.endScope();
 			mTermDataFlags.endScope();
 			mEqualities.endScope();
 		}
@@ -55,6 +55,10 @@ import de.uni_freiburg.informatik.ultimate.util.datastructures.UnifyHash;
 public class TermCompiler extends TermTransformer {
 
 	private Map<Term, Set<String>> mNames;
+	/**
+	 * The definitions of eliminated variables, annotated with the proof of their defining equality.
+	 */
+	private Map<Term, Term> mSubstitutions;
 	UnifyHash<ApplicationTerm> mCanonicalSums = new UnifyHash<>();
 
 	private IProofTracker mTracker;
@@ -92,6 +96,16 @@ public class TermCompiler extends TermTransformer {
 		return mNames;
 	}
 
+	/**
+	 * Set the definitions of eliminated variables. Every eliminated variable is replaced by the compiled definition.
+	 *
+	 * @param substitutions
+	 *            maps a variable to its definition annotated with the proof of the equality.
+	 */
+	public void setSubstitutions(final Map<Term, Term> substitutions) {
+		mSubstitutions = substitutions;
+	}
+
 	@Override
 	public void convert(final Term term) {
 		if (term.getSort().isInternal()) {
@@ -107,6 +121,15 @@ public class TermCompiler extends TermTransformer {
 				throw new UnsupportedOperationException("Unsupported internal sort: " + term.getSort());
 			}
 		}
+		if (mSubstitutions != null && !mSubstitutions.isEmpty()) {
+			final Term definition = mSubstitutions.get(term);
+			if (definition != null) {
+				// the definition may contain variables that were eliminated later, so compile it again.
+				enqueueWalker(new TransitivityStep(definition));
+				pushTerm(mTracker.getProvedTerm(definition));
+				return;
+			}
+		}
 		if (term instanceof ApplicationTerm) {
 			final ApplicationTerm appTerm = (ApplicationTerm) term;
 			final FunctionSymbol fsym = appTerm.getFunction();
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.dpll;
+
+import java.util.Arrays;
+
+import de.uni_freiburg.informatik.ultimate.smtinterpol.Config;
+
+/**
+ * A binary heap of atom ids ordered by activity. This implements the VSIDS and EVSIDS heuristics.
+ *
+ * For EVSIDS, the increment added to the activity of a bumped atom is multiplied by
+ * {@link Config#ATOM_ACTIVITY_FACTOR} on every conflict, which decays the older bumps exponentially. All activities
+ * are rescaled when the increment gets too large. For VSIDS, the increment is constant and all activities are halved
+ * every {@link Config#VSIDS_DECAY_INTERVAL} conflicts.
+ */
+final class ActivityHeap extends DecisionQueue {
+	private final boolean mExponential;
+	private double mIncrement;
+	private int mConflictsUntilDecay = Config.VSIDS_DECAY_INTERVAL;
+	/**
+	 * The heap of atom ids. The atom with the highest activity is at position 0.
+	 */
+	private int[] mHeap = new int[mAtomById.length];
+	/**
+	 * The activity of the atom at every heap position. This duplicates the activity, but the heap operations only
+	 * need to read this array.
+	 */
+	private double[] mHeapActivity = new double[mAtomById.length];
+	/**
+	 * The position of every id in the heap, or -1 if the atom is not queued.
+	 */
+	private int[] mHeapPos = new int[mAtomById.length];
+
+	ActivityHeap(final boolean exponential) {
+		mExponential = exponential;
+		mIncrement = exponential ? 1 - 1.0 / Config.ATOM_ACTIVITY_FACTOR : 1.0;
+	}
+
+	@Override
+	void grow(final int capacity) {
+		mHeap = Arrays.copyOf(mHeap, capacity);
+		mHeapActivity = Arrays.copyOf(mHeapActivity, capacity);
+		mHeapPos = Arrays.copyOf(mHeapPos, capacity);
+	}
+
+	@Override
+	void newId(final int id) {
+		mHeapPos[id] = -1;
+	}
+
+	@Override
+	void freeId(final int id) {
+		assert mHeapPos[id] == -1;
+	}
+
+	@Override
+	boolean isQueued(final int id) {
+		return mHeapPos[id] >= 0;
+	}
+
+	/**
+	 * Move an id towards the root until its parent has at least the same activity.
+	 */
+	private void sink(final int id, int pos) {
+		final double activity = mActivity[id];
+		int parent;
+		while (pos > 0 && mHeapActivity[parent = (pos - 1) / 2] < activity) {
+			mHeap[pos] = mHeap[parent];
+			mHeapActivity[pos] = mHeapActivity[parent];
+			mHeapPos[mHeap[pos]] = pos;
+			pos = parent;
+		}
+		mHeap[pos] = id;
+		mHeapActivity[pos] = activity;
+		mHeapPos[id] = pos;
+	}
+
+	@Override
+	public boolean offer(final DPLLAtom atom) {
+		final int id = getId(atom);
+		if (mHeapPos[id] >= 0) {
+			return false;
+		}
+		assert atom.mDecideStatus == null;
+		sink(id, mSize++);
+		return true;
+	}
+
+	@Override
+	public DPLLAtom peek() {
+		assert mSize <= 1 || mHeapActivity[0] >= mHeapActivity[1];
+		assert mSize <= 2 || mHeapActivity[0] >= mHeapActivity[2];
+		return mSize == 0 ? null : mAtomById[mHeap[0]];
+	}
+
+	@Override
+	public boolean remove(final Object o) {
+		if (!(o instanceof DPLLAtom)) {
+			return false;
+		}
+		final int id = ((DPLLAtom) o).mAtomId;
+		if (id < 0 || mHeapPos[id] < 0) {
+			return false;
+		}
+		assert mHeap[mHeapPos[id]] == id;
+
+		// remove the element
+		int pos = mHeapPos[id];
+		mHeapPos[id] = -1;
+
+		// Move children of pos upwards to make a free spot on a leaf.
+		while (2 * pos + 2 < mSize) {
+			int child = 2 * pos + 1;
+			if (mHeapActivity[child] < mHeapActivity[child + 1]) {
+				child++;
+			}
+			mHeap[pos] = mHeap[child];
+			mHeapActivity[pos] = mHeapActivity[child];
+			mHeapPos[mHeap[pos]] = pos;
+			pos = child;
+		}
+		// Now pos is a free position in the heap that is (or will be) a leaf.
+		// If it is not the last position, move the last element to the free leaf and then upwards.
+		if (pos != --mSize) {
+			sink(mHeap[mSize], pos);
+		}
+		return true;
+	}
+
+	@Override
+	public void bumpActivity(final DPLLAtom atom) {
+		final int id = getId(atom);
+		mActivity[id] += mIncrement;
+		if (mHeapPos[id] >= 0) {
+			sink(id, mHeapPos[id]);
+		}
+	}
+
+	@Override
+	public void conflict() {
+		if (mExponential) {
+			if (mIncrement > Config.LIMIT) {
+				// Scaling all activities by the same factor keeps the heap order.
+				for (int id = 0; id < mNumIds; id++) {
+					mActivity[id] *= Double.MIN_NORMAL;
+				}
+				for (int pos = 0; pos < mSize; pos++) {
+					mHeapActivity[pos] *= Double.MIN_NORMAL;
+				}
+				mIncrement *= Double.MIN_NORMAL;
+			}
+			mIncrement *= Config.ATOM_ACTIVITY_FACTOR;
+		} else if (--mConflictsUntilDecay == 0) {
+			for (int id = 0; id < mNumIds; id++) {
+				mActivity[id] *= 0.5;
+			}
+			for (int pos = 0; pos < mSize; pos++) {
+				mHeapActivity[pos] *= 0.5;
+			}
+			mConflictsUntilDecay = Config.VSIDS_DECAY_INTERVAL;
+		}
+	}
+
+	@Override
+	public void clauseAdded() {
+		if (mExponential) {
+			mIncrement += 1.0 - 1.0 / Config.ATOM_ACTIVITY_FACTOR;
+		}
+	}
+}
@@ -37,127 +37,66 @@ public class Clause extends SimpleListable<Clause> {
 	Literal[] mLiterals;
 
 	/**
-	 * The next watched clause on the watcher list.
-	 * Each clause has two watchers.  The first watching lit 0, the next lit1.
-	 * Their watchers form a linked list.  For memory efficiency reasons there
-	 * is no real data structure for watchers, but a clause and a bit is used
-	 * to represent a watcher.
-	 */
-	Clause  mNextFirstWatch, mNextSecondWatch;
-	/**
-	 * A bitset telling if the next watcher for nextFirstWatch/nextSecondWatch
-	 * is the first or second watcher in that clause.  Bit0 is 1, iff  the
-	 * next watcher on the first list, which watches nextFirstWatch, is the
-	 * second watcher of that clause.  Likewise Bit1 is 1, iff the next watcher
-	 * on the second list is the second watcher of the clause nextSecondWatch.
-	 */
-	int     mNextIsSecond;
-	/**
-	 * A WatchList is a list of watchers.
-	 * Each clause has two watchers.  The first watching lit 0, the next lit1.
-	 * Their watchers form a linked list.  For memory efficiency reasons there
-	 * is no real data structure for watchers, but a clause and a bit is used
-	 * to represent a watcher.
+	 * A WatchList is the list of watchers of a literal. A watcher is a clause together with a blocker literal from
+	 * the clause. If the blocker is true, the clause is satisfied and need not be visited when the watched literal
+	 * becomes false. The clauses and blockers are kept in two parallel arrays, so that visiting a watcher with a true
+	 * blocker does not touch the clause at all.
+	 *
+	 * The arrays are only allocated when the first watcher is added, since many literals are never watched.
 	 */
 	final static class WatchList {
-		Clause mHead;
-		int    mHeadIndex;
-		Clause mTail;
-		int    mTailIndex;
-		int    mSize;
+		private static final Clause[] EMPTY_CLAUSES = new Clause[0];
+		private static final Literal[] EMPTY_BLOCKERS = new Literal[0];
 
-		public WatchList() {
-			mHead = mTail = null;
-		}
+		Clause[] mClauses = EMPTY_CLAUSES;
+		Literal[] mBlockers = EMPTY_BLOCKERS;
+		int mSize;
 
 		public boolean isEmpty() {
-			return mHead == null;
+			return mSize == 0;
 		}
 
 		public int size() {
 			return mSize;
 		}
 
-		public void prepend(Clause c, int index) {
-			if (mHead == null) {
-				mTail = c;
-				mTailIndex = index;
-			} else {
-				if (index == 0) {
-					assert c.mNextFirstWatch == null;
-					c.mNextFirstWatch = mHead;
-					c.mNextIsSecond |= mHeadIndex;
-				} else {
-					assert c.mNextSecondWatch == null;
-					c.mNextSecondWatch = mHead;
-					c.mNextIsSecond |= mHeadIndex << 1;
-				}
+		public void add(Clause c, Literal blocker) {
+			if (mSize == mClauses.length) {
+				final int newSize = mSize == 0 ? 4 : 2 * mSize;
+				mClauses = Arrays.copyOf(mClauses, newSize);
+				mBlockers = Arrays.copyOf(mBlockers, newSize);
 			}
-			mHead = c;
-			mHeadIndex = index;
+			mClauses[mSize] = c;
+			mBlockers[mSize] = blocker;
 			mSize++;
 		}
 
-		public void append(Clause c, int index) {
-			if (mHead == null) {
-				mHead = c;
-				mHeadIndex = index;
-			} else {
-				final Clause t = mTail;
-				if (mTailIndex == 0) {
-					assert t.mNextFirstWatch == null;
-					t.mNextFirstWatch = c;
-					t.mNextIsSecond |= index;
-				} else {
-					assert t.mNextSecondWatch == null;
-					t.mNextSecondWatch = c;
-					t.mNextIsSecond |= index << 1;
-				}
-			}
-			mTail = c;
-			mTailIndex = index;
-			mSize++;
+		/**
+		 * Shrink the list to the given size. The removed entries are cleared to not keep removed clauses alive.
+		 */
+		public void truncate(int size) {
+			Arrays.fill(mClauses, size, mSize, null);
+			Arrays.fill(mBlockers, size, mSize, null);
+			mSize = size;
 		}
 
-		public int getIndex() {
-			return mHeadIndex;
+		public void clear() {
+			truncate(0);
 		}
 
-		public Clause removeFirst() {
-			final Clause c = mHead;
-			if (mHeadIndex == 0) {
-				mHead = c.mNextFirstWatch;
-				mHeadIndex = c.mNextIsSecond & 1;
-				c.mNextFirstWatch = null;
-				c.mNextIsSecond &= 2;
-			} else {
-				mHead = c.mNextSecondWatch;
-				mHeadIndex = (c.mNextIsSecond & 2) >> 1;
-				c.mNextSecondWatch = null;
-				c.mNextIsSecond &= 1;
-			}
-			if (mHead == null) {
-				mTail = null;
-				mTailIndex = 0;
-			}
-			mSize--;
-			return c;
-		}
-
-		public void moveAll(WatchList src) {
-			if (src.mHead == null) {
-				return;
+		/**
+		 * Remove the watchers of clauses that were removed from the clause database.
+		 */
+		public void removeDeleted() {
+			int dest = 0;
+			for (int i = 0; i < mSize; i++) {
+				if (mClauses[i].mNext != null) {
+					mClauses[dest] = mClauses[i];
+					mBlockers[dest] = mBlockers[i];
+					dest++;
+				}
 			}
-
-			append(src.mHead, src.mHeadIndex);
-			mSize += src.mSize - 1;
-			mTail = src.mTail;
-			mTailIndex = src.mTailIndex;
-			src.mHead = null;
-			src.mHeadIndex = 0;
-			src.mTail = null;
-			src.mTailIndex = 0;
-			src.mSize = 0;
+			truncate(dest);
 		}
 	}
 
@@ -166,6 +105,19 @@ public class Clause extends SimpleListable<Clause> {
 	 * the activity drops below some point the clause is removed.
 	 */
 	double mActivity;
+	/**
+	 * The literal block distance of a learned clause, i.e., the number of different decide levels of its literals.
+	 * It decides in which tier the clause is kept. Zero for clauses that are not learned.
+	 */
+	int mLBD;
+	/**
+	 * Set if the clause was used in a conflict since the last reduction of the learned clauses.
+	 */
+	boolean mUsed;
+	/**
+	 * Set if the clause was already vivified by inprocessing.
+	 */
+	boolean mVivified;
 	/**
 	 * The stacklevel this clause was introduced.
 	 */
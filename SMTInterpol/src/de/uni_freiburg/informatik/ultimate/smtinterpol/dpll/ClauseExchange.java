@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.dpll;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.Config;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.proof.ProofNode;
+
+/**
+ * A lock-free exchange of learned clauses between DPLL engines that solve the same problem in parallel.
+ *
+ * The engines do not share literals. A clause is therefore published as the terms of its literals, and each engine
+ * translates these terms back into its own literals using the term table of its clausifier. A clause is only
+ * published if all its literals have a term, and it is only imported if all terms are known to the importing engine.
+ * This requires that all engines share the same theory, so that equal terms are identical objects. The engines must
+ * also be on the same assertion stack level, so that an imported clause is removed when its scope is popped.
+ *
+ * The clauses are stored in a ring buffer of fixed size. Writers claim a slot by incrementing a global counter and
+ * readers keep their own read position. A reader that falls behind by more than the capacity loses the overwritten
+ * clauses, which is harmless since sharing is only an optimisation.
+ */
+public final class ClauseExchange {
+	/**
+	 * Translation between the literals of an engine and the terms they were created for.
+	 */
+	public interface TermMapping {
+		/**
+		 * Get the term for which a literal was created.
+		 *
+		 * @param lit
+		 *            the literal.
+		 * @return the term, or null if the literal was not created for an input term.
+		 */
+		Term getLiteralTerm(Literal lit);
+
+		/**
+		 * Get the literal created for a term.
+		 *
+		 * @param term
+		 *            the term.
+		 * @return the literal, or null if this engine has no literal for the term.
+		 */
+		Literal getTermLiteral(Term term);
+	}
+
+	/**
+	 * A published clause. The literal at position i is the term mTerms[i] if mPositive[i] is set, and its negation
+	 * otherwise. The assertion stack level, the literal block distance and the proof are those of the clause in the
+	 * publishing engine; the proof is only set if proof production is enabled.
+	 */
+	private static final class SharedClause {
+		final long mSequence;
+		final int mSource;
+		final Term[] mTerms;
+		final boolean[] mPositive;
+		final int mStackLevel;
+		final int mLBD;
+		final ProofNode mProof;
+
+		SharedClause(final long sequence, final int source, final Term[] terms, final boolean[] positive,
+				final int stackLevel, final int lbd, final ProofNode proof) {
+			mSequence = sequence;
+			mSource = source;
+			mTerms = terms;
+			mPositive = positive;
+			mStackLevel = stackLevel;
+			mLBD = lbd;
+			mProof = proof;
+		}
+	}
+
+	/**
+	 * The connection of one engine to the exchange.
+	 */
+	public final class Port {
+		private final int mId;
+		private final TermMapping mMapping;
+		private long mReadPosition;
+		private int mNumExported, mNumImported, mNumUnmapped;
+
+		Port(final int id, final TermMapping mapping) {
+			mId = id;
+			mMapping = mapping;
+		}
+
+		/**
+		 * Publish a learned clause to the other engines. The clause is dropped if one of its literals was not created
+		 * by the clausifier.
+		 *
+		 * @param clause
+		 *            the learned clause.
+		 */
+		void publish(final Clause clause) {
+			final int size = clause.getSize();
+			final Term[] terms = new Term[size];
+			final boolean[] positive = new boolean[size];
+			for (int i = 0; i < size; i++) {
+				final Literal lit = clause.getLiteral(i);
+				Term term = mMapping.getLiteralTerm(lit);
+				positive[i] = term != null;
+				if (term == null) {
+					term = mMapping.getLiteralTerm(lit.negate());
+					if (term == null) {
+						mNumUnmapped++;
+						return;
+					}
+				}
+				terms[i] = term;
+			}
+			final long sequence = mWritePosition.getAndIncrement();
+			mBuffer.set((int) (sequence % mBuffer.length()), new SharedClause(sequence, mId, terms, positive,
+					clause.mStacklevel, clause.mLBD, clause.getProof()));
+			mNumExported++;
+		}
+
+		/**
+		 * Check if other engines published clauses since the last import.
+		 */
+		boolean hasPending() {
+			return mReadPosition < mWritePosition.get();
+		}
+
+		/**
+		 * Import the clauses published by other engines since the last import.
+		 *
+		 * @param engine
+		 *            the engine that receives the clauses.
+		 */
+		void importClauses(final DPLLEngine engine) {
+			final long end = mWritePosition.get();
+			long pos = Math.max(mReadPosition, end - mBuffer.length());
+			for (; pos < end; pos++) {
+				final SharedClause shared = mBuffer.get((int) (pos % mBuffer.length()));
+				// The slot is either not yet written or already overwritten.
+				if (shared == null || shared.mSequence != pos || shared.mSource == mId) {
+					continue;
+				}
+				final Literal[] lits = translate(shared);
+				if (lits == null) {
+					mNumUnmapped++;
+				} else {
+					engine.importClause(lits, shared.mStackLevel, shared.mLBD, shared.mProof);
+					mNumImported++;
+				}
+			}
+			mReadPosition = end;
+		}
+
+		/**
+		 * Translate a shared clause into literals of this engine.
+		 *
+		 * @return the literals, or null if some term is unknown or the clause is a tautology in this engine.
+		 */
+		private Literal[] translate(final SharedClause shared) {
+			final Literal[] lits = new Literal[shared.mTerms.length];
+			int size = 0;
+			next: for (int i = 0; i < lits.length; i++) {
+				Literal lit = mMapping.getTermLiteral(shared.mTerms[i]);
+				if (lit == null) {
+					return null;
+				}
+				if (!shared.mPositive[i]) {
+					lit = lit.negate();
+				}
+				// Different terms may be mapped to the same atom.
+				for (int j = 0; j < size; j++) {
+					if (lits[j] == lit) {
+						continue next;
+					}
+					if (lits[j] == lit.negate()) {
+						return null;
+					}
+				}
+				lits[size++] = lit;
+			}
+			if (size < lits.length) {
+				final Literal[] shrunk = new Literal[size];
+				System.arraycopy(lits, 0, shrunk, 0, size);
+				return shrunk;
+			}
+			return lits;
+		}
+
+		public Object getStatistics() {
+			return new Object[][] { { "Exported", mNumExported }, { "Imported", mNumImported },
+					{ "Unmapped", mNumUnmapped } };
+		}
+	}
+
+	private final AtomicReferenceArray<SharedClause> mBuffer;
+	private final AtomicLong mWritePosition = new AtomicLong();
+
+	public ClauseExchange() {
+		this(Config.EXCHANGE_CAPACITY);
+	}
+
+	public ClauseExchange(final int capacity) {
+		mBuffer = new AtomicReferenceArray<>(capacity);
+	}
+
+	/**
+	 * Connect an engine to this exchange.
+	 *
+	 * @param id
+	 *            a number that is unique among all engines connected to this exchange.
+	 * @param mapping
+	 *            the term table of the engine.
+	 * @return the port to pass to {@link DPLLEngine#setClauseExchange}.
+	 */
+	public Port connect(final int id, final TermMapping mapping) {
+		return new Port(id, mapping);
+	}
+}
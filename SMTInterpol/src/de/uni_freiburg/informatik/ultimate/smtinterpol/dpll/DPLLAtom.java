@@ -62,11 +62,35 @@ public abstract class DPLLAtom extends Literal {
 	int mDecideLevel = -1;
 	int mStackPosition = -1;
 	Literal mDecideStatus;
+	/**
+	 * The saved phase, i.e., the status the atom had when it was last set.
+	 */
 	Literal mLastStatus;
+	/**
+	 * The status of the atom in the longest conflict-free trail since the last restart, or null if the atom was not
+	 * on such a trail.
+	 */
+	Literal mTargetStatus;
+	/**
+	 * The status of the atom in the longest conflict-free trail since the last rephasing, or null if the atom was not
+	 * on such a trail.
+	 */
+	Literal mBestStatus;
+	/**
+	 * The initial phase computed at the start of the check.
+	 */
+	Literal mOriginalStatus;
 	double  mActivity;
 	public Object  mExplanation;
+	/**
+	 * The clauses that are satisfied by this atom and not watched. They are watched again when the atom is unset.
+	 */
 	Clause.WatchList mBacktrackWatchers = new Clause.WatchList();
 	int mAtomQueueIndex = -1;
+	/**
+	 * The id of the atom in the {@link DecisionQueue}, or -1 if the queue does not know the atom.
+	 */
+	int mAtomId = -1;
 	final int mAssertionstacklevel;
 
 	public DPLLAtom(int hash, int assertionstacklevel) {
@@ -75,6 +99,7 @@ public abstract class DPLLAtom extends Literal {
 		mNegated = new NegLiteral(this);
 		mAssertionstacklevel = assertionstacklevel;
 		mLastStatus = mNegated;
+		mOriginalStatus = mNegated;
 	}
 
 	/**
@@ -19,8 +19,11 @@
 package de.uni_freiburg.informatik.ultimate.smtinterpol.dpll;
 
 import java.io.PrintWriter;
+import java.util.AbstractQueue;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -98,7 +101,17 @@ public class DPLLEngine {
 	/* Statistics */
 	private int mConflicts, mDecides, mTProps, mProps;
 	private int mNumSolvedAtoms, mNumClauses, mNumAxiomClauses;
+	private int mNumDeletedClauses, mNumReductions, mNumRestarts;
 	SimpleList<Clause> mLearnedClauses = new SimpleList<Clause>();
+	/**
+	 * The number of conflicts after which the learned clauses are reduced the next time, and the current number of
+	 * conflicts between two reductions.
+	 */
+	private int mNextReduction = Config.REDUCE_FIRST, mReductionInterval = Config.REDUCE_FIRST;
+	/**
+	 * The decide levels seen by {@link #computeLBD(Clause)}. Only used to avoid allocations.
+	 */
+	private final BitSet mLBDLevels = new BitSet();
 	private long mPropTime, mPropClauseTime, mExplainTime;
 	private long mSetTime, mCheckTime, mBacktrackTime;
 	private final Theory mSmtTheory;
@@ -110,10 +123,20 @@ public class DPLLEngine {
 	double mClsScale = 1 - 1.0 / Config.CLS_ACTIVITY_FACTOR;
 
 	/**
-	 * The list of unit clauses that are not yet decided.
+	 * The literals that became false and whose watchers were not yet visited, in the order they were set. Literals
+	 * that are unset before they are visited are skipped. The queue is cleared whenever it was fully processed.
+	 */
+	private final ArrayList<Literal> mPropagationQueue = new ArrayList<>();
+	private int mPropagationHead;
+	/**
+	 * The positions in the binary and long watch lists of the literal at the head of the propagation queue where the
+	 * visit continues. They are reset on backtracking.
+	 */
+	private int mBinaryResume, mLongResume;
+	/**
+	 * The clauses whose watched literals still need to be chosen.
 	 */
-	WatchList mWatcherSetList = new WatchList();
-	WatchList mWatcherBackList = new WatchList();
+	private final ArrayDeque<Clause> mPendingClauses = new ArrayDeque<>();
 
 	/**
 	 * The DPLL stack is the stack of all literals that are currently assigned true. Every decided or propagated literal
@@ -126,7 +149,15 @@ public class DPLLEngine {
 	 * The list of all theories.
 	 */
 	private ITheory[] mTheories = new ITheory[0];
-	private final AtomQueue mAtoms = new AtomQueue();
+	/**
+	 * The unassigned atoms in the order in which they should be decided. This is an {@link AtomQueue} unless a
+	 * different decision heuristic was chosen, in which case it is the same object as {@link #mDecisionQueue}.
+	 */
+	private AbstractQueue<DPLLAtom> mAtoms = new AtomQueue();
+	/**
+	 * The decision queue of the heuristic chosen by {@link #setDecisionHeuristic}, or null for the default heuristic.
+	 */
+	private DecisionQueue mDecisionQueue;
 
 	private int mCurrentDecideLevel = 0;
 	private int mBaseLevel = 0;
@@ -136,6 +167,37 @@ public class DPLLEngine {
 	// Random source for the solver.
 	private final Random mRandom;
 
+	/**
+	 * The number of conflicts until the first restart. Later restart intervals are computed from this value by the
+	 * restart strategy.
+	 */
+	private int mRestartFactor = Config.RESTART_FACTOR;
+	private RestartPolicy.Strategy mRestartStrategy = RestartPolicy.Strategy.LUBY;
+	/**
+	 * The policy that decides when to restart. It is created from the restart strategy and factor.
+	 */
+	private RestartPolicy mRestartPolicy = mRestartStrategy.create(mRestartFactor);
+	/**
+	 * Keep the decisions on the trail on restart that would be repeated anyway, since they are more active than the
+	 * next decision.
+	 */
+	private boolean mReuseTrail = Config.RESTART_REUSE_TRAIL;
+	private final PhaseSelector mPhaseSelector = new PhaseSelector();
+	private final Inprocessor mInprocessor = new Inprocessor(this);
+	/**
+	 * The frequency of random case splits (number per {@link Config#RANDOM_SPLIT_BASE} decisions). Zero disables random
+	 * case splits.
+	 */
+	private int mRandomSplitFreq = 0;
+	/**
+	 * Invert the initial phase computed by the Jeroslow-Wang heuristic.
+	 */
+	private boolean mInvertInitialPhase = false;
+	/**
+	 * The connection to the clause exchange with engines running in parallel, or null if clauses are not shared.
+	 */
+	private ClauseExchange.Port mExchangePort;
+
 	private final TerminationRequest mCancel;
 
 	public DPLLEngine(final Theory smtTheory, final LogProxy logger, final TerminationRequest cancel) {
@@ -315,105 +377,264 @@ public class DPLLEngine {
 		if (Config.PROFILE_TIME) {
 			time = System.nanoTime() - mSetTime;
 		}
-		while (!mWatcherBackList.isEmpty()) {
-			final int index = mWatcherBackList.mHeadIndex;
-			Clause clause = mWatcherBackList.removeFirst();
-			/* check if clause was already removed */
-			if (clause.mNext == null) {
-				// System.err.println("Found removed clause in progation: " + clause);
-				continue;
-			}
-			final Literal[] lits = clause.mLiterals;
-			final Literal myLit = lits[index];
-			final Literal status = myLit.getAtom().mDecideStatus;
-			/* Special case unit clause: propagate or return as conflict clause */
-			if (lits.length == 1) {
-				myLit.getAtom().mBacktrackWatchers.append(clause, index);
-				if (status != myLit) {
-					if (status == null) {
-						/* Propagate the unit clause. */
-						myLit.getAtom().mExplanation = clause;
-						mProps++;
-						clause = setLiteral(myLit);
+		Clause conflict = null;
+		final int stackSize = mDPLLStack.size();
+		/*
+		 * We stop after the first propagation or conflict so that the theories can propagate in between. The visit of
+		 * the current watch list continues at the next call.
+		 */
+		while (conflict == null && mDPLLStack.size() == stackSize) {
+			if (!mPendingClauses.isEmpty()) {
+				final Clause clause = mPendingClauses.poll();
+				/* check if clause was already removed */
+				if (clause.mNext != null) {
+					conflict = initWatchers(clause);
+				}
+			} else if (mPropagationHead < mPropagationQueue.size()) {
+				final Literal falseLit = mPropagationQueue.get(mPropagationHead);
+				if (falseLit.getAtom().mDecideStatus == falseLit.negate()) {
+					conflict = visitBinaryWatchers(falseLit);
+					if (conflict != null || mDPLLStack.size() > stackSize) {
+						break;
 					}
-					if (Config.PROFILE_TIME) {
-						mPropClauseTime += System.nanoTime() - time - mSetTime;
+					conflict = visitWatchers(falseLit);
+					if (conflict != null || mDPLLStack.size() > stackSize) {
+						break;
 					}
-					return clause;
 				}
-			} else if (status == myLit.negate()) {
-				mWatcherSetList.append(clause, index);
+				mPropagationHead++;
+				mBinaryResume = mLongResume = 0;
 			} else {
-				myLit.mWatchers.append(clause, index);
+				mPropagationQueue.clear();
+				mPropagationHead = 0;
+				break;
+			}
+		}
+		if (Config.PROFILE_TIME) {
+			mPropClauseTime += System.nanoTime() - time - mSetTime;
+		}
+		return conflict;
+	}
+
+	/**
+	 * Check if some clauses still need to be visited by {@link #propagateClauses()}.
+	 */
+	private boolean hasPendingPropagations() {
+		return !mPendingClauses.isEmpty() || mPropagationHead < mPropagationQueue.size();
+	}
+
+	/**
+	 * Set the unit literal of a clause and let the theories propagate it.
+	 *
+	 * @return a conflict clause or null.
+	 */
+	private Clause propagateUnit(final Clause clause, final Literal lit) {
+		lit.getAtom().mExplanation = clause;
+		mProps++;
+		final Clause conflict = setLiteral(lit);
+		return conflict == null ? propagateTheories() : conflict;
+	}
+
+	/**
+	 * Visit the binary clauses that watch a literal that became false. The other literal of a binary clause is its
+	 * blocker, so the clause itself is only touched if it propagates or conflicts.
+	 *
+	 * @return a conflict clause or null.
+	 */
+	private Clause visitBinaryWatchers(final Literal falseLit) {
+		final WatchList watchers = falseLit.mBinaryWatchers;
+		while (mBinaryResume < watchers.mSize) {
+			final int i = mBinaryResume++;
+			final Literal other = watchers.mBlockers[i];
+			final Literal status = other.getAtom().mDecideStatus;
+			if (status != other) {
+				final Clause clause = watchers.mClauses[i];
+				if (clause.mNext == null) {
+					/* the clause was removed; replace it by the last watcher and visit that one next */
+					final int last = watchers.mSize - 1;
+					watchers.mClauses[i] = watchers.mClauses[last];
+					watchers.mBlockers[i] = watchers.mBlockers[last];
+					watchers.truncate(last);
+					mBinaryResume--;
+				} else if (status == null) {
+					return propagateUnit(clause, other);
+				} else {
+					return clause;
+				}
 			}
 		}
+		return null;
+	}
 
-		// logger.info("new set: "+watcherSetList.size());
-		nextList: while (!mWatcherSetList.isEmpty()) {
-			final int index = mWatcherSetList.getIndex();
-			Clause clause = mWatcherSetList.removeFirst();
+	/**
+	 * Visit the clauses with at least three literals that watch a literal that became false. The watched literals are
+	 * always the first two literals of a clause. A watcher whose blocker is true is kept without looking at the clause.
+	 * Otherwise we look for a new literal to watch. If there is none, the clause is unit or conflicting.
+	 *
+	 * @return a conflict clause or null.
+	 */
+	private Clause visitWatchers(final Literal falseLit) {
+		final WatchList watchers = falseLit.mWatchers;
+		final Clause[] clauses = watchers.mClauses;
+		final Literal[] blockers = watchers.mBlockers;
+		final int size = watchers.mSize;
+		int dest = mLongResume;
+		int i = mLongResume;
+		nextWatcher: while (i < size) {
+			final Clause clause = clauses[i];
+			final Literal blocker = blockers[i];
+			i++;
+			if (blocker.getAtom().mDecideStatus == blocker) {
+				clauses[dest] = clause;
+				blockers[dest++] = blocker;
+				continue;
+			}
 			/* check if clause was already removed */
 			if (clause.mNext == null) {
-				continue nextList;
+				continue;
 			}
 			final Literal[] lits = clause.mLiterals;
-			assert lits[index].getAtom().mDecideStatus == lits[index].negate();
-			assert lits.length >= 2;
-			final Literal otherLit = lits[1 - index];
-			final DPLLAtom otherAtom = otherLit.getAtom();
-			if (otherAtom.mDecideStatus == otherLit) {
-				/*
-				 * Other watcher is true, put ourself on the backtrack watcher list.
-				 */
-				otherAtom.mBacktrackWatchers.append(clause, index);
-				continue nextList;
-			}
-			for (int i = 2; i < lits.length; i++) {
-				final Literal lit = lits[i];
-				final DPLLAtom atom = lit.getAtom();
-				final Literal status = atom.mDecideStatus;
+			if (lits[0] == falseLit) {
+				lits[0] = lits[1];
+				lits[1] = falseLit;
+			}
+			assert lits[1] == falseLit;
+			final Literal other = lits[0];
+			final Literal otherStatus = other.getAtom().mDecideStatus;
+			if (otherStatus == other) {
+				clauses[dest] = clause;
+				blockers[dest++] = other;
+				continue;
+			}
+			for (int k = 2; k < lits.length; k++) {
+				final Literal lit = lits[k];
+				final Literal status = lit.getAtom().mDecideStatus;
 				if (status != lit.negate()) {
 					/* check if clause is too old to keep */
 					if (clause.mActivity < mClsScale * Config.CLAUSE_UNLEARN_ACTIVITY && status == null
 							&& clause.doCleanup(this)) {
 						clause.removeFromList();
+						mNumClauses--;
+						mNumDeletedClauses++;
 					} else {
 						/* watch this literal */
-						for (int j = i; j > 2; j--) {
-							lits[j] = lits[j - 1];
-						}
-						lits[2] = lits[index];
-						lits[index] = lit;
-						lit.mWatchers.append(clause, index);
+						lits[k] = falseLit;
+						lits[1] = lit;
+						lit.mWatchers.add(clause, other);
 					}
-					continue nextList;
+					continue nextWatcher;
 				}
 			}
 			/*
-			 * Now we haven't found another atom to watch. Hence we have a unit clause or conflict clause.
+			 * We haven't found another literal to watch. Hence we have a unit clause or conflict clause. The watcher
+			 * stays, and the remaining watchers are visited on the next call.
 			 */
-			// put the entry back into the watch list of the literal. Until
-			// the literal changes again, the watcher is not needed anymore.
-			lits[index].mWatchers.append(clause, index);
-			if (otherAtom.mDecideStatus == null) {
-				/* Propagate the unit clause. */
-				otherAtom.mExplanation = clause;
-				mProps++;
-				clause = setLiteral(otherLit);
-				if (clause == null) {
-					clause = propagateTheories();
-				}
-			}
-			/* Conflict clause */
-			if (Config.PROFILE_TIME) {
-				mPropClauseTime += System.nanoTime() - time - mSetTime;
+			clauses[dest] = clause;
+			blockers[dest++] = other;
+			System.arraycopy(clauses, i, clauses, dest, size - i);
+			System.arraycopy(blockers, i, blockers, dest, size - i);
+			watchers.truncate(dest + size - i);
+			mLongResume = dest;
+			return otherStatus == null ? propagateUnit(clause, other) : clause;
+		}
+		watchers.truncate(dest);
+		mLongResume = dest;
+		return null;
+	}
+
+	/**
+	 * Rank a literal as a candidate for a watched literal of a new clause. Unset literals are best, then true literals
+	 * with low decide level, then false literals with high decide level.
+	 */
+	private static int getWatchRank(final Literal lit) {
+		final DPLLAtom atom = lit.getAtom();
+		if (atom.mDecideStatus == null) {
+			return Integer.MAX_VALUE;
+		}
+		return atom.mDecideStatus == lit ? Integer.MAX_VALUE - 1 - atom.mDecideLevel : atom.mDecideLevel;
+	}
+
+	/**
+	 * Move the best literal to watch from lits[pos..] to position pos.
+	 */
+	private static void moveBestWatch(final Literal[] lits, final int pos) {
+		int best = pos;
+		int bestRank = getWatchRank(lits[pos]);
+		for (int i = pos + 1; i < lits.length && bestRank != Integer.MAX_VALUE; i++) {
+			final int rank = getWatchRank(lits[i]);
+			if (rank > bestRank) {
+				best = i;
+				bestRank = rank;
+			}
+		}
+		final Literal tmp = lits[best];
+		lits[best] = lits[pos];
+		lits[pos] = tmp;
+	}
+
+	private static void addWatchers(final Clause clause) {
+		final Literal[] lits = clause.mLiterals;
+		if (lits.length == 2) {
+			lits[0].mBinaryWatchers.add(clause, lits[1]);
+			lits[1].mBinaryWatchers.add(clause, lits[0]);
+		} else {
+			lits[0].mWatchers.add(clause, lits[1]);
+			lits[1].mWatchers.add(clause, lits[0]);
+		}
+	}
+
+	/**
+	 * Start watching a new clause, or a clause whose satisfying literal was backtracked. The clause is propagated if
+	 * it is unit under the current assignment.
+	 *
+	 * A clause that is only satisfied by a literal that was set after its other literals became false is not watched.
+	 * It is parked on the backtrack list of the satisfying atom instead and watched again when that atom is unset.
+	 * This also applies to unit clauses.
+	 *
+	 * @return a conflict clause or null.
+	 */
+	private Clause initWatchers(final Clause clause) {
+		final Literal[] lits = clause.mLiterals;
+		if (lits.length == 1) {
+			final Literal lit = lits[0];
+			lit.getAtom().mBacktrackWatchers.add(clause, null);
+			final Literal status = lit.getAtom().mDecideStatus;
+			if (status == null) {
+				return propagateUnit(clause, lit);
+			}
+			return status == lit ? null : clause;
+		}
+		moveBestWatch(lits, 0);
+		moveBestWatch(lits, 1);
+		final DPLLAtom first = lits[0].getAtom();
+		final DPLLAtom second = lits[1].getAtom();
+		if (second.mDecideStatus != lits[1].negate()) {
+			addWatchers(clause);
+			return null;
+		}
+		if (first.mDecideStatus == lits[0]) {
+			if (first.mDecideLevel > second.mDecideLevel) {
+				first.mBacktrackWatchers.add(clause, null);
+			} else {
+				addWatchers(clause);
 			}
-			return clause;// NOPMD
+			return null;
 		}
-		if (Config.PROFILE_TIME) {
-			mPropClauseTime += System.nanoTime() - time - mSetTime;
+		addWatchers(clause);
+		return first.mDecideStatus == null ? propagateUnit(clause, lits[0]) : clause;
+	}
+
+	/**
+	 * Remove the watchers of deleted clauses from the watch lists of all literals.
+	 */
+	private void removeDeletedWatchers() {
+		for (final DPLLAtom atom : mAtomList) {
+			atom.mWatchers.removeDeleted();
+			atom.mBinaryWatchers.removeDeleted();
+			atom.negate().mWatchers.removeDeleted();
+			atom.negate().mBinaryWatchers.removeDeleted();
 		}
-		return null;
+		mBinaryResume = mLongResume = 0;
 	}
 
 	private boolean checkConflict(final Clause conflict) {
@@ -445,7 +666,7 @@ public class DPLLEngine {
 		atom.mLastStatus = atom.mDecideStatus;
 		mAtoms.remove(atom);
 		assert !Config.EXPENSIVE_ASSERTS || checkDecideLevel();
-		mWatcherSetList.moveAll(literal.negate().mWatchers);
+		mPropagationQueue.add(literal.negate());
 		long time;
 		if (Config.PROFILE_TIME) {
 			time = System.nanoTime();
@@ -470,63 +691,34 @@ public class DPLLEngine {
 	}
 
 	public void watchClause(final Clause clause) {
-		if (clause.getSize() <= 1) {
-			if (clause.getSize() == 0) {
-				if (mUnsatClause == null) {
-					mUnsatClause = clause;
-				}
-			} else {
-				// Make sure the unit literal is actually a unit
-				if (mAssumptionLiterals.contains(clause.getLiteral(0).negate())) {
-					mUnsatClause = clause;
-					return;
-				}
-				/* propagate unit clause: only register watcher zero. */
-				mWatcherBackList.append(clause, 0);
+		if (clause.getSize() == 0) {
+			if (mUnsatClause == null) {
+				mUnsatClause = clause;
 			}
-		} else {
-			// Move unset literals upfront
-			int dest = 0;
-			while (dest < 2) {
-				if (mAssumptionLiterals.contains(clause.getLiteral(dest).negate())) {
-					boolean found = false;
-					for (int i = dest + 1; i < clause.getSize(); ++i) {
-						if (!mAssumptionLiterals.contains(clause.getLiteral(i).negate())) {
-							// swap literal @dest with literal @i
-							final Literal tmp = clause.mLiterals[i];
-							clause.mLiterals[i] = clause.mLiterals[dest];
-							clause.mLiterals[dest] = tmp;
-							found = true;
-							break;
-						}
-					}
-					if (found) {
-						dest++;
-					} else if (dest == 0) {
-						// We only found assumptions in this clause.
-						mUnsatClause = clause;
-						return;
-					} else {
-						assert dest == 1;
-						// We found a unit clause
-						/* propagate unit clause: only register watcher zero. */
-						mWatcherBackList.append(clause, 0);
-						return;
-					}
-				} else {
-					dest++;
+			return;
+		}
+		if (!mAssumptionLiterals.isEmpty()) {
+			boolean onlyAssumptions = true;
+			for (final Literal lit : clause.mLiterals) {
+				if (!mAssumptionLiterals.contains(lit.negate())) {
+					onlyAssumptions = false;
+					break;
 				}
 			}
-			/*
-			 * A clause is "watched" if it appears on either the watcherBack/SetList or the watchers list of some atom.
-			 */
-			mWatcherBackList.append(clause, 0);
-			mWatcherBackList.append(clause, 1);
+			if (onlyAssumptions) {
+				mUnsatClause = clause;
+				return;
+			}
 		}
+		/* The watched literals are chosen when the clause is propagated. */
+		mPendingClauses.add(clause);
 	}
 
 	public void addClause(final Clause clause) {
 		mAtomScale += 1.0 - 1.0 / Config.ATOM_ACTIVITY_FACTOR;
+		if (mDecisionQueue != null) {
+			mDecisionQueue.clauseAdded();
+		}
 		clause.mActivity = Double.POSITIVE_INFINITY;
 		mNumAxiomClauses++;
 		assert clause.mStacklevel == mPushPopLevel;
@@ -554,7 +746,30 @@ public class DPLLEngine {
 	}
 
 	public void learnClause(final Clause clause) {
+		storeLearnedClause(clause);
+		if (mExchangePort != null && clause.getSize() <= Config.EXCHANGE_MAX_SIZE
+				&& clause.mLBD <= Config.EXCHANGE_MAX_LBD) {
+			mExchangePort.publish(clause);
+		}
+	}
+
+	/**
+	 * Learn a theory lemma that may be deleted again like a learned conflict clause, e.g., a quantifier instance. The
+	 * lemma starts in the local tier of the clause reduction, so it only survives if it is used in conflicts.
+	 *
+	 * @param clause
+	 *            the lemma.
+	 */
+	public void learnDeletableClause(final Clause clause) {
+		clause.mLBD = Math.max(computeLBD(clause), Config.LBD_TIER2 + 1);
+		learnClause(clause);
+	}
+
+	private void storeLearnedClause(final Clause clause) {
 		mAtomScale += 1.0 - 1.0 / Config.ATOM_ACTIVITY_FACTOR;
+		if (mDecisionQueue != null) {
+			mDecisionQueue.clauseAdded();
+		}
 		mNumClauses++;
 		clause.mActivity = mClsScale;// Double.POSITIVE_INFINITY;
 		if (clause.getSize() <= 2) {
@@ -564,6 +779,379 @@ public class DPLLEngine {
 		watchClause(clause);
 	}
 
+	/**
+	 * Compute the literal block distance of a clause, i.e., the number of different decision levels of its literals.
+	 * Unassigned literals count as one additional level.
+	 */
+	private int computeLBD(final Clause clause) {
+		for (final Literal lit : clause.mLiterals) {
+			final DPLLAtom atom = lit.getAtom();
+			mLBDLevels.set(atom.mDecideStatus == null ? mCurrentDecideLevel + 1 : atom.mDecideLevel);
+		}
+		final int lbd = mLBDLevels.cardinality();
+		mLBDLevels.clear();
+		return lbd;
+	}
+
+	/**
+	 * Mark a clause that is used in conflict analysis. The literal block distance of a learned clause is updated if it
+	 * decreased, which may move the clause to a better tier.
+	 */
+	private void markUsed(final Clause clause) {
+		clause.mUsed = true;
+		if (clause.mLBD > Config.LBD_CORE) {
+			final int lbd = computeLBD(clause);
+			if (lbd < clause.mLBD) {
+				clause.mLBD = lbd;
+			}
+		}
+	}
+
+	/**
+	 * Check if a clause is the reason of an assigned literal. Clauses only propagate one of their watched literals.
+	 */
+	private static boolean isReason(final Clause clause) {
+		for (int i = 0; i < 2 && i < clause.getSize(); i++) {
+			final DPLLAtom atom = clause.getLiteral(i).getAtom();
+			if (atom.mExplanation == clause) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean removeLearnedClause(final Clause clause) {
+		if (isReason(clause) || !clause.doCleanup(this)) {
+			return false;
+		}
+		clause.removeFromList();
+		mNumClauses--;
+		mNumDeletedClauses++;
+		return true;
+	}
+
+	/**
+	 * Reduce the learned clauses by tiers of their literal block distance. Core clauses are kept forever. Tier2
+	 * clauses are kept as long as they are used in conflicts between two reductions. Of the remaining local clauses
+	 * that were not used since the last reduction, the less active half is removed. Removed clauses stay in the
+	 * watcher lists and are dropped there lazily.
+	 */
+	void reduceLearnedClauses() {
+		final ArrayList<Clause> unusedTier2 = new ArrayList<>();
+		final ArrayList<Clause> local = new ArrayList<>();
+		for (final Clause clause : mLearnedClauses) {
+			final boolean used = clause.mUsed;
+			clause.mUsed = false;
+			if (isCoreClause(clause) || used) {
+				continue;
+			}
+			if (clause.mLBD <= Config.LBD_TIER2) {
+				unusedTier2.add(clause);
+			} else {
+				local.add(clause);
+			}
+		}
+		for (final Clause clause : unusedTier2) {
+			removeLearnedClause(clause);
+		}
+		local.sort((c1, c2) -> Double.compare(c1.mActivity, c2.mActivity));
+		for (int i = 0; i < local.size() / 2; i++) {
+			removeLearnedClause(local.get(i));
+		}
+		removeDeletedWatchers();
+		mNumReductions++;
+		mReductionInterval += Config.REDUCE_INCREMENT;
+		mNextReduction = mConflicts + mReductionInterval;
+		mLogger.debug("Reduced learned clauses to %d", mNumClauses);
+	}
+
+	private static boolean isCoreClause(final Clause clause) {
+		return clause.mLBD <= Config.LBD_CORE || clause.getSize() <= 2;
+	}
+
+	/**
+	 * Add a clause learned by another engine. This is only called by {@link ClauseExchange} when the engine is
+	 * restarted to the base level, so the clause can be watched like an input clause.
+	 *
+	 * @param lits
+	 *            the literals of the clause in this engine.
+	 * @param stacklevel
+	 *            the assertion stack level of the clause in the engine that learned it.
+	 * @param lbd
+	 *            the literal block distance of the clause in the engine that learned it.
+	 * @param proof
+	 *            the proof of the clause in the engine that learned it.
+	 */
+	void importClause(final Literal[] lits, final int stacklevel, final int lbd, final ProofNode proof) {
+		final Clause clause = new Clause(lits, stacklevel);
+		clause.mLBD = lbd;
+		if (isProofGenerationEnabled()) {
+			// Proofs are converted to terms over the shared theory, so the proof of the exporting engine proves the
+			// same clause here.
+			clause.setProof(proof);
+		}
+		mLogger.debug("Imported clause %s", clause);
+		storeLearnedClause(clause);
+	}
+
+	/**
+	 * Remove a clause that is subsumed by another clause. This is only called by {@link Inprocessor} on the base level.
+	 *
+	 * @param clause
+	 *            the subsumed clause.
+	 * @param learned
+	 *            true if the clause is a learned clause, false if it is an input clause.
+	 * @return true if the clause was removed.
+	 */
+	boolean removeSubsumedClause(final Clause clause, final boolean learned) {
+		if (learned) {
+			return removeLearnedClause(clause);
+		}
+		if (isReason(clause) || !clause.doCleanup(this)) {
+			return false;
+		}
+		clause.removeFromList();
+		return true;
+	}
+
+	/**
+	 * Replace a clause by a stronger clause that contains a subset of its literals. The new clause is derived by
+	 * resolution from a primary clause and some antecedents. A new input clause takes the place of the old clause in
+	 * the list of input clauses, which is ordered by stack level.
+	 *
+	 * @param clause
+	 *            the clause to replace.
+	 * @param learned
+	 *            true if the clause is a learned clause, false if it is an input clause.
+	 * @param literals
+	 *            the literals of the new clause.
+	 * @param primary
+	 *            the primary clause of the resolution proof of the new clause.
+	 * @param antecedents
+	 *            the antecedents of the resolution proof of the new clause.
+	 * @param stacklevel
+	 *            the stack level of the clauses the new clause was derived from.
+	 * @return the new clause, or null if the clause could not be replaced.
+	 */
+	Clause strengthenClause(final Clause clause, final boolean learned, final Literal[] literals,
+			final Clause primary, final Antecedent[] antecedents, final int stacklevel) {
+		if (isReason(clause) || !clause.doCleanup(this)) {
+			return null;
+		}
+		final Clause strengthened = new Clause(literals, stacklevel);
+		if (isProofGenerationEnabled()) {
+			strengthened.setProof(antecedents.length == 0 ? primary.getProof()
+					: new ResolutionNode(primary, antecedents));
+		}
+		if (learned) {
+			strengthened.mLBD = Math.min(clause.mLBD, literals.length);
+			strengthened.mActivity = literals.length <= 2 ? Double.POSITIVE_INFINITY : clause.mActivity;
+			clause.removeFromList();
+			mLearnedClauses.append(strengthened);
+		} else {
+			assert strengthened.mStacklevel == clause.mStacklevel;
+			strengthened.mActivity = Double.POSITIVE_INFINITY;
+			strengthened.mPrev = clause.mPrev;
+			strengthened.relink();
+			clause.removeFromList();
+		}
+		mLogger.debug("Strengthened %s to %s", clause, strengthened);
+		watchClause(strengthened);
+		return strengthened;
+	}
+
+	/**
+	 * Check if a clause is satisfied on the base level.
+	 */
+	private boolean isSatisfiedOnBaseLevel(final Clause clause) {
+		for (final Literal lit : clause.mLiterals) {
+			if (lit.getAtom().mDecideStatus == lit && lit.getAtom().mDecideLevel <= mBaseLevel) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Vivify a clause. The literals of the clause are set to false one by one and propagated. If this leads to a
+	 * conflict or sets another literal of the clause to true, the clause is implied by a subset of its literals, which
+	 * is derived by resolution like a learned clause. The clause is then replaced by this subset.
+	 *
+	 * This is called on the base level. The assignment is backtracked to the base level afterwards.
+	 *
+	 * @param clause
+	 *            the clause to vivify.
+	 * @param learned
+	 *            true if the clause is a learned clause, false if it is an input clause.
+	 * @return a conflict clause on the base level or null.
+	 */
+	private Clause vivifyClause(final Clause clause, final boolean learned) {
+		assert mCurrentDecideLevel == mBaseLevel;
+		clause.mVivified = true;
+		final int startPos = mDPLLStack.size();
+		final Literal[] lits = clause.mLiterals.clone();
+		Clause reason = null;
+		Literal trueLit = null;
+		for (final Literal lit : lits) {
+			final Literal status = lit.getAtom().mDecideStatus;
+			if (status == lit) {
+				reason = getExplanation(lit);
+				trueLit = lit;
+				break;
+			} else if (status == null) {
+				increaseDecideLevel();
+				reason = setLiteral(lit.negate());
+				if (reason == null) {
+					reason = propagateInternal();
+				}
+				if (reason != null) {
+					break;
+				}
+			}
+		}
+		if (reason != null) {
+			/* Resolve the reason with the explanations of all literals that are not decisions. */
+			final Set<Literal> derived = new HashSet<>();
+			final Set<Literal> level0Ants = new HashSet<>();
+			final ArrayList<Antecedent> antecedents = new ArrayList<>();
+			int stacklevel = reason.mStacklevel;
+			for (final Literal l : reason.mLiterals) {
+				if (l != trueLit) {
+					if (l.getAtom().mDecideLevel > mBaseLevel) {
+						derived.add(l.negate());
+					} else {
+						stacklevel = level0resolve(l, level0Ants, stacklevel);
+					}
+				}
+			}
+			for (int i = mDPLLStack.size() - 1; i >= startPos; i--) {
+				final Literal lit = mDPLLStack.get(i);
+				if (lit.getAtom().mExplanation == null || !derived.remove(lit)) {
+					continue;
+				}
+				final Clause expl = getExplanation(lit);
+				stacklevel = Math.max(stacklevel, expl.mStacklevel);
+				antecedents.add(new Antecedent(lit, expl));
+				for (final Literal l : expl.mLiterals) {
+					if (l != lit) {
+						if (l.getAtom().mDecideLevel > mBaseLevel) {
+							derived.add(l.negate());
+						} else {
+							stacklevel = level0resolve(l, level0Ants, stacklevel);
+						}
+					}
+				}
+			}
+			for (final Literal l0 : level0Ants) {
+				antecedents.add(new Antecedent(l0, getLevel0(l0)));
+			}
+			final int size = derived.size() + (trueLit == null ? 0 : 1);
+			if (size > 0 && size < lits.length && (learned || stacklevel <= clause.mStacklevel)) {
+				final Literal[] newlits = new Literal[size];
+				int i = 0;
+				for (final Literal l : derived) {
+					newlits[i++] = l.negate();
+				}
+				if (trueLit != null) {
+					newlits[i++] = trueLit;
+				}
+				backtrackTo(startPos);
+				final Clause strengthened = strengthenClause(clause, learned, newlits, reason,
+						antecedents.toArray(new Antecedent[antecedents.size()]), stacklevel);
+				if (strengthened != null) {
+					strengthened.mVivified = true;
+					mInprocessor.vivified();
+				}
+			}
+		}
+		backtrackTo(startPos);
+		return finalizeBacktrack();
+	}
+
+	/**
+	 * Backtrack all literals above the given position of the DPLL stack.
+	 */
+	private void backtrackTo(final int stackPos) {
+		while (mDPLLStack.size() > stackPos) {
+			final Literal lit = mDPLLStack.remove(mDPLLStack.size() - 1);
+			if (lit.getAtom().mExplanation == null) {
+				decreaseDecideLevel();
+			}
+			backtrackLiteral(lit);
+		}
+	}
+
+	/**
+	 * Vivify the learned clauses in the core and tier2 and the input clauses that were not vivified yet, until the
+	 * propagation budget of this round is used up. The saved phases are not changed by vivification.
+	 *
+	 * @param modifyInput
+	 *            true if input clauses may be vivified.
+	 * @return a conflict clause on the base level or null.
+	 */
+	private Clause vivifyClauses(final boolean modifyInput) {
+		final ArrayList<Clause> candidates = new ArrayList<>();
+		for (final Clause clause : mLearnedClauses) {
+			if (!clause.mVivified && clause.getSize() > 2 && clause.mLBD <= Config.LBD_TIER2) {
+				candidates.add(clause);
+			}
+		}
+		candidates.sort((c1, c2) -> c1.mLBD - c2.mLBD);
+		final int numLearned = candidates.size();
+		if (modifyInput) {
+			for (final Clause clause : mClauses) {
+				if (!clause.mVivified && clause.getSize() > 2 && clause.mCleanupHook == null) {
+					candidates.add(clause);
+				}
+			}
+		}
+		final Literal[] phases = new Literal[mAtomList.size()];
+		for (int i = 0; i < phases.length; i++) {
+			phases[i] = mAtomList.get(i).mLastStatus;
+		}
+		final long maxProps = (long) mProps + mTProps + mInprocessor.getVivifyBudget((long) mProps + mTProps);
+		Clause conflict = null;
+		for (int i = 0; i < candidates.size() && conflict == null && !isTerminationRequested(); i++) {
+			if ((long) mProps + mTProps > maxProps) {
+				break;
+			}
+			final Clause clause = candidates.get(i);
+			if (clause.mNext != null && !isSatisfiedOnBaseLevel(clause)) {
+				conflict = vivifyClause(clause, i < numLearned);
+				if (conflict == null) {
+					conflict = propagateInternal();
+				}
+			}
+		}
+		for (int i = 0; i < phases.length; i++) {
+			mAtomList.get(i).mLastStatus = phases[i];
+		}
+		return conflict;
+	}
+
+	/**
+	 * Simplify the clause database on the base level. Input clauses are only changed if proofs are disabled, since
+	 * the interpolator expects the input clauses to be the leaves of the proof.
+	 *
+	 * @return a conflict clause on the base level or null.
+	 */
+	private Clause inprocess() {
+		assert mCurrentDecideLevel == mBaseLevel;
+		Clause conflict = propagateInternal();
+		if (conflict == null) {
+			final boolean modifyInput = !isProofGenerationEnabled();
+			mInprocessor.subsume(mClauses, mLearnedClauses, modifyInput);
+			conflict = propagateInternal();
+			if (conflict == null) {
+				conflict = vivifyClauses(modifyInput);
+			}
+		}
+		removeDeletedWatchers();
+		mInprocessor.finished(mConflicts, (long) mProps + mTProps);
+		mLogger.debug("Inprocessing reduced learned clauses to %d", mNumClauses);
+		return conflict;
+	}
+
 	// public void addInstantiationClause(Literal[] lits) {
 	// ++num_insts;
 	// Clause clause = new Clause(lits);
@@ -615,6 +1203,7 @@ public class DPLLEngine {
 	 */
 	private Clause explainConflict(final Clause clause) {
 		mLogger.debug("explain conflict %s", clause);
+		markUsed(clause);
 		final HashSet<Literal> level0Ants = new HashSet<Literal>();
 		List<Antecedent> antecedents = null;
 		if (isProofGenerationEnabled()) {
@@ -624,6 +1213,9 @@ public class DPLLEngine {
 		mConflicts++;
 		assert checkDecideLevel();
 		mAtomScale *= Config.ATOM_ACTIVITY_FACTOR;
+		if (mDecisionQueue != null) {
+			mDecisionQueue.conflict();
+		}
 		mClsScale *= Config.CLS_ACTIVITY_FACTOR;
 		final Set<Literal> conflict = new CuckooHashSet<Literal>();
 		int maxDecideLevel = mBaseLevel + 1;
@@ -650,7 +1242,7 @@ public class DPLLEngine {
 					expstacklevel = level0resolve(lit, level0Ants, expstacklevel);
 				}
 			}
-			atom.mActivity += mAtomScale;
+			bumpActivity(atom);
 		}
 		mLogger.debug("removing level0: %s", conflict);
 		if (conflict.size() == numAssumptions) {
@@ -673,6 +1265,7 @@ public class DPLLEngine {
 			}
 			assert i == newlits.length;
 			final Clause resolution = new Clause(newlits, expstacklevel);
+			resolution.mLBD = computeLBD(resolution);
 			if (isProofGenerationEnabled()) {
 				for (final Literal l0 : level0Ants) {
 					antecedents.add(new Antecedent(l0, getLevel0(l0)));
@@ -721,6 +1314,7 @@ public class DPLLEngine {
 			/* Do a resolution step with explanation */
 			final Clause expl = getExplanation(lit);
 			expl.mActivity += mClsScale;
+			markUsed(expl);
 			// expl.usedTimes++;
 			expstacklevel = Math.max(expstacklevel, expl.mStacklevel);
 			if (isProofGenerationEnabled()) {
@@ -749,7 +1343,7 @@ public class DPLLEngine {
 						// Here, we do level0 resolution as well
 						expstacklevel = level0resolve(l, level0Ants, expstacklevel);
 					}
-					l.getAtom().mActivity += mAtomScale;
+					bumpActivity(l.getAtom());
 				}
 			}
 			assert countLitsOnDecideLevel(conflict) == numLitsOnMaxDecideLevel;
@@ -787,6 +1381,7 @@ public class DPLLEngine {
 				/* Do a resolution step with explanation */
 				final Clause expl = getExplanation(lit);
 				expl.mActivity += mClsScale;
+				markUsed(expl);
 				// expl.usedTimes++;
 				expstacklevel = Math.max(expstacklevel, expl.mStacklevel);
 				if (isProofGenerationEnabled()) {
@@ -807,7 +1402,7 @@ public class DPLLEngine {
 							// Here, we do level0 resolution as well
 							expstacklevel = level0resolve(l, level0Ants, expstacklevel);
 						}
-						l.getAtom().mActivity += mAtomScale;
+						bumpActivity(l.getAtom());
 					}
 				}
 			}
@@ -829,6 +1424,8 @@ public class DPLLEngine {
 		}
 		assert newlits[newlits.length - 1] != null;
 		final Clause resolution = new Clause(newlits, expstacklevel);
+		// The asserting literal is already unassigned and counts as the level of the conflict.
+		resolution.mLBD = computeLBD(resolution);
 		if (isProofGenerationEnabled()) {
 			for (final Literal l0 : level0Ants) {
 				antecedents.add(new Antecedent(l0, getLevel0(l0)));
@@ -859,7 +1456,10 @@ public class DPLLEngine {
 	 */
 	private boolean explain(Clause conflict) {
 		while (conflict != null) {
+			final int trailSize = mDPLLStack.size();
+			mPhaseSelector.conflict(mDPLLStack);
 			conflict = explainConflict(conflict);
+			mRestartPolicy.conflict(conflict.mLBD, trailSize);
 			learnClause(conflict);
 			if (mUnsatClause != null) {
 				return true;
@@ -961,7 +1561,6 @@ public class DPLLEngine {
 	}
 
 	private Clause finalizeBacktrack() {
-		mWatcherBackList.moveAll(mWatcherSetList);
 		for (final ITheory t : mTheories) {
 			final Clause conflict = t.backtrackComplete();
 			if (conflict != null) {
@@ -975,7 +1574,8 @@ public class DPLLEngine {
 		int i = mDPLLStack.size();
 		while (i > 0) {
 			final Literal lit = mDPLLStack.get(--i);
-			if (conflict.contains(lit)) {
+			// Never backtrack the assumptions.
+			if (conflict.contains(lit) || lit.getAtom().mDecideLevel <= mBaseLevel) {
 				break;
 			}
 			if (lit.getAtom().mExplanation == null) {
@@ -991,7 +1591,12 @@ public class DPLLEngine {
 		long time;
 		mLogger.debug("B %s", literal);
 		final DPLLAtom atom = literal.getAtom();
-		mWatcherBackList.moveAll(atom.mBacktrackWatchers);
+		final WatchList parked = atom.mBacktrackWatchers;
+		for (int i = 0; i < parked.mSize; i++) {
+			mPendingClauses.add(parked.mClauses[i]);
+		}
+		parked.clear();
+		mBinaryResume = mLongResume = 0;
 		atom.mExplanation = null;
 		atom.mDecideStatus = null;
 		atom.mDecideLevel = -1;
@@ -1035,12 +1640,13 @@ public class DPLLEngine {
 			return lit;
 		}
 		DPLLAtom atom;
-		// int ran = mRandom.nextInt(Config.RANDOM_SPLIT_BASE);
-		// if (!mAtoms.isEmpty() && ran <= Config.RANDOM_SPLIT_FREQ) {
-		// atom = mAtoms.mAtoms[mRandom.nextInt(mAtoms.size())];
-		// ++mNumRandomSplits;
-		// } else
-		atom = mAtoms.peek();
+		if (mRandomSplitFreq > 0 && !mAtoms.isEmpty()
+				&& mRandom.nextInt(Config.RANDOM_SPLIT_BASE) < mRandomSplitFreq) {
+			atom = randomAtom();
+			++mNumRandomSplits;
+		} else {
+			atom = mAtoms.peek();
+		}
 		if (atom == null) {
 			return null;
 		}
@@ -1048,22 +1654,7 @@ public class DPLLEngine {
 		// logger.debug("Choose literal: "+atom+" Weight "
 		// + (atom.activity/factor) +" - last: " + atom.lastStatus);
 		// return atom.lastStatus == null ? atom.negate() : atom.lastStatus;
-		return atom.getPreferredStatus();
-	}
-
-	private static final int luby_super(final int i) {
-		int power;
-
-		assert i > 0;
-		/* let 2^k be the least power of 2 >= (i+1) */
-		power = 2;
-		while (power < i + 1) {
-			power *= 2;
-		}
-		if (power == i + 1) {
-			return power / 2;
-		}
-		return luby_super(i - power / 2 + 1);
+		return mPhaseSelector.choosePhase(atom);
 	}
 
 	private void printStatistics() {
@@ -1132,7 +1723,9 @@ public class DPLLEngine {
 					final Double nscore = scores.get(atom.negate());
 					final double Pscore = pscore == null ? 0 : pscore;
 					final double Nscore = nscore == null ? 0 : nscore;
-					atom.setPreferredStatus(Pscore > Nscore ? atom : atom.negate());
+					final boolean positive = (Pscore > Nscore) != mInvertInitialPhase;
+					atom.setPreferredStatus(positive ? atom : atom.negate());
+					atom.mOriginalStatus = atom.mLastStatus;
 				}
 			}
 			long lastTime;
@@ -1146,7 +1739,9 @@ public class DPLLEngine {
 				}
 			}
 			int iteration = 1;
-			int nextRestart = Config.RESTART_FACTOR;
+			mRestartPolicy.reset();
+			mPhaseSelector.reset(mConflicts);
+			mInprocessor.reset(mConflicts);
 			long time;
 			while (!isTerminationRequested()) {
 				Clause conflict;
@@ -1168,6 +1763,7 @@ public class DPLLEngine {
 							boolean suggested = false;
 							while (conflict != null && (lit = suggestions()) != null) { // NOPMD
 								if (lit.getAtom().mExplanation == null) {
+									mPhaseSelector.decided(mDPLLStack.size());
 									increaseDecideLevel();
 									mDecides++;
 								}
@@ -1175,7 +1771,7 @@ public class DPLLEngine {
 								suggested = true;
 							}
 							// @assert conflict != null ==> suggested == true
-							if (!suggested && mWatcherBackList.isEmpty() && mAtoms.isEmpty()) {
+							if (!suggested && !hasPendingPropagations() && mAtoms.isEmpty()) {
 								/* We found a model */
 								if (mLogger.isInfoEnabled()) {
 									printStatistics();
@@ -1194,6 +1790,7 @@ public class DPLLEngine {
 							}
 						}
 					} else {
+						mPhaseSelector.decided(mDPLLStack.size());
 						increaseDecideLevel();
 						mDecides++;
 						conflict = setLiteral(literal);
@@ -1240,15 +1837,33 @@ public class DPLLEngine {
 					}
 					mClsScale *= Double.MIN_NORMAL;
 				}
-				if (--nextRestart == 0) {
+				if (mConflicts >= mNextReduction) {
+					reduceLearnedClauses();
+				}
+				if (mPhaseSelector.isRephaseDue(mConflicts)) {
+					final PhaseSelector.Rephase kind =
+							mPhaseSelector.rephase(mConflicts, mAtomList, mClauses, mBaseLevel, mRandom);
+					mLogger.debug("Rephase %s", kind);
+				}
+				if (mRestartPolicy.isRestartDue()) {
 					final DPLLAtom next = mAtoms.peek();
+					final boolean importClauses = mExchangePort != null && mExchangePort.hasPending();
+					final boolean inprocess = mBaseLevel == 0 && mInprocessor.isInprocessingDue(mConflicts);
 					int restartpos = -1;
-					for (int i = mNumSolvedAtoms + mBaseLevel; i < mDPLLStack.size(); ++i) {
-						final DPLLAtom var = mDPLLStack.get(i).getAtom();
-						if (var.mExplanation == null && var.mActivity < next.mActivity) {
-							// This has been a decision
-							restartpos = i;
-							break;
+					if (importClauses || inprocess || !mReuseTrail || next == null) {
+						// Imported clauses may be unit or conflicting, so restart completely.
+						// Inprocessing also needs the base level.
+						if (mDPLLStack.size() > mNumSolvedAtoms + mBaseLevel) {
+							restartpos = mNumSolvedAtoms + mBaseLevel;
+						}
+					} else {
+						for (int i = mNumSolvedAtoms + mBaseLevel; i < mDPLLStack.size(); ++i) {
+							final DPLLAtom var = mDPLLStack.get(i).getAtom();
+							if (var.mExplanation == null && getAtomActivity(var) < getAtomActivity(next)) {
+								// This has been a decision
+								restartpos = i;
+								break;
+							}
 						}
 					}
 					if (restartpos != -1) {
@@ -1269,11 +1884,21 @@ public class DPLLEngine {
 					unlearnClauses(mPushPopLevel);
 					conflict = finalizeBacktrack();
 					assert conflict == null;
+					if (importClauses) {
+						mExchangePort.importClauses(this);
+					}
+					if (inprocess && explain(inprocess())) {
+						printStatistics();
+						mLogger.info("Formula is unsat");
+						return false;
+					}
 					iteration++;
+					mNumRestarts++;
 					for (final ITheory t : mTheories) {
 						t.restart(iteration);
 					}
-					nextRestart = Config.RESTART_FACTOR * luby_super(iteration);
+					mRestartPolicy.restarted();
+					mPhaseSelector.restarted();
 					if (Config.PRINT_STATISTICS) {
 						mLogger.info("Restart");
 						printStatistics();
@@ -1337,7 +1962,11 @@ public class DPLLEngine {
 
 	public void removeAtom(final DPLLAtom atom) {
 		assert atom.mDecideStatus == null;
-		mAtoms.remove(atom);
+		if (mDecisionQueue != null) {
+			mDecisionQueue.forget(atom);
+		} else {
+			mAtoms.remove(atom);
+		}
 		for (final ITheory t : mTheories) {
 			t.removeAtom(atom);
 		}
@@ -1436,6 +2065,9 @@ public class DPLLEngine {
 		unlearnClauses(targetstacklevel);
 		mCurrentDecideLevel = 0;
 		mNumSolvedAtoms = 0;
+		// All literals are unset, so nothing is left to propagate.
+		mPropagationQueue.clear();
+		mPropagationHead = 0;
 		final Iterator<Clause> inputit = mClauses.iterator();
 		while (inputit.hasNext()) {
 			final Clause input = inputit.next();
@@ -1466,6 +2098,7 @@ public class DPLLEngine {
 			mAtomList.endScope();
 			mPushPopLevel--;
 		}
+		removeDeletedWatchers();
 		mCompleteness = COMPLETE;
 		assert mPushPopLevel == targetstacklevel;
 	}
@@ -1501,6 +2134,32 @@ public class DPLLEngine {
 		return mUnsatClause.mLiterals;
 	}
 
+	/**
+	 * Get the clause that makes the engine inconsistent. It only contains negated assumption literals.
+	 *
+	 * @return The unsat clause, or null if the engine is not known to be inconsistent.
+	 */
+	public Clause getUnsatClause() {
+		return mUnsatClause;
+	}
+
+	/**
+	 * Make the engine inconsistent with a clause that was derived outside of this engine, e.g., by solving cubes in
+	 * other engines. The clause is dropped on the next pop or when the assumptions are cleared.
+	 *
+	 * @param lits
+	 *            The literals of the clause. They must be negated assumption literals.
+	 * @param proof
+	 *            The proof of the clause. It is ignored if proof generation is disabled.
+	 */
+	public void setUnsatClause(final Literal[] lits, final ProofNode proof) {
+		mUnsatClause = new Clause(lits, mPushPopLevel);
+		if (isProofGenerationEnabled()) {
+			mUnsatClause.setProof(proof);
+		}
+		assert checkValidUnsatClause();
+	}
+
 	public Clause getProof() {
 		assert checkValidUnsatClause();
 		Clause empty = mUnsatClause;
@@ -1550,7 +2209,13 @@ public class DPLLEngine {
 			clauseLits.add(lit);
 			final Literal[] arrayLits = clauseLits.toArray(new Literal[clauseLits.size()]);
 			if (isProofGenerationEnabled()) {
-				res = new Clause(arrayLits, new ResolutionNode(c, ants), stacklvl);
+				// Assumption literals stay in the clause and have no antecedent.
+				if (i == 0) {
+					res = new Clause(arrayLits, stacklvl);
+					res.setProof(c.getProof());
+				} else {
+					res = new Clause(arrayLits, new ResolutionNode(c, Arrays.copyOf(ants, i)), stacklvl);
+				}
 			} else {
 				res = new Clause(arrayLits, stacklvl);
 			}
@@ -1635,18 +2300,42 @@ public class DPLLEngine {
 		return true;
 	}
 
+	private Object[][] getTierStatistics() {
+		int core = 0;
+		int tier2 = 0;
+		int local = 0;
+		for (final Clause clause : mLearnedClauses) {
+			if (isCoreClause(clause)) {
+				core++;
+			} else if (clause.mLBD <= Config.LBD_TIER2) {
+				tier2++;
+			} else {
+				local++;
+			}
+		}
+		return new Object[][] { { "Core", core }, { "Tier2", tier2 }, { "Local", local } };
+	}
+
 	public Object getStatistics() {
 		final Object[] res = new Object[mTheories.length + 1];
 		final Object[] mystats = new Object[][] { { "Conflicts", mConflicts }, { "Propagations", mProps },
 				{ "Theory_propagations", mTProps }, { "Decides", mDecides }, { "Random_splits", mNumRandomSplits },
 				{ "Num_Atoms", mAtoms.size() + mDPLLStack.size() }, { "Solved_Atoms", mNumSolvedAtoms },
 				{ "Clauses", mNumClauses }, { "Axioms", mNumAxiomClauses },
+				{ "Learned_Tiers", getTierStatistics() }, { "Deleted_Clauses", mNumDeletedClauses },
+				{ "Reductions", mNumReductions }, { "Restarts", mNumRestarts },
+				{ "Phases", mPhaseSelector.getStatistics() }, { "Inprocessing", mInprocessor.getStatistics() },
 				{ "Times", new Object[][] { { "Explain", mExplainTime }, { "Propagation", mPropTime },
 						{ "Set", mSetTime }, { "Check", mCheckTime }, { "Backtrack", mBacktrackTime } } } };
 		res[0] = new Object[] { ":Core", mystats };
 		for (int i = 1; i < res.length; ++i) {
 			res[i] = mTheories[i - 1].getStatistics();
 		}
+		if (mExchangePort != null) {
+			final Object[] withExchange = Arrays.copyOf(res, res.length + 1);
+			withExchange[res.length] = new Object[] { ":ClauseExchange", mExchangePort.getStatistics() };
+			return withExchange;
+		}
 		return res;
 	}
 
@@ -1728,18 +2417,212 @@ public class DPLLEngine {
 		mRandom.setSeed(seed);
 	}
 
+	/**
+	 * Set the number of conflicts until the first restart. The default is {@link Config#RESTART_FACTOR}.
+	 *
+	 * @param factor
+	 *            The restart factor (must be positive).
+	 */
+	public void setRestartFactor(final int factor) {
+		assert factor > 0;
+		mRestartFactor = factor;
+		mRestartPolicy = mRestartStrategy.create(factor);
+	}
+
+	/**
+	 * Set the strategy that decides when to restart. The default is {@link RestartPolicy.Strategy#LUBY}.
+	 *
+	 * @param strategy
+	 *            The restart strategy.
+	 */
+	public void setRestartStrategy(final RestartPolicy.Strategy strategy) {
+		mRestartStrategy = strategy;
+		mRestartPolicy = strategy.create(mRestartFactor);
+	}
+
+	/**
+	 * Set whether restarts keep the decisions on the trail that are more active than the next decision. These
+	 * decisions would be taken again right after the restart.
+	 *
+	 * @param reuse
+	 *            true to keep these decisions, false to always restart to the base level.
+	 */
+	public void setReuseTrail(final boolean reuse) {
+		mReuseTrail = reuse;
+	}
+
+	/**
+	 * Set the heuristic that chooses the next atom to decide. The activities computed so far are lost.
+	 *
+	 * @param heuristic
+	 *            the decision heuristic.
+	 */
+	public void setDecisionHeuristic(final DecisionQueue.Heuristic heuristic) {
+		if (heuristic == DecisionQueue.Heuristic.DEFAULT && mDecisionQueue == null) {
+			return;
+		}
+		final List<DPLLAtom> atoms = mDecisionQueue == null ? new ArrayList<>(mAtoms) : mDecisionQueue.clearIds();
+		mDecisionQueue = heuristic.create();
+		mAtoms = mDecisionQueue == null ? new AtomQueue() : mDecisionQueue;
+		mAtoms.addAll(atoms);
+	}
+
+	/**
+	 * Get the activity of an atom in the decision heuristic. Atoms that occur in many recent conflicts have a high
+	 * activity.
+	 *
+	 * @param atom
+	 *            the atom.
+	 * @return the activity.
+	 */
+	public double getAtomActivity(final DPLLAtom atom) {
+		return mDecisionQueue == null ? atom.mActivity : mDecisionQueue.getActivity(atom);
+	}
+
+	/**
+	 * Increase the activity of an atom that occurs in a conflict.
+	 */
+	private void bumpActivity(final DPLLAtom atom) {
+		atom.mActivity += mAtomScale;
+		if (mDecisionQueue != null) {
+			mDecisionQueue.bumpActivity(atom);
+		}
+	}
+
+	/**
+	 * Get a random unassigned atom for a random split.
+	 */
+	private DPLLAtom randomAtom() {
+		if (mDecisionQueue != null) {
+			return mDecisionQueue.randomAtom(mRandom);
+		}
+		final AtomQueue queue = (AtomQueue) mAtoms;
+		return queue.mAtoms[mRandom.nextInt(queue.size())];
+	}
+
+	/**
+	 * Set whether decisions prefer the phases of the longest conflict-free trail since the last restart over the saved
+	 * phases.
+	 *
+	 * @param useTarget
+	 *            true to use target phases.
+	 */
+	public void setTargetPhases(final boolean useTarget) {
+		mPhaseSelector.setUseTarget(useTarget);
+	}
+
+	/**
+	 * Set the base number of conflicts between two rephasings. The interval grows linearly with the number of
+	 * rephasings. Rephasing resets the saved phases to the original, inverted, best, random, or local search phases.
+	 *
+	 * @param interval
+	 *            the rephase interval, or zero to disable rephasing.
+	 */
+	public void setRephaseInterval(final int interval) {
+		mPhaseSelector.setRephaseInterval(interval);
+	}
+
+	/**
+	 * Set the base number of conflicts between two inprocessing rounds. The interval grows linearly with the number of
+	 * rounds. Inprocessing removes subsumed clauses and strengthens clauses by self-subsuming resolution and
+	 * vivification.
+	 *
+	 * @param interval
+	 *            the inprocessing interval, or zero to disable inprocessing.
+	 */
+	public void setInprocessingInterval(final int interval) {
+		mInprocessor.setInterval(interval);
+	}
+
+	/**
+	 * Set the frequency of random case splits. The frequency is the number of random splits per
+	 * {@link Config#RANDOM_SPLIT_BASE} decisions. A frequency of zero (the default) disables random splits.
+	 *
+	 * @param freq
+	 *            The random split frequency.
+	 */
+	public void setRandomSplitFrequency(final int freq) {
+		mRandomSplitFreq = freq;
+	}
+
+	/**
+	 * Invert the initial phase of the atoms computed at the start of each check. This is used to diversify several
+	 * engines working on the same problem.
+	 *
+	 * @param invert
+	 *            true if the initial phase should be inverted.
+	 */
+	public void setInvertInitialPhase(final boolean invert) {
+		mInvertInitialPhase = invert;
+	}
+
+	/**
+	 * Connect this engine to a clause exchange. Short learned clauses are then published to the exchange and the
+	 * clauses learned by other engines are imported on restarts.
+	 *
+	 * @param port
+	 *            The port of this engine, or null to stop sharing clauses.
+	 */
+	public void setClauseExchange(final ClauseExchange.Port port) {
+		mExchangePort = port;
+	}
+
 	public void flipDecisions() {
 		while (mDPLLStack.size() > mBaseLevel + mNumSolvedAtoms) {
 			final Literal lit = mDPLLStack.remove(mDPLLStack.size() - 1);
 			backtrackLiteral(lit);
 			// Flip the decision
 			lit.getAtom().mLastStatus = lit.negate();
+			lit.getAtom().mTargetStatus = null;
 		}
 		final Clause conflict = finalizeBacktrack();
 		assert conflict == null;
 		mCurrentDecideLevel = mBaseLevel;
 	}
 
+	/**
+	 * Get the unassigned atoms with the highest activity.
+	 *
+	 * @param max
+	 *            The maximal number of atoms to return.
+	 * @return The atoms ordered by decreasing activity.
+	 */
+	public List<DPLLAtom> getMostActiveAtoms(final int max) {
+		final ArrayList<DPLLAtom> atoms = new ArrayList<>(mAtoms);
+		if (mDecisionQueue != null) {
+			atoms.sort((a1, a2) -> Double.compare(mDecisionQueue.getActivity(a2), mDecisionQueue.getActivity(a1)));
+		} else {
+			atoms.sort(DPLLAtom::compareActivityTo);
+		}
+		return atoms.size() <= max ? atoms : atoms.subList(0, max);
+	}
+
+	/**
+	 * Decide a literal, propagate it, and backtrack to the base level again. This is used to estimate how much a
+	 * decision simplifies the problem. The engine has to be at the base level.
+	 *
+	 * @param lit
+	 *            The unassigned literal to decide.
+	 * @return The number of literals set by the decision, or -1 if the decision leads to a conflict.
+	 */
+	public int lookahead(final Literal lit) {
+		assert mCurrentDecideLevel == mBaseLevel && lit.getAtom().mDecideStatus == null;
+		final int start = mDPLLStack.size();
+		increaseDecideLevel();
+		Clause conflict = setLiteral(lit);
+		if (conflict == null) {
+			conflict = propagateInternal();
+		}
+		final int implied = mDPLLStack.size() - start;
+		while (mDPLLStack.size() > mBaseLevel + mNumSolvedAtoms) {
+			backtrackLiteral(mDPLLStack.remove(mDPLLStack.size() - 1));
+		}
+		decreaseDecideLevel();
+		final Clause backtrackConflict = finalizeBacktrack();
+		assert backtrackConflict == null;
+		return conflict == null ? implied : -1;
+	}
+
 	public void flipNamedLiteral(final String name) throws SMTLIBException {
 		while (mDPLLStack.size() > mBaseLevel + mNumSolvedAtoms) {
 			final Literal lit = mDPLLStack.remove(mDPLLStack.size() - 1);
@@ -1754,6 +2637,7 @@ public class DPLLEngine {
 		}
 		final DPLLAtom atom = lit.getAtom();
 		atom.mLastStatus = atom.mLastStatus == null ? atom : atom.mLastStatus.negate();
+		atom.mTargetStatus = null;
 	}
 
 	/**
@@ -1845,11 +2729,23 @@ public class DPLLEngine {
 	 * Remove all assumptions. We backtrack to level 0.
 	 */
 	public void clearAssumptions() {
+		/*
+		 * Assumptions that were already true on level 0 do not increase the base level. Clear them even without an
+		 * assumption level, otherwise a later check reports them as unsat assumptions.
+		 */
+		mAssumptionLiterals.clear();
+		/*
+		 * If an assumption was already false on level 0, assume() sets the unsat clause to a clause over the negated
+		 * assumptions without increasing the base level. It only shows unsatisfiability under these assumptions, so it
+		 * must be cleared even if we don't backtrack. Only the empty clause shows that the assertions are unsat.
+		 */
+		if (mUnsatClause != null && mUnsatClause.getSize() > 0) {
+			mUnsatClause = null;
+		}
 		/* check if we need to clear any assumptions */
 		if (mBaseLevel == 0) {
 			return;
 		}
-		mAssumptionLiterals.clear();
 		mLogger.debug("Clearing Assumptions (Baselevel is %d)", mBaseLevel);
 		while (!mDPLLStack.isEmpty()) {
 			final Literal top = mDPLLStack.get(mDPLLStack.size() - 1);
@@ -1861,6 +2757,8 @@ public class DPLLEngine {
 		}
 		mBaseLevel = 0;
 		mCurrentDecideLevel = 0;
+		// Only the literals on level 0 stay solved.
+		mNumSolvedAtoms = mDPLLStack.size();
 		mUnsatClause = finalizeBacktrack();
 	}
 
@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2009-2012 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.dpll;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * An alternative decision queue of the DPLL engine that is chosen by the option {@code :decision-heuristic}. Like
+ * {@link AtomQueue}, it contains the atoms that are currently unassigned and returns the atom that should be decided
+ * next, but the order is computed by the queue itself. The engine notifies it of conflicts and bumps.
+ *
+ * Every atom the queue has seen gets a dense integer id, so that the queue can keep its data, in particular the
+ * activities, in primitive arrays. The ids are allocated when an atom is first added or bumped and released by
+ * {@link #forget(DPLLAtom)} when the atom is removed from the engine. Freed ids are reused.
+ */
+public abstract class DecisionQueue extends AbstractQueue<DPLLAtom> {
+
+	/**
+	 * The available decision heuristics.
+	 */
+	public static enum Heuristic {
+		/**
+		 * The activity heap {@link AtomQueue} of the engine. Activities are stored in the atoms and the bump increment
+		 * grows exponentially with the number of conflicts.
+		 */
+		DEFAULT,
+		/**
+		 * Chaff style activities: bumps add a constant and the activities are halved periodically.
+		 */
+		VSIDS,
+		/**
+		 * MiniSat style activities in an id-indexed heap: the bump increment grows exponentially with the number of
+		 * conflicts.
+		 */
+		EVSIDS,
+		/**
+		 * Variable move to front: bumped atoms are moved to the front of a queue, the most recently bumped unassigned
+		 * atom is decided first.
+		 */
+		VMTF;
+
+		/**
+		 * Create an empty decision queue using this heuristic.
+		 *
+		 * @return the decision queue, or null if the engine should use its {@link AtomQueue}.
+		 */
+		public DecisionQueue create() {
+			switch (this) {
+			case VSIDS:
+				return new ActivityHeap(false);
+			case EVSIDS:
+				return new ActivityHeap(true);
+			case VMTF:
+				return new MoveToFrontQueue();
+			default:
+				return null;
+			}
+		}
+	}
+
+	private static final int INITIAL_CAPACITY = 100;
+
+	/**
+	 * The atom for every id, null for free ids.
+	 */
+	DPLLAtom[] mAtomById = new DPLLAtom[INITIAL_CAPACITY];
+	/**
+	 * The activity of every atom. The heuristic decides how the activity is computed.
+	 */
+	double[] mActivity = new double[INITIAL_CAPACITY];
+	/**
+	 * The number of ids ever allocated. All ids are below this number.
+	 */
+	int mNumIds;
+	private int[] mFreeIds = new int[0];
+	private int mNumFreeIds;
+	/**
+	 * The number of atoms in the queue.
+	 */
+	int mSize;
+
+	/**
+	 * Get the id of an atom and allocate a new one if the atom has no id yet.
+	 */
+	final int getId(final DPLLAtom atom) {
+		int id = atom.mAtomId;
+		if (id >= 0) {
+			assert mAtomById[id] == atom;
+			return id;
+		}
+		if (mNumFreeIds > 0) {
+			id = mFreeIds[--mNumFreeIds];
+		} else {
+			id = mNumIds++;
+			if (id == mAtomById.length) {
+				final int capacity = 2 * id;
+				mAtomById = Arrays.copyOf(mAtomById, capacity);
+				mActivity = Arrays.copyOf(mActivity, capacity);
+				grow(capacity);
+			}
+		}
+		mAtomById[id] = atom;
+		mActivity[id] = 0;
+		atom.mAtomId = id;
+		newId(id);
+		return id;
+	}
+
+	/**
+	 * Grow the per-id arrays of the heuristic to the given capacity.
+	 */
+	abstract void grow(int capacity);
+
+	/**
+	 * Initialize the data of the heuristic for a newly allocated id.
+	 */
+	abstract void newId(int id);
+
+	/**
+	 * Remove the data of the heuristic for an id that is freed. The atom is not in the queue.
+	 */
+	abstract void freeId(int id);
+
+	/**
+	 * Check if the atom with the given id is in the queue.
+	 */
+	abstract boolean isQueued(int id);
+
+	/**
+	 * Remove an atom from the queue and release its id. This is called when the atom is removed from the engine.
+	 *
+	 * @param atom
+	 *            the atom to forget.
+	 */
+	public final void forget(final DPLLAtom atom) {
+		remove(atom);
+		final int id = atom.mAtomId;
+		if (id < 0) {
+			return;
+		}
+		freeId(id);
+		mAtomById[id] = null;
+		atom.mAtomId = -1;
+		if (mNumFreeIds == mFreeIds.length) {
+			mFreeIds = Arrays.copyOf(mFreeIds, Math.max(16, 2 * mNumFreeIds));
+		}
+		mFreeIds[mNumFreeIds++] = id;
+	}
+
+	/**
+	 * Release the ids of all atoms, e.g., to switch to a different queue.
+	 *
+	 * @return the atoms that were in the queue.
+	 */
+	public final List<DPLLAtom> clearIds() {
+		final ArrayList<DPLLAtom> queued = new ArrayList<>(this);
+		for (int id = 0; id < mNumIds; id++) {
+			if (mAtomById[id] != null) {
+				mAtomById[id].mAtomId = -1;
+			}
+		}
+		return queued;
+	}
+
+	/**
+	 * Get the activity of an atom. Atoms with higher activity are decided first.
+	 *
+	 * @param atom
+	 *            the atom.
+	 * @return the activity.
+	 */
+	public final double getActivity(final DPLLAtom atom) {
+		return atom.mAtomId < 0 ? 0 : mActivity[atom.mAtomId];
+	}
+
+	/**
+	 * Increase the activity of an atom that occurs in a conflict.
+	 *
+	 * @param atom
+	 *            the atom.
+	 */
+	public abstract void bumpActivity(DPLLAtom atom);
+
+	/**
+	 * Notify the queue that a conflict was found. This is called before the atoms of the conflict are bumped.
+	 */
+	public abstract void conflict();
+
+	/**
+	 * Notify the queue that a clause was added.
+	 */
+	public void clauseAdded() {
+		// only used by some heuristics
+	}
+
+	/**
+	 * Get a random atom from the queue.
+	 *
+	 * @param random
+	 *            the random source.
+	 * @return a random atom, or the next atom if no random atom was found quickly.
+	 */
+	public DPLLAtom randomAtom(final Random random) {
+		if (mSize == 0) {
+			return null;
+		}
+		for (int tries = 0; tries < 16; tries++) {
+			final int id = random.nextInt(mNumIds);
+			if (mAtomById[id] != null && isQueued(id)) {
+				return mAtomById[id];
+			}
+		}
+		return peek();
+	}
+
+	@Override
+	public final int size() {
+		return mSize;
+	}
+
+	@Override
+	public final boolean contains(final Object o) {
+		if (!(o instanceof DPLLAtom)) {
+			return false;
+		}
+		final int id = ((DPLLAtom) o).mAtomId;
+		return id >= 0 && isQueued(id);
+	}
+
+	@Override
+	public final DPLLAtom poll() {
+		final DPLLAtom atom = peek();
+		if (atom != null) {
+			remove(atom);
+		}
+		return atom;
+	}
+
+	@Override
+	public final Iterator<DPLLAtom> iterator() {
+		return new Iterator<DPLLAtom>() {
+			int mNext = findNext(0);
+			int mLast = -1;
+
+			private int findNext(int id) {
+				while (id < mNumIds && (mAtomById[id] == null || !isQueued(id))) {
+					id++;
+				}
+				return id;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return mNext < mNumIds;
+			}
+
+			@Override
+			public DPLLAtom next() {
+				if (mNext >= mNumIds) {
+					throw new NoSuchElementException();
+				}
+				mLast = mNext;
+				mNext = findNext(mNext + 1);
+				return mAtomById[mLast];
+			}
+
+			@Override
+			public void remove() {
+				DecisionQueue.this.remove(mAtomById[mLast]);
+			}
+		};
+	}
+}
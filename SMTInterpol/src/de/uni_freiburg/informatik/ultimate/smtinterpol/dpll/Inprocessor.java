@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.dpll;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import de.uni_freiburg.informatik.ultimate.smtinterpol.Config;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.proof.ResolutionNode.Antecedent;
+
+/**
+ * The inprocessing of the DPLL engine. Inprocessing simplifies the clause database on the base level between two
+ * restarts. It removes subsumed clauses, strengthens clauses by self-subsuming resolution, and schedules the
+ * vivification of clauses that is done by the engine.
+ *
+ * Input clauses are only removed or strengthened by other input clauses with a lower or equal stack level, so that
+ * they are still implied after a pop. Learned clauses may be simplified by all clauses.
+ */
+final class Inprocessor {
+	private final DPLLEngine mEngine;
+
+	/**
+	 * The number of conflicts between two inprocessing rounds is this interval times the number of rounds so far. Zero
+	 * disables inprocessing.
+	 */
+	private int mInterval = Config.INPROCESS_INTERVAL;
+	private long mNextInprocessing;
+	/**
+	 * The number of propagations at the end of the last inprocessing round.
+	 */
+	private long mLastPropagations;
+	private int mNumInprocessings, mNumSubsumed, mNumStrengthened, mNumVivified;
+	private long mSubsumeSteps;
+
+	public Inprocessor(final DPLLEngine engine) {
+		mEngine = engine;
+	}
+
+	public void setInterval(final int interval) {
+		mInterval = interval;
+	}
+
+	/**
+	 * Reset the schedule at the start of a check.
+	 *
+	 * @param conflicts
+	 *            the current number of conflicts of the engine.
+	 */
+	public void reset(final int conflicts) {
+		mNextInprocessing = (long) conflicts + mInterval;
+	}
+
+	public boolean isInprocessingDue(final int conflicts) {
+		return mInterval > 0 && conflicts >= mNextInprocessing;
+	}
+
+	/**
+	 * Compute the number of propagations the vivification may use in this round. It is a fraction of the propagations
+	 * of the search since the last round.
+	 *
+	 * @param propagations
+	 *            the current number of propagations of the engine.
+	 */
+	public long getVivifyBudget(final long propagations) {
+		return Math.max(Config.VIVIFY_MIN_PROPAGATIONS,
+				(propagations - mLastPropagations) * Config.VIVIFY_EFFORT_PERCENT / 100);
+	}
+
+	/**
+	 * Notify about the end of an inprocessing round and schedule the next one.
+	 *
+	 * @param conflicts
+	 *            the current number of conflicts of the engine.
+	 * @param propagations
+	 *            the current number of propagations of the engine.
+	 */
+	public void finished(final int conflicts, final long propagations) {
+		mNumInprocessings++;
+		mNextInprocessing = (long) conflicts + (long) mInterval * (mNumInprocessings + 1);
+		mLastPropagations = propagations;
+	}
+
+	public void vivified() {
+		mNumVivified++;
+	}
+
+	private static long computeSignature(final Clause clause) {
+		long signature = 0;
+		for (final Literal lit : clause.mLiterals) {
+			signature |= 1L << (lit.getAtom().hashCode() & 63);
+		}
+		return signature;
+	}
+
+	/**
+	 * Check if one clause subsumes another clause or strengthens it by self-subsuming resolution.
+	 *
+	 * @return -1 if subsumer subsumes clause, the position of the literal of clause that can be removed if subsumer
+	 *         strengthens clause, and -2 otherwise.
+	 */
+	private int checkSubsumption(final Clause subsumer, final Clause clause) {
+		final Literal[] lits = clause.mLiterals;
+		int removed = -1;
+		nextLiteral: for (final Literal lit : subsumer.mLiterals) {
+			mSubsumeSteps += lits.length;
+			for (int i = 0; i < lits.length; i++) {
+				if (lits[i] == lit) {
+					continue nextLiteral;
+				}
+				if (lits[i] == lit.negate() && removed < 0) {
+					removed = i;
+					continue nextLiteral;
+				}
+			}
+			return -2;
+		}
+		return removed;
+	}
+
+	/**
+	 * Remove subsumed clauses and strengthen clauses by self-subsuming resolution. Every clause is checked against all
+	 * clauses that are not longer. Clauses that are strengthened are replaced by a new clause in the engine.
+	 *
+	 * @param inputClauses
+	 *            the input clauses.
+	 * @param learnedClauses
+	 *            the learned clauses.
+	 * @param modifyInput
+	 *            true if input clauses may be removed or strengthened.
+	 */
+	public void subsume(final Iterable<Clause> inputClauses, final Iterable<Clause> learnedClauses,
+			final boolean modifyInput) {
+		final ArrayList<Clause> candidates = new ArrayList<>();
+		for (final Clause clause : inputClauses) {
+			if (clause.getSize() >= 2) {
+				candidates.add(clause);
+			}
+		}
+		final int numInput = candidates.size();
+		for (final Clause clause : learnedClauses) {
+			if (clause.getSize() >= 2) {
+				candidates.add(clause);
+			}
+		}
+		final int numCandidates = candidates.size();
+		final Clause[] clauses = candidates.toArray(new Clause[numCandidates]);
+		final long[] signatures = new long[numCandidates];
+		final HashMap<DPLLAtom, List<Integer>> occurrences = new HashMap<>();
+		final Integer[] order = new Integer[numCandidates];
+		for (int i = 0; i < numCandidates; i++) {
+			signatures[i] = computeSignature(clauses[i]);
+			order[i] = i;
+			for (final Literal lit : clauses[i].mLiterals) {
+				List<Integer> occ = occurrences.get(lit.getAtom());
+				if (occ == null) {
+					occ = new ArrayList<>();
+					occurrences.put(lit.getAtom(), occ);
+				}
+				occ.add(i);
+			}
+		}
+		Arrays.sort(order, (i1, i2) -> clauses[i1].getSize() - clauses[i2].getSize());
+		final long maxSteps = mSubsumeSteps + Config.SUBSUME_MAX_STEPS;
+		for (final int i : order) {
+			final Clause subsumer = clauses[i];
+			if (subsumer == null || mSubsumeSteps > maxSteps) {
+				continue;
+			}
+			final boolean learnedSubsumer = i >= numInput;
+			List<Integer> occ = null;
+			for (final Literal lit : subsumer.mLiterals) {
+				final List<Integer> litOcc = occurrences.get(lit.getAtom());
+				if (occ == null || litOcc.size() < occ.size()) {
+					occ = litOcc;
+				}
+			}
+			mSubsumeSteps += occ.size();
+			for (final int j : occ) {
+				final Clause clause = clauses[j];
+				if (j == i || clause == null || clause.getSize() < subsumer.getSize()
+						|| (signatures[i] & ~signatures[j]) != 0 || clause.mCleanupHook != null) {
+					continue;
+				}
+				final boolean learned = j >= numInput;
+				if (!learned && (!modifyInput || subsumer.mStacklevel > clause.mStacklevel)) {
+					continue;
+				}
+				final int removed = checkSubsumption(subsumer, clause);
+				if (removed == -1) {
+					if (!learned && learnedSubsumer) {
+						continue;
+					}
+					if (mEngine.removeSubsumedClause(clause, learned)) {
+						if (learned && learnedSubsumer && clause.mLBD < subsumer.mLBD) {
+							subsumer.mLBD = clause.mLBD;
+						}
+						clauses[j] = null;
+						mNumSubsumed++;
+					}
+				} else if (removed >= 0) {
+					final Literal[] lits = new Literal[clause.getSize() - 1];
+					System.arraycopy(clause.mLiterals, 0, lits, 0, removed);
+					System.arraycopy(clause.mLiterals, removed + 1, lits, removed, lits.length - removed);
+					final Antecedent[] antecedents = { new Antecedent(clause.mLiterals[removed].negate(), subsumer) };
+					final Clause strengthened = mEngine.strengthenClause(clause, learned, lits, clause, antecedents,
+							Math.max(clause.mStacklevel, subsumer.mStacklevel));
+					if (strengthened != null) {
+						clauses[j] = strengthened.getSize() >= 2 ? strengthened : null;
+						signatures[j] = computeSignature(strengthened);
+						mNumStrengthened++;
+					}
+				}
+			}
+		}
+	}
+
+	public Object[][] getStatistics() {
+		return new Object[][] { { "Rounds", mNumInprocessings }, { "Subsumed", mNumSubsumed },
+			{ "Strengthened", mNumStrengthened }, { "Vivified", mNumVivified } };
+	}
+}
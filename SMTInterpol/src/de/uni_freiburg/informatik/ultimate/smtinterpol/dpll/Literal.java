@@ -25,7 +25,14 @@ import de.uni_freiburg.informatik.ultimate.logic.Theory;
 public abstract class Literal implements ILiteral {
 	DPLLAtom mAtom;
 	protected Literal  mNegated;
+	/**
+	 * The clauses with at least three literals that watch this literal.
+	 */
 	Clause.WatchList mWatchers = new Clause.WatchList();
+	/**
+	 * The binary clauses containing this literal. The blocker of each watcher is the other literal of the clause.
+	 */
+	Clause.WatchList mBinaryWatchers = new Clause.WatchList();
 
 	private final int mHash;
 	@Override
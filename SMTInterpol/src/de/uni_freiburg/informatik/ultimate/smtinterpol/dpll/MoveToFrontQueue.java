@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.dpll;
+
+import java.util.Arrays;
+
+/**
+ * The variable move to front heuristic. All atoms the queue has seen are kept in a doubly linked list ordered by the
+ * time they were last bumped. A bumped atom is moved to the front of the list and the most recently bumped unassigned
+ * atom is decided next. The activity of an atom is the time stamp of its last bump.
+ *
+ * To find the next atom quickly, the queue keeps a search position. No atom that is more recent than the search
+ * position is queued, so the search can start there and walk towards the older atoms.
+ */
+final class MoveToFrontQueue extends DecisionQueue {
+	/**
+	 * The next older and next newer atom id for every id, -1 at the ends of the list.
+	 */
+	private int[] mOlder = new int[mAtomById.length];
+	private int[] mNewer = new int[mAtomById.length];
+	private boolean[] mQueued = new boolean[mAtomById.length];
+	/**
+	 * The most recently and the least recently bumped id.
+	 */
+	private int mFront = -1, mBack = -1;
+	/**
+	 * The position where the search for the next queued atom starts.
+	 */
+	private int mSearch = -1;
+	private long mStamp;
+
+	@Override
+	void grow(final int capacity) {
+		mOlder = Arrays.copyOf(mOlder, capacity);
+		mNewer = Arrays.copyOf(mNewer, capacity);
+		mQueued = Arrays.copyOf(mQueued, capacity);
+	}
+
+	@Override
+	void newId(final int id) {
+		mQueued[id] = false;
+		linkFront(id);
+	}
+
+	@Override
+	void freeId(final int id) {
+		assert !mQueued[id];
+		if (mSearch == id) {
+			mSearch = mOlder[id];
+		}
+		unlink(id);
+	}
+
+	@Override
+	boolean isQueued(final int id) {
+		return mQueued[id];
+	}
+
+	private void unlink(final int id) {
+		final int older = mOlder[id];
+		final int newer = mNewer[id];
+		if (older >= 0) {
+			mNewer[older] = newer;
+		} else {
+			mBack = newer;
+		}
+		if (newer >= 0) {
+			mOlder[newer] = older;
+		} else {
+			mFront = older;
+		}
+	}
+
+	private void linkFront(final int id) {
+		mOlder[id] = mFront;
+		mNewer[id] = -1;
+		if (mFront >= 0) {
+			mNewer[mFront] = id;
+		} else {
+			mBack = id;
+		}
+		mFront = id;
+		mActivity[id] = ++mStamp;
+	}
+
+	@Override
+	public boolean offer(final DPLLAtom atom) {
+		final int id = getId(atom);
+		if (mQueued[id]) {
+			return false;
+		}
+		assert atom.mDecideStatus == null;
+		mQueued[id] = true;
+		mSize++;
+		if (mSearch < 0 || mActivity[id] > mActivity[mSearch]) {
+			mSearch = id;
+		}
+		return true;
+	}
+
+	@Override
+	public DPLLAtom peek() {
+		if (mSize == 0) {
+			return null;
+		}
+		while (!mQueued[mSearch]) {
+			mSearch = mOlder[mSearch];
+		}
+		return mAtomById[mSearch];
+	}
+
+	@Override
+	public boolean remove(final Object o) {
+		if (!(o instanceof DPLLAtom)) {
+			return false;
+		}
+		final int id = ((DPLLAtom) o).mAtomId;
+		if (id < 0 || !mQueued[id]) {
+			return false;
+		}
+		mQueued[id] = false;
+		mSize--;
+		return true;
+	}
+
+	@Override
+	public void bumpActivity(final DPLLAtom atom) {
+		final int id = getId(atom);
+		if (id != mFront) {
+			if (mSearch == id) {
+				mSearch = mOlder[id];
+			}
+			unlink(id);
+			linkFront(id);
+		}
+		if (mQueued[id]) {
+			mSearch = id;
+		}
+	}
+
+	@Override
+	public void conflict() {
+		// The time stamps need no decay.
+	}
+}
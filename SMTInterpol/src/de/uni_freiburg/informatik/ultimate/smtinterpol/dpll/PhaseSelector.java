@@ -0,0 +1,355 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.dpll;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import de.uni_freiburg.informatik.ultimate.smtinterpol.Config;
+
+/**
+ * The phase selection of the DPLL engine. It decides which polarity a decided atom gets.
+ *
+ * Every atom saves the status it had when it was last set. Additionally, the status of the atoms on the longest
+ * conflict-free trail is remembered as target phase (since the last restart) and best phase (since the last
+ * rephasing). If target phases are enabled, decisions prefer the target phase over the saved phase. Rephasing
+ * periodically overwrites the saved phases with the original, inverted, best, or random phases, or with the result
+ * of a short local search on the input clauses.
+ */
+final class PhaseSelector {
+
+	/**
+	 * The kinds of rephasing.
+	 */
+	enum Rephase {
+		/**
+		 * Reset to the phases computed at the start of the check.
+		 */
+		ORIGINAL,
+		/**
+		 * Reset to the inverted original phases.
+		 */
+		INVERTED,
+		/**
+		 * Reset to the best phases.
+		 */
+		BEST,
+		/**
+		 * Reset to random phases.
+		 */
+		RANDOM,
+		/**
+		 * Reset to the result of a local search starting from the saved phases.
+		 */
+		WALK
+	}
+
+	/**
+	 * The order in which rephasing is applied. The schedule is repeated.
+	 */
+	private static final Rephase[] SCHEDULE = { Rephase.ORIGINAL, Rephase.BEST, Rephase.WALK, Rephase.INVERTED,
+		Rephase.BEST, Rephase.WALK, Rephase.RANDOM, Rephase.BEST, Rephase.WALK };
+
+	private boolean mUseTarget = Config.PHASE_TARGET;
+	/**
+	 * The number of conflicts between two rephasings is this interval times the number of rephasings so far. Zero
+	 * disables rephasing.
+	 */
+	private int mRephaseInterval = Config.REPHASE_INTERVAL;
+
+	/**
+	 * The size of the trail before the last decision. This part of the trail was propagated without conflict.
+	 */
+	private int mNoConflictUntil;
+	private int mTargetSize, mBestSize;
+	private long mNextRephase;
+	private int mNumRephases, mNumWalkFlips;
+
+	public void setUseTarget(final boolean useTarget) {
+		mUseTarget = useTarget;
+	}
+
+	public void setRephaseInterval(final int interval) {
+		mRephaseInterval = interval;
+	}
+
+	/**
+	 * Reset the target and best phases at the start of a check.
+	 *
+	 * @param conflicts
+	 *            the current number of conflicts of the engine.
+	 */
+	public void reset(final int conflicts) {
+		mNoConflictUntil = mTargetSize = mBestSize = 0;
+		mNextRephase = (long) conflicts + mRephaseInterval;
+	}
+
+	/**
+	 * Choose the polarity of a decision.
+	 *
+	 * @param atom
+	 *            the atom to decide.
+	 * @return the literal to set.
+	 */
+	public Literal choosePhase(final DPLLAtom atom) {
+		if (mUseTarget && atom.mTargetStatus != null) {
+			return atom.mTargetStatus;
+		}
+		return atom.mLastStatus;
+	}
+
+	/**
+	 * Notify about a decision. The trail before the decision was propagated without conflict.
+	 *
+	 * @param trailSize
+	 *            the size of the trail before the decision.
+	 */
+	public void decided(final int trailSize) {
+		mNoConflictUntil = trailSize;
+	}
+
+	/**
+	 * Notify about a conflict before the engine backtracks. If the trail before the last decision is the longest
+	 * conflict-free trail, its literals are stored as target and best phases.
+	 *
+	 * @param trail
+	 *            the current trail of the engine.
+	 */
+	public void conflict(final List<Literal> trail) {
+		final int size = mNoConflictUntil;
+		if (mUseTarget && size > mTargetSize) {
+			for (int i = 0; i < size; i++) {
+				final Literal lit = trail.get(i);
+				lit.getAtom().mTargetStatus = lit;
+			}
+			mTargetSize = size;
+		}
+		if (size > mBestSize) {
+			for (int i = 0; i < size; i++) {
+				final Literal lit = trail.get(i);
+				lit.getAtom().mBestStatus = lit;
+			}
+			mBestSize = size;
+		}
+		mNoConflictUntil = 0;
+	}
+
+	/**
+	 * Notify about a restart. The target phases are computed anew.
+	 */
+	public void restarted() {
+		mTargetSize = 0;
+	}
+
+	public boolean isRephaseDue(final int conflicts) {
+		return mRephaseInterval > 0 && conflicts >= mNextRephase;
+	}
+
+	/**
+	 * Overwrite the saved phases according to the rephase schedule.
+	 *
+	 * @param conflicts
+	 *            the current number of conflicts of the engine.
+	 * @param atoms
+	 *            all atoms of the engine.
+	 * @param clauses
+	 *            the input clauses used for local search.
+	 * @param baseLevel
+	 *            the decide level whose atoms are fixed.
+	 * @param random
+	 *            the random source of the engine.
+	 * @return the kind of rephasing that was applied.
+	 */
+	public Rephase rephase(final int conflicts, final Iterable<DPLLAtom> atoms, final Iterable<Clause> clauses,
+			final int baseLevel, final Random random) {
+		final Rephase kind = SCHEDULE[mNumRephases % SCHEDULE.length];
+		mNumRephases++;
+		mNextRephase = (long) conflicts + (long) mRephaseInterval * (mNumRephases + 1);
+		switch (kind) {
+		case ORIGINAL:
+			for (final DPLLAtom atom : atoms) {
+				atom.mLastStatus = atom.mOriginalStatus;
+			}
+			break;
+		case INVERTED:
+			for (final DPLLAtom atom : atoms) {
+				atom.mLastStatus = atom.mOriginalStatus.negate();
+			}
+			break;
+		case BEST:
+			for (final DPLLAtom atom : atoms) {
+				if (atom.mBestStatus != null) {
+					atom.mLastStatus = atom.mBestStatus;
+				}
+			}
+			break;
+		case RANDOM:
+			for (final DPLLAtom atom : atoms) {
+				atom.mLastStatus = random.nextBoolean() ? atom : atom.negate();
+			}
+			break;
+		case WALK:
+			walk(clauses, baseLevel, random);
+			break;
+		default:
+			throw new AssertionError();
+		}
+		for (final DPLLAtom atom : atoms) {
+			atom.mTargetStatus = null;
+			atom.mBestStatus = null;
+		}
+		mTargetSize = mBestSize = 0;
+		return kind;
+	}
+
+	/**
+	 * Run a WalkSAT style local search on the input clauses starting from the saved phases. Atoms set on the base
+	 * level are fixed. The assignment with the fewest falsified clauses found is stored in the saved phases. Theory
+	 * atoms are treated like propositional variables.
+	 */
+	private void walk(final Iterable<Clause> clauses, final int baseLevel, final Random random) {
+		final HashMap<DPLLAtom, Integer> index = new HashMap<>();
+		final ArrayList<DPLLAtom> vars = new ArrayList<>();
+		final ArrayList<int[]> walkClauses = new ArrayList<>();
+		clauseLoop: for (final Clause c : clauses) {
+			final int[] lits = new int[c.getSize()];
+			int size = 0;
+			for (final Literal lit : c.mLiterals) {
+				final DPLLAtom atom = lit.getAtom();
+				if (atom.mDecideStatus != null && atom.mDecideLevel <= baseLevel) {
+					if (atom.mDecideStatus == lit) {
+						continue clauseLoop;
+					}
+					continue;
+				}
+				Integer var = index.get(atom);
+				if (var == null) {
+					var = vars.size();
+					index.put(atom, var);
+					vars.add(atom);
+				}
+				lits[size++] = 2 * var + (lit == atom ? 0 : 1);
+			}
+			if (size > 0) {
+				walkClauses.add(size == lits.length ? lits : Arrays.copyOf(lits, size));
+			}
+		}
+		final int numVars = vars.size();
+		final int numClauses = walkClauses.size();
+		if (numClauses == 0) {
+			return;
+		}
+		// A literal is true if value[var] == (lit & 1) == 0.
+		final boolean[] value = new boolean[numVars];
+		for (int v = 0; v < numVars; v++) {
+			value[v] = vars.get(v).mLastStatus == vars.get(v);
+		}
+		final int[] occCount = new int[2 * numVars];
+		for (final int[] lits : walkClauses) {
+			for (final int lit : lits) {
+				occCount[lit]++;
+			}
+		}
+		final int[][] occurrences = new int[2 * numVars][];
+		for (int lit = 0; lit < 2 * numVars; lit++) {
+			occurrences[lit] = new int[occCount[lit]];
+			occCount[lit] = 0;
+		}
+		for (int c = 0; c < numClauses; c++) {
+			for (final int lit : walkClauses.get(c)) {
+				occurrences[lit][occCount[lit]++] = c;
+			}
+		}
+		final int[] numTrue = new int[numClauses];
+		final int[] unsat = new int[numClauses];
+		final int[] unsatPos = new int[numClauses];
+		int numUnsat = 0;
+		for (int c = 0; c < numClauses; c++) {
+			for (final int lit : walkClauses.get(c)) {
+				if (value[lit >> 1] == ((lit & 1) == 0)) {
+					numTrue[c]++;
+				}
+			}
+			if (numTrue[c] == 0) {
+				unsatPos[c] = numUnsat;
+				unsat[numUnsat++] = c;
+			}
+		}
+		int bestUnsat = numUnsat;
+		final boolean[] best = value.clone();
+		final int maxFlips = Math.min(Config.WALK_MAX_FLIPS, Config.WALK_FLIPS_PER_CLAUSE * numClauses);
+		for (int flip = 0; flip < maxFlips && numUnsat > 0; flip++) {
+			final int[] lits = walkClauses.get(unsat[random.nextInt(numUnsat)]);
+			int chosen = -1;
+			if (random.nextInt(100) < Config.WALK_NOISE_PERCENT) {
+				chosen = lits[random.nextInt(lits.length)];
+			} else {
+				int minBreak = Integer.MAX_VALUE;
+				int numMin = 0;
+				for (final int lit : lits) {
+					// Flipping the variable makes lit true and its negation false.
+					int breaks = 0;
+					for (final int c : occurrences[lit ^ 1]) {
+						if (numTrue[c] == 1) {
+							breaks++;
+						}
+					}
+					if (breaks < minBreak) {
+						minBreak = breaks;
+						chosen = lit;
+						numMin = 1;
+					} else if (breaks == minBreak && random.nextInt(++numMin) == 0) {
+						chosen = lit;
+					}
+				}
+			}
+			final int var = chosen >> 1;
+			value[var] = !value[var];
+			for (final int c : occurrences[chosen]) {
+				if (numTrue[c]++ == 0) {
+					final int last = unsat[--numUnsat];
+					unsat[unsatPos[c]] = last;
+					unsatPos[last] = unsatPos[c];
+				}
+			}
+			for (final int c : occurrences[chosen ^ 1]) {
+				if (--numTrue[c] == 0) {
+					unsatPos[c] = numUnsat;
+					unsat[numUnsat++] = c;
+				}
+			}
+			mNumWalkFlips++;
+			if (numUnsat < bestUnsat) {
+				bestUnsat = numUnsat;
+				System.arraycopy(value, 0, best, 0, numVars);
+			}
+		}
+		for (int v = 0; v < numVars; v++) {
+			final DPLLAtom atom = vars.get(v);
+			atom.mLastStatus = best[v] ? atom : atom.negate();
+		}
+	}
+
+	public Object[][] getStatistics() {
+		return new Object[][] { { "Rephases", mNumRephases }, { "Walk_Flips", mNumWalkFlips } };
+	}
+}
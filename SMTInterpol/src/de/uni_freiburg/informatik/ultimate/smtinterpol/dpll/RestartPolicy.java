@@ -0,0 +1,293 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.dpll;
+
+import de.uni_freiburg.informatik.ultimate.smtinterpol.Config;
+
+/**
+ * A restart policy decides when the DPLL engine restarts. The engine reports every learned clause to the policy and
+ * asks after every conflict whether a restart is due.
+ */
+public abstract class RestartPolicy {
+
+	/**
+	 * The available restart strategies.
+	 */
+	public static enum Strategy {
+		/**
+		 * Restart after a number of conflicts that follows the Luby sequence.
+		 */
+		LUBY {
+			@Override
+			public RestartPolicy create(final int factor) {
+				return new LubyPolicy(factor);
+			}
+		},
+		/**
+		 * Restart after a number of conflicts that grows geometrically.
+		 */
+		GEOMETRIC {
+			@Override
+			public RestartPolicy create(final int factor) {
+				return new GeometricPolicy(factor);
+			}
+		},
+		/**
+		 * Restart when the recently learned clauses are worse than the average learned clause (Glucose).
+		 */
+		GLUCOSE {
+			@Override
+			public RestartPolicy create(final int factor) {
+				return new GlucosePolicy();
+			}
+		},
+		/**
+		 * Restart after a number of conflicts that grows geometrically up to an outer bound. The outer bound also
+		 * grows geometrically.
+		 */
+		INNER_OUTER {
+			@Override
+			public RestartPolicy create(final int factor) {
+				return new InnerOuterPolicy(factor);
+			}
+		};
+
+		/**
+		 * Create a new policy for this strategy.
+		 *
+		 * @param factor
+		 *            the number of conflicts until the first restart. Ignored by dynamic strategies.
+		 * @return the restart policy.
+		 */
+		public abstract RestartPolicy create(int factor);
+	}
+
+	/**
+	 * Reset the policy at the start of a check.
+	 */
+	public abstract void reset();
+
+	/**
+	 * Report a learned clause.
+	 *
+	 * @param lbd
+	 *            the literal block distance of the learned clause.
+	 * @param trailSize
+	 *            the number of literals that were set when the conflict was found.
+	 */
+	public abstract void conflict(int lbd, int trailSize);
+
+	/**
+	 * Check whether the engine should restart now.
+	 *
+	 * @return true if a restart is due.
+	 */
+	public abstract boolean isRestartDue();
+
+	/**
+	 * Notify the policy that the engine restarted.
+	 */
+	public abstract void restarted();
+
+	/**
+	 * Base class for the policies that restart after a precomputed number of conflicts.
+	 */
+	private abstract static class ConflictCountPolicy extends RestartPolicy {
+		private int mRemaining;
+
+		/**
+		 * Compute the number of conflicts until the first restart and reset the internal state.
+		 */
+		protected abstract int firstInterval();
+
+		/**
+		 * Compute the number of conflicts until the next restart.
+		 */
+		protected abstract int nextInterval();
+
+		@Override
+		public void reset() {
+			mRemaining = firstInterval();
+		}
+
+		@Override
+		public void conflict(final int lbd, final int trailSize) {
+			mRemaining--;
+		}
+
+		@Override
+		public boolean isRestartDue() {
+			return mRemaining <= 0;
+		}
+
+		@Override
+		public void restarted() {
+			mRemaining = nextInterval();
+		}
+	}
+
+	private static class LubyPolicy extends ConflictCountPolicy {
+		private final int mFactor;
+		private int mIteration;
+
+		public LubyPolicy(final int factor) {
+			mFactor = factor;
+		}
+
+		private static final int luby_super(final int i) {
+			int power;
+
+			assert i > 0;
+			/* let 2^k be the least power of 2 >= (i+1) */
+			power = 2;
+			while (power < i + 1) {
+				power *= 2;
+			}
+			if (power == i + 1) {
+				return power / 2;
+			}
+			return luby_super(i - power / 2 + 1);
+		}
+
+		@Override
+		protected int firstInterval() {
+			mIteration = 1;
+			return mFactor;
+		}
+
+		@Override
+		protected int nextInterval() {
+			mIteration++;
+			return mFactor * luby_super(mIteration);
+		}
+	}
+
+	private static class GeometricPolicy extends ConflictCountPolicy {
+		private final int mFactor;
+		private double mInterval;
+
+		public GeometricPolicy(final int factor) {
+			mFactor = factor;
+		}
+
+		@Override
+		protected int firstInterval() {
+			mInterval = mFactor;
+			return mFactor;
+		}
+
+		@Override
+		protected int nextInterval() {
+			mInterval *= Config.RESTART_GEOMETRIC_INCREASE;
+			return (int) Math.min(Integer.MAX_VALUE, mInterval);
+		}
+	}
+
+	private static class InnerOuterPolicy extends ConflictCountPolicy {
+		private final int mFactor;
+		private double mInner, mOuter;
+
+		public InnerOuterPolicy(final int factor) {
+			mFactor = factor;
+		}
+
+		@Override
+		protected int firstInterval() {
+			mInner = mOuter = mFactor;
+			return mFactor;
+		}
+
+		@Override
+		protected int nextInterval() {
+			if (mInner >= mOuter) {
+				mOuter *= Config.RESTART_GEOMETRIC_INCREASE;
+				mInner = mFactor;
+			} else {
+				mInner *= Config.RESTART_GEOMETRIC_INCREASE;
+			}
+			return (int) Math.min(Integer.MAX_VALUE, mInner);
+		}
+	}
+
+	/**
+	 * The dynamic restarts of Glucose. The engine restarts if the average literal block distance of the last learned
+	 * clauses is larger than the average over all learned clauses. A restart is blocked if the trail is much longer than
+	 * usual, since the solver may be close to a model.
+	 */
+	private static class GlucosePolicy extends RestartPolicy {
+		/**
+		 * The literal block distances of the last learned clauses since the last restart, in a ring buffer.
+		 */
+		private final int[] mRecentLBDs = new int[Config.RESTART_GLUCOSE_WINDOW];
+		/**
+		 * The trail sizes at the last conflicts, in a ring buffer.
+		 */
+		private final int[] mRecentTrails = new int[Config.RESTART_BLOCK_WINDOW];
+		private int mLBDPos, mNumRecentLBDs, mTrailPos, mNumRecentTrails;
+		private long mRecentLBDSum, mRecentTrailSum;
+		private long mTotalLBDSum, mNumConflicts;
+
+		@Override
+		public void reset() {
+			mLBDPos = mNumRecentLBDs = mTrailPos = mNumRecentTrails = 0;
+			mRecentLBDSum = mRecentTrailSum = 0;
+			mTotalLBDSum = mNumConflicts = 0;
+		}
+
+		@Override
+		public void conflict(final int lbd, final int trailSize) {
+			if (mNumConflicts >= Config.RESTART_BLOCK_MIN_CONFLICTS && mNumRecentLBDs == mRecentLBDs.length
+					&& mNumRecentTrails == mRecentTrails.length
+					&& trailSize * (double) mRecentTrails.length > Config.RESTART_BLOCK_MARGIN * mRecentTrailSum) {
+				// Block the restart by forgetting the recent clauses.
+				restarted();
+			}
+			if (mNumRecentTrails == mRecentTrails.length) {
+				mRecentTrailSum -= mRecentTrails[mTrailPos];
+			} else {
+				mNumRecentTrails++;
+			}
+			mRecentTrails[mTrailPos] = trailSize;
+			mRecentTrailSum += trailSize;
+			mTrailPos = (mTrailPos + 1) % mRecentTrails.length;
+			if (mNumRecentLBDs == mRecentLBDs.length) {
+				mRecentLBDSum -= mRecentLBDs[mLBDPos];
+			} else {
+				mNumRecentLBDs++;
+			}
+			mRecentLBDs[mLBDPos] = lbd;
+			mRecentLBDSum += lbd;
+			mLBDPos = (mLBDPos + 1) % mRecentLBDs.length;
+			mTotalLBDSum += lbd;
+			mNumConflicts++;
+		}
+
+		@Override
+		public boolean isRestartDue() {
+			return mNumRecentLBDs == mRecentLBDs.length && Config.RESTART_GLUCOSE_MARGIN * mRecentLBDSum
+					* mNumConflicts > (double) mTotalLBDSum * mRecentLBDs.length;
+		}
+
+		@Override
+		public void restarted() {
+			mLBDPos = mNumRecentLBDs = 0;
+			mRecentLBDSum = 0;
+		}
+	}
+}
@@ -26,6 +26,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 
 import de.uni_freiburg.informatik.ultimate.logic.ApplicationTerm;
+import de.uni_freiburg.informatik.ultimate.logic.ConstantTerm;
 import de.uni_freiburg.informatik.ultimate.logic.FormulaUnLet;
 import de.uni_freiburg.informatik.ultimate.logic.FunctionSymbol;
 import de.uni_freiburg.informatik.ultimate.logic.Rational;
@@ -35,6 +36,7 @@ import de.uni_freiburg.informatik.ultimate.logic.TermVariable;
 import de.uni_freiburg.informatik.ultimate.logic.Theory;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.LogProxy;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.convert.Clausifier;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.convert.SMTAffineTerm;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.BooleanVarAtom;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.ITheory;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.model.FunctionValue.Index;
@@ -73,6 +75,19 @@ public class Model implements de.uni_freiburg.informatik.ultimate.logic.Model {
 	private final boolean mPartialModel;
 
 	public Model(final Clausifier clausifier, final Theory t, final boolean partial) {
+		this(clausifier, t, partial, false);
+	}
+
+	/**
+	 * Build a model from the current assignment.
+	 *
+	 * @param partial
+	 *            true if functions without a value should stay undefined.
+	 * @param candidate
+	 *            true if quantified clauses should be ignored. The result is only a candidate model for the ground
+	 *            part that still has to be checked against the quantified clauses.
+	 */
+	public Model(final Clausifier clausifier, final Theory t, final boolean partial, final boolean candidate) {
 		mTheory = t;
 		mPartialModel = partial;
 		mBoolSort = new BoolSortInterpretation();
@@ -102,7 +117,7 @@ public class Model implements de.uni_freiburg.informatik.ultimate.logic.Model {
 			} else if (theory instanceof ArrayTheory) {
 				array = (ArrayTheory) theory;
 			} else if (theory instanceof QuantifierTheory) {
-				if (!((QuantifierTheory) theory).getQuantClauses().isEmpty()) {
+				if (!candidate && !((QuantifierTheory) theory).getQuantClauses().isEmpty()) {
 					throw new UnsupportedOperationException("Modelproduction for quantifier theory not implemented.");
 				}
 			} else if (theory instanceof EprTheory) {
@@ -120,6 +135,16 @@ public class Model implements de.uni_freiburg.informatik.ultimate.logic.Model {
 		if (cc != null) {
 			cc.fillInModel(this, t, ste, array);
 		}
+		if (!clausifier.getEliminatedVariables().isEmpty()) {
+			// eliminated variables take the value of their definition, which only contains non-eliminated variables.
+			final ModelEvaluator eval = new ModelEvaluator(this);
+			for (final Term var : clausifier.getEliminatedVariables()) {
+				final Term definition = clausifier.createAffineTerm(var).toTerm(var.getSort());
+				final Term value = SMTAffineTerm.parseConstant(eval.evaluate(definition));
+				extendNumeric(((ApplicationTerm) var).getFunction(),
+						SMTAffineTerm.convertConstant((ConstantTerm) value));
+			}
+		}
 		if (!partial) {
 			for (final FunctionSymbol fs : t.getDeclaredFunctions().values()) {
 				if (!fs.isIntern() && !mFuncVals.containsKey(fs)) {
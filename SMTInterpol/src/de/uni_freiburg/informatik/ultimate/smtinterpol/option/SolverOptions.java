@@ -20,8 +20,13 @@ package de.uni_freiburg.informatik.ultimate.smtinterpol.option;
 
 import de.uni_freiburg.informatik.ultimate.smtinterpol.Config;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.LogProxy;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.DecisionQueue;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.RestartPolicy;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.proof.Transformations.AvailableTransformations;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2.SMTInterpol.CheckType;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2.SMTInterpol.OptimizationPriority;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.theory.linar.BranchingPolicy;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.theory.linar.LinArSolve;
 
 /**
  * Options specific to the solver but independent of the front end.  To speed up
@@ -43,6 +48,24 @@ public class SolverOptions {
 	private final BooleanOption mArrayInterpolation;
 	private final BooleanOption mProofCheckMode;
 	private final EnumOption<CheckType> mSimpCheckType;
+	private final LongOption mPortfolioThreads;
+	private final LongOption mCubeThreads;
+	private final LongOption mCubeDepth;
+	private final EnumOption<RestartPolicy.Strategy> mRestartStrategy;
+	private final BooleanOption mRestartReuseTrail;
+	private final BooleanOption mPhaseTarget;
+	private final LongOption mRephaseInterval;
+	private final LongOption mInprocessingInterval;
+	private final EnumOption<DecisionQueue.Heuristic> mDecisionHeuristic;
+	private final EnumOption<LinArSolve.SimplexStrategy> mSimplexStrategy;
+	private final EnumOption<LinArSolve.TheoryCombination> mTheoryCombination;
+	private final EnumOption<BranchingPolicy.Strategy> mBranchingPolicy;
+	private final BooleanOption mGomoryCuts;
+	private final EnumOption<OptimizationPriority> mOptimizationPriority;
+	private final BooleanOption mEqualityElimination;
+	private final LongOption mFinalCheckBudget;
+	private final LongOption mMaxInstanceGeneration;
+	private final LongOption mInstanceGCInterval;
 
 	public static final String TIMEOUT = ":timeout";
 	public static final String RANDOM_SEED = ":random-seed";
@@ -59,9 +82,30 @@ public class SolverOptions {
 	public static final String SIMPLIFY_CHECK_TYPE = ":simplify-check-type";
 	public static final String EPR = ":epr";
 	public static final String E_MATCHING = ":e-matching";
+	public static final String E_MATCHING_INCREMENTAL = ":e-matching-incremental";
 	public static final String UNKNOWN_TERM_DAWGS = ":unknown-term-dawgs";
 	public static final String PROPAGATE_UNKNOWN_TERMS = ":propagate-unknown-terms";
+	public static final String FINAL_CHECK_BUDGET = ":final-check-budget";
+	public static final String MBQI = ":mbqi";
+	public static final String MAX_INSTANCE_GENERATION = ":max-instance-generation";
+	public static final String INSTANCE_GC_INTERVAL = ":instance-gc-interval";
 	public static final String PROPAGATE_UNKNOWN_AUX = ":propagate-unknown-aux";
+	public static final String PORTFOLIO_THREADS = ":portfolio-threads";
+	public static final String PORTFOLIO_SHARE_CLAUSES = ":portfolio-share-clauses";
+	public static final String CUBE_THREADS = ":cube-threads";
+	public static final String CUBE_DEPTH = ":cube-depth";
+	public static final String RESTART_STRATEGY = ":restart-strategy";
+	public static final String RESTART_REUSE_TRAIL = ":restart-reuse-trail";
+	public static final String PHASE_TARGET = ":phase-target";
+	public static final String REPHASE_INTERVAL = ":rephase-interval";
+	public static final String INPROCESSING_INTERVAL = ":inprocessing-interval";
+	public static final String DECISION_HEURISTIC = ":decision-heuristic";
+	public static final String SIMPLEX_STRATEGY = ":simplex-strategy";
+	public static final String THEORY_COMBINATION = ":theory-combination";
+	public static final String BRANCHING_POLICY = ":branching-policy";
+	public static final String GOMORY_CUTS = ":gomory-cuts";
+	public static final String OPT_PRIORITY = ":opt-priority";
+	public static final String EQUALITY_ELIMINATION = ":equality-elimination";
 
 	SolverOptions(final OptionMap options, final LogProxy logger) {
 		mTimeout = new LongOption(0, true, "Soft timeout in milliseconds for "
@@ -92,6 +136,46 @@ public class SolverOptions {
 		mSimpCheckType = new EnumOption<CheckType>(CheckType.QUICK, true,
 				CheckType.class, "Strength of checks used by the strong context"
 				+ " simplifier used in the simplify command");
+		mPortfolioThreads = new LongOption(1, false, "Number of diversified solver instances running in parallel on"
+				+ " each check-sat.  Values <= 1 deactivate the portfolio.");
+		mCubeThreads = new LongOption(1, false, "Number of solver instances solving cubes in parallel on each"
+				+ " check-sat.  Values <= 1 deactivate cube and conquer.");
+		mCubeDepth = new LongOption(0, true, "Number of atoms the problem is split on in cube and conquer mode."
+				+ "  Values <= 0 choose the depth from the number of threads.");
+		mRestartStrategy = new EnumOption<RestartPolicy.Strategy>(RestartPolicy.Strategy.LUBY, false,
+				RestartPolicy.Strategy.class, "Strategy that decides when the DPLL engine restarts.");
+		mRestartReuseTrail = new BooleanOption(Config.RESTART_REUSE_TRAIL, false,
+				"Keep the decisions on restart that would be taken again immediately.");
+		mPhaseTarget = new BooleanOption(Config.PHASE_TARGET, false,
+				"Decide atoms by their phase in the longest conflict-free trail since the last restart.");
+		mRephaseInterval = new LongOption(Config.REPHASE_INTERVAL, false, "Base number of conflicts between two"
+				+ " resets of the saved phases.  Values <= 0 deactivate rephasing.");
+		mInprocessingInterval = new LongOption(Config.INPROCESS_INTERVAL, false, "Base number of conflicts between"
+				+ " two simplifications of the clause database.  Values <= 0 deactivate inprocessing.");
+		mDecisionHeuristic = new EnumOption<DecisionQueue.Heuristic>(DecisionQueue.Heuristic.DEFAULT, false,
+				DecisionQueue.Heuristic.class, "Heuristic that chooses the next atom to decide.");
+		mSimplexStrategy = new EnumOption<LinArSolve.SimplexStrategy>(LinArSolve.SimplexStrategy.SOI, false,
+				LinArSolve.SimplexStrategy.class,
+				"Pivoting engine that repairs bound violations in linear arithmetic.");
+		mTheoryCombination = new EnumOption<LinArSolve.TheoryCombination>(LinArSolve.TheoryCombination.MODEL_BASED,
+				false, LinArSolve.TheoryCombination.class,
+				"How interface equalities between arithmetic and uninterpreted functions are created.");
+		mBranchingPolicy = new EnumOption<BranchingPolicy.Strategy>(BranchingPolicy.Strategy.CUTS_FROM_PROOFS, false,
+				BranchingPolicy.Strategy.class, "How to choose the integer variable to branch on.");
+		mGomoryCuts = new BooleanOption(Config.GOMORY_CUTS, false,
+				"Create Gomory cuts from the simplex tableau before branching on integer variables.");
+		mOptimizationPriority = new EnumOption<OptimizationPriority>(OptimizationPriority.LEX, true,
+				OptimizationPriority.class, "Optimization of several objectives: lexicographic or Pareto optimal.");
+		mEqualityElimination = new BooleanOption(Config.EQUALITY_ELIMINATION, false,
+				"Substitute variables defined by asserted linear equalities instead of adding them to the simplex."
+						+ " Only applies to equalities asserted before the variable is used.  Fixed variables and"
+						+ " unbounded columns stay in the tableau.");
+		mFinalCheckBudget = new LongOption(Config.FINAL_CHECK_BUDGET, false, "Quantifier Theory: Number of"
+				+ " (partial) substitutions evaluated in a final check.  Values <= 0 mean no limit.");
+		mMaxInstanceGeneration = new LongOption(Config.MAX_INSTANCE_GENERATION, false, "Quantifier Theory: Maximal"
+				+ " generation of instances, i.e., depth of instantiation chains.  Values <= 0 mean no limit.");
+		mInstanceGCInterval = new LongOption(Config.INSTANCE_GC_INTERVAL, false, "Quantifier Theory: Number of"
+				+ " instances produced between two deletions of unused instances.  Values <= 0 keep all instances.");
 
 		// general standard compliant options
 		options.addOption(":verbosity", new VerbosityOption(logger));
@@ -134,16 +218,40 @@ public class SolverOptions {
 
 		// general non-standard options
 		options.addOption(CHECK_TYPE, mCheckType);
+		options.addOption(PORTFOLIO_THREADS, mPortfolioThreads);
+		options.addOption(PORTFOLIO_SHARE_CLAUSES, new BooleanOption(true, false,
+				"Share short learned clauses between the solver instances of the portfolio."));
+		options.addOption(CUBE_THREADS, mCubeThreads);
+		options.addOption(CUBE_DEPTH, mCubeDepth);
+		options.addOption(RESTART_STRATEGY, mRestartStrategy);
+		options.addOption(RESTART_REUSE_TRAIL, mRestartReuseTrail);
+		options.addOption(PHASE_TARGET, mPhaseTarget);
+		options.addOption(REPHASE_INTERVAL, mRephaseInterval);
+		options.addOption(INPROCESSING_INTERVAL, mInprocessingInterval);
+		options.addOption(DECISION_HEURISTIC, mDecisionHeuristic);
+		options.addOption(SIMPLEX_STRATEGY, mSimplexStrategy);
+		options.addOption(THEORY_COMBINATION, mTheoryCombination);
+		options.addOption(BRANCHING_POLICY, mBranchingPolicy);
+		options.addOption(GOMORY_CUTS, mGomoryCuts);
+		options.addOption(OPT_PRIORITY, mOptimizationPriority);
+		options.addOption(EQUALITY_ELIMINATION, mEqualityElimination);
 		options.addOption(EPR, new BooleanOption(false, false,
 				"Assume formula is in EPR fragment. This give an error if the formula is outside EPR."));
 		options.addOption(E_MATCHING, new BooleanOption(true, false,
 				"Quantifier Theory: Use E-matching for conflict and unit search."));
+		options.addOption(E_MATCHING_INCREMENTAL, new BooleanOption(false, false,
+				"Quantifier Theory: Only evaluate clauses affected by new merges or matches in checkpoints."));
 		options.addOption(UNKNOWN_TERM_DAWGS, new BooleanOption(false, false,
 				"Quantifier Theory: Use fourth instance value UNKNOWN_TERM as default in literal dawgs."));
 		options.addOption(PROPAGATE_UNKNOWN_TERMS, new BooleanOption(false, false,
 				"Quantifier Theory: Allow propagation on atoms with non-existing term."));
 		options.addOption(PROPAGATE_UNKNOWN_AUX, new BooleanOption(false, false,
 				"Quantifier Theory: Allow propagation on atoms with non-existing @AUX applications."));
+		options.addOption(FINAL_CHECK_BUDGET, mFinalCheckBudget);
+		options.addOption(MBQI, new BooleanOption(false, false, "Quantifier Theory: Check candidate models if final"
+				+ " check finds no instance and instantiate on counterexamples."));
+		options.addOption(MAX_INSTANCE_GENERATION, mMaxInstanceGeneration);
+		options.addOption(INSTANCE_GC_INTERVAL, mInstanceGCInterval);
 
 		// simplifier options
 		options.addOption(SIMPLIFY_CHECK_TYPE, mSimpCheckType);
@@ -169,6 +277,24 @@ public class SolverOptions {
 		mArrayInterpolation = (BooleanOption) options.getOption(ARRAY_INTERPOLATION);
 		mProofCheckMode = (BooleanOption) options.getOption(PROOF_CHECK_MODE);
 		mSimpCheckType = (EnumOption<CheckType>) options.getOption(SIMPLIFY_CHECK_TYPE);
+		mPortfolioThreads = (LongOption) options.getOption(PORTFOLIO_THREADS);
+		mCubeThreads = (LongOption) options.getOption(CUBE_THREADS);
+		mCubeDepth = (LongOption) options.getOption(CUBE_DEPTH);
+		mRestartStrategy = (EnumOption<RestartPolicy.Strategy>) options.getOption(RESTART_STRATEGY);
+		mRestartReuseTrail = (BooleanOption) options.getOption(RESTART_REUSE_TRAIL);
+		mPhaseTarget = (BooleanOption) options.getOption(PHASE_TARGET);
+		mRephaseInterval = (LongOption) options.getOption(REPHASE_INTERVAL);
+		mInprocessingInterval = (LongOption) options.getOption(INPROCESSING_INTERVAL);
+		mDecisionHeuristic = (EnumOption<DecisionQueue.Heuristic>) options.getOption(DECISION_HEURISTIC);
+		mSimplexStrategy = (EnumOption<LinArSolve.SimplexStrategy>) options.getOption(SIMPLEX_STRATEGY);
+		mTheoryCombination = (EnumOption<LinArSolve.TheoryCombination>) options.getOption(THEORY_COMBINATION);
+		mBranchingPolicy = (EnumOption<BranchingPolicy.Strategy>) options.getOption(BRANCHING_POLICY);
+		mGomoryCuts = (BooleanOption) options.getOption(GOMORY_CUTS);
+		mOptimizationPriority = (EnumOption<OptimizationPriority>) options.getOption(OPT_PRIORITY);
+		mEqualityElimination = (BooleanOption) options.getOption(EQUALITY_ELIMINATION);
+		mFinalCheckBudget = (LongOption) options.getOption(FINAL_CHECK_BUDGET);
+		mMaxInstanceGeneration = (LongOption) options.getOption(MAX_INSTANCE_GENERATION);
+		mInstanceGCInterval = (LongOption) options.getOption(INSTANCE_GC_INTERVAL);
 	}
 
 	public final CheckType getCheckType() {
@@ -223,4 +349,76 @@ public class SolverOptions {
 		return mSimpCheckType.getValue();
 	}
 
+	public final int getPortfolioThreads() {
+		return (int) Math.min(Integer.MAX_VALUE, mPortfolioThreads.getValue());
+	}
+
+	public final int getCubeThreads() {
+		return (int) Math.min(Integer.MAX_VALUE, mCubeThreads.getValue());
+	}
+
+	public final int getCubeDepth() {
+		return (int) Math.min(Integer.MAX_VALUE, mCubeDepth.getValue());
+	}
+
+	public final RestartPolicy.Strategy getRestartStrategy() {
+		return mRestartStrategy.getValue();
+	}
+
+	public final boolean isRestartReuseTrail() {
+		return mRestartReuseTrail.getValue();
+	}
+
+	public final boolean isPhaseTarget() {
+		return mPhaseTarget.getValue();
+	}
+
+	public final DecisionQueue.Heuristic getDecisionHeuristic() {
+		return mDecisionHeuristic.getValue();
+	}
+
+	public final LinArSolve.SimplexStrategy getSimplexStrategy() {
+		return mSimplexStrategy.getValue();
+	}
+
+	public final LinArSolve.TheoryCombination getTheoryCombination() {
+		return mTheoryCombination.getValue();
+	}
+
+	public final BranchingPolicy.Strategy getBranchingPolicy() {
+		return mBranchingPolicy.getValue();
+	}
+
+	public final boolean isGomoryCuts() {
+		return mGomoryCuts.getValue();
+	}
+
+	public final OptimizationPriority getOptimizationPriority() {
+		return mOptimizationPriority.getValue();
+	}
+
+	public final boolean isEqualityElimination() {
+		return mEqualityElimination.getValue();
+	}
+
+	public final int getRephaseInterval() {
+		return (int) Math.max(0, Math.min(Integer.MAX_VALUE, mRephaseInterval.getValue()));
+	}
+
+	public final int getInprocessingInterval() {
+		return (int) Math.max(0, Math.min(Integer.MAX_VALUE, mInprocessingInterval.getValue()));
+	}
+
+	public final long getFinalCheckBudget() {
+		return Math.max(0, mFinalCheckBudget.getValue());
+	}
+
+	public final int getMaxInstanceGeneration() {
+		return (int) Math.max(0, Math.min(Integer.MAX_VALUE, mMaxInstanceGeneration.getValue()));
+	}
+
+	public final long getInstanceGCInterval() {
+		return Math.max(0, mInstanceGCInterval.getValue());
+	}
+
 }
@@ -94,6 +94,16 @@ public interface IProofTracker {
 	 */
 	public Term exists(QuantifiedFormula old, Term newBody);
 
+	/**
+	 * Use a proved equality {@code (= x t)} to rewrite x into t. This is used to substitute variables that are
+	 * defined by an asserted equality.
+	 *
+	 * @param equality
+	 *            the equality {@code (= x t)} annotated with its proof.
+	 * @return the term t annotated with the proof {@code (= x t)}.
+	 */
+	public Term substitution(Term equality);
+
 	/* == rewrite rules == */
 
 	/**
@@ -79,6 +79,11 @@ public class NoopProofTracker implements IProofTracker {
 		return theory.term(func, b);
 	}
 
+	@Override
+	public Term substitution(final Term equality) {
+		return ((ApplicationTerm) equality).getParameters()[1];
+	}
+
 	@Override
 	public Term getRewriteProof(final Term asserted, final Term simpFormula) {
 		return simpFormula;
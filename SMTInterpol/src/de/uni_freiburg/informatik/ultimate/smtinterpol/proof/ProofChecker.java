@@ -1929,6 +1929,9 @@ public class ProofChecker extends NonRecursive {
 		case ":gtToLeq0":
 			okay = checkRewriteToLeq0(rewriteRule, eqParams[0], eqParams[1]);
 			break;
+		case ":solveEq":
+			okay = checkRewriteSolveEq(eqParams[0], eqParams[1]);
+			break;
 		case ":leqTrue":
 		case ":leqFalse":
 			okay = checkRewriteLeq(rewriteRule, eqParams[0], eqParams[1]);
@@ -2840,6 +2843,32 @@ public class ProofChecker extends NonRecursive {
 		return new SMTAffineTerm(rhsParams[0]).equals(expected) && isZero(rhsParams[1]);
 	}
 
+	boolean checkRewriteSolveEq(final Term lhs, final Term rhs) {
+		// (= a b) --> (= x t) if a - b and x - t are equal up to a non-zero factor.
+		if (!isApplication("=", lhs) || !isApplication("=", rhs)) {
+			return false;
+		}
+		final Term[] lhsParams = ((ApplicationTerm) lhs).getParameters();
+		final Term[] rhsParams = ((ApplicationTerm) rhs).getParameters();
+		if (lhsParams.length != 2 || rhsParams.length != 2 || !lhsParams[0].getSort().isNumericSort()) {
+			return false;
+		}
+		final SMTAffineTerm lhsDiff = new SMTAffineTerm(lhsParams[0]);
+		lhsDiff.add(Rational.MONE, new SMTAffineTerm(lhsParams[1]));
+		final SMTAffineTerm rhsDiff = new SMTAffineTerm(rhsParams[0]);
+		rhsDiff.add(Rational.MONE, new SMTAffineTerm(rhsParams[1]));
+		if (lhsDiff.isConstant()) {
+			return false;
+		}
+		final Map.Entry<Term, Rational> summand = lhsDiff.getSummands().entrySet().iterator().next();
+		final Rational rhsCoeff = rhsDiff.getSummands().get(summand.getKey());
+		if (rhsCoeff == null) {
+			return false;
+		}
+		lhsDiff.mul(rhsCoeff.div(summand.getValue()));
+		return lhsDiff.equals(rhsDiff);
+	}
+
 	boolean checkRewriteLeq(final String rewriteRule, final Term lhs, final Term rhs) {
 		// (<= c 0) --> true/false if c is constant.
 		if (!isApplication("<=", lhs)) {
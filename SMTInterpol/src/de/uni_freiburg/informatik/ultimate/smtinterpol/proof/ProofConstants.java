@@ -81,6 +81,7 @@ public interface ProofConstants {
 	public final static Annotation RW_LT_TO_LEQ0        = new Annotation(":ltToLeq0", null);
 	public final static Annotation RW_GEQ_TO_LEQ0       = new Annotation(":geqToLeq0", null);
 	public final static Annotation RW_GT_TO_LEQ0        = new Annotation(":gtToLeq0", null);
+	public final static Annotation RW_SOLVE_EQ          = new Annotation(":solveEq", null);
 	public final static Annotation RW_LEQ_TRUE          = new Annotation(":leqTrue", null);
 	public final static Annotation RW_LEQ_FALSE         = new Annotation(":leqFalse", null);
 	public final static Annotation RW_DIVISIBLE         = new Annotation(":divisible", null);
@@ -177,6 +177,13 @@ public class ProofTracker implements IProofTracker{
 		return buildProof(proof, theory.term(aTerm.getFunction(), params));
 	}
 
+	@Override
+	public Term substitution(final Term equality) {
+		final ApplicationTerm eq = (ApplicationTerm) getProvedTerm(equality);
+		assert eq.getFunction().getName() == "=" && eq.getParameters().length == 2;
+		return buildProof(getProof(equality), eq.getParameters()[1]);
+	}
+
 	/**
 	 * Create a proof of g from the proof of f and the rewrite proof of (= f g) for g.
 	 * @param asserted the asserted formula with its proof.
@@ -0,0 +1,464 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.uni_freiburg.informatik.ultimate.logic.ReasonUnknown;
+import de.uni_freiburg.informatik.ultimate.logic.Script.LBool;
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.LogProxy;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.convert.Clausifier;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.Clause;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.DPLLAtom;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.DPLLEngine;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.Literal;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.option.OptionMap.CopyMode;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.option.SolverOptions;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.proof.ResolutionNode;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.proof.ResolutionNode.Antecedent;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.proof.SourceAnnotation;
+
+/**
+ * Cube and conquer for a single check-sat. A lookahead on the engine of the parent solver selects the atoms that
+ * simplify the problem most among the atoms with the highest activity. The problem is then split into all cubes over
+ * these atoms, which are solved by a pool of workers. The workers are copies of the parent solver and solve a cube by
+ * assuming its literals in addition to the assumptions of the check.
+ *
+ * The cubes form a binary tree that is processed by a {@link ForkJoinPool}, so idle threads steal the remaining
+ * subtrees. An unsatisfiable cube yields a clause over the negated cube literals and assumptions that were needed.
+ * This clause also refutes all sibling cubes that contain the same literals, which are then skipped. The clauses of two
+ * sibling subtrees are resolved on the split atom, so the root of the tree yields a clause that only contains negated
+ * assumptions. It is handed to the engine of the parent, which then provides the unsat core, the unsat assumptions, and
+ * the proof of the check. A satisfiable cube ends the search and its worker provides the model.
+ *
+ * Like the portfolio, the workers share the theory of the parent, the assertions are replayed sequentially, and the
+ * theory guards its term creation by a lock while the workers run.
+ */
+class CubeSolver {
+	/**
+	 * Number of atoms with the highest activity that are considered by the lookahead for every split atom.
+	 */
+	private static final int LOOKAHEAD_CANDIDATES = 4;
+	/**
+	 * Number of cubes per worker if the depth is chosen automatically.
+	 */
+	private static final int CUBES_PER_WORKER = 4;
+
+	private final LogProxy mLogger;
+	private final SMTInterpol mParent;
+	private final DPLLEngine mEngine;
+	private final Literal[] mAssumptions;
+	private final Set<Literal> mAssumptionSet;
+	private final SMTInterpol[] mWorkers;
+	/**
+	 * The assumptions of the check translated to literals of each worker.
+	 */
+	private final Literal[][] mWorkerAssumptions;
+	private final int[] mWorkerCubes;
+	private final BlockingQueue<Integer> mIdleWorkers = new LinkedBlockingQueue<>();
+	/**
+	 * The atoms of the parent engine the problem is split on. The term of atom i is mSplitTerms[i] if
+	 * mSplitPositive[i] is set, and its negation otherwise.
+	 */
+	private DPLLAtom[] mSplitAtoms;
+	private Term[] mSplitTerms;
+	private boolean[] mSplitPositive;
+	/**
+	 * Clauses that refute some cubes. Used to skip cubes that are already known to be unsatisfiable.
+	 */
+	private final ConcurrentLinkedQueue<Clause> mRefutations = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger mNumSolved = new AtomicInteger();
+	private final AtomicInteger mNumPruned = new AtomicInteger();
+	private final Object[] mStatistics;
+	private volatile boolean mDone;
+	private int mWinner = -1;
+	private ReasonUnknown mReasonUnknown = ReasonUnknown.INCOMPLETE;
+
+	/**
+	 * Create the workers and choose the split atoms.
+	 *
+	 * @param parent
+	 *            the solver whose context is checked. Its engine must already have assumed the assumptions.
+	 * @param numWorkers
+	 *            the number of workers.
+	 * @param depth
+	 *            the number of split atoms, or a value <= 0 to choose it from the number of workers.
+	 * @param assertions
+	 *            the assertions currently on the assertion stack of the parent.
+	 * @param assumptions
+	 *            the assumptions of the check.
+	 * @param assumptionLits
+	 *            the literals of the assumptions in the engine of the parent.
+	 */
+	CubeSolver(final SMTInterpol parent, final int numWorkers, final int depth, final Iterable<Term> assertions,
+			final Term[] assumptions, final Literal[] assumptionLits) {
+		mLogger = parent.getLogger();
+		mParent = parent;
+		mEngine = parent.getEngine();
+		mAssumptions = assumptionLits;
+		mAssumptionSet = new HashSet<>(Arrays.asList(assumptionLits));
+		mWorkers = new SMTInterpol[numWorkers];
+		mWorkerAssumptions = new Literal[numWorkers][];
+		mWorkerCubes = new int[numWorkers];
+		mStatistics = new Object[numWorkers];
+		final boolean produceProofs = (Boolean) parent.getOption(SolverOptions.PRODUCE_PROOFS)
+				|| (Boolean) parent.getOption(SolverOptions.PROOF_CHECK_MODE);
+		for (int i = 0; i < numWorkers; i++) {
+			final Map<String, Object> options = new HashMap<>();
+			options.put(SolverOptions.CUBE_THREADS, 1);
+			options.put(SolverOptions.PORTFOLIO_THREADS, 1);
+			// Checked by the parent on the combined proof, which needs the full proofs of the workers.
+			options.put(SolverOptions.PROOF_CHECK_MODE, false);
+			options.put(SolverOptions.PRODUCE_PROOFS, produceProofs);
+			final SMTInterpol worker = new SMTInterpol(parent, options, CopyMode.CURRENT_VALUE,
+					() -> mDone || parent.isTerminationRequested());
+			for (final Term asserted : assertions) {
+				worker.assertTerm(asserted);
+			}
+			mWorkerAssumptions[i] = new Literal[assumptions.length];
+			for (int j = 0; j < assumptions.length; j++) {
+				mWorkerAssumptions[i][j] =
+						worker.getClausifier().getCreateLiteral(assumptions[j], new SourceAnnotation("", null));
+			}
+			mWorkers[i] = worker;
+			mIdleWorkers.add(i);
+		}
+		chooseSplitAtoms(depth > 0 ? depth : 32 - Integer.numberOfLeadingZeros(numWorkers * CUBES_PER_WORKER - 1));
+	}
+
+	/**
+	 * Choose the split atoms by a lookahead on the most active atoms of the parent engine. An atom is the better the
+	 * more literals both of its phases imply. Atoms whose phases lead to a conflict are not used, since one of their
+	 * cubes would be trivial.
+	 *
+	 * @param depth
+	 *            the maximal number of split atoms.
+	 */
+	private void chooseSplitAtoms(final int depth) {
+		final Clausifier clausifier = mParent.getClausifier();
+		final List<DPLLAtom> candidates = new ArrayList<>();
+		final List<Term> terms = new ArrayList<>();
+		final List<Boolean> positive = new ArrayList<>();
+		final List<Long> scores = new ArrayList<>();
+		for (final DPLLAtom atom : mEngine.getMostActiveAtoms(LOOKAHEAD_CANDIDATES * depth)) {
+			Term term = clausifier.getLiteralTerm(atom);
+			final boolean isPositive = term != null;
+			if (term == null) {
+				term = clausifier.getLiteralTerm(atom.negate());
+				if (term == null) {
+					// The workers cannot translate atoms created during search.
+					continue;
+				}
+			}
+			final int pos = mEngine.lookahead(atom);
+			final int neg = pos < 0 ? -1 : mEngine.lookahead(atom.negate());
+			if (neg < 0) {
+				continue;
+			}
+			candidates.add(atom);
+			terms.add(term);
+			positive.add(isPositive);
+			scores.add((pos + 1L) * (neg + 1L));
+		}
+		final Integer[] order = new Integer[candidates.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (i1, i2) -> Long.compare(scores.get(i2), scores.get(i1)));
+		final int size = Math.min(depth, order.length);
+		mSplitAtoms = new DPLLAtom[size];
+		mSplitTerms = new Term[size];
+		mSplitPositive = new boolean[size];
+		for (int i = 0; i < size; i++) {
+			mSplitAtoms[i] = candidates.get(order[i]);
+			mSplitTerms[i] = terms.get(order[i]);
+			mSplitPositive[i] = positive.get(order[i]);
+		}
+		mLogger.info("Cube and conquer splits on %d atoms", size);
+	}
+
+	/**
+	 * Solve all cubes.
+	 *
+	 * @return sat if some cube is satisfiable, unsat if all cubes are unsatisfiable, and unknown otherwise.
+	 */
+	LBool checkSat() {
+		final ForkJoinPool pool = new ForkJoinPool(mWorkers.length);
+		Clause refutation = null;
+		mParent.getTheory().setConcurrentAccess(true);
+		try {
+			refutation = pool.invoke(new CubeTask(0, new boolean[mSplitAtoms.length]));
+		} finally {
+			pool.shutdown();
+			PortfolioSolver.awaitTermination(pool);
+			mParent.getTheory().setConcurrentAccess(false);
+		}
+		for (int i = 0; i < mWorkers.length; i++) {
+			mStatistics[i] = mWorkers[i].getInfo(":all-statistics");
+		}
+		if (mWinner != -1) {
+			return LBool.SAT;
+		}
+		if (refutation != null) {
+			final Literal[] lits = new Literal[refutation.getSize()];
+			for (int i = 0; i < lits.length; i++) {
+				lits[i] = refutation.getLiteral(i);
+			}
+			mEngine.setUnsatClause(lits, refutation.getProof());
+			return LBool.UNSAT;
+		}
+		if (mParent.isTerminationRequested()) {
+			mReasonUnknown = ReasonUnknown.CANCELLED;
+		}
+		return LBool.UNKNOWN;
+	}
+
+	/**
+	 * Get the worker that found a satisfiable cube.
+	 *
+	 * @return the winning worker or null if no cube was satisfiable.
+	 */
+	SMTInterpol getWinner() {
+		return mWinner == -1 ? null : mWorkers[mWinner];
+	}
+
+	/**
+	 * Get the reason why the cubes could not decide the problem.
+	 */
+	ReasonUnknown getReasonUnknown() {
+		return mReasonUnknown;
+	}
+
+	/**
+	 * Get the literal of the parent engine decided by a cube.
+	 */
+	private Literal getCubeLiteral(final int index, final boolean phase) {
+		return phase ? mSplitAtoms[index] : mSplitAtoms[index].negate();
+	}
+
+	/**
+	 * Check if a clause refutes a (partial) cube, i.e., all its literals are negated assumptions or negated cube
+	 * literals.
+	 */
+	private boolean refutes(final Clause clause, final int depth, final boolean[] cube) {
+		next: for (int i = 0; i < clause.getSize(); i++) {
+			final Literal lit = clause.getLiteral(i);
+			if (mAssumptionSet.contains(lit.negate())) {
+				continue;
+			}
+			for (int j = 0; j < depth; j++) {
+				if (getCubeLiteral(j, cube[j]) == lit.negate()) {
+					continue next;
+				}
+			}
+			return false;
+		}
+		return true;
+	}
+
+	private static boolean contains(final Clause clause, final Literal lit) {
+		for (int i = 0; i < clause.getSize(); i++) {
+			if (clause.getLiteral(i) == lit) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Combine the refutations of the two subtrees below a split atom.
+	 *
+	 * @return a refutation of the tree, or null if one subtree is not refuted.
+	 */
+	private Clause combine(final Clause pos, final Clause neg, final int index) {
+		final Literal split = mSplitAtoms[index];
+		if (pos != null && !contains(pos, split.negate())) {
+			return pos;
+		}
+		if (neg != null && !contains(neg, split)) {
+			return neg;
+		}
+		if (pos == null || neg == null) {
+			return null;
+		}
+		final Set<Literal> resolvent = new HashSet<>();
+		for (int i = 0; i < pos.getSize(); i++) {
+			resolvent.add(pos.getLiteral(i));
+		}
+		for (int i = 0; i < neg.getSize(); i++) {
+			resolvent.add(neg.getLiteral(i));
+		}
+		resolvent.remove(split);
+		resolvent.remove(split.negate());
+		final Literal[] lits = resolvent.toArray(new Literal[resolvent.size()]);
+		if (!mEngine.isProofGenerationEnabled()) {
+			return new Clause(lits);
+		}
+		return new Clause(lits, new ResolutionNode(pos, new Antecedent[] { new Antecedent(split, neg) }));
+	}
+
+	/**
+	 * Solve a cube by one of the idle workers.
+	 *
+	 * @return a refutation of the cube, or null if it is satisfiable or could not be solved.
+	 */
+	private Clause solveCube(final boolean[] cube) {
+		final int index;
+		try {
+			index = mIdleWorkers.take();
+		} catch (final InterruptedException eInterrupt) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		boolean release = true;
+		try {
+			final SMTInterpol worker = mWorkers[index];
+			final Clausifier clausifier = worker.getClausifier();
+			final int numAssumptions = mAssumptions.length;
+			final Literal[] lits = Arrays.copyOf(mWorkerAssumptions[index], numAssumptions + cube.length);
+			for (int i = 0; i < cube.length; i++) {
+				final Literal atom = clausifier.getTermLiteral(mSplitTerms[i]);
+				if (atom == null) {
+					mLogger.warn("Cube worker %d has no literal for %s", index, mSplitTerms[i]);
+					return null;
+				}
+				lits[numAssumptions + i] = mSplitPositive[i] == cube[i] ? atom : atom.negate();
+			}
+			mWorkerCubes[index]++;
+			mNumSolved.incrementAndGet();
+			final LBool result = worker.checkSatLiterals(lits);
+			if (result == LBool.SAT) {
+				synchronized (this) {
+					if (mWinner == -1) {
+						mWinner = index;
+						mDone = true;
+						release = false;
+						mLogger.info("Cube worker %d found a model", index);
+					}
+				}
+				return null;
+			}
+			if (result != LBool.UNSAT) {
+				return null;
+			}
+			// Translate the clause of negated assumptions into literals of the parent engine.
+			final Clause unsat = worker.getEngine().getUnsatClause();
+			final Literal[] parentLits = new Literal[unsat.getSize()];
+			for (int i = 0; i < parentLits.length; i++) {
+				final Literal assumed = unsat.getLiteral(i).negate();
+				int pos = 0;
+				while (pos < lits.length && lits[pos] != assumed) {
+					pos++;
+				}
+				if (pos == lits.length) {
+					mLogger.warn("Cube worker %d returned an unsat clause with unknown literal %s", index, assumed);
+					return null;
+				}
+				parentLits[i] = (pos < numAssumptions ? mAssumptions[pos]
+						: getCubeLiteral(pos - numAssumptions, cube[pos - numAssumptions])).negate();
+			}
+			final Clause refutation = mEngine.isProofGenerationEnabled() ? new Clause(parentLits, unsat.getProof())
+					: new Clause(parentLits);
+			mRefutations.add(refutation);
+			return refutation;
+		} finally {
+			if (release) {
+				mIdleWorkers.add(index);
+			}
+		}
+	}
+
+	/**
+	 * The task solving all cubes that extend a partial cube.
+	 */
+	private class CubeTask extends RecursiveTask<Clause> {
+		private static final long serialVersionUID = 1L;
+
+		private final int mDepth;
+		private final boolean[] mCube;
+
+		/**
+		 * Create a task for a partial cube.
+		 *
+		 * @param depth
+		 *            the number of split atoms decided by the partial cube.
+		 * @param cube
+		 *            the phases of the split atoms; only the first depth entries are used.
+		 */
+		CubeTask(final int depth, final boolean[] cube) {
+			mDepth = depth;
+			mCube = cube;
+		}
+
+		@Override
+		protected Clause compute() {
+			if (mDone) {
+				return null;
+			}
+			for (final Clause known : mRefutations) {
+				if (refutes(known, mDepth, mCube)) {
+					mNumPruned.addAndGet(1 << (mCube.length - mDepth));
+					return known;
+				}
+			}
+			if (mDepth == mCube.length) {
+				return solveCube(mCube);
+			}
+			final boolean[] posCube = mCube.clone();
+			posCube[mDepth] = true;
+			final CubeTask pos = new CubeTask(mDepth + 1, posCube);
+			pos.fork();
+			final Clause neg = new CubeTask(mDepth + 1, mCube).compute();
+			final Clause combined = combine(pos.join(), neg, mDepth);
+			if (combined != null && mDepth > 0) {
+				mRefutations.add(combined);
+			}
+			return combined;
+		}
+	}
+
+	/**
+	 * Get the statistics of the last check.
+	 *
+	 * @return the statistics in the format used by <code>:all-statistics</code>.
+	 */
+	Object getStatistics() {
+		final Object[] workers = new Object[mWorkers.length];
+		for (int i = 0; i < mWorkers.length; i++) {
+			workers[i] = new Object[] { ":Worker" + i,
+				new Object[][] { { "Cubes", mWorkerCubes[i] }, { "Statistics", mStatistics[i] } } };
+		}
+		return new Object[] { ":CubeAndConquer",
+			new Object[][] { { "Workers", mWorkers.length }, { "Depth", mSplitAtoms.length },
+				{ "Solved", mNumSolved.get() }, { "Pruned", mNumPruned.get() }, { "Details", workers } } };
+	}
+}
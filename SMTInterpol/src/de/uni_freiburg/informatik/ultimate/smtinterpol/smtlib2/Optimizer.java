@@ -0,0 +1,360 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2;
+
+import java.util.ArrayList;
+
+import de.uni_freiburg.informatik.ultimate.logic.ConstantTerm;
+import de.uni_freiburg.informatik.ultimate.logic.Rational;
+import de.uni_freiburg.informatik.ultimate.logic.SMTLIBException;
+import de.uni_freiburg.informatik.ultimate.logic.Script.LBool;
+import de.uni_freiburg.informatik.ultimate.logic.Sort;
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.convert.SMTAffineTerm;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.model.Model;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2.SMTInterpol.OptimizationPriority;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.theory.linar.InfinitesimalNumber;
+import de.uni_freiburg.informatik.ultimate.util.datastructures.ScopedArrayList;
+
+/**
+ * Optimization of arithmetic objectives. If objectives are present, a check-sat searches for a model that is optimal
+ * for the objectives. The objectives belong to the assertion stack, i.e., they are removed by a pop.
+ *
+ * This is an iterated-check optimizer. An objective is optimized by a linear search that calls check-sat repeatedly on
+ * internal assertion stack levels; there is no branch and bound on the objective inside a single check. After every
+ * satisfiable check, the linear arithmetic solver computes the maximum of the objective under the current assignment
+ * by the primal simplex algorithm. The next check asserts that the objective reaches this maximum (rounded down for
+ * integer objectives), so the search jumps from vertex to vertex. If this is not possible, the next check only
+ * asserts that the objective improves. Thus an integer objective whose bound from the simplex does not improve may
+ * only improve by one in every check. The integrality of each candidate is ensured by the usual branches and cuts of
+ * the linear arithmetic solver. All bounds are asserted on internal assertion stack levels that are removed when the
+ * check ends, and the best model found is the model of the check.
+ *
+ * With several objectives, the lexicographic mode optimizes the objectives in the order they were given, each with the
+ * previous objectives fixed to their optimum. The Pareto mode returns a new Pareto optimal point on every check-sat
+ * and unsat if all points were found. A Pareto point is found by a lexicographic optimization that excludes the
+ * points that are dominated by or equal to the points found before.
+ */
+class Optimizer {
+	/**
+	 * An objective. Minimization is handled by maximizing the negated term.
+	 */
+	private static class Objective {
+		final Term mTerm;
+		final boolean mMaximize;
+		/** The term that is maximized. */
+		final Term mGoal;
+		/**
+		 * The optimum of the goal after the last check. The infinitesimal part is negative if the supremum is not
+		 * reached. This is null if the search was stopped before the optimum was found.
+		 */
+		InfinitesimalNumber mOptimum;
+		/** The value of the goal in the best model of the last check. */
+		Rational mValue;
+
+		Objective(final Term term, final boolean maximize, final Term goal) {
+			mTerm = term;
+			mMaximize = maximize;
+			mGoal = goal;
+		}
+	}
+
+	private final SMTInterpol mSolver;
+	private final ScopedArrayList<Objective> mObjectives = new ScopedArrayList<>();
+	/** True while a check-sat is optimized. Checks done by the optimizer are plain checks. */
+	private boolean mRunning;
+	/** True if the objectives contain the results of the last check-sat. */
+	private boolean mHasResults;
+	/** The Pareto points found since the last change of the assertion stack. */
+	private final ArrayList<Rational[]> mParetoFront = new ArrayList<>();
+	/** True if the Pareto front is complete or contains an unbounded point. */
+	private boolean mParetoDone;
+	private Model mBestModel;
+	private int mNumChecks;
+
+	public Optimizer(final SMTInterpol solver) {
+		mSolver = solver;
+	}
+
+	public void addObjective(final Term term, final boolean maximize) {
+		if (!term.getSort().isNumericSort()) {
+			throw new SMTLIBException("Only numeric objectives supported");
+		}
+		mObjectives.add(new Objective(term, maximize, maximize ? term : mSolver.term("-", term)));
+	}
+
+	public boolean hasObjectives() {
+		return !mObjectives.isEmpty();
+	}
+
+	public boolean isRunning() {
+		return mRunning;
+	}
+
+	public void push() {
+		mObjectives.beginScope();
+	}
+
+	public void pop() {
+		mObjectives.endScope();
+	}
+
+	/**
+	 * Notify the optimizer that the assertion stack was modified. This is ignored while a check is optimized.
+	 */
+	public void assertionStackModified() {
+		if (!mRunning) {
+			mHasResults = false;
+			mParetoFront.clear();
+			mParetoDone = false;
+		}
+	}
+
+	/**
+	 * Optimize a check-sat by iterated check-sat calls. Every improvement of an objective costs a complete check of the
+	 * solver.
+	 *
+	 * @param assumptions
+	 *            the assumptions of the check.
+	 * @param priority
+	 *            the mode for several objectives.
+	 * @return the result of the check.
+	 */
+	public LBool checkSat(final Term[] assumptions, final OptimizationPriority priority) {
+		mRunning = true;
+		mHasResults = false;
+		mBestModel = null;
+		try {
+			final LBool result;
+			if (priority == OptimizationPriority.PARETO) {
+				result = checkSatPareto(assumptions);
+			} else {
+				result = optimizeLexicographic(assumptions);
+			}
+			mHasResults = result == LBool.SAT;
+			return result;
+		} finally {
+			mRunning = false;
+		}
+	}
+
+	/**
+	 * Get the model of the last optimized check-sat.
+	 */
+	public Model getBestModel() {
+		return mBestModel;
+	}
+
+	private LBool check(final Term[] assumptions) {
+		mNumChecks++;
+		return mSolver.checkSatAssuming(assumptions);
+	}
+
+	private static boolean isInt(final Term term) {
+		return term.getSort().getName().equals("Int");
+	}
+
+	private static Rational evaluate(final Model model, final Term goal) {
+		return SMTAffineTerm.convertConstant((ConstantTerm) model.evaluate(goal));
+	}
+
+	private Term bound(final Term goal, final String rel, final Rational value) {
+		return mSolver.term(rel, goal, value.toTerm(goal.getSort()));
+	}
+
+	/**
+	 * Optimize the objectives lexicographically. The result is stored in the objectives and in the best model.
+	 *
+	 * @return the result of the check.
+	 */
+	private LBool optimizeLexicographic(final Term[] assumptions) {
+		final LBool result = check(assumptions);
+		if (result != LBool.SAT) {
+			return result;
+		}
+		mBestModel = (Model) mSolver.getModel();
+		for (final Objective obj : mObjectives) {
+			obj.mOptimum = null;
+		}
+		mSolver.push(1);
+		try {
+			// push and pop modify the list of objectives, so it is not iterated
+			for (int i = 0; i < mObjectives.size(); i++) {
+				final Objective obj = mObjectives.get(i);
+				optimize(obj, assumptions);
+				if (obj.mOptimum == null || obj.mOptimum == InfinitesimalNumber.POSITIVE_INFINITY) {
+					break;
+				}
+				// fix the objective before optimizing the next one
+				mSolver.assertTerm(bound(obj.mGoal, ">=", obj.mValue));
+			}
+		} finally {
+			mSolver.pop(1);
+		}
+		for (final Objective obj : mObjectives) {
+			obj.mValue = evaluate(mBestModel, obj.mGoal);
+		}
+		return LBool.SAT;
+	}
+
+	/**
+	 * Maximize the goal of an objective starting from the best model found so far. This may push assertion stack
+	 * levels and leaves them on the stack. The optimum is stored in the objective; it is null if a check returned
+	 * unknown.
+	 */
+	private void optimize(final Objective obj, final Term[] assumptions) {
+		final Term goal = obj.mGoal;
+		Rational value = evaluate(mBestModel, goal);
+		int levels = 0;
+		try {
+			// Make the goal known to the solver. This holds in the best model, so the check is usually cheap.
+			mSolver.push(1);
+			levels++;
+			mSolver.assertTerm(bound(goal, ">=", value));
+			LBool result = check(assumptions);
+			while (result == LBool.SAT) {
+				mBestModel = (Model) mSolver.getModel();
+				value = evaluate(mBestModel, goal);
+				final InfinitesimalNumber max = mSolver.maximizeObjective(goal);
+				if (max == InfinitesimalNumber.POSITIVE_INFINITY) {
+					obj.mValue = value;
+					obj.mOptimum = max;
+					return;
+				}
+				if (max != null) {
+					final Rational target = isInt(goal) ? max.floor().mReal : max.mReal;
+					if (target.compareTo(value) > 0) {
+						mSolver.push(1);
+						mSolver.assertTerm(bound(goal, ">=", target));
+						result = check(assumptions);
+						if (result != LBool.UNSAT) {
+							levels++;
+							continue;
+						}
+						mSolver.pop(1);
+						if (max.mEps < 0 && !isInt(goal)) {
+							// The supremum of the current assignment is the supremum of all models. It is not reached,
+							// but try to find a model that is closer to it.
+							mSolver.push(1);
+							mSolver.assertTerm(bound(goal, ">=", value.add(target).div(Rational.TWO)));
+							if (check(assumptions) == LBool.SAT) {
+								mBestModel = (Model) mSolver.getModel();
+								value = evaluate(mBestModel, goal);
+							}
+							mSolver.pop(1);
+							obj.mValue = value;
+							obj.mOptimum = max;
+							return;
+						}
+					}
+				}
+				mSolver.push(1);
+				levels++;
+				mSolver.assertTerm(bound(goal, ">", value));
+				result = check(assumptions);
+			}
+			obj.mValue = value;
+			obj.mOptimum = result == LBool.UNSAT ? new InfinitesimalNumber(value, 0) : null;
+		} finally {
+			mSolver.pop(levels);
+		}
+	}
+
+	/**
+	 * Find the next Pareto point. The points found so far are excluded together with the points dominated by them.
+	 * The lexicographic optimum under these constraints is Pareto optimal.
+	 *
+	 * @return the result of the check, unsat if all Pareto points were found.
+	 */
+	private LBool checkSatPareto(final Term[] assumptions) {
+		if (mParetoDone) {
+			return LBool.UNSAT;
+		}
+		mSolver.push(1);
+		final LBool result;
+		try {
+			for (final Rational[] point : mParetoFront) {
+				final Term[] improve = new Term[point.length];
+				for (int i = 0; i < point.length; i++) {
+					improve[i] = bound(mObjectives.get(i).mGoal, ">", point[i]);
+				}
+				mSolver.assertTerm(improve.length == 1 ? improve[0] : mSolver.term("or", improve));
+			}
+			result = optimizeLexicographic(assumptions);
+		} finally {
+			mSolver.pop(1);
+		}
+		if (result == LBool.SAT) {
+			final Rational[] point = new Rational[mObjectives.size()];
+			for (int i = 0; i < point.length; i++) {
+				final Objective obj = mObjectives.get(i);
+				if (obj.mOptimum == null || obj.mOptimum.isInfinity()) {
+					mParetoDone = true;
+				}
+				// a supremum that is not reached can be excluded as a whole
+				point[i] = obj.mOptimum != null && obj.mOptimum.mEps < 0 ? obj.mOptimum.mReal : obj.mValue;
+			}
+			mParetoFront.add(point);
+		} else if (result == LBool.UNSAT) {
+			mParetoDone = true;
+		}
+		return result;
+	}
+
+	private Object convertOptimum(final Objective obj) {
+		final Sort sort = obj.mTerm.getSort();
+		if (obj.mOptimum == null) {
+			// the search was stopped; report the best value found
+			final Rational value = obj.mMaximize ? obj.mValue : obj.mValue.negate();
+			return value.toTerm(sort);
+		}
+		final InfinitesimalNumber optimum = obj.mMaximize ? obj.mOptimum : obj.mOptimum.negate();
+		if (optimum.isInfinity()) {
+			return optimum.mReal.signum() > 0 ? "oo" : new Object[] { "-", "oo" };
+		}
+		final Term real = optimum.mReal.toTerm(sort);
+		if (optimum.mEps == 0) {
+			return real;
+		}
+		return new Object[] { optimum.mEps > 0 ? "+" : "-", real, "epsilon" };
+	}
+
+	/**
+	 * Get the optimal values of the objectives of the last check-sat. A supremum that is not reached is written as
+	 * {@code (- c epsilon)}, an unbounded objective as {@code oo}.
+	 *
+	 * @return an array that contains a pair of the objective and its value for every objective.
+	 */
+	public Object[] getObjectiveValues() {
+		if (!mHasResults) {
+			throw new SMTLIBException("No optimization results since the last check-sat");
+		}
+		final Object[] result = new Object[mObjectives.size()];
+		for (int i = 0; i < result.length; i++) {
+			final Objective obj = mObjectives.get(i);
+			result[i] = new Object[] { obj.mTerm, convertOptimum(obj) };
+		}
+		return result;
+	}
+
+	Object getStatistics() {
+		return new Object[] { ":Optimizer", new Object[][] { { "Objectives", mObjectives.size() },
+			{ "Checks", mNumChecks }, { "ParetoPoints", mParetoFront.size() } } };
+	}
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import de.uni_freiburg.informatik.ultimate.logic.ReasonUnknown;
+import de.uni_freiburg.informatik.ultimate.logic.Script.LBool;
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.Config;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.LogProxy;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.ClauseExchange;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.DPLLEngine;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.DecisionQueue;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.RestartPolicy;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.option.OptionMap.CopyMode;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.option.SolverOptions;
+
+/**
+ * A portfolio of diversified solver instances that race on the check-sat calls of a parent solver. Every worker is a
+ * copy of the parent solver created by the copy constructor of {@link SMTInterpol}. The workers differ in their random
+ * seed, restart schedule, and initial phase. The first worker that reports sat or unsat wins and all other workers are
+ * cancelled. The model, proof, and unsat core of the last check are then taken from the winning worker.
+ *
+ * The workers are kept across check-sat calls. The parent forwards its assertions and push and pop operations to the
+ * workers, so they keep their learned clauses and heuristics. The assertions that were on the stack of the parent when
+ * the portfolio was created are asserted on the outermost level of the workers. The parent drops the portfolio when
+ * it pops these assertions.
+ *
+ * The workers share the theory of the parent. Since the clausifier uses temporary fields of the shared terms, the
+ * assertions are asserted sequentially into the workers. Only the actual check runs in parallel, and the theory
+ * guards its term creation by a lock while the workers run. Unless disabled by the option
+ * <code>:portfolio-share-clauses</code>, the workers exchange short learned clauses over the terms of their literals
+ * using a {@link ClauseExchange}.
+ */
+class PortfolioSolver {
+	/**
+	 * The restart factors used by the workers. Worker 0 uses the default restart factor.
+	 */
+	private static final int[] RESTART_FACTORS = { Config.RESTART_FACTOR, 100, 1000, 250, 2000, 50 };
+	/**
+	 * The restart strategies used by the workers. Worker 0 uses the configured restart strategy.
+	 */
+	private static final RestartPolicy.Strategy[] RESTART_STRATEGIES = { RestartPolicy.Strategy.LUBY,
+		RestartPolicy.Strategy.GLUCOSE, RestartPolicy.Strategy.INNER_OUTER, RestartPolicy.Strategy.GEOMETRIC };
+	/**
+	 * The decision heuristics used by the workers. Worker 0 uses the configured heuristic.
+	 */
+	private static final DecisionQueue.Heuristic[] DECISION_HEURISTICS = { DecisionQueue.Heuristic.DEFAULT,
+		DecisionQueue.Heuristic.DEFAULT, DecisionQueue.Heuristic.VMTF };
+
+	private final SMTInterpol mParent;
+	private final LogProxy mLogger;
+	private final SMTInterpol[] mWorkers;
+	private final LBool[] mResults;
+	private final long[] mTimes;
+	private final Object[] mStatistics;
+	private final boolean mShareClauses;
+	/**
+	 * The assertion stack level of the parent when the portfolio was created.
+	 */
+	private final int mBaseLevel;
+	private volatile boolean mDone;
+	private int mWinner = -1;
+	private ReasonUnknown mReasonUnknown = ReasonUnknown.INCOMPLETE;
+
+	/**
+	 * Create the workers of a portfolio and assert the current assertions of the parent into them.
+	 *
+	 * @param parent
+	 *            the solver whose context is checked.
+	 * @param numWorkers
+	 *            the number of workers.
+	 * @param assertions
+	 *            the assertions currently on the assertion stack of the parent.
+	 * @param baseLevel
+	 *            the current assertion stack level of the parent.
+	 */
+	PortfolioSolver(final SMTInterpol parent, final int numWorkers, final Iterable<Term> assertions,
+			final int baseLevel) {
+		mParent = parent;
+		mLogger = parent.getLogger();
+		mWorkers = new SMTInterpol[numWorkers];
+		mResults = new LBool[numWorkers];
+		mTimes = new long[numWorkers];
+		mStatistics = new Object[numWorkers];
+		final long seed = ((Number) parent.getOption(SolverOptions.RANDOM_SEED)).longValue();
+		final boolean produceProofs = (Boolean) parent.getOption(SolverOptions.PRODUCE_PROOFS)
+				|| (Boolean) parent.getOption(SolverOptions.PROOF_CHECK_MODE);
+		mShareClauses = (Boolean) parent.getOption(SolverOptions.PORTFOLIO_SHARE_CLAUSES);
+		mBaseLevel = baseLevel;
+		for (int i = 0; i < numWorkers; i++) {
+			final Map<String, Object> options = new HashMap<>();
+			options.put(SolverOptions.PORTFOLIO_THREADS, 1);
+			// Checked by the parent, since the proof may refer to clauses of other workers that are still running.
+			// The worker still needs the full proofs that the parent checks.
+			options.put(SolverOptions.PROOF_CHECK_MODE, false);
+			options.put(SolverOptions.PRODUCE_PROOFS, produceProofs);
+			options.put(SolverOptions.RANDOM_SEED, seed + i * 0x9e3779b9L);
+			final SMTInterpol worker = new SMTInterpol(parent, options, CopyMode.CURRENT_VALUE,
+					() -> mDone || parent.isTerminationRequested());
+			diversify(worker.getEngine(), i);
+			for (final Term asserted : assertions) {
+				worker.assertTerm(asserted);
+			}
+			mWorkers[i] = worker;
+		}
+	}
+
+	/**
+	 * Get the assertion stack level of the parent when the portfolio was created. The portfolio cannot follow a pop
+	 * below this level.
+	 */
+	int getBaseLevel() {
+		return mBaseLevel;
+	}
+
+	/**
+	 * Assert a term into all workers.
+	 *
+	 * @param term
+	 *            the term asserted by the parent.
+	 */
+	void assertTerm(final Term term) {
+		for (final SMTInterpol worker : mWorkers) {
+			worker.assertTerm(term);
+		}
+	}
+
+	/**
+	 * Push new assertion stack levels in all workers. The declarations are already scoped by the shared theory.
+	 *
+	 * @param levels
+	 *            the number of levels.
+	 */
+	void push(final int levels) {
+		for (final SMTInterpol worker : mWorkers) {
+			worker.pushAssertions(levels);
+		}
+	}
+
+	/**
+	 * Pop assertion stack levels in all workers. The declarations are already scoped by the shared theory.
+	 *
+	 * @param levels
+	 *            the number of levels.
+	 */
+	void pop(final int levels) {
+		for (final SMTInterpol worker : mWorkers) {
+			worker.popAssertions(levels);
+		}
+	}
+
+	/**
+	 * Set the search parameters of a worker. The first worker keeps the default configuration.
+	 *
+	 * @param engine
+	 *            the engine of the worker.
+	 * @param index
+	 *            the index of the worker.
+	 */
+	private static void diversify(final DPLLEngine engine, final int index) {
+		if (index == 0) {
+			return;
+		}
+		engine.setRestartStrategy(RESTART_STRATEGIES[index % RESTART_STRATEGIES.length]);
+		engine.setRestartFactor(RESTART_FACTORS[index % RESTART_FACTORS.length]);
+		engine.setInvertInitialPhase(index % 2 == 1);
+		engine.setTargetPhases(index % 2 == 0);
+		engine.setDecisionHeuristic(DECISION_HEURISTICS[index % DECISION_HEURISTICS.length]);
+		engine.setRandomSplitFrequency(Config.RANDOM_SPLIT_FREQ << Math.min(index, 10));
+	}
+
+	/**
+	 * Run all workers in parallel and return the first definite result.
+	 *
+	 * @param assumptions
+	 *            the assumptions for the check.
+	 * @return the result of the winning worker, or unknown if no worker could decide the problem.
+	 */
+	LBool checkSat(final Term[] assumptions) {
+		mWinner = -1;
+		mReasonUnknown = ReasonUnknown.INCOMPLETE;
+		// A fresh exchange drops the clauses of the previous check, which may belong to popped scopes.
+		final ClauseExchange exchange = mShareClauses ? new ClauseExchange() : null;
+		for (int i = 0; i < mWorkers.length; i++) {
+			if (exchange != null) {
+				mWorkers[i].getEngine().setClauseExchange(exchange.connect(i, mWorkers[i].getClausifier()));
+			}
+			mResults[i] = LBool.UNKNOWN;
+		}
+		final ExecutorService executor = Executors.newFixedThreadPool(mWorkers.length);
+		final CompletionService<Integer> completion = new ExecutorCompletionService<>(executor);
+		mParent.getTheory().setConcurrentAccess(true);
+		try {
+			for (int i = 0; i < mWorkers.length; i++) {
+				final int index = i;
+				completion.submit(() -> {
+					final long start = System.nanoTime();
+					try {
+						mResults[index] = mWorkers[index].checkSatAssuming(assumptions);
+					} finally {
+						mTimes[index] = System.nanoTime() - start;
+					}
+					return index;
+				});
+			}
+			for (int pending = mWorkers.length; pending > 0; pending--) {
+				final Future<Integer> finished = completion.take();
+				try {
+					final int index = finished.get();
+					if (mWinner == -1 && mResults[index] != LBool.UNKNOWN) {
+						mWinner = index;
+						mDone = true;
+						mLogger.info("Portfolio worker %d won with %s", index, mResults[index]);
+					}
+				} catch (final ExecutionException eWorker) {
+					mLogger.warn("Portfolio worker failed: %s", eWorker.getCause());
+				}
+			}
+		} catch (final InterruptedException eInterrupt) {
+			mDone = true;
+			Thread.currentThread().interrupt();
+			mReasonUnknown = ReasonUnknown.CANCELLED;
+		} finally {
+			executor.shutdown();
+			awaitTermination(executor);
+			mParent.getTheory().setConcurrentAccess(false);
+		}
+		for (int i = 0; i < mWorkers.length; i++) {
+			mStatistics[i] = mWorkers[i].getInfo(":all-statistics");
+		}
+		if (mWinner == -1 && mReasonUnknown != ReasonUnknown.CANCELLED
+				&& mWorkers[0].getInfo(":status") == LBool.UNKNOWN) {
+			mReasonUnknown = (ReasonUnknown) mWorkers[0].getInfo(":reason-unknown");
+		}
+		resumeLosers();
+		return mWinner == -1 ? LBool.UNKNOWN : mResults[mWinner];
+	}
+
+	/**
+	 * Withdraw the cancellation of the workers that did not win the last check. The workers poll the termination
+	 * request while they clausify the next assertions, and their engines keep a cancellation until the next pop.
+	 */
+	private void resumeLosers() {
+		mDone = false;
+		for (final SMTInterpol worker : mWorkers) {
+			final DPLLEngine engine = worker.getEngine();
+			if (engine.getCompleteness() == DPLLEngine.INCOMPLETE_CANCELLED) {
+				engine.setCompleteness(DPLLEngine.COMPLETE);
+			}
+		}
+	}
+
+	/**
+	 * Wait until all threads of a shut down executor have stopped. The workers stop soon after a winner was found or
+	 * the portfolio was cancelled. An interrupt of the waiting thread is kept for the caller.
+	 *
+	 * @param executor
+	 *            the executor running the workers.
+	 */
+	static void awaitTermination(final ExecutorService executor) {
+		boolean interrupted = false;
+		while (!executor.isTerminated()) {
+			try {
+				executor.awaitTermination(1, TimeUnit.SECONDS);
+			} catch (final InterruptedException eInterrupt) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Get the worker that decided the last check.
+	 *
+	 * @return the winning worker or null if no worker decided the problem.
+	 */
+	SMTInterpol getWinner() {
+		return mWinner == -1 ? null : mWorkers[mWinner];
+	}
+
+	/**
+	 * Get the reason why the portfolio could not decide the problem.
+	 */
+	ReasonUnknown getReasonUnknown() {
+		return mReasonUnknown;
+	}
+
+	/**
+	 * Get the statistics of all workers of the last check.
+	 *
+	 * @return the statistics in the format used by <code>:all-statistics</code>.
+	 */
+	Object getStatistics() {
+		final Object[] workers = new Object[mWorkers.length];
+		for (int i = 0; i < mWorkers.length; i++) {
+			workers[i] = new Object[] { ":Worker" + i,
+				new Object[][] { { "Result", mResults[i].toString() }, { "Time", mTimes[i] },
+					{ "Statistics", mStatistics[i] } } };
+		}
+		return new Object[] { ":Portfolio",
+			new Object[][] { { "Workers", mWorkers.length }, { "Winner", mWinner }, { "Details", workers } } };
+	}
+}
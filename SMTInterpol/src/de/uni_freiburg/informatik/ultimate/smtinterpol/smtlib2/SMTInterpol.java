@@ -21,6 +21,7 @@ package de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -66,6 +67,8 @@ import de.uni_freiburg.informatik.ultimate.smtinterpol.proof.ProofTermGenerator;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.proof.PropProofChecker;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.proof.SourceAnnotation;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.proof.UnsatCoreCollector;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.theory.linar.InfinitesimalNumber;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.theory.linar.LinArSolve;
 import de.uni_freiburg.informatik.ultimate.util.datastructures.ScopedArrayList;
 
 /**
@@ -130,6 +133,16 @@ public class SMTInterpol extends NoopScript {
 		abstract boolean check(DPLLEngine engine);
 	}
 
+	/**
+	 * The modes for the optimization of several objectives.
+	 */
+	public static enum OptimizationPriority {
+		/** Optimize the objectives in the order they were given. */
+		LEX,
+		/** Return a new Pareto optimal point on every check-sat. */
+		PARETO
+	}
+
 	private static class SMTInterpolSetup extends Theory.SolverSetup {
 		private final int mProofMode;
 
@@ -229,6 +242,25 @@ public class SMTInterpol extends NoopScript {
 	private long mNextQuickCheck = 1;
 	private long mNumAsserts = 0;
 
+	/**
+	 * The portfolio whose workers follow the assertion stack, or null if there is none. It is created by the first
+	 * check-sat in portfolio mode and dropped when an option changes or its assertions are popped.
+	 */
+	private PortfolioSolver mPortfolio = null;
+	/**
+	 * The cube and conquer solver used for the last check-sat, or null if the last check did not split into cubes.
+	 */
+	private CubeSolver mCubeSolver = null;
+	/**
+	 * The portfolio worker that decided the last check-sat. It answers all queries about the result of this check
+	 * until the assertion stack is modified.
+	 */
+	private SMTInterpol mPortfolioWinner = null;
+	/**
+	 * The objectives of the assertion stack. A check-sat optimizes them if there are any.
+	 */
+	private Optimizer mOptimizer = null;
+
 	/**
 	 * Delta debugger friendly version. Exits with following codes: model-check-mode fails: 1 interpolant-check-mode
 	 * fails: 2 exception during check-sat: 3 command that needed sat after last check got unsat: 4 command that needed
@@ -351,6 +383,29 @@ public class SMTInterpol extends NoopScript {
 	 *            What to do when copying existing options.
 	 */
 	public SMTInterpol(final SMTInterpol other, final Map<String, Object> options, final OptionMap.CopyMode mode) {
+		this(other, options, mode, other.mCancel);
+	}
+
+	/**
+	 * Copy the current context with a different termination request. This is used by the portfolio mode to cancel
+	 * the remaining workers once one worker decided the problem.
+	 *
+	 * @param other
+	 *            The context to clone.
+	 * @param options
+	 *            The options to set before setting the logic.
+	 * @param mode
+	 *            What to do when copying existing options.
+	 * @param cancel
+	 *            User termination request to poll during checks.
+	 */
+	SMTInterpol(final SMTInterpol other, final Map<String, Object> options, final OptionMap.CopyMode mode,
+			final TerminationRequest cancel) {
+		this(other, options, mode, new TimeoutHandler(cancel));
+	}
+
+	private SMTInterpol(final SMTInterpol other, final Map<String, Object> options, final OptionMap.CopyMode mode,
+			final TimeoutHandler cancel) {
 		super(other.getTheory());
 		mLogger = other.mLogger;
 		mOptions = other.mOptions.copy(mode);
@@ -360,7 +415,7 @@ public class SMTInterpol extends NoopScript {
 				setOption(me.getKey(), me.getValue());
 			}
 		}
-		mCancel = other.mCancel;
+		mCancel = cancel;
 		setupClausifier(getTheory().getLogic());
 	}
 
@@ -373,6 +428,10 @@ public class SMTInterpol extends NoopScript {
 		super.reset();
 		mEngine = null;
 		mModel = null;
+		mPortfolio = null;
+		mCubeSolver = null;
+		mPortfolioWinner = null;
+		mOptimizer = null;
 		mAssertionStackModified = true;
 		if (mAssertions != null) {
 			mAssertions.clear();
@@ -385,6 +444,7 @@ public class SMTInterpol extends NoopScript {
 	@Override
 	public final void resetAssertions() {
 		super.resetAssertions();
+		mPortfolio = null;
 		mAssertionStackModified = true;
 		if (mAssertions != null) {
 			mAssertions.clear();
@@ -393,13 +453,28 @@ public class SMTInterpol extends NoopScript {
 	}
 
 	@Override
-	public void push(int n) throws SMTLIBException {
+	public void push(final int n) throws SMTLIBException {
 		super.push(n);
+		pushAssertions(n);
+		if (mPortfolio != null) {
+			mPortfolio.push(n);
+		}
+	}
+
+	/**
+	 * Push levels on the assertion stack of the solver without pushing the declarations of the theory. This is used for
+	 * portfolio workers that share the theory of their parent.
+	 *
+	 * @param n
+	 *            the number of levels.
+	 */
+	void pushAssertions(int n) {
 		modifyAssertionStack();
 		while (n-- > 0) {
 			if (mAssertions != null) {
 				mAssertions.beginScope();
 			}
+			mOptimizer.push();
 			mClausifier.push();
 		}
 	}
@@ -414,12 +489,31 @@ public class SMTInterpol extends NoopScript {
 			}
 			throw eBug;
 		}
+		popAssertions(n);
+		if (mPortfolio != null) {
+			if (mStackLevel < mPortfolio.getBaseLevel()) {
+				mPortfolio = null;
+			} else {
+				mPortfolio.pop(n);
+			}
+		}
+	}
+
+	/**
+	 * Pop levels from the assertion stack of the solver without popping the declarations of the theory. This is used
+	 * for portfolio workers that share the theory of their parent.
+	 *
+	 * @param n
+	 *            the number of levels.
+	 */
+	void popAssertions(final int n) {
 		modifyAssertionStack();
 		int i = n;
 		while (i-- > 0) {
 			if (mAssertions != null) {
 				mAssertions.endScope();
 			}
+			mOptimizer.pop();
 		}
 		mClausifier.pop(n);
 	}
@@ -434,9 +528,15 @@ public class SMTInterpol extends NoopScript {
 		if (mEngine == null) {
 			throw new SMTLIBException("No logic set!");
 		}
+		if (mOptimizer.hasObjectives() && !mOptimizer.isRunning()) {
+			return checkSatOptimize(assumptions);
+		}
 		mModel = null;
+		mCubeSolver = null;
+		mPortfolioWinner = null;
 		mAssertionStackModified = false;
 		mEngine.clearAssumptions();
+		Literal[] assumptionlits = new Literal[0];
 		if (assumptions != null && assumptions.length != 0) {
 			if (Config.STRONG_USAGE_CHECKS) {
 				// Check that every literal is a Boolean constant or its negation
@@ -459,7 +559,7 @@ public class SMTInterpol extends NoopScript {
 			if (!mEngine.quickCheck()) {
 				return LBool.UNSAT;
 			}
-			final Literal[] assumptionlits = new Literal[assumptions.length];
+			assumptionlits = new Literal[assumptions.length];
 			for (int i = 0; i < assumptions.length; ++i) {
 				assumptionlits[i] = mClausifier.getCreateLiteral(assumptions[i], new SourceAnnotation("", null));
 			}
@@ -473,7 +573,11 @@ public class SMTInterpol extends NoopScript {
 		LBool result = LBool.UNKNOWN;
 		mReasonUnknown = ReasonUnknown.INCOMPLETE;
 		mEngine.setRandomSeed(mSolverOptions.getRandomSeed());
-		if (mSolverOptions.getCheckType().check(mEngine)) {
+		if (isPortfolioActive()) {
+			result = checkSatPortfolio(assumptions);
+		} else if (isCubeModeActive()) {
+			result = checkSatCubes(assumptions == null ? new Term[0] : assumptions, assumptionlits);
+		} else if (mSolverOptions.getCheckType().check(mEngine)) {
 			if (mEngine.hasModel()) {
 				result = LBool.SAT;
 				if (mSolverOptions.isModelCheckModeActive()) {
@@ -532,16 +636,7 @@ public class SMTInterpol extends NoopScript {
 			}
 		} else {
 			result = LBool.UNSAT;
-			if (mSolverOptions.isProofCheckModeActive()) {
-				final ProofChecker proofchecker = new ProofChecker(this, getLogger());
-				if (!proofchecker.check(getProof())) {
-					if (mDDFriendly) {
-						System.exit(2);
-					}
-					mLogger.fatal("Proof-checker did not verify");
-					throw new SMTLIBException("Proof-check failed");
-				}
-			}
+			checkProof();
 		}
 		mStatus = result;
 		if (Config.CHECK_STATUS_SET && isStatusSet() && mReasonUnknown != ReasonUnknown.MEMOUT
@@ -556,6 +651,159 @@ public class SMTInterpol extends NoopScript {
 		return result;
 	}
 
+	/**
+	 * Optimize the objectives in this check-sat. The optimizer calls check-sat on internal assertion stack levels; after
+	 * it popped them, its best model becomes the model of this check.
+	 */
+	private LBool checkSatOptimize(final Term[] assumptions) {
+		final LBool result = mOptimizer.checkSat(assumptions, mSolverOptions.getOptimizationPriority());
+		if (result == LBool.SAT) {
+			mModel = mOptimizer.getBestModel();
+			mPortfolioWinner = null;
+			mAssertionStackModified = false;
+		}
+		mStatus = result;
+		return result;
+	}
+
+	/**
+	 * Compute the maximum of an arithmetic term under the current assignment of the engine. This must only be called
+	 * directly after a satisfiable check-sat.
+	 *
+	 * @return the maximum, POSITIVE_INFINITY if the term is unbounded, or null if it cannot be computed.
+	 */
+	InfinitesimalNumber maximizeObjective(final Term term) {
+		final LinArSolve laSolver = mClausifier.getLASolver();
+		if (laSolver == null || mPortfolioWinner != null || mStatus != LBool.SAT) {
+			return null;
+		}
+		return laSolver.maximize(mClausifier, mClausifier.createAffineTerm(term));
+	}
+
+	/**
+	 * Add an objective that is minimized by the following check-sat commands. The objective is removed when the current
+	 * assertion stack level is popped. The optimum is the value of the term in the model of the check-sat. A check-sat
+	 * with objectives runs a sequence of internal checks, one for every improvement of an objective.
+	 *
+	 * @param term
+	 *            the Int or Real term to minimize.
+	 */
+	@Override
+	public void minimize(final Term term) throws SMTLIBException {
+		addObjective(term, false);
+	}
+
+	/**
+	 * Add an objective that is maximized by the following check-sat commands. The objective is removed when the current
+	 * assertion stack level is popped. The optimum is the value of the term in the model of the check-sat. A check-sat
+	 * with objectives runs a sequence of internal checks, one for every improvement of an objective.
+	 *
+	 * @param term
+	 *            the Int or Real term to maximize.
+	 */
+	@Override
+	public void maximize(final Term term) throws SMTLIBException {
+		addObjective(term, true);
+	}
+
+	private void addObjective(final Term term, final boolean maximize) {
+		if (mEngine == null) {
+			throw new SMTLIBException("No logic set!");
+		}
+		if (term.getSort().getTheory() != getTheory()) {
+			throw new SMTLIBException("Objective created with incompatible theory");
+		}
+		modifyAssertionStack();
+		mOptimizer.addObjective(term, maximize);
+	}
+
+	/**
+	 * Check if the current check-sat should be run by a portfolio of solvers. The portfolio is only used for full
+	 * checks on quantifier-free logics, since quantifier instantiation would clausify shared terms concurrently.
+	 */
+	private boolean isPortfolioActive() {
+		return mSolverOptions.getPortfolioThreads() > 1 && mAssertions != null
+				&& mSolverOptions.getCheckType() == CheckType.FULL && !getTheory().getLogic().isQuantified();
+	}
+
+	private LBool checkSatPortfolio(final Term[] assumptions) {
+		if (mPortfolio == null) {
+			mPortfolio = new PortfolioSolver(this, mSolverOptions.getPortfolioThreads(), mAssertions, mStackLevel);
+		}
+		final LBool result = mPortfolio.checkSat(assumptions == null ? new Term[0] : assumptions);
+		mPortfolioWinner = mPortfolio.getWinner();
+		if (result == LBool.UNKNOWN) {
+			mReasonUnknown = mPortfolio.getReasonUnknown();
+		} else if (result == LBool.UNSAT) {
+			// The proof of the winner may contain clauses imported from the other workers. It is only checked here
+			// when all workers have stopped.
+			checkProof();
+		}
+		return result;
+	}
+
+	/**
+	 * Check if the current check-sat should be split into cubes that are solved in parallel. This has the same
+	 * restrictions as the portfolio mode. Additionally, interpolation is not supported since the combined proof
+	 * contains literals of different engines.
+	 */
+	private boolean isCubeModeActive() {
+		return mSolverOptions.getCubeThreads() > 1 && mAssertions != null
+				&& mSolverOptions.getCheckType() == CheckType.FULL && !getTheory().getLogic().isQuantified()
+				&& !mSolverOptions.isProduceInterpolants();
+	}
+
+	private LBool checkSatCubes(final Term[] assumptions, final Literal[] assumptionlits) {
+		if (!mEngine.quickCheck()) {
+			checkProof();
+			return LBool.UNSAT;
+		}
+		mCubeSolver = new CubeSolver(this, mSolverOptions.getCubeThreads(), mSolverOptions.getCubeDepth(),
+				mAssertions, assumptions, assumptionlits);
+		final LBool result = mCubeSolver.checkSat();
+		if (result == LBool.SAT) {
+			mPortfolioWinner = mCubeSolver.getWinner();
+		} else if (result == LBool.UNSAT) {
+			checkProof();
+		} else {
+			mReasonUnknown = mCubeSolver.getReasonUnknown();
+		}
+		return result;
+	}
+
+	/**
+	 * Check the current context under the given literals of the engine. This is used by the cube and conquer mode,
+	 * which creates the literals of the assumptions and cubes before the workers run in parallel.
+	 *
+	 * @param literals
+	 *            the literals to assume.
+	 * @return the result of the check.
+	 */
+	LBool checkSatLiterals(final Literal[] literals) {
+		mModel = null;
+		mAssertionStackModified = false;
+		mEngine.clearAssumptions();
+		LBool result = LBool.UNSAT;
+		if (mEngine.quickCheck() && mEngine.assume(literals) && mEngine.solve()) {
+			result = mEngine.hasModel() ? LBool.SAT : LBool.UNKNOWN;
+		}
+		mStatus = result;
+		return result;
+	}
+
+	private void checkProof() {
+		if (mSolverOptions.isProofCheckModeActive()) {
+			final ProofChecker proofchecker = new ProofChecker(this, getLogger());
+			if (!proofchecker.check(getProof())) {
+				if (mDDFriendly) {
+					System.exit(2);
+				}
+				mLogger.fatal("Proof-checker did not verify");
+				throw new SMTLIBException("Proof-check failed");
+			}
+		}
+	}
+
 	private final boolean isStatusSet() {
 		return mStatusSet != null && !mStatusSet.equals("unknown");
 	}
@@ -599,14 +847,39 @@ public class SMTInterpol extends NoopScript {
 					getBooleanOption(SolverOptions.PROPAGATE_UNKNOWN_TERMS),
 					getBooleanOption(SolverOptions.PROPAGATE_UNKNOWN_AUX));
 			mClausifier.setLogic(logic);
+			mClausifier.setEqualityElimination(
+					mSolverOptions.isEqualityElimination() && !mSolverOptions.isProduceInterpolants());
+			mOptimizer = new Optimizer(this);
+			if (mClausifier.getLASolver() != null) {
+				mClausifier.getLASolver().setSimplexStrategy(mSolverOptions.getSimplexStrategy());
+				mClausifier.getLASolver().setTheoryCombination(mSolverOptions.getTheoryCombination());
+				mClausifier.getLASolver().setBranchingPolicy(mSolverOptions.getBranchingPolicy());
+				mClausifier.getLASolver().setGomoryCuts(mSolverOptions.isGomoryCuts());
+			}
+			if (mClausifier.getQuantifierTheory() != null) {
+				mClausifier.getQuantifierTheory().setFinalCheckBudget(mSolverOptions.getFinalCheckBudget());
+				mClausifier.getQuantifierTheory().setMaxInstanceGeneration(mSolverOptions.getMaxInstanceGeneration());
+				mClausifier.getQuantifierTheory().setInstanceGCInterval(mSolverOptions.getInstanceGCInterval());
+				mClausifier.getQuantifierTheory()
+						.setIncrementalEMatching(getBooleanOption(SolverOptions.E_MATCHING_INCREMENTAL));
+				mClausifier.getQuantifierTheory()
+						.setModelBasedInstantiation(getBooleanOption(SolverOptions.MBQI));
+			}
 			final boolean produceAssignment = getBooleanOption(":produce-assignments");
 			mClausifier.setAssignmentProduction(produceAssignment);
 			mEngine.setProduceAssignments(produceAssignment);
 			mEngine.setRandomSeed(mSolverOptions.getRandomSeed());
+			mEngine.setRestartStrategy(mSolverOptions.getRestartStrategy());
+			mEngine.setReuseTrail(mSolverOptions.isRestartReuseTrail());
+			mEngine.setTargetPhases(mSolverOptions.isPhaseTarget());
+			mEngine.setRephaseInterval(mSolverOptions.getRephaseInterval());
+			mEngine.setInprocessingInterval(mSolverOptions.getInprocessingInterval());
+			mEngine.setDecisionHeuristic(mSolverOptions.getDecisionHeuristic());
 			if (getBooleanOption(":interactive-mode") || mSolverOptions.isInterpolantCheckModeActive()
 					|| mSolverOptions.isProofCheckModeActive()
 					|| mSolverOptions.isModelCheckModeActive() || getBooleanOption(":unsat-core-check-mode")
-					|| getBooleanOption(":unsat-assumptions-check-mode")) {
+					|| getBooleanOption(":unsat-assumptions-check-mode") || mSolverOptions.getPortfolioThreads() > 1
+					|| mSolverOptions.getCubeThreads() > 1) {
 				mAssertions = new ScopedArrayList<>();
 			}
 			mOptions.setOnline();
@@ -645,12 +918,18 @@ public class SMTInterpol extends NoopScript {
 				if (mAssertions != null) {
 					mAssertions.add(term);
 				}
+				if (mPortfolio != null) {
+					mPortfolio.assertTerm(term);
+				}
 				return LBool.UNSAT;
 			}
 			mClausifier.addFormula(term);
 			if (mAssertions != null) {
 				mAssertions.add(term);
 			}
+			if (mPortfolio != null) {
+				mPortfolio.assertTerm(term);
+			}
 			if (mNumAsserts++ >= mNextQuickCheck) {
 				mNextQuickCheck *= 2;
 				if (!mEngine.quickCheck()) {
@@ -695,6 +974,9 @@ public class SMTInterpol extends NoopScript {
 			throw new SMTLIBException("Set option :produce-assignments to true to generate assignments!");
 		}
 		checkAssertionStackModified();
+		if (mPortfolioWinner != null) {
+			return mPortfolioWinner.getAssignment();
+		}
 		return mEngine.getAssignments();
 	}
 
@@ -713,7 +995,26 @@ public class SMTInterpol extends NoopScript {
 			return AUTHORS;
 		}
 		if (":all-statistics".equals(info)) {
-			return mEngine == null ? new Object[0] : mEngine.getStatistics();
+			if (mEngine == null) {
+				return new Object[0];
+			}
+			final Object[] stats = (Object[]) mEngine.getStatistics();
+			Object[] res = stats;
+			if (mPortfolio != null || mCubeSolver != null) {
+				res = Arrays.copyOf(res, res.length + 1);
+				res[res.length - 1] = mPortfolio != null ? mPortfolio.getStatistics() : mCubeSolver.getStatistics();
+			}
+			if (mOptimizer.hasObjectives()) {
+				res = Arrays.copyOf(res, res.length + 1);
+				res[res.length - 1] = mOptimizer.getStatistics();
+			}
+			return res;
+		}
+		if (":objectives".equals(info)) {
+			if (mEngine == null) {
+				throw new SMTLIBException("No logic set!");
+			}
+			return mOptimizer.getObjectiveValues();
 		}
 		if (":status-set".equals(info)) {
 			return mStatusSet;
@@ -771,6 +1072,9 @@ public class SMTInterpol extends NoopScript {
 					+ "Set option :produce-proofs to true to get complete proofs.");
 		}
 		checkAssertionStackModified();
+		if (mPortfolioWinner != null) {
+			return mPortfolioWinner.getProof();
+		}
 		final Clause unsat = retrieveProof();
 		if (Config.CHECK_PROP_PROOF) {
 			final PropProofChecker ppc = new PropProofChecker();
@@ -901,6 +1205,9 @@ public class SMTInterpol extends NoopScript {
 			throw new SMTLIBException("Set option :produce-unsat-cores to true before using get-unsat-cores");
 		}
 		checkAssertionStackModified();
+		if (mPortfolioWinner != null) {
+			return mPortfolioWinner.getUnsatCore();
+		}
 		final Clause unsat = mEngine.getProof();
 		if (unsat == null) {
 			throw new SMTLIBException("Logical context not inconsistent!");
@@ -954,6 +1261,9 @@ public class SMTInterpol extends NoopScript {
 					"Set option :produce-unsat-assumptions to true before using get-unsat-assumptions");
 		}
 		checkAssertionStackModified();
+		if (mPortfolioWinner != null) {
+			return mPortfolioWinner.getUnsatAssumptions();
+		}
 		if (!mEngine.inconsistent()) {
 			throw new SMTLIBException("Logical context not inconsistent!");
 		}
@@ -1025,6 +1335,8 @@ public class SMTInterpol extends NoopScript {
 	@Override
 	public void setOption(final String opt, final Object value) throws UnsupportedOperationException, SMTLIBException {
 		mOptions.set(opt, value);
+		// The workers of the portfolio copied the options when they were created.
+		mPortfolio = null;
 	}
 
 	@Override
@@ -1103,12 +1415,20 @@ public class SMTInterpol extends NoopScript {
 
 	private void modifyAssertionStack() {
 		mAssertionStackModified = true;
+		mOptimizer.assertionStackModified();
 		mModel = null;
+		mPortfolioWinner = null;
 		mEngine.clearAssumptions();
 	}
 
 	private void buildModel() throws SMTLIBException {
 		checkAssertionStackModified();
+		if (mPortfolioWinner != null) {
+			if (mModel == null) {
+				mModel = (de.uni_freiburg.informatik.ultimate.smtinterpol.model.Model) mPortfolioWinner.getModel();
+			}
+			return;
+		}
 		if (mEngine.inconsistent()) {
 			if (mDDFriendly) {
 				System.exit(4); // NOCHECKSTYLE
@@ -1138,6 +1458,9 @@ public class SMTInterpol extends NoopScript {
 	 */
 	@SuppressWarnings("unused")
 	public Clause retrieveProof() throws SMTLIBException {
+		if (mPortfolioWinner != null) {
+			return mPortfolioWinner.retrieveProof();
+		}
 		final Clause unsat = mEngine.getProof();
 		if (unsat == null) {
 			if (mDDFriendly) {
@@ -1162,6 +1485,9 @@ public class SMTInterpol extends NoopScript {
 	 */
 	public Term[] getSatisfiedLiterals() throws SMTLIBException {
 		checkAssertionStackModified();
+		if (mPortfolioWinner != null) {
+			return mPortfolioWinner.getSatisfiedLiterals();
+		}
 		return mEngine.getSatisfiedLiterals();
 	}
 
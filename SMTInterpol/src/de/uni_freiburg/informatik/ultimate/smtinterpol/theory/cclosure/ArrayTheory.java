@@ -19,6 +19,7 @@
 package de.uni_freiburg.informatik.ultimate.smtinterpol.theory.cclosure;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -65,6 +66,13 @@ import de.uni_freiburg.informatik.ultimate.util.datastructures.ScopedLinkedHashS
  * term with the index of the store term.
  * </p>
  *
+ * <p>
+ * The weak equivalence graph is kept between checkpoints. When the congruence closure merged or unmerged some classes,
+ * only the weak equivalence classes are rebuilt that contain an array, a select index, or a store index whose
+ * representative changed. The lemmas found while building a weak equivalence class are kept with the class, even if
+ * their equality currently holds, since it may no longer hold after backtracking.
+ * </p>
+ *
  * @author Jochen Hoenicke
  */
 public class ArrayTheory implements ITheory {
@@ -170,6 +178,16 @@ public class ArrayTheory implements ITheory {
 
 		CCAppTerm mConstTerm;
 
+		/**
+		 * The array terms whose representative was mTerm when this node was created.
+		 */
+		final ArrayList<CCTerm> mArrayTerms = new ArrayList<>();
+
+		/**
+		 * True if the weak equivalence class of this node was removed from the graph and needs to be rebuilt.
+		 */
+		boolean mStale;
+
 		/**
 		 * Create a new array term corresponding to a ccterm.
 		 *
@@ -415,9 +433,7 @@ public class ArrayTheory implements ITheory {
 				} else {
 					final CCTerm const1 = getValueFromConst(mConstTerm);
 					final CCTerm const2 = getValueFromConst(storeNode.mConstTerm);
-					if (const1.getRepresentative() != const2.getRepresentative()) {
-						propLemmas.add(new ArrayLemma(RuleKind.CONST_WEAKEQ, const1, const2));
-					}
+					propLemmas.add(new ArrayLemma(RuleKind.CONST_WEAKEQ, const1, const2));
 				}
 			} else if (storeNode.mConstTerm != null) {
 				mergeConstSelects.putAll(mSelects);
@@ -439,10 +455,8 @@ public class ArrayTheory implements ITheory {
 						storeNode.mSelects.put(index, select);
 					} else {
 						mergeConstSelects.remove(index);
-						if (select.getRepresentative() != otherSelect.getRepresentative()) {
-							// add propagated equality
-							propLemmas.add(new ArrayLemma(RuleKind.READ_OVER_WEAKEQ, select, otherSelect));
-						}
+						// add propagated equality
+						propLemmas.add(new ArrayLemma(RuleKind.READ_OVER_WEAKEQ, select, otherSelect));
 					}
 				}
 			}
@@ -457,9 +471,7 @@ public class ArrayTheory implements ITheory {
 					if (constNode.getWeakIRepresentative(index) == storeNode) {
 						// do not keep select, we will merge it with the constant value
 						storeNode.mSelects.remove(index);
-						if (select.getRepresentative() != const1.getRepresentative()) {
-							propLemmas.add(new ArrayLemma(RuleKind.READ_CONST_WEAKEQ, select, const1));
-						}
+						propLemmas.add(new ArrayLemma(RuleKind.READ_CONST_WEAKEQ, select, const1));
 					}
 				}
 			}
@@ -494,9 +506,7 @@ public class ArrayTheory implements ITheory {
 				if (otherSelect == null) {
 					storeNode.mSelects.put(storeIndex, select);
 				} else {
-					if (select.getRepresentative() != otherSelect.getRepresentative()) {
-						propEqualities.add(new ArrayLemma(RuleKind.READ_OVER_WEAKEQ, select, otherSelect));
-					}
+					propEqualities.add(new ArrayLemma(RuleKind.READ_OVER_WEAKEQ, select, otherSelect));
 				}
 				mSelects = Collections.emptyMap();
 			}
@@ -508,7 +518,7 @@ public class ArrayTheory implements ITheory {
 					// do not keep select, we will merge it with the constant value
 					final CCAppTerm select = storeNode.mSelects.remove(storeIndex);
 					final CCTerm const1 = getValueFromConst(storeNode.mConstTerm);
-					if (select != null && select.getRepresentative() != const1.getRepresentative()) {
+					if (select != null) {
 						propEqualities.add(new ArrayLemma(RuleKind.READ_CONST_WEAKEQ, select, const1));
 					}
 				}
@@ -582,10 +592,30 @@ public class ArrayTheory implements ITheory {
 		}
 	}
 
+	/**
+	 * The array terms whose weak equivalence class depends on the representative of an index term, i.e., the stores
+	 * on that index and the arrays of the selects on that index.
+	 */
+	private static class IndexUsers {
+		/**
+		 * The representative of the index term when the weak equivalence classes of the arrays were built.
+		 */
+		CCTerm mRep;
+		final ArrayList<CCTerm> mArrays = new ArrayList<>();
+
+		public IndexUsers(final CCTerm rep) {
+			mRep = rep;
+		}
+	}
+
 	private static class ArrayLemma {
 		RuleKind mRule;
 		SymmetricPair<CCTerm> mPropagatedEq;
 		Set<CCEquality> mUndecidedLits;
+		/**
+		 * A node of the weak equivalence class in which this lemma was found.
+		 */
+		ArrayNode mNode;
 
 		public ArrayLemma(final RuleKind rule, final CCTerm lhs, final CCTerm rhs) {
 			mRule = rule;
@@ -629,17 +659,38 @@ public class ArrayTheory implements ITheory {
 	private final ScopedLinkedHashSet<CCAppTerm> mConsts = new ScopedLinkedHashSet<>();
 
 	private final ArrayDeque<ArrayLemma> mPropClauses = new ArrayDeque<>();
+	/**
+	 * All lemmas found while building the current weak equivalence graph, including those whose equality holds.
+	 */
+	private final ArrayList<ArrayLemma> mWeakLemmas = new ArrayList<>();
+	/**
+	 * True if mPropClauses contains the lemmas of the current weak equivalence graph.
+	 */
+	private boolean mPropClausesValid;
 
 	private final LogProxy mLogger;
 
 	/// Cache for the congruence roots;
 	Map<CCTerm, ArrayNode> mCongRoots = null;
+	/// The array node for every array term.
+	private HashMap<CCTerm, ArrayNode> mArrayNodes;
+	/// For every index term of a store or select the array terms whose weak equivalence class depends on it.
+	private HashMap<CCTerm, IndexUsers> mIndexUsers;
+	/// The number of array terms and CC terms that are in the weak equivalence graph.
+	private int mNumSyncedArrays, mNumSyncedTerms;
+	/// The merge count and merge depth of the congruence closure when the weak equivalence graph was updated.
+	private long mSyncedMergeCount;
+	private int mSyncedMergeDepth;
+	/// If true, every incremental update of the weak equivalence graph is compared with a full rebuild (for tests).
+	boolean mCheckWeakEqUpdates = false;
 	Map<ArrayNode, Map<CCTerm, Object>> mArrayModels = null;
 
 	// =============== STATISTICS ===============
 	private int mNumInstsSelect = 0;
 	private int mNumInstsEq = 0;
 	private int mNumBuildWeakEQ = 0;
+	private int mNumUpdateWeakEQ = 0;
+	private int mNumRebuiltArrays = 0;
 	private int mNumAddStores = 0;
 	private int mNumMerges = 0;
 	private int mNumModuloEdges = 0;
@@ -656,6 +707,7 @@ public class ArrayTheory implements ITheory {
 
 	@Override
 	public Clause startCheck() {
+		mCongRoots = null;
 		cleanCaches();
 		return null;
 	}
@@ -686,7 +738,7 @@ public class ArrayTheory implements ITheory {
 
 	@Override
 	public Clause checkpoint() {
-		if (mCongRoots == null && buildWeakEq()) {
+		if (!mPropClausesValid && updateWeakEq()) {
 			for (final ArrayLemma lemma : mPropClauses) {
 				if (lemma.mUndecidedLits.isEmpty()) {
 					return explainPropagation(lemma);
@@ -731,8 +783,8 @@ public class ArrayTheory implements ITheory {
 	@Override
 	public Clause getUnitClause(final Literal literal) {
 		assert literal instanceof CCEquality;
-		if (mCongRoots == null) {
-			buildWeakEq();
+		if (!mPropClausesValid) {
+			updateWeakEq();
 		}
 		for (final ArrayLemma lemma : mPropClauses) {
 			final Set<CCEquality> lits = lemma.mUndecidedLits;
@@ -785,8 +837,9 @@ public class ArrayTheory implements ITheory {
 	@Override
 	public void printStatistics(final LogProxy logger) {
 		if (logger.isInfoEnabled()) {
-			logger.info("Array: #Arrays: %d, #BuildWeakEQ: %d, #ModEdges: %d, " + "#addStores: %d, #merges: %d",
-					mArrays.size(), mNumBuildWeakEQ, mNumModuloEdges, mNumAddStores, mNumMerges);
+			logger.info("Array: #Arrays: %d, #BuildWeakEQ: %d, #UpdateWeakEQ: %d, #RebuiltArrays: %d, #ModEdges: %d, "
+					+ "#addStores: %d, #merges: %d", mArrays.size(), mNumBuildWeakEQ, mNumUpdateWeakEQ,
+					mNumRebuiltArrays, mNumModuloEdges, mNumAddStores, mNumMerges);
 			logger.info("Insts: ReadOverWeakEQ: %d, WeakeqExt: %d", mNumInstsSelect, mNumInstsEq);
 			logger.info("Time: BuildWeakEq: %.3f ms, BuildWeakEqi: %.3f ms", mTimeBuildWeakEq / 1e6,
 					mTimeBuildWeakEqi / 1e6);
@@ -829,6 +882,7 @@ public class ArrayTheory implements ITheory {
 	@Override
 	public Clause backtrackComplete() {
 		mPropClauses.clear();
+		mPropClausesValid = false;
 		return null;
 	}
 
@@ -856,12 +910,14 @@ public class ArrayTheory implements ITheory {
 		mStores.endScope();
 		mConsts.endScope();
 		mDiffs.endScope();
+		mCongRoots = null;
 	}
 
 	@Override
 	public Object[] getStatistics() {
 		return new Object[] { ":Array",
 				new Object[][] { { "NumArrays", mArrays.size() }, { "BuildWeakEQ", mNumBuildWeakEQ },
+						{ "UpdateWeakEQ", mNumUpdateWeakEQ }, { "RebuiltArrays", mNumRebuiltArrays },
 						{ "AddStores", mNumAddStores }, { "Merges", mNumMerges }, { "ModuloEdges", mNumModuloEdges },
 						{ "ReadOverWeakeq", mNumInstsSelect }, { "WeakeqExt", mNumInstsEq },
 						{ "Times",
@@ -1048,19 +1104,26 @@ public class ArrayTheory implements ITheory {
 		final CCTerm const1 = getValueFromConst(term);
 		final CCTerm rep = term.getRepresentative();
 		final ArrayNode node = mCongRoots.get(rep);
+		final int firstLemma = mWeakLemmas.size();
 		if (node.mConstTerm != null) {
 			final CCTerm const2 = getValueFromConst(node.mConstTerm);
-			if (const1.getRepresentative() != const2.getRepresentative()) {
-				mPropClauses.add(new ArrayLemma(RuleKind.CONST_WEAKEQ, const1, const2));
-			}
+			mWeakLemmas.add(new ArrayLemma(RuleKind.CONST_WEAKEQ, const1, const2));
 		} else {
 			node.mConstTerm = term;
 			for (final CCAppTerm select : node.mSelects.values()) {
-				if (select.getRepresentative() != const1.getRepresentative()) {
-					mPropClauses.add(new ArrayLemma(RuleKind.READ_CONST_WEAKEQ, select, const1));
-				}
+				mWeakLemmas.add(new ArrayLemma(RuleKind.READ_CONST_WEAKEQ, select, const1));
 			}
 		}
+		setLemmaNode(firstLemma, node);
+	}
+
+	/**
+	 * Remember the weak equivalence class in which the lemmas starting at the given position were found.
+	 */
+	private void setLemmaNode(final int firstLemma, final ArrayNode node) {
+		for (int i = firstLemma; i < mWeakLemmas.size(); i++) {
+			mWeakLemmas.get(i).mNode = node;
+		}
 	}
 
 	private void merge(final CCAppTerm store) {
@@ -1080,12 +1143,13 @@ public class ArrayTheory implements ITheory {
 		arrayNode.makeWeakRepresentative();
 		storeNode.makeWeakRepresentative();
 
+		final int firstLemma = mWeakLemmas.size();
 		if (arrayNode.mPrimaryEdge == null) {
 			if (mLogger.isDebugEnabled()) {
 				mLogger.debug("  PrimaryEdge");
 			}
 			// Combine the arrayNode and storeNode.
-			arrayNode.mergeWith(storeNode, store, mPropClauses);
+			arrayNode.mergeWith(storeNode, store, mWeakLemmas);
 		} else {
 			// This means that storeNode and arrayNode are weak equivalent.
 			// Otherwise arrayNode would have stayed its representative.
@@ -1106,11 +1170,12 @@ public class ArrayTheory implements ITheory {
 					if (mLogger.isDebugEnabled()) {
 						mLogger.debug("  SecondaryEdge: [" + index + "] " + node + " to " + storeNode);
 					}
-					node.mergeSecondary(storeNode, store, mPropClauses);
+					node.mergeSecondary(storeNode, store, mWeakLemmas);
 				}
 				node = node.mPrimaryEdge;
 			}
 		}
+		setLemmaNode(firstLemma, storeNode);
 	}
 
 	/**
@@ -1313,29 +1378,254 @@ public class ArrayTheory implements ITheory {
 		}
 	}
 
-	private boolean buildWeakEq() {
-		mNumBuildWeakEQ++;
+	/**
+	 * Bring the weak equivalence graph up to date with the congruence closure and collect the lemmas whose equality
+	 * does not hold.
+	 *
+	 * @return true if there are lemmas to propagate.
+	 */
+	private boolean updateWeakEq() {
 		final long startTime = System.nanoTime();
+		if (mCongRoots == null) {
+			buildWeakEq();
+		} else {
+			final boolean merged = mCClosure.getMergeCount() != mSyncedMergeCount
+					|| mCClosure.getStackDepth() != mSyncedMergeDepth;
+			if (merged || mNumSyncedArrays != mArrays.size() || mNumSyncedTerms != mCClosure.mAllTerms.size()) {
+				mNumUpdateWeakEQ++;
+				syncWeakEq(merged);
+				if (mCheckWeakEqUpdates) {
+					checkWeakEqUpdate();
+				}
+			}
+		}
+		mSyncedMergeCount = mCClosure.getMergeCount();
+		mSyncedMergeDepth = mCClosure.getStackDepth();
+
+		collectPropagatedLemmas();
+		createPropagatedClauses();
+		mPropClausesValid = true;
+
+		mTimeBuildWeakEq += (System.nanoTime() - startTime);
+		return !mPropClauses.isEmpty();
+	}
+
+	/**
+	 * Build the weak equivalence graph from scratch.
+	 */
+	private void buildWeakEq() {
+		mNumBuildWeakEQ++;
 		mCongRoots = new LinkedHashMap<>();
-		for (final CCTerm array : mArrays) {
+		mArrayNodes = new HashMap<>();
+		mIndexUsers = new HashMap<>();
+		mWeakLemmas.clear();
+		mNumSyncedArrays = mNumSyncedTerms = 0;
+		syncWeakEq(true);
+	}
+
+	/**
+	 * Collect the lemmas of the weak equivalence graph whose equality does not hold in mPropClauses.
+	 */
+	private void collectPropagatedLemmas() {
+		mPropClauses.clear();
+		for (final ArrayLemma lemma : mWeakLemmas) {
+			final SymmetricPair<CCTerm> eq = lemma.getEquality();
+			if (eq.getFirst().getRepresentative() != eq.getSecond().getRepresentative()) {
+				mPropClauses.add(lemma);
+			}
+		}
+	}
+
+	/**
+	 * Check that the incrementally updated weak equivalence graph has the same weak equivalence classes and
+	 * propagates the same equalities as a graph built from scratch. The lemmas may differ, since the order in which
+	 * the stores are merged is different, but they must imply the same congruence classes. The graph built from
+	 * scratch replaces the updated graph.
+	 */
+	private void checkWeakEqUpdate() {
+		collectPropagatedLemmas();
+		final Set<Set<CCTerm>> weakClasses = getWeakClasses();
+		final Set<Set<CCTerm>> propagatedClasses = getPropagatedClasses();
+		buildWeakEq();
+		collectPropagatedLemmas();
+		if (!weakClasses.equals(getWeakClasses())) {
+			throw new AssertionError("Weak equivalence classes differ after update");
+		}
+		if (!propagatedClasses.equals(getPropagatedClasses())) {
+			throw new AssertionError("Propagated equalities differ after update");
+		}
+	}
+
+	/**
+	 * Get the weak equivalence classes as sets of the representatives of their arrays.
+	 */
+	private Set<Set<CCTerm>> getWeakClasses() {
+		final HashMap<ArrayNode, Set<CCTerm>> classes = new HashMap<>();
+		for (final ArrayNode node : mCongRoots.values()) {
+			Set<CCTerm> weakClass = classes.get(node.getWeakRepresentative());
+			if (weakClass == null) {
+				weakClass = new HashSet<>();
+				classes.put(node.getWeakRepresentative(), weakClass);
+			}
+			weakClass.add(node.mTerm);
+		}
+		return new HashSet<>(classes.values());
+	}
+
+	/**
+	 * Get the classes of congruence class representatives that are merged by the propagated lemmas.
+	 */
+	private Set<Set<CCTerm>> getPropagatedClasses() {
+		final HashMap<CCTerm, Set<CCTerm>> classes = new HashMap<>();
+		for (final ArrayLemma lemma : mPropClauses) {
+			final SymmetricPair<CCTerm> eq = lemma.getEquality();
+			Set<CCTerm> first = classes.get(eq.getFirst().getRepresentative());
+			Set<CCTerm> second = classes.get(eq.getSecond().getRepresentative());
+			if (first == null) {
+				first = new HashSet<>();
+				first.add(eq.getFirst().getRepresentative());
+			}
+			if (second == null) {
+				second = new HashSet<>();
+				second.add(eq.getSecond().getRepresentative());
+			}
+			if (first != second) {
+				first.addAll(second);
+				for (final CCTerm rep : first) {
+					classes.put(rep, first);
+				}
+			}
+		}
+		return new HashSet<>(classes.values());
+	}
+
+	/**
+	 * Rebuild the weak equivalence classes that are affected by new terms or by changed representatives.
+	 *
+	 * @param merged
+	 *            true if the congruence closure merged or unmerged classes since the last update.
+	 */
+	private void syncWeakEq(final boolean merged) {
+		final ArrayList<CCTerm> rebuild = new ArrayList<>();
+		final ArrayList<ArrayNode> dirty = new ArrayList<>();
+		for (int i = mNumSyncedArrays; i < mArrays.size(); i++) {
+			final CCTerm array = mArrays.get(i);
+			rebuild.add(array);
+			if (isStore(array)) {
+				addIndexUser(getIndexFromStore((CCAppTerm) array), array);
+			}
+		}
+		mNumSyncedArrays = mArrays.size();
+		final ArrayList<CCTerm> allTerms = mCClosure.mAllTerms;
+		for (int i = mNumSyncedTerms; i < allTerms.size(); i++) {
+			final CCTerm term = allTerms.get(i);
+			if (isSelect(term)) {
+				final CCTerm array = getArrayFromSelect((CCAppTerm) term);
+				addIndexUser(getIndexFromSelect((CCAppTerm) term), array);
+				final ArrayNode node = mArrayNodes.get(array);
+				if (node != null) {
+					dirty.add(node);
+				}
+			}
+		}
+		mNumSyncedTerms = allTerms.size();
+		if (merged) {
+			for (final Entry<CCTerm, ArrayNode> entry : mArrayNodes.entrySet()) {
+				if (entry.getKey().getRepresentative() != entry.getValue().mTerm) {
+					dirty.add(entry.getValue());
+				}
+			}
+			for (final Entry<CCTerm, IndexUsers> entry : mIndexUsers.entrySet()) {
+				final IndexUsers users = entry.getValue();
+				final CCTerm rep = entry.getKey().getRepresentative();
+				if (rep != users.mRep) {
+					users.mRep = rep;
+					for (final CCTerm array : users.mArrays) {
+						final ArrayNode node = mArrayNodes.get(array);
+						if (node != null) {
+							dirty.add(node);
+						}
+					}
+				}
+			}
+		}
+
+		// Remove the dirty weak equivalence classes and all classes that share a strong class or a store with an
+		// array that is rebuilt.
+		for (final ArrayNode node : dirty) {
+			removeWeakClass(node, rebuild);
+		}
+		for (int i = 0; i < rebuild.size(); i++) {
+			final CCTerm array = rebuild.get(i);
+			removeWeakClass(mCongRoots.get(array.getRepresentative()), rebuild);
+			if (isStore(array)) {
+				removeWeakClass(mCongRoots.get(getArrayFromStore((CCAppTerm) array).getRepresentative()), rebuild);
+			}
+		}
+		if (rebuild.isEmpty()) {
+			return;
+		}
+		mNumRebuiltArrays += rebuild.size();
+		int dest = 0;
+		for (final ArrayLemma lemma : mWeakLemmas) {
+			if (!lemma.mNode.mStale) {
+				mWeakLemmas.set(dest++, lemma);
+			}
+		}
+		mWeakLemmas.subList(dest, mWeakLemmas.size()).clear();
+
+		// Now build the removed classes anew.
+		for (final CCTerm array : rebuild) {
 			final CCTerm rep = array.getRepresentative();
-			if (!mCongRoots.containsKey(rep)) {
-				final ArrayNode node = new ArrayNode(rep);
+			ArrayNode node = mCongRoots.get(rep);
+			if (node == null) {
+				node = new ArrayNode(rep);
 				node.computeSelects();
 				mCongRoots.put(rep, node);
 			}
+			node.mArrayTerms.add(array);
+			mArrayNodes.put(array, node);
 		}
-		for (final CCAppTerm term : mConsts) {
-			setConst(term);
+		for (final CCTerm array : rebuild) {
+			if (isConst(array)) {
+				setConst((CCAppTerm) array);
+			}
 		}
-		for (final CCAppTerm store : mStores) {
-			merge(store);
+		for (final CCTerm array : rebuild) {
+			if (isStore(array)) {
+				merge((CCAppTerm) array);
+			}
 		}
+	}
 
-		createPropagatedClauses();
+	/**
+	 * Remove the weak equivalence class of a node from the graph and collect its array terms.
+	 *
+	 * @param node
+	 *            a node of the class, or null.
+	 * @param arrays
+	 *            the list where the array terms of the removed nodes are added.
+	 */
+	private void removeWeakClass(final ArrayNode node, final ArrayList<CCTerm> arrays) {
+		if (node == null || node.mStale) {
+			return;
+		}
+		ArrayNode member = node;
+		do {
+			member.mStale = true;
+			mCongRoots.remove(member.mTerm);
+			arrays.addAll(member.mArrayTerms);
+			member = member.mNext;
+		} while (member != node);
+	}
 
-		mTimeBuildWeakEq += (System.nanoTime() - startTime);
-		return !mPropClauses.isEmpty();
+	private void addIndexUser(final CCTerm index, final CCTerm array) {
+		IndexUsers users = mIndexUsers.get(index);
+		if (users == null) {
+			users = new IndexUsers(index.getRepresentative());
+			mIndexUsers.put(index, users);
+		}
+		users.mArrays.add(array);
 	}
 
 	/**
@@ -1443,8 +1733,17 @@ public class ArrayTheory implements ITheory {
 		return mConsts.contains(term);
 	}
 
+	static boolean isSelect(final CCTerm term) {
+		if (!(term instanceof CCAppTerm) || !(((CCAppTerm) term).getFunc() instanceof CCAppTerm)) {
+			return false;
+		}
+		final CCTerm func = ((CCAppTerm) ((CCAppTerm) term).getFunc()).getFunc();
+		return func instanceof CCBaseTerm && ((CCBaseTerm) func).isFunctionSymbol()
+				&& ((CCBaseTerm) func).getFunctionSymbol().getName() == "select";
+	}
+
 	private void cleanCaches() {
-		mCongRoots = null;
+		mPropClausesValid = false;
 		mPropClauses.clear();
 	}
 }
@@ -50,7 +50,7 @@ public class CCAppTerm extends CCTerm {
 
 	public CCAppTerm(final boolean isFunc, final int parentPos, final CCTerm func, final CCTerm arg,
 			final CClosure engine) {
-		super(isFunc, parentPos, HashUtils.hashJenkins(func.hashCode(), arg));
+		super(isFunc, parentPos, HashUtils.hashJenkins(func.hashCode(), arg), engine.createTermId());
 		mFunc = func;
 		mArg = arg;
 		// firstFormula = Integer.MAX_VALUE; lastFormula = -1;
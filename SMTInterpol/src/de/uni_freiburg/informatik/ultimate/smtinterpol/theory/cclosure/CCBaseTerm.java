@@ -23,8 +23,8 @@ import de.uni_freiburg.informatik.ultimate.logic.FunctionSymbol;
 public class CCBaseTerm extends CCTerm {
 	Object mSymbol;
 
-	public CCBaseTerm(final boolean isFunc, final int parentPos, final Object symb) {
-		super(isFunc, parentPos, symb.hashCode());
+	public CCBaseTerm(final boolean isFunc, final int parentPos, final Object symb, final CClosure engine) {
+		super(isFunc, parentPos, symb.hashCode(), engine.createTermId());
 		mSymbol = symb;
 	}
 
@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.theory.cclosure;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import de.uni_freiburg.informatik.ultimate.smtinterpol.util.SymmetricPair;
+
+/**
+ * The congruence table of the congruence closure. It maps the signature of an application term, i.e., the ids of the
+ * representatives of its function and its argument, to the application term that represents all congruent
+ * applications. This is implemented as an open addressing hash table with linear probing on int pairs.
+ *
+ * Every application term has an entry for its signature, but only one of the congruent application terms is stored in
+ * the table. We call it the root of the signature. The other application terms are congruent to the root and are
+ * merged with it, or the merge is pending. When two congruence classes are merged, the roots that are parents of the
+ * source class change their signature and are moved in the table. If the new signature is already taken, a congruence
+ * was found.
+ *
+ * The changes done by a merge are recorded in an undo log, so that they can be reverted when the merge is undone.
+ * Application terms created after a merge are also recorded in the log of that merge, since their signature changes
+ * when the merge is undone.
+ */
+class CCSignatureTable {
+	private static final int INITIAL_SIZE = 64;
+
+	/**
+	 * The log entry types.
+	 */
+	private static final byte INSERTED = 0;
+	private static final byte REMOVED = 1;
+	private static final byte CREATED_ROOT = 2;
+	private static final byte CREATED_CONGRUENT = 3;
+
+	private int[] mFuncIds;
+	private int[] mArgIds;
+	private CCAppTerm[] mTerms;
+	private int mSize;
+
+	private byte[] mLogTypes;
+	private int[] mLogFuncIds;
+	private int[] mLogArgIds;
+	private CCAppTerm[] mLogTerms;
+	private int mLogSize;
+	/**
+	 * For every merge on the merge stack, the size of the undo log before the merge.
+	 */
+	private int[] mMergeMarks;
+	private int mNumMerges;
+
+	/**
+	 * The roots that were removed at the beginning of the current merge and that need to be inserted with their new
+	 * signature.
+	 */
+	private final ArrayList<CCAppTerm> mMoved = new ArrayList<>();
+
+	CCSignatureTable() {
+		mFuncIds = new int[INITIAL_SIZE];
+		mArgIds = new int[INITIAL_SIZE];
+		mTerms = new CCAppTerm[INITIAL_SIZE];
+		mLogTypes = new byte[INITIAL_SIZE];
+		mLogFuncIds = new int[INITIAL_SIZE];
+		mLogArgIds = new int[INITIAL_SIZE];
+		mLogTerms = new CCAppTerm[INITIAL_SIZE];
+		mMergeMarks = new int[INITIAL_SIZE];
+	}
+
+	private static int hash(final int funcId, final int argId) {
+		int hash = funcId * 0x9e3779b9 + argId;
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		return hash ^ (hash >>> 13);
+	}
+
+	private int findSlot(final int funcId, final int argId) {
+		final int mask = mTerms.length - 1;
+		int slot = hash(funcId, argId) & mask;
+		while (mTerms[slot] != null && (mFuncIds[slot] != funcId || mArgIds[slot] != argId)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private CCAppTerm get(final int funcId, final int argId) {
+		return mTerms[findSlot(funcId, argId)];
+	}
+
+	private void put(final int funcId, final int argId, final CCAppTerm term) {
+		if (2 * (mSize + 1) > mTerms.length) {
+			resize();
+		}
+		final int slot = findSlot(funcId, argId);
+		assert mTerms[slot] == null;
+		mFuncIds[slot] = funcId;
+		mArgIds[slot] = argId;
+		mTerms[slot] = term;
+		mSize++;
+	}
+
+	/**
+	 * Remove the entry for the given signature. The following entries of the probing sequence are shifted back, so
+	 * that no tombstones are needed.
+	 */
+	private void remove(final int funcId, final int argId) {
+		final int mask = mTerms.length - 1;
+		int hole = findSlot(funcId, argId);
+		assert mTerms[hole] != null;
+		int slot = hole;
+		while (true) {
+			slot = (slot + 1) & mask;
+			if (mTerms[slot] == null) {
+				break;
+			}
+			final int home = hash(mFuncIds[slot], mArgIds[slot]) & mask;
+			// the entry can be moved to the hole, if its home is not cyclically between the hole and its slot.
+			if (hole <= slot ? (hole < home && home <= slot) : (hole < home || home <= slot)) {
+				continue;
+			}
+			mFuncIds[hole] = mFuncIds[slot];
+			mArgIds[hole] = mArgIds[slot];
+			mTerms[hole] = mTerms[slot];
+			hole = slot;
+		}
+		mTerms[hole] = null;
+		mSize--;
+	}
+
+	private void resize() {
+		final int[] oldFuncIds = mFuncIds;
+		final int[] oldArgIds = mArgIds;
+		final CCAppTerm[] oldTerms = mTerms;
+		mFuncIds = new int[2 * oldTerms.length];
+		mArgIds = new int[2 * oldTerms.length];
+		mTerms = new CCAppTerm[2 * oldTerms.length];
+		for (int i = 0; i < oldTerms.length; i++) {
+			if (oldTerms[i] != null) {
+				final int slot = findSlot(oldFuncIds[i], oldArgIds[i]);
+				mFuncIds[slot] = oldFuncIds[i];
+				mArgIds[slot] = oldArgIds[i];
+				mTerms[slot] = oldTerms[i];
+			}
+		}
+	}
+
+	private void log(final byte type, final int funcId, final int argId, final CCAppTerm term) {
+		if (mLogSize == mLogTerms.length) {
+			mLogTypes = Arrays.copyOf(mLogTypes, 2 * mLogSize);
+			mLogFuncIds = Arrays.copyOf(mLogFuncIds, 2 * mLogSize);
+			mLogArgIds = Arrays.copyOf(mLogArgIds, 2 * mLogSize);
+			mLogTerms = Arrays.copyOf(mLogTerms, 2 * mLogSize);
+		}
+		mLogTypes[mLogSize] = type;
+		mLogFuncIds[mLogSize] = funcId;
+		mLogArgIds[mLogSize] = argId;
+		mLogTerms[mLogSize] = term;
+		mLogSize++;
+	}
+
+	/**
+	 * Get the root application term for the given representatives.
+	 *
+	 * @param funcRep
+	 *            the representative of the function.
+	 * @param argRep
+	 *            the representative of the argument.
+	 * @return the application term with this signature, or null if there is none.
+	 */
+	CCAppTerm get(final CCTerm funcRep, final CCTerm argRep) {
+		return get(funcRep.mId, argRep.mId);
+	}
+
+	/**
+	 * Insert a newly created application term.
+	 *
+	 * @param term
+	 *            the new application term.
+	 * @return the root of the signature of term, if this is congruent to an existing term, null otherwise.
+	 */
+	CCAppTerm add(final CCAppTerm term) {
+		final int funcId = term.mFunc.mRepStar.mId;
+		final int argId = term.mArg.mRepStar.mId;
+		final CCAppTerm root = get(funcId, argId);
+		if (root == null) {
+			put(funcId, argId, term);
+		}
+		if (mNumMerges > 0) {
+			// the signature of the term changes when the merge is undone
+			log(root == null ? CREATED_ROOT : CREATED_CONGRUENT, funcId, argId, term);
+		}
+		return root;
+	}
+
+	/**
+	 * Remove an application term that is deleted. This is only called when no merges are active. Then every
+	 * application term is a root.
+	 */
+	void remove(final CCAppTerm term) {
+		assert mNumMerges == 0;
+		assert get(term.mFunc.mRepStar, term.mArg.mRepStar) == term;
+		remove(term.mFunc.mRepStar.mId, term.mArg.mRepStar.mId);
+	}
+
+	/**
+	 * Start the merge of src into another class. This removes all roots from the table whose signature contains src.
+	 * This must be called before the representatives are changed.
+	 *
+	 * @param src
+	 *            the representative of the source class of the merge.
+	 */
+	void beginMerge(final CCTerm src) {
+		if (mNumMerges == mMergeMarks.length) {
+			mMergeMarks = Arrays.copyOf(mMergeMarks, 2 * mNumMerges);
+		}
+		mMergeMarks[mNumMerges++] = mLogSize;
+		assert mMoved.isEmpty();
+		for (CCParentInfo info = src.mCCPars.mNext; info != null; info = info.mNext) {
+			for (final CCAppTerm.Parent parent : info.mCCParents) {
+				final CCAppTerm app = parent.getData();
+				final int funcId = app.mFunc.mRepStar.mId;
+				final int argId = app.mArg.mRepStar.mId;
+				if (get(funcId, argId) == app) {
+					remove(funcId, argId);
+					log(REMOVED, funcId, argId, app);
+					mMoved.add(app);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finish the merge. This inserts the removed roots with their new signature. If the signature is already taken, the
+	 * application terms are congruent and the congruence is added to the engine.
+	 *
+	 * @param engine
+	 *            the congruence closure.
+	 */
+	void endMerge(final CClosure engine) {
+		for (final CCAppTerm app : mMoved) {
+			engine.incCcCount();
+			final int funcId = app.mFunc.mRepStar.mId;
+			final int argId = app.mArg.mRepStar.mId;
+			final CCAppTerm root = get(funcId, argId);
+			if (root == null) {
+				put(funcId, argId, app);
+				log(INSERTED, funcId, argId, app);
+			} else {
+				engine.addPendingCongruence(app, root);
+			}
+		}
+		mMoved.clear();
+	}
+
+	/**
+	 * Undo the last merge. This must be called after the representatives were restored. Application terms that were
+	 * created after the merge are inserted again with their restored signature. If they are still congruent to
+	 * another term, the congruence is rechecked after backtracking.
+	 *
+	 * @param engine
+	 *            the congruence closure.
+	 */
+	void undoMerge(final CClosure engine) {
+		final int mark = mMergeMarks[--mNumMerges];
+		final ArrayList<CCAppTerm> created = new ArrayList<>();
+		while (mLogSize > mark) {
+			mLogSize--;
+			final CCAppTerm app = mLogTerms[mLogSize];
+			mLogTerms[mLogSize] = null;
+			switch (mLogTypes[mLogSize]) {
+			case INSERTED:
+				assert get(mLogFuncIds[mLogSize], mLogArgIds[mLogSize]) == app;
+				remove(mLogFuncIds[mLogSize], mLogArgIds[mLogSize]);
+				break;
+			case REMOVED:
+				put(mLogFuncIds[mLogSize], mLogArgIds[mLogSize], app);
+				break;
+			case CREATED_ROOT:
+				assert get(mLogFuncIds[mLogSize], mLogArgIds[mLogSize]) == app;
+				remove(mLogFuncIds[mLogSize], mLogArgIds[mLogSize]);
+				created.add(app);
+				break;
+			case CREATED_CONGRUENT:
+				created.add(app);
+				break;
+			default:
+				throw new AssertionError();
+			}
+		}
+		for (int i = created.size() - 1; i >= 0; i--) {
+			final CCAppTerm app = created.get(i);
+			final CCAppTerm root = add(app);
+			if (root != null) {
+				engine.mRecheckOnBacktrackCongs.add(new SymmetricPair<>(app, root));
+			}
+		}
+	}
+}
@@ -106,6 +106,10 @@ public abstract class CCTerm extends SimpleListable<CCTerm> {
 	Term mFlatTerm;
 
 	int mHashCode;
+	/**
+	 * The unique id of this term. The ids of the representatives form the signatures in the congruence table.
+	 */
+	final int mId;
 
 	int mModelVal;
 
@@ -133,7 +137,7 @@ public abstract class CCTerm extends SimpleListable<CCTerm> {
 	boolean mIsFunc;
 	int mParentPosition;
 
-	protected CCTerm(final boolean isFunc, final int parentPos, final int hash) {
+	protected CCTerm(final boolean isFunc, final int parentPos, final int hash, final int id) {
 		mIsFunc = isFunc;
 		mCCPars = null;
 		if (isFunc) {
@@ -147,6 +151,7 @@ public abstract class CCTerm extends SimpleListable<CCTerm> {
 		mNumMembers = 1;
 		assert invariant();
 		mHashCode = hash;
+		mId = id;
 	}
 
 	boolean pairHashValid(final CClosure engine) {
@@ -392,6 +397,8 @@ public abstract class CCTerm extends SimpleListable<CCTerm> {
 		if (Config.PROFILE_TIME) {
 			time = System.nanoTime();
 		}
+		/* Remove the parents of src from the congruence table, since their signature changes */
+		engine.mSignatures.beginMerge(src);
 		/* Update rep fields */
 		src.mRep = dest;
 		for (final CCTerm t : src.mMembers) {
@@ -402,6 +409,14 @@ public abstract class CCTerm extends SimpleListable<CCTerm> {
 		}
 		dest.mMembers.joinList(src.mMembers);
 		dest.mNumMembers += src.mNumMembers;
+		if (Config.PROFILE_TIME) {
+			time = System.nanoTime();
+		}
+		/* Compute congruence closure by inserting the parents with their new signature */
+		engine.mSignatures.endMerge(engine);
+		if (Config.PROFILE_TIME) {
+			engine.addCcTime(System.nanoTime() - time);
+		}
 
 		if (Config.PROFILE_TIME) {
 			time = System.nanoTime();
@@ -461,31 +476,13 @@ public abstract class CCTerm extends SimpleListable<CCTerm> {
 		if (Config.PROFILE_TIME) {
 			time = System.nanoTime();
 		}
-		/* Compute congruence closure */
+		/* Merge the parent infos */
 		if (mIsFunc) {
 			final CCParentInfo srcParentInfo = src.mCCPars.mNext;
 			final CCParentInfo destParentInfo = dest.mCCPars.mNext;
-			// assert (srcParentInfo == null || srcParentInfo.m_Next == null);
-			// assert (destParentInfo == null || destParentInfo.m_Next == null);
 			if (srcParentInfo != null) {
 				assert(srcParentInfo.mFuncSymbNr == destParentInfo.mFuncSymbNr);
 				assert srcParentInfo.mReverseTriggers.isEmpty();
-				tloop: for (final CCAppTerm.Parent t1 : srcParentInfo.mCCParents) {
-					if (t1.isMarked()) {
-							continue;
-						}
-					final CCAppTerm t = t1.getData();
-					for (final CCAppTerm.Parent u1 : destParentInfo.mCCParents) {
-						if (u1.isMarked()) {
-							continue;
-						}
-						engine.incCcCount();
-						if (t.mArg.mRepStar == u1.getData().mArg.mRepStar) {
-							engine.addPendingCongruence(t, u1.getData());
-							continue tloop;
-						}
-					}
-				}
 				destParentInfo.mCCParents.joinList(srcParentInfo.mCCParents);
 			}
 		} else {
@@ -498,22 +495,6 @@ public abstract class CCTerm extends SimpleListable<CCTerm> {
 					destParentInfo = destParentInfo.mNext;
 				} else {
 					assert(srcParentInfo.mFuncSymbNr == destParentInfo.mFuncSymbNr);
-					tloop: for (final CCAppTerm.Parent t1 : srcParentInfo.mCCParents) {
-						if (t1.isMarked()) {
-								continue;
-							}
-						final CCAppTerm t = t1.getData();
-						for (final CCAppTerm.Parent u1 : destParentInfo.mCCParents) {
-							if (u1.isMarked()) {
-								continue;
-							}
-							engine.incCcCount();
-							if (t.mFunc.mRepStar == u1.getData().mFunc.mRepStar) {
-								engine.addPendingCongruence(t, u1.getData());
-								continue tloop;
-							}
-						}
-					}
 					// E-Matching
 					if (!srcParentInfo.mReverseTriggers.isEmpty()) {
 						for (final CCAppTerm.Parent parent : destParentInfo.mCCParents) {
@@ -631,6 +612,7 @@ public abstract class CCTerm extends SimpleListable<CCTerm> {
 			t.mRepStar = src;
 		}
 		src.mRep = src;
+		engine.mSignatures.undoMerge(engine);
 
 		assert src.mMergeTime == engine.mMergeDepth;
 		engine.mMergeDepth--;
@@ -665,7 +647,22 @@ public abstract class CCTerm extends SimpleListable<CCTerm> {
 		return mFlatTerm;
 	}
 
+	/**
+	 * Get the unique id of this term. The ids are dense, i.e., they are assigned in order of creation.
+	 */
+	public int getId() {
+		return mId;
+	}
+
 	public int getNumMembers() {
 		return mNumMembers;
 	}
+
+	/**
+	 * Get the members of the congruence class of this term. This must only be called on a representative.
+	 */
+	public Iterable<CCTerm> getMembers() {
+		assert mRepStar == this;
+		return mMembers;
+	}
 }
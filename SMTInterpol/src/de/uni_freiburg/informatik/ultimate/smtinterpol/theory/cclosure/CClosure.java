@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -98,6 +99,16 @@ public class CClosure implements ITheory {
 	 * @see CCTermPairHash, CCTermPairHash.Info
 	 */
 	final CCTermPairHash mPairHash = new CCTermPairHash();
+	/**
+	 * The congruence table that maps the signature of every application term to a congruent application term.
+	 *
+	 * @see CCSignatureTable
+	 */
+	final CCSignatureTable mSignatures = new CCSignatureTable();
+	/**
+	 * The id for the next created cc-term.
+	 */
+	private int mNextTermId;
 
 	/**
 	 * These are the list of literals that we can propagate. Each literal must be a consequence of the current
@@ -146,8 +157,48 @@ public class CClosure implements ITheory {
 	final ArrayDeque<CCTerm> mMerges = new ArrayDeque<>();
 	final ArrayDeque<SymmetricPair<CCAppTerm>> mPendingCongruences = new ArrayDeque<>();
 
+	/**
+	 * A cached explanation computed from the congruence graph. The path between two terms of the same congruence class
+	 * does not change when further classes are merged, so the explanation stays valid until one of the first
+	 * mMergeDepth merges is undone.
+	 */
+	private static class CachedExplanation {
+		/**
+		 * The key in the explanation cache: the symmetric pair of the terms connected by the path, or the equality
+		 * whose negation is explained.
+		 */
+		final Object mKey;
+		final int mMergeDepth;
+		/** The decide level of the path, or -1 if it was not computed. */
+		int mDecideLevel = -1;
+		/** The literal explained by mClause. */
+		Literal mLiteral;
+		/** The disequality used to explain a negated equality. */
+		CCEquality mDiseqReason;
+		Clause mClause;
+
+		CachedExplanation(final Object key, final int mergeDepth) {
+			mKey = key;
+			mMergeDepth = mergeDepth;
+		}
+	}
+
+	/**
+	 * Cache for the explanations of propagated literals and the decide levels of congruence paths. The equalities are
+	 * still propagated lazily; the cache only avoids computing the same path again after the literal was backtracked
+	 * or when E-matching asks for the same path again.
+	 */
+	private final HashMap<Object, CachedExplanation> mExplanationCache = new HashMap<>();
+	/**
+	 * The entries of the explanation cache ordered by their merge depth. The entries with a merge depth above the
+	 * merge stack are removed when merges are undone.
+	 */
+	private final ArrayList<CachedExplanation> mExplanationStack = new ArrayList<>();
+
 	private long mInvertEdgeTime, mEqTime, mCcTime, mSetRepTime;
 	private long mCcCount, mMergeCount;
+	private long mPathLevelQueries, mPathLevelHits;
+	private long mExplanationQueries, mExplanationHits;
 
 	public CClosure(final Clausifier clausifier) {
 		mClausifier = clausifier;
@@ -166,110 +217,24 @@ public class CClosure implements ITheory {
 	}
 
 	public CCTerm createAnonTerm(final Term term) {
-		final CCTerm ccTerm = new CCBaseTerm(false, mNumFunctionPositions, term);
+		final CCTerm ccTerm = new CCBaseTerm(false, mNumFunctionPositions, term, this);
 		mAnonTerms.put(term, ccTerm);
 		return ccTerm;
 	}
 
-	/**
-	 * Get the merge height where t1 and t2 were merged into the same congruence class.
-	 * @param t1 the first term.
-	 * @param t2 the second term.
-	 * @return the mMergeDepth when t1 and t2 were merged.
-	 */
-	private int getMergeStackDepth(CCTerm t1, CCTerm t2) {
-		assert t1.getRepresentative() == t2.getRepresentative() : "terms were never merged";
-		if (t1 == t2) {
-			return -1;
-		}
-		/* first compute the number of rep edges to the common representative for both terms */
-		int depth1 = 0;
-		int depth2 = 0;
-		for (CCTerm t = t1; t != t.mRep; t = t.mRep) {
-			depth1++;
-		}
-		for (CCTerm t = t2; t != t.mRep; t = t.mRep) {
-			depth2++;
-		}
-		/*
-		 * Move to the common ancestor. If the common ancestor is one of the terms, the previous edge gives us the merge
-		 * time.
-		 */
-		while (depth1 > depth2) {
-			if (t1.mRep == t2) {
-				return t1.mMergeTime;
-			}
-			t1 = t1.mRep;
-			depth1--;
-		}
-		assert t1 != t2;
-		while (depth2 > depth1) {
-			if (t2.mRep == t1) {
-				return t2.mMergeTime;
-			}
-			t2 = t2.mRep;
-			depth2--;
-		}
-		assert t1 != t2;
-		assert depth2 == depth1;
-		/*
-		 * If the common ancestor is not one of the two terms, we find it here. One of the previous edges merged t1 and
-		 * t2, namely the one that happened later.
-		 */
-		while (true) {
-			assert t1 != t2;
-			assert t1 != t1.mRep;
-			assert t2 != t2.mRep;
-			if (t1.mRep == t2.mRep) {
-				return Math.max(t1.mMergeTime, t2.mMergeTime);
-			}
-			t1 = t1.mRep;
-			t2 = t2.mRep;
-		}
-	}
-
-	/**
-	 * Searches for the congruent term of {@code CCAppTerm(func,arg)} that would have been merged on the lowest decision
-	 * level.
-	 *
-	 * @param func
-	 *            The CCTerm representing the function.
-	 * @param arg
-	 *            The CCTerm representing the argument.
-	 * @return The congruent CCAppTerm or null if there is no congruent application.
-	 */
-	private CCAppTerm findCongruentAppTerm(final CCTerm func, final CCTerm arg) {
-		final CCParentInfo argInfo = arg.getRepresentative().mCCPars.getInfo(func.mParentPosition);
-		int congruenceLevel = Integer.MAX_VALUE;
-		CCAppTerm congruentTerm = null;
-		// Look for all congruent terms for the argument.
-		for (final Parent p : argInfo.mCCParents) {
-			final CCAppTerm papp = p.getData();
-			final CCTerm pfunc = papp.getFunc();
-			final CCTerm parg = papp.getArg();
-			assert parg.getRepresentative() == arg.getRepresentative();
-			if (pfunc.getRepresentative() != func.getRepresentative()) {
-				// this term is not congruent
-				continue;
-			}
-			if (pfunc == func && parg == arg) {
-				// this is the app term for which we search a congruent term; skip it
-				continue;
-			}
-			// compute the level where the congruence occurred
-			final int level = Math.max(getMergeStackDepth(pfunc, func), getMergeStackDepth(parg, arg));
-			// store the congruence with the smallest level
-			if (level < congruenceLevel) {
-				congruenceLevel = level;
-				congruentTerm = papp;
-			}
-		}
-		return congruentTerm;
+	int createTermId() {
+		return mNextTermId++;
 	}
 
 	public CCAppTerm createAppTerm(final boolean isFunc, final CCTerm func, final CCTerm arg) {
 		assert func.mIsFunc;
-		final CCParentInfo info = arg.mRepStar.mCCPars.getExistingParentInfo(func.mParentPosition);
+		final CCAppTerm root = mSignatures.get(func.mRepStar, arg.mRepStar);
+		if (root != null && root.mFunc == func && root.mArg == arg) {
+			return root;
+		}
+		// if there is no root, there is no application term with the same signature
+		final CCParentInfo info = root == null ? null
+				: arg.mRepStar.mCCPars.getExistingParentInfo(func.mParentPosition);
 		if (info != null) {
 			final SimpleList<CCAppTerm.Parent> prevParents = info.mCCParents;
 			assert prevParents.wellformed();
@@ -282,7 +247,7 @@ public class CClosure implements ITheory {
 		}
 		final CCAppTerm term = new CCAppTerm(isFunc, isFunc ? func.mParentPosition + 1 : 0, func, arg, this);
 		term.addParentInfo(this);
-		final CCAppTerm congruentTerm = findCongruentAppTerm(func, arg);
+		final CCAppTerm congruentTerm = mSignatures.add(term);
 		getLogger().debug("createAppTerm %s congruent: %s", term, congruentTerm);
 		if (congruentTerm != null) {
 			// Here, we do not have the resulting term in the equivalence class
@@ -330,7 +295,7 @@ public class CClosure implements ITheory {
 	public CCTerm getFuncTerm(final FunctionSymbol sym) {
 		CCBaseTerm term = mSymbolicTerms.get(sym);
 		if (term == null) {
-			term = new CCBaseTerm(sym.getParameterSorts().length > 0, mNumFunctionPositions, sym);
+			term = new CCBaseTerm(sym.getParameterSorts().length > 0, mNumFunctionPositions, sym, this);
 			mNumFunctionPositions += sym.getParameterSorts().length;
 			mSymbolicTerms.put(sym, term);
 		}
@@ -636,16 +601,8 @@ public class CClosure implements ITheory {
 	 * @return The representative of the application, or null if no congruent term exists in the CClosure.
 	 */
 	private CCTerm findCCAppTermRep(final CCTerm funcRep, final CCTerm argRep) {
-		final CCParentInfo info = funcRep.mCCPars.getInfo(0);
-		if (info == null) {
-			return null;
-		}
-		for (final Parent parent : info.mCCParents) {
-			if (parent.getData().getArg().getRepresentative() == argRep) {
-				return parent.getData().getRepresentative();
-			}
-		}
-		return null;
+		final CCAppTerm root = mSignatures.get(funcRep, argRep);
+		return root == null ? null : root.getRepresentative();
 	}
 
 	/**
@@ -816,13 +773,51 @@ public class CClosure implements ITheory {
 				}
 			}
 			throw new AssertionError("Cannot find explanation for " + laeq);
-		} else if (lit instanceof CCEquality) {
-			final CCEquality eq = (CCEquality) lit;
-			return computeCycle(eq);
-		} else {
-			/* ComputeAntiCycle */
-			final CCEquality eq = (CCEquality) lit.negate();
-			return computeAntiCycle(eq);
+		}
+		mExplanationQueries++;
+		final boolean isEquality = lit instanceof CCEquality;
+		final CCEquality eq = (CCEquality) lit.getAtom();
+		final Object key = isEquality ? new SymmetricPair<CCTerm>(eq.getLhs(), eq.getRhs()) : eq;
+		CachedExplanation cached = getCachedExplanation(key);
+		if (cached.mClause != null) {
+			if (cached.mLiteral == lit && (isEquality || cached.mDiseqReason == eq.mDiseqReason)) {
+				mExplanationHits++;
+				return cached.mClause;
+			}
+			// The negated equality has a new reason whose path may depend on later merges.
+			cached = new CachedExplanation(key, mMerges.size());
+			mExplanationCache.put(key, cached);
+			mExplanationStack.add(cached);
+		}
+		cached.mLiteral = lit;
+		cached.mDiseqReason = eq.mDiseqReason;
+		cached.mClause = isEquality ? computeCycle(eq) : computeAntiCycle(eq);
+		return cached.mClause;
+	}
+
+	/**
+	 * Get the cache entry for a key, or create a new entry that is valid until the current merges are undone.
+	 */
+	private CachedExplanation getCachedExplanation(final Object key) {
+		CachedExplanation cached = mExplanationCache.get(key);
+		if (cached == null) {
+			cached = new CachedExplanation(key, mMerges.size());
+			mExplanationCache.put(key, cached);
+			mExplanationStack.add(cached);
+		}
+		return cached;
+	}
+
+	/**
+	 * Remove the cached explanations that depend on merges above the given depth of the merge stack.
+	 */
+	private void invalidateExplanations(final int todepth) {
+		int size = mExplanationStack.size();
+		while (size > 0 && mExplanationStack.get(size - 1).mMergeDepth > todepth) {
+			final CachedExplanation cached = mExplanationStack.remove(--size);
+			if (mExplanationCache.get(cached.mKey) == cached) {
+				mExplanationCache.remove(cached.mKey);
+			}
 		}
 	}
 
@@ -945,8 +940,15 @@ public class CClosure implements ITheory {
 	 * @return the earliest decide level.
 	 */
 	public int getDecideLevelForPath(final CCTerm lhs, final CCTerm rhs) {
+		mPathLevelQueries++;
+		final CachedExplanation cached = getCachedExplanation(new SymmetricPair<CCTerm>(lhs, rhs));
+		if (cached.mDecideLevel >= 0) {
+			mPathLevelHits++;
+			return cached.mDecideLevel;
+		}
 		final CongruencePath congPath = new CongruencePath(this);
-		return congPath.computeDecideLevel(lhs, rhs);
+		cached.mDecideLevel = congPath.computeDecideLevel(lhs, rhs);
+		return cached.mDecideLevel;
 	}
 
 	public void addPending(final Literal eq) {
@@ -1055,6 +1057,8 @@ public class CClosure implements ITheory {
 	public void printStatistics(final LogProxy logger) {
 		logger.info("CCTimes: iE " + mInvertEdgeTime + " eq " + mEqTime + " cc " + mCcTime + " setRep " + mSetRepTime);
 		logger.info("Merges: " + mMergeCount + ", cc:" + mCcCount);
+		logger.info("Path levels: " + mPathLevelQueries + ", cached: " + mPathLevelHits);
+		logger.info("Explanations: " + mExplanationQueries + ", cached: " + mExplanationHits);
 	}
 
 	@Override
@@ -1130,7 +1134,7 @@ public class CClosure implements ITheory {
 				getLogger().debug("No longer congruent: %s and %s", lhs, rhs);
 			}
 		}
-		mRecheckOnBacktrackLits = newRecheckOnBacktrackLits;
+		mRecheckOnBacktrackCongs = newRecheckOnBacktrackCongs;
 		return buildCongruence();
 	}
 
@@ -1184,6 +1188,7 @@ public class CClosure implements ITheory {
 	}
 
 	private void backtrackStack(final int todepth) {
+		invalidateExplanations(todepth);
 		while (mMerges.size() > todepth) {
 			final CCTerm top = mMerges.pop();
 			top.mRepStar.invertEqualEdges(this);
@@ -1195,6 +1200,23 @@ public class CClosure implements ITheory {
 		return mMerges.size();
 	}
 
+	/**
+	 * Get the terms that were merged into another congruence class since the merge stack had the given depth.
+	 *
+	 * @param depth
+	 *            a depth of the merge stack that is not larger than the current depth.
+	 * @return the merged terms, most recent merge first.
+	 */
+	public List<CCTerm> getMergedTermsSince(final int depth) {
+		assert depth <= mMerges.size();
+		final List<CCTerm> merged = new ArrayList<>(mMerges.size() - depth);
+		final Iterator<CCTerm> it = mMerges.iterator();
+		for (int i = depth; i < mMerges.size(); i++) {
+			merged.add(it.next());
+		}
+		return merged;
+	}
+
 	@Override
 	public void removeAtom(final DPLLAtom atom) {
 		if (atom instanceof CCEquality) {
@@ -1257,6 +1279,7 @@ public class CClosure implements ITheory {
 		}
 		if (t instanceof CCAppTerm) {
 			final CCAppTerm at = (CCAppTerm) t;
+			mSignatures.remove(at);
 			at.unlinkParentInfos();
 		}
 	}
@@ -1269,6 +1292,8 @@ public class CClosure implements ITheory {
 		}
 		mAllTerms.endScope();
 		mSymbolicTerms.endScope();
+		mExplanationCache.clear();
+		mExplanationStack.clear();
 	}
 
 	@Override
@@ -1282,6 +1307,8 @@ public class CClosure implements ITheory {
 	public Object[] getStatistics() {
 		return new Object[] { ":CC",
 				new Object[][] { { "Merges", mMergeCount }, { "Closure", mCcCount },
+						{ "PathLevels", mPathLevelQueries }, { "PathLevelsCached", mPathLevelHits },
+						{ "Explanations", mExplanationQueries }, { "ExplanationsCached", mExplanationHits },
 						{ "Times", new Object[][] { { "Invert", mInvertEdgeTime }, { "Eq", mEqTime },
 								{ "Closure", mCcTime }, { "SetRep", mSetRepTime } } } } };
 	}
@@ -1317,4 +1344,25 @@ public class CClosure implements ITheory {
 	void incMergeCount() {
 		++mMergeCount;
 	}
+
+	/**
+	 * Get the number of merges so far. Together with the stack depth this tells whether the congruence classes changed.
+	 */
+	public long getMergeCount() {
+		return mMergeCount;
+	}
+
+	/**
+	 * Get all terms known to the congruence closure in the order of their creation.
+	 */
+	public List<CCTerm> getAllTerms() {
+		return mAllTerms;
+	}
+
+	/**
+	 * Get the id the next created term will get. Term ids increase in the order of creation.
+	 */
+	public int getNextTermId() {
+		return mNextTermId;
+	}
 }
@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.theory.linar;
+
+import java.util.Arrays;
+
+import de.uni_freiburg.informatik.ultimate.logic.Rational;
+
+/**
+ * A compact index of the bound atoms of a linear variable, sorted by their bound. It replaces a TreeMap and keeps the
+ * bounds, a numeric key for every bound, and the atoms in three parallel arrays. The numeric key is a double that is
+ * exact for small rationals; the binary search compares the keys first and only looks at the bound if the keys are
+ * equal or not exact.
+ *
+ * Ranges are accessed by index, e.g., {@code for (int i = ceilingIndex(lo); i < ceilingIndex(hi); i++)}, so that no
+ * iterator or view is allocated. The indices are only valid as long as the index is not modified.
+ *
+ * New entries are inserted into a small sorted pending area at the end of the arrays, which is merged into the main
+ * part when it grows too large. Removed entries are only marked and compacted before the next range access. This keeps
+ * the cost of the insertions and removals at push and pop low even for variables with many bounds.
+ *
+ * @param <V>
+ *            the type of the atoms.
+ */
+final class BoundIndex<V> {
+	private static final InfinitesimalNumber[] EMPTY_BOUNDS = new InfinitesimalNumber[0];
+	private static final double[] EMPTY_KEYS = new double[0];
+	private static final Object[] EMPTY_VALUES = new Object[0];
+
+	private InfinitesimalNumber[] mBounds = EMPTY_BOUNDS;
+	private double[] mKeys = EMPTY_KEYS;
+	private Object[] mValues = EMPTY_VALUES;
+	/**
+	 * The size of the main part including the removed entries. The entries from mSorted to mSize are pending.
+	 */
+	private int mSorted;
+	private int mSize;
+	/**
+	 * The number of removed entries in the main part. Their value is null.
+	 */
+	private int mRemoved;
+
+	/**
+	 * Compute the numeric key of a bound. The key is NaN if the real part of the bound cannot be represented exactly.
+	 * Since the division of exact doubles is correctly rounded, the key is monotone in the bound.
+	 */
+	static double computeKey(final InfinitesimalNumber bound) {
+		final Rational real = bound.mReal;
+		if (real == Rational.POSITIVE_INFINITY) {
+			return Double.POSITIVE_INFINITY;
+		} else if (real == Rational.NEGATIVE_INFINITY) {
+			return Double.NEGATIVE_INFINITY;
+		}
+		if (real.numerator().bitLength() > 53 || real.denominator().bitLength() > 53) {
+			return Double.NaN;
+		}
+		return real.numerator().doubleValue() / real.denominator().doubleValue();
+	}
+
+	private int compare(final int index, final InfinitesimalNumber bound, final double key) {
+		final double entryKey = mKeys[index];
+		if (entryKey < key) {
+			return -1;
+		} else if (entryKey > key) {
+			return 1;
+		}
+		return mBounds[index].compareTo(bound);
+	}
+
+	/**
+	 * Find the first index in a sorted range whose bound is greater or equal (greater if strict) than the given bound.
+	 */
+	private int search(int low, int high, final InfinitesimalNumber bound, final double key, final boolean strict) {
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			final int cmp = compare(mid, bound, key);
+			if (cmp < 0 || (strict && cmp == 0)) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Find the position of a bound in the main or the pending part.
+	 *
+	 * @return the position of the bound, or -1 if the bound is not in the index.
+	 */
+	private int find(final InfinitesimalNumber bound, final double key) {
+		int pos = search(0, mSorted, bound, key, false);
+		if (pos < mSorted && mBounds[pos].equals(bound)) {
+			return pos;
+		}
+		pos = search(mSorted, mSize, bound, key, false);
+		if (pos < mSize && mBounds[pos].equals(bound)) {
+			return pos;
+		}
+		return -1;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(final InfinitesimalNumber bound) {
+		final int pos = find(bound, computeKey(bound));
+		return pos < 0 ? null : (V) mValues[pos];
+	}
+
+	public boolean containsKey(final InfinitesimalNumber bound) {
+		return get(bound) != null;
+	}
+
+	public boolean isEmpty() {
+		return mSize == mRemoved;
+	}
+
+	public void put(final InfinitesimalNumber bound, final V value) {
+		assert value != null;
+		final double key = computeKey(bound);
+		final int pos = find(bound, key);
+		if (pos >= 0) {
+			if (mValues[pos] == null) {
+				mRemoved--;
+			}
+			mValues[pos] = value;
+			return;
+		}
+		if (mSize == mValues.length) {
+			final int newSize = mSize < 4 ? 4 : mSize + (mSize >> 1);
+			mBounds = Arrays.copyOf(mBounds, newSize);
+			mKeys = Arrays.copyOf(mKeys, newSize);
+			mValues = Arrays.copyOf(mValues, newSize);
+		}
+		final int insert = search(mSorted, mSize, bound, key, false);
+		System.arraycopy(mBounds, insert, mBounds, insert + 1, mSize - insert);
+		System.arraycopy(mKeys, insert, mKeys, insert + 1, mSize - insert);
+		System.arraycopy(mValues, insert, mValues, insert + 1, mSize - insert);
+		mBounds[insert] = bound;
+		mKeys[insert] = key;
+		mValues[insert] = value;
+		mSize++;
+		if (mSize - mSorted > 8 + Math.sqrt(mSorted)) {
+			merge();
+		}
+	}
+
+	public void remove(final InfinitesimalNumber bound) {
+		final int pos = find(bound, computeKey(bound));
+		if (pos < 0 || mValues[pos] == null) {
+			return;
+		}
+		if (pos < mSorted) {
+			mValues[pos] = null;
+			mRemoved++;
+		} else {
+			System.arraycopy(mBounds, pos + 1, mBounds, pos, mSize - pos - 1);
+			System.arraycopy(mKeys, pos + 1, mKeys, pos, mSize - pos - 1);
+			System.arraycopy(mValues, pos + 1, mValues, pos, mSize - pos - 1);
+			mSize--;
+			mBounds[mSize] = null;
+			mValues[mSize] = null;
+		}
+	}
+
+	/**
+	 * Remove the marked entries from the main part and merge the pending part into it.
+	 */
+	private void merge() {
+		int dest = 0;
+		for (int i = 0; i < mSorted; i++) {
+			if (mValues[i] != null) {
+				mBounds[dest] = mBounds[i];
+				mKeys[dest] = mKeys[i];
+				mValues[dest] = mValues[i];
+				dest++;
+			}
+		}
+		final int numPending = mSize - mSorted;
+		final InfinitesimalNumber[] pendingBounds = Arrays.copyOfRange(mBounds, mSorted, mSize);
+		final double[] pendingKeys = Arrays.copyOfRange(mKeys, mSorted, mSize);
+		final Object[] pendingValues = Arrays.copyOfRange(mValues, mSorted, mSize);
+		final int newSize = dest + numPending;
+		Arrays.fill(mBounds, newSize, mSize, null);
+		Arrays.fill(mValues, newSize, mSize, null);
+		int main = dest - 1;
+		int pending = numPending - 1;
+		for (int i = newSize - 1; pending >= 0; i--) {
+			if (main >= 0 && compare(main, pendingBounds[pending], pendingKeys[pending]) > 0) {
+				mBounds[i] = mBounds[main];
+				mKeys[i] = mKeys[main];
+				mValues[i] = mValues[main];
+				main--;
+			} else {
+				mBounds[i] = pendingBounds[pending];
+				mKeys[i] = pendingKeys[pending];
+				mValues[i] = pendingValues[pending];
+				pending--;
+			}
+		}
+		mSorted = mSize = newSize;
+		mRemoved = 0;
+	}
+
+	private void normalize() {
+		if (mSorted != mSize || mRemoved != 0) {
+			merge();
+		}
+	}
+
+	/**
+	 * Get the number of entries. This also determines the end of the index range.
+	 */
+	public int size() {
+		normalize();
+		return mSize;
+	}
+
+	/**
+	 * Get the index of the first entry whose bound is greater or equal to the given bound.
+	 *
+	 * @return the index, or size() if there is no such entry.
+	 */
+	public int ceilingIndex(final InfinitesimalNumber bound) {
+		normalize();
+		return search(0, mSize, bound, computeKey(bound), false);
+	}
+
+	/**
+	 * Get the index of the first entry whose bound is strictly greater than the given bound.
+	 *
+	 * @return the index, or size() if there is no such entry.
+	 */
+	public int higherIndex(final InfinitesimalNumber bound) {
+		normalize();
+		return search(0, mSize, bound, computeKey(bound), true);
+	}
+
+	/**
+	 * Get the bound of an entry. The index must be obtained from size(), ceilingIndex(), or higherIndex().
+	 */
+	public InfinitesimalNumber getBound(final int index) {
+		assert mSorted == mSize && mRemoved == 0;
+		return mBounds[index];
+	}
+
+	/**
+	 * Get the atom of an entry. The index must be obtained from size(), ceilingIndex(), or higherIndex().
+	 */
+	@SuppressWarnings("unchecked")
+	public V getValue(final int index) {
+		assert mSorted == mSize && mRemoved == 0;
+		return (V) mValues[index];
+	}
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.theory.linar;
+
+import java.util.HashMap;
+import java.util.List;
+
+import de.uni_freiburg.informatik.ultimate.logic.Rational;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.DPLLEngine;
+
+/**
+ * A branching policy selects the integer variable on which the linear arithmetic solver branches if the current
+ * solution is not integral. The policy is asked in every final check that finds non-integral variables.
+ */
+public abstract class BranchingPolicy {
+
+	/**
+	 * The available branching policies.
+	 */
+	public static enum Strategy {
+		/**
+		 * Do not select a variable, but branch on the cut variables computed by the {@link CutCreator}.
+		 */
+		CUTS_FROM_PROOFS {
+			@Override
+			public BranchingPolicy create() {
+				return new CutsFromProofsPolicy();
+			}
+		},
+		/**
+		 * Branch on the variable whose value is closest to the middle between two integers.
+		 */
+		MOST_FRACTIONAL {
+			@Override
+			public BranchingPolicy create() {
+				return new MostFractionalPolicy();
+			}
+		},
+		/**
+		 * Branch on the variable whose previous branches removed the most non-integral variables, weighted by the
+		 * fractionality of its value.
+		 */
+		PSEUDO_COST {
+			@Override
+			public BranchingPolicy create() {
+				return new PseudoCostPolicy();
+			}
+		},
+		/**
+		 * Branch on the variable whose bound constraints are most active in the conflicts of the DPLL engine.
+		 */
+		ACTIVITY {
+			@Override
+			public BranchingPolicy create() {
+				return new ActivityPolicy();
+			}
+		};
+
+		/**
+		 * Create a new policy for this strategy.
+		 *
+		 * @return the branching policy.
+		 */
+		public abstract BranchingPolicy create();
+	}
+
+	/**
+	 * Select the variable to branch on.
+	 *
+	 * @param engine
+	 *            the DPLL engine.
+	 * @param fractional
+	 *            the integer variables with a non-integral value; not empty.
+	 * @return the variable to branch on, or null to branch on the cut variables of the {@link CutCreator}.
+	 */
+	public abstract LinVar select(DPLLEngine engine, List<LinVar> fractional);
+
+	/**
+	 * Compute the distance of the value of a variable to the nearest integer. A value that is only off by an
+	 * infinitesimal gets a tiny positive distance.
+	 */
+	static double getFractionality(final LinVar var) {
+		final Rational frac = var.getValue().getRealValue().frac();
+		final double value = frac.numerator().doubleValue() / frac.denominator().doubleValue();
+		return value == 0 ? Double.MIN_VALUE : Math.min(value, 1 - value);
+	}
+
+	/**
+	 * Select the variable with the highest score. Ties are broken by the fractionality and then by the order of the
+	 * list.
+	 */
+	abstract static class ScoringPolicy extends BranchingPolicy {
+		abstract double getScore(DPLLEngine engine, LinVar var);
+
+		@Override
+		public LinVar select(final DPLLEngine engine, final List<LinVar> fractional) {
+			LinVar best = null;
+			double bestScore = 0;
+			double bestFrac = 0;
+			for (final LinVar var : fractional) {
+				final double score = getScore(engine, var);
+				final double frac = getFractionality(var);
+				if (best == null || score > bestScore || (score == bestScore && frac > bestFrac)) {
+					best = var;
+					bestScore = score;
+					bestFrac = frac;
+				}
+			}
+			return best;
+		}
+	}
+
+	private static class CutsFromProofsPolicy extends BranchingPolicy {
+		@Override
+		public LinVar select(final DPLLEngine engine, final List<LinVar> fractional) {
+			return null;
+		}
+	}
+
+	private static class MostFractionalPolicy extends ScoringPolicy {
+		@Override
+		double getScore(final DPLLEngine engine, final LinVar var) {
+			return getFractionality(var);
+		}
+	}
+
+	/**
+	 * The pseudo cost of a variable is the average number of non-integral variables that the next integrality check
+	 * found less than the check that branched on the variable. Variables that were never branched on get the average
+	 * pseudo cost of all variables.
+	 */
+	private static class PseudoCostPolicy extends BranchingPolicy {
+		private final HashMap<LinVar, double[]> mCosts = new HashMap<>();
+		private double mTotalCost;
+		private int mTotalCount;
+		private LinVar mLastBranch;
+		private int mLastFractional;
+
+		private double getCost(final LinVar var) {
+			final double[] cost = mCosts.get(var);
+			if (cost != null) {
+				return cost[0] / cost[1];
+			}
+			return mTotalCount == 0 ? 1 : mTotalCost / mTotalCount;
+		}
+
+		@Override
+		public LinVar select(final DPLLEngine engine, final List<LinVar> fractional) {
+			if (mLastBranch != null) {
+				final double gain = Math.max(0, mLastFractional - fractional.size());
+				double[] cost = mCosts.get(mLastBranch);
+				if (cost == null) {
+					cost = new double[2];
+					mCosts.put(mLastBranch, cost);
+				}
+				cost[0] += gain;
+				cost[1]++;
+				mTotalCost += gain;
+				mTotalCount++;
+			}
+			LinVar best = null;
+			double bestScore = 0;
+			for (final LinVar var : fractional) {
+				final double frac = getFractionality(var);
+				// add a small constant, so that the fractionality decides if no branch removed a variable.
+				final double score = (getCost(var) + 0.001) * frac * (1 - frac);
+				if (best == null || score > bestScore) {
+					best = var;
+					bestScore = score;
+				}
+			}
+			mLastBranch = best;
+			mLastFractional = fractional.size();
+			return best;
+		}
+	}
+
+	private static class ActivityPolicy extends ScoringPolicy {
+		@Override
+		double getScore(final DPLLEngine engine, final LinVar var) {
+			double activity = 0;
+			final BoundIndex<BoundConstraint> constraints = var.mConstraints;
+			for (int i = 0; i < constraints.size(); i++) {
+				activity = Math.max(activity, engine.getAtomActivity(constraints.getValue(i)));
+			}
+			return activity;
+		}
+	}
+}
@@ -18,8 +18,6 @@
  */
 package de.uni_freiburg.informatik.ultimate.smtinterpol.theory.linar;
 
-import java.util.Map.Entry;
-
 import de.uni_freiburg.informatik.ultimate.logic.Rational;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.Literal;
 
@@ -68,10 +66,10 @@ public class CompositeReason extends LAReason {
 		// composite literal.
 		boolean needToExplain = false;
 		if (isUpper()) {
-			final Entry<InfinitesimalNumber, BoundConstraint> nextEntry =
-				getVar().mConstraints.ceilingEntry(getBound());
-			if (nextEntry != null) {
-				final BoundConstraint nextBound = nextEntry.getValue();
+			final BoundIndex<BoundConstraint> constraints = getVar().mConstraints;
+			final int nextIndex = constraints.ceilingIndex(getBound());
+			if (nextIndex < constraints.size()) {
+				final BoundConstraint nextBound = constraints.getValue(nextIndex);
 				if (nextBound.getDecideStatus() == nextBound
 					&& explainer.canExplainWith(nextBound)) {
 					final InfinitesimalNumber diff = nextBound.getBound().sub(getBound());
@@ -84,10 +82,10 @@ public class CompositeReason extends LAReason {
 				}
 			}
 		} else {
-			final Entry<InfinitesimalNumber, BoundConstraint> nextEntry =
-				getVar().mConstraints.lowerEntry(getBound());
-			if (nextEntry != null) {
-				final BoundConstraint nextBound = nextEntry.getValue();
+			final BoundIndex<BoundConstraint> constraints = getVar().mConstraints;
+			final int nextIndex = constraints.ceilingIndex(getBound()) - 1;
+			if (nextIndex >= 0) {
+				final BoundConstraint nextBound = constraints.getValue(nextIndex);
 				if (nextBound.getDecideStatus() == nextBound.negate()
 					&& explainer.canExplainWith(nextBound)) {
 					final InfinitesimalNumber diff =
@@ -714,6 +714,7 @@ public class CutCreator {
 		if (isTight) {
 			// cut should be propagated automatically
 			mSolver.mNumCuts++;
+			mSolver.mCutManager.addCut(cut);
 		} else {
 			mSolver.mNumBranches++;
 		}
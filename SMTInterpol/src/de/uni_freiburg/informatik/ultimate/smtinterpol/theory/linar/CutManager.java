@@ -0,0 +1,276 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.theory.linar;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+import de.uni_freiburg.informatik.ultimate.logic.Rational;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.Config;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.DPLLAtom;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.Literal;
+
+/**
+ * The cut manager decides how the linear arithmetic solver continues if the solution of the simplex is not integral.
+ * It keeps a bounded pool of the cuts created so far, creates Gomory cuts from the current tableaux, and otherwise
+ * branches on a variable chosen by the {@link BranchingPolicy} or on the cut variables of the {@link CutCreator}.
+ * Branching alone does not terminate if the integer solutions are unbounded. Therefore the cuts from proofs are created
+ * periodically under every branching policy, and after too many branches in one check they are used exclusively.
+ *
+ * A Gomory cut is created from the row {@code b = sum a_j x_j} of a basic integer variable b with a non-integral
+ * value, where all x_j are integer variables at one of their bounds. Let r_j be a_j rounded down if x_j is at its
+ * lower bound and rounded up otherwise. Then {@code t = b - sum r_j x_j = sum (a_j - r_j) x_j} is an integer term,
+ * whose value is minimal in the current solution and not integral. The cut {@code t >= ceil(value(t))} follows from
+ * the rounded composite bound of t, so it is propagated by the tableaux and explained by the usual LA lemmas. Rows with
+ * real variables are skipped, since the mixed integer Gomory cut cannot be derived by rounding.
+ *
+ * The cuts in the pool age in every integrality check where they are not violated. Cuts that are violated again, e.g.,
+ * after backtracking, are suggested to the DPLL engine and become young again. Cuts that are too old are evicted, and
+ * if the pool is full, the oldest cut is evicted.
+ */
+public class CutManager {
+	private static class Cut {
+		final Literal mLiteral;
+		int mAge;
+
+		Cut(final Literal literal) {
+			mLiteral = literal;
+		}
+	}
+
+	private final LinArSolve mSolver;
+	private final ArrayList<Cut> mPool = new ArrayList<>();
+	private final HashSet<DPLLAtom> mPoolAtoms = new HashSet<>();
+	private BranchingPolicy.Strategy mBranchingStrategy = BranchingPolicy.Strategy.CUTS_FROM_PROOFS;
+	private BranchingPolicy mBranchingPolicy = mBranchingStrategy.create();
+	private boolean mGomoryCuts = Config.GOMORY_CUTS;
+	/** The number of consecutive integrality checks that were answered by a Gomory cut. */
+	private int mGomoryRounds;
+	/** The number of branches chosen by the branching policy since the cut creator was called last. */
+	private int mPolicyBranches;
+	/** The number of branches chosen by the branching policy in the current check. */
+	private int mCheckPolicyBranches;
+
+	/** Number of Gomory cuts created. */
+	int mNumGomoryCuts;
+	/** Number of times a cut from the pool was suggested again. */
+	int mNumPoolCuts;
+	/** Number of cuts evicted from the pool. */
+	int mNumEvictedCuts;
+
+	public CutManager(final LinArSolve solver) {
+		mSolver = solver;
+	}
+
+	public void setBranchingStrategy(final BranchingPolicy.Strategy strategy) {
+		mBranchingStrategy = strategy;
+		mBranchingPolicy = strategy.create();
+	}
+
+	public void setGomoryCuts(final boolean gomoryCuts) {
+		mGomoryCuts = gomoryCuts;
+	}
+
+	/**
+	 * Suggest a cut or a branch that excludes the current non-integral solution.
+	 *
+	 * @param fractional
+	 *            the integer variables with a non-integral value; not empty.
+	 */
+	void ensureIntegral(final List<LinVar> fractional) {
+		if (suggestPoolCuts()) {
+			return;
+		}
+		if (mGomoryCuts && mGomoryRounds < Config.GOMORY_MAX_ROUNDS && addGomoryCut()) {
+			mGomoryRounds++;
+			return;
+		}
+		mGomoryRounds = 0;
+		if (mPolicyBranches < Config.CUTS_FROM_PROOFS_INTERVAL
+				&& mCheckPolicyBranches < Config.POLICY_BRANCH_BUDGET) {
+			final LinVar var = mBranchingPolicy.select(mSolver.getEngine(), fractional);
+			if (var != null) {
+				mPolicyBranches++;
+				mCheckPolicyBranches++;
+				branch(var);
+				return;
+			}
+		}
+		mPolicyBranches = 0;
+		new CutCreator(mSolver).generateCuts();
+	}
+
+	/**
+	 * Reset the branch budget of the branching policy. This is called at the start of every check.
+	 */
+	void startCheck() {
+		mCheckPolicyBranches = 0;
+	}
+
+	/**
+	 * Add a cut to the pool, unless it is already there. If the pool is full, the oldest cut is evicted.
+	 *
+	 * @param cut
+	 *            the literal representing the cut.
+	 */
+	void addCut(final Literal cut) {
+		if (!mPoolAtoms.add(cut.getAtom())) {
+			return;
+		}
+		mPool.add(new Cut(cut));
+		if (mPool.size() > Config.CUT_POOL_SIZE) {
+			int oldest = 0;
+			for (int i = 1; i < mPool.size(); i++) {
+				if (mPool.get(i).mAge > mPool.get(oldest).mAge) {
+					oldest = i;
+				}
+			}
+			mPoolAtoms.remove(mPool.remove(oldest).mLiteral.getAtom());
+			mNumEvictedCuts++;
+		}
+	}
+
+	/**
+	 * Forget all cuts and the history of the branching policy. This is called on pop, since the atoms of the cuts and
+	 * the variables may be removed.
+	 */
+	void pop() {
+		mPool.clear();
+		mPoolAtoms.clear();
+		mGomoryRounds = 0;
+		mPolicyBranches = 0;
+		mBranchingPolicy = mBranchingStrategy.create();
+	}
+
+	private static boolean isViolated(final Literal cut) {
+		final BoundConstraint bc = (BoundConstraint) cut.getAtom();
+		final LinVar var = bc.getVar();
+		return cut == bc ? var.getValue().compareTo(bc.getBound()) > 0
+				: var.getValue().compareTo(bc.getInverseBound()) < 0;
+	}
+
+	/**
+	 * Suggest the cuts of the pool that are violated by the current solution and age the other cuts.
+	 *
+	 * @return true if a cut was suggested.
+	 */
+	private boolean suggestPoolCuts() {
+		boolean suggested = false;
+		final Iterator<Cut> it = mPool.iterator();
+		while (it.hasNext()) {
+			final Cut cut = it.next();
+			if (cut.mLiteral.getAtom().getDecideStatus() == null && isViolated(cut.mLiteral)) {
+				mSolver.mSuggestions.add(cut.mLiteral);
+				cut.mAge = 0;
+				mNumPoolCuts++;
+				suggested = true;
+			} else if (++cut.mAge > Config.CUT_MAX_AGE) {
+				it.remove();
+				mPoolAtoms.remove(cut.mLiteral.getAtom());
+				mNumEvictedCuts++;
+			}
+		}
+		return suggested;
+	}
+
+	/**
+	 * Create a Gomory cut from the row of a non-integral basic variable. The rows are tried in the order of decreasing
+	 * fractionality of the basic variable.
+	 *
+	 * @return true if a cut was created and suggested.
+	 */
+	private boolean addGomoryCut() {
+		final ArrayList<LinVar> candidates = new ArrayList<>();
+		for (final LinVar var : mSolver.mLinvars) {
+			final ExactInfinitesimalNumber value = var.getValue();
+			if (var.mBasic && var.mIsInt && value.getEpsilon().signum() == 0 && !value.getRealValue().isIntegral()) {
+				candidates.add(var);
+			}
+		}
+		Collections.sort(candidates, (v1, v2) -> Double.compare(BranchingPolicy.getFractionality(v2),
+				BranchingPolicy.getFractionality(v1)));
+		for (final LinVar basic : candidates) {
+			final Literal cut = createGomoryCut(basic);
+			if (cut != null && !mPoolAtoms.contains(cut.getAtom())) {
+				if (mSolver.getLogger().isDebugEnabled()) {
+					mSolver.getLogger().debug("gomory cut " + cut);
+				}
+				mSolver.mSuggestions.add(cut);
+				mNumGomoryCuts++;
+				addCut(cut);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Create the Gomory cut for the row of a basic variable.
+	 *
+	 * @param basic
+	 *            the basic integer variable with a non-integral value.
+	 * @return the literal representing the cut, or null if the row contains a variable that is real, not at a bound,
+	 *         or has an infinitesimal value, or if the cut contains too many variables.
+	 */
+	private Literal createGomoryCut(final LinVar basic) {
+		// the cut ceil(value(t)) - t <= 0 for t = basic - sum r_j x_j.
+		final MutableAffineTerm cut = new MutableAffineTerm();
+		cut.add(Rational.MONE, basic);
+		Rational value = basic.getValue().getRealValue();
+		for (final MatrixEntry entry : basic.getTableauxRow(mSolver)) {
+			final LinVar column = entry.getColumn();
+			final Rational coeff = entry.getFactor();
+			final ExactInfinitesimalNumber columnValue = column.getValue();
+			if (!column.mIsInt || columnValue.getEpsilon().signum() != 0) {
+				return null;
+			}
+			final Rational rounded;
+			if (columnValue.compareTo(column.getLowerBound()) == 0) {
+				rounded = coeff.floor();
+			} else if (columnValue.compareTo(column.getUpperBound()) == 0) {
+				rounded = coeff.ceil();
+			} else {
+				return null;
+			}
+			cut.add(rounded, column);
+			value = value.sub(rounded.mul(columnValue.getRealValue()));
+		}
+		assert !value.isIntegral();
+		if (cut.isConstant() || cut.getSummands().size() > Config.GOMORY_MAX_SIZE) {
+			return null;
+		}
+		cut.add(value.ceil());
+		return mSolver.generateConstraint(cut, false);
+	}
+
+	private void branch(final LinVar var) {
+		final ExactInfinitesimalNumber value = var.getValue();
+		final InfinitesimalNumber bound =
+				new InfinitesimalNumber(value.getRealValue(), value.getEpsilon().signum()).floor();
+		final Literal branch = mSolver.generateConstraint(var, bound, false);
+		if (mSolver.getLogger().isDebugEnabled()) {
+			mSolver.getLogger().debug("branch on " + branch);
+		}
+		mSolver.mSuggestions.add(branch);
+		mSolver.mNumBranches++;
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.theory.linar;
+
+import java.util.Iterator;
+
+import de.uni_freiburg.informatik.ultimate.logic.Rational;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.Config;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.Clause;
+
+/**
+ * A pivoting engine that repairs the basic variables that are out of bounds one at a time, in the style of the dual
+ * simplex algorithm as used in [DdM2006]. The non-basic variables always stay within their bounds. In each step, a
+ * basic variable that violates one of its bounds leaves the basis. It is pivoted with a non-basic variable of its row
+ * that can still move in the direction that repairs the violation, and then it is set to the violated bound. If no
+ * such non-basic variable exists, the row is a conflict.
+ *
+ * <p>
+ * In contrast to the {@link SOIPivoter}, only the rows of the variables that are out of bounds are visited. This makes
+ * the engine cheap if only few bounds changed since the last consistent state, e.g., after backtracking and setting a
+ * few literals again. The variables are chosen greedily: the basic variable with the largest violation leaves, and the
+ * candidate with the fewest dependent rows enters the basis. After {@link Config#BLAND_USE_FACTOR} times the number of
+ * variables pivot steps, the engine switches to Bland's rule, which always picks the smallest variables and thus
+ * guarantees termination.
+ *
+ * <dl>
+ * <dt>[DdM2006]</dt>
+ * <dd>B. Dutertre, L. de Moura: A Fast Linear-Arithmetic Solver for DPLL(T). CAV 2006</dd>
+ * </dl>
+ */
+public class DualSimplexPivoter {
+
+	final LinArSolve mSolver;
+	/** True if Bland's rule is used to choose the variables. */
+	boolean mUseBland;
+
+	public DualSimplexPivoter(final LinArSolve solver) {
+		mSolver = solver;
+	}
+
+	private static ExactInfinitesimalNumber computeViolation(final LinVar var) {
+		if (var.getValue().compareTo(var.getLowerBound()) < 0) {
+			return var.getValue().isub(var.getLowerBound()).abs();
+		}
+		return var.getValue().isub(var.getUpperBound()).abs();
+	}
+
+	/**
+	 * Choose the basic variable that leaves the basis. Variables that are no longer basic or no longer out of bounds are
+	 * removed from the set of out of bound variables.
+	 *
+	 * @return the chosen variable, or null if all variables are within their bounds.
+	 */
+	private LinVar selectLeaving() {
+		LinVar best = null;
+		ExactInfinitesimalNumber bestViolation = null;
+		for (final Iterator<LinVar> it = mSolver.mOob.iterator(); it.hasNext();) {
+			final LinVar var = it.next();
+			if (!var.mBasic || !var.outOfBounds()) {
+				it.remove();
+				continue;
+			}
+			if (mUseBland) {
+				if (best == null || var.compareTo(best) < 0) {
+					best = var;
+				}
+			} else {
+				final ExactInfinitesimalNumber violation = computeViolation(var);
+				final int cmp = best == null ? 1 : violation.compareTo(bestViolation);
+				if (cmp > 0 || (cmp == 0 && var.compareTo(best) < 0)) {
+					best = var;
+					bestViolation = violation;
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Choose the non-basic variable that enters the basis.
+	 *
+	 * @param basic
+	 *            the leaving basic variable.
+	 * @param increase
+	 *            true if the basic variable must increase, i.e., it violates its lower bound.
+	 * @return the chosen variable, or null if no variable of the row can move in the right direction.
+	 */
+	private LinVar selectEntering(final LinVar basic, final boolean increase) {
+		LinVar best = null;
+		int bestRows = Integer.MAX_VALUE;
+		for (final MatrixEntry entry : basic.getTableauxRow(mSolver)) {
+			final LinVar column = entry.getColumn();
+			// the column must move in the same direction as the basic variable if its factor is positive.
+			final boolean columnIncrease = (entry.getFactor().signum() > 0) == increase;
+			if (columnIncrease ? column.getValue().compareTo(column.getUpperBound()) >= 0
+					: column.getValue().compareTo(column.getLowerBound()) <= 0) {
+				continue;
+			}
+			if (mUseBland) {
+				if (best == null || column.compareTo(best) < 0) {
+					best = column;
+				}
+			} else {
+				final int rows = mSolver.mDependentRows.get(column.mMatrixpos).cardinality();
+				if (rows < bestRows || (rows == bestRows && column.compareTo(best) < 0)) {
+					best = column;
+					bestRows = rows;
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Explain why a basic variable cannot be moved into its bounds. Every non-basic variable of its row is at the bound
+	 * that prevents the repair.
+	 */
+	private Clause computeConflict(final LinVar basic, final boolean increase) {
+		final Explainer explainer = new Explainer(mSolver, mSolver.getEngine().isProofGenerationEnabled(), null);
+		if (increase) {
+			basic.mLowerLiteral.explain(explainer, InfinitesimalNumber.ZERO, Rational.MONE);
+		} else {
+			basic.mUpperLiteral.explain(explainer, InfinitesimalNumber.ZERO, Rational.ONE);
+		}
+		for (final MatrixEntry entry : basic.getTableauxRow(mSolver)) {
+			final LinVar column = entry.getColumn();
+			final Rational coeff = increase ? entry.getFactor() : entry.getFactor().negate();
+			final LiteralReason reason = coeff.signum() > 0 ? column.mUpperLiteral : column.mLowerLiteral;
+			reason.explain(explainer, InfinitesimalNumber.ZERO, coeff);
+		}
+		return explainer.createClause(mSolver.getEngine());
+	}
+
+	/**
+	 * The main procedure. Fixes all out of bound variables.
+	 *
+	 * @return a conflict clause if some conflict was found, or null, if a solution satisfying all bounds was found.
+	 */
+	public Clause fixOobs() {
+		mSolver.getLogger().debug("=== dual fixoobs ===");
+		final long blandLimit = (long) Config.BLAND_USE_FACTOR * mSolver.mLinvars.size();
+		long numPivots = 0;
+		while (true) {
+			final LinVar basic = selectLeaving();
+			if (basic == null) {
+				return null;
+			}
+			final boolean increase = basic.getValue().compareTo(basic.getLowerBound()) < 0;
+			final LinVar entering = selectEntering(basic, increase);
+			if (entering == null) {
+				mSolver.getLogger().debug("Conflict after %d dual pivot steps", numPivots);
+				return computeConflict(basic, increase);
+			}
+			mSolver.pivot(basic.mMatrixpos, entering.mMatrixpos);
+			mSolver.mNumPivotsDual++;
+			if (mUseBland) {
+				mSolver.mNumPivotsBland++;
+			}
+			mSolver.updateVariableValue(basic,
+					new ExactInfinitesimalNumber(increase ? basic.getLowerBound() : basic.getUpperBound()));
+			if (!mUseBland && ++numPivots > blandLimit) {
+				mSolver.getLogger().debug("Switching to Bland's rule after %d dual pivot steps", numPivots);
+				mUseBland = true;
+			}
+		}
+	}
+}
@@ -37,6 +37,7 @@ import java.util.TreeSet;
 import de.uni_freiburg.informatik.ultimate.logic.ApplicationTerm;
 import de.uni_freiburg.informatik.ultimate.logic.FunctionSymbol;
 import de.uni_freiburg.informatik.ultimate.logic.Rational;
+import de.uni_freiburg.informatik.ultimate.logic.Sort;
 import de.uni_freiburg.informatik.ultimate.logic.Term;
 import de.uni_freiburg.informatik.ultimate.logic.Theory;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.Config;
@@ -53,6 +54,8 @@ import de.uni_freiburg.informatik.ultimate.smtinterpol.model.Model;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.model.SharedTermEvaluator;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.proof.LeafNode;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.theory.cclosure.CCEquality;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.theory.cclosure.CCTerm;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.util.SymmetricPair;
 import de.uni_freiburg.informatik.ultimate.util.DebugMessage;
 import de.uni_freiburg.informatik.ultimate.util.datastructures.ScopedArrayList;
 import de.uni_freiburg.informatik.ultimate.util.datastructures.ScopedHashMap;
@@ -88,6 +91,36 @@ import de.uni_freiburg.informatik.ultimate.util.datastructures.ScopedHashMap;
  * @author Juergen Christ, Jochen Hoenicke
  */
 public class LinArSolve implements ITheory {
+	/**
+	 * The pivoting engines that repair the variables that are out of bounds.
+	 */
+	public static enum SimplexStrategy {
+		/**
+		 * Minimize the sum of infeasibilities, see {@link SOIPivoter}.
+		 */
+		SOI,
+		/**
+		 * Repair one basic variable at a time, see {@link DualSimplexPivoter}.
+		 */
+		DUAL
+	}
+
+	/**
+	 * The ways to create the interface equalities between shared terms for the theory combination with the congruence
+	 * closure.
+	 */
+	public static enum TheoryCombination {
+		/**
+		 * Propose equalities between all shared terms that have the same value in the current model.
+		 */
+		MODEL_BASED,
+		/**
+		 * Propose equalities between shared terms with the same value only if the congruence closure does not already
+		 * have them in the same congruence class. Only one equality per congruence class is created.
+		 */
+		LAZY
+	}
+
 	/** The Clausifier. */
 	final Clausifier mClausifier;
 	/** The list of all variables (basic and nonbasic, integer and reals) indexed by their matrix position. */
@@ -119,10 +152,18 @@ public class LinArSolve implements ITheory {
 	int mNumPivots;
 	/** Pivot counter. */
 	int mNumPivotsBland;
+	/** Number of pivot operations done by the dual simplex engine. */
+	int mNumPivotsDual;
+	/** Number of pivot operations done to optimize an objective. */
+	int mNumPivotsOpt;
+	/** Number of objectives optimized by {@link #maximize}. */
+	int mNumOptimizations;
 	/** Time needed for pivoting operations. */
 	long mPivotTime;
 	/** Time needed for fixOobs (including searching for pivot). */
 	long mFixTime;
+	/** Time needed for fixOobs by the dual simplex engine. */
+	long mDualFixTime;
 	/** Number of literals created due to composites. */
 	int mCompositeCreateLit;
 
@@ -135,9 +176,20 @@ public class LinArSolve implements ITheory {
 	long mCutGenTime;
 	final ScopedArrayList<LASharedTerm> mSharedVars =
 		new ScopedArrayList<>();
+	/**
+	 * The interface equalities proposed by the theory combination. They are kept until the assertion stack level is
+	 * popped, so that they are not created again after backtracking or restarts.
+	 */
+	private final ScopedHashMap<SymmetricPair<Term>, CCEquality> mInterfaceEqualities = new ScopedHashMap<>();
+	/** Number of distinct interface equalities proposed by the theory combination. */
+	int mNumMbtcCreated;
+	/** Number of interface equalities that the theory combination suggested or propagated. */
+	int mNumMbtcUsed;
 
 	/** The next suggested literals */
 	final ArrayDeque<Literal> mSuggestions;
+	/** The cut pool and branching policy used if the solution is not integral. */
+	final CutManager mCutManager;
 
 	private long mPropBoundTime;
 	private long mPropBoundSetTime;
@@ -151,6 +203,10 @@ public class LinArSolve implements ITheory {
 
 	/** Are we in a check-sat? */
 	private boolean mInCheck = false;
+	/** The pivoting engine used by fixOobs. */
+	private SimplexStrategy mSimplexStrategy = SimplexStrategy.SOI;
+	/** The way interface equalities are created in the final check. */
+	private TheoryCombination mTheoryCombination = TheoryCombination.MODEL_BASED;
 	/**
 	 * Basic initialization.
 	 * @param engine DPLLEngine this theory is used in.
@@ -164,6 +220,7 @@ public class LinArSolve implements ITheory {
 		mDirty = new BitSet();
 		mProplist = new ArrayDeque<>();
 		mSuggestions = new ArrayDeque<>();
+		mCutManager = new CutManager(this);
 		mBasics = new ScopedHashMap<>();
 		mOob = new HashSet<>();
 		mNumPivots = 0;
@@ -176,6 +233,22 @@ public class LinArSolve implements ITheory {
 //		m_compositeWatchers = new HashMap<LAReason, Set<CompositeReason>>();
 	}
 
+	public void setSimplexStrategy(final SimplexStrategy strategy) {
+		mSimplexStrategy = strategy;
+	}
+
+	public void setTheoryCombination(final TheoryCombination combination) {
+		mTheoryCombination = combination;
+	}
+
+	public void setBranchingPolicy(final BranchingPolicy.Strategy strategy) {
+		mCutManager.setBranchingStrategy(strategy);
+	}
+
+	public void setGomoryCuts(final boolean gomoryCuts) {
+		mCutManager.setGomoryCuts(gomoryCuts);
+	}
+
 	public DPLLEngine getEngine() {
 		return mClausifier.getEngine();
 	}
@@ -278,7 +351,7 @@ public class LinArSolve implements ITheory {
 			ExactInfinitesimalNumber curValue = ExactInfinitesimalNumber.ZERO;
 			for (final MatrixEntry entry : var.getTableauxRow(this)) {
 				final LinVar colVar = entry.getColumn();
-				final Rational coeff = Rational.valueOf(entry.getCoeff(), entry.getHeadCoeff().negate());
+				final Rational coeff = entry.getFactor();
 				curValue = curValue.add(colVar.getValue().mul(coeff));
 				mDependentRows.get(colVar.mMatrixpos).set(var.mMatrixpos);
 			}
@@ -322,7 +395,7 @@ public class LinArSolve implements ITheory {
 		for (final MatrixEntry entry : updateVar.getTableauxColumn(this)) {
 			final LinVar var = entry.getRow();
 			assert var.mBasic;
-			final Rational coeff = Rational.valueOf(entry.getCoeff(), entry.getHeadCoeff().negate());
+			final Rational coeff = entry.getFactor();
 			var.addValue(diff.mul(coeff));
 			assert !var.getValue().getRealValue().denominator().equals(BigInteger.ZERO);
 			if (var.outOfBounds()) {
@@ -355,7 +428,7 @@ public class LinArSolve implements ITheory {
 		for (final MatrixEntry entry : updateVar.getTableauxColumn(this)) {
 			final LinVar var = entry.getRow();
 			assert var.mBasic;
-			final Rational coeff = Rational.valueOf(entry.getCoeff(), entry.getHeadCoeff().negate());
+			final Rational coeff = entry.getFactor();
 			if (changeVar) {
 				var.addValue(diff.mul(coeff));
 			}
@@ -511,25 +584,35 @@ public class LinArSolve implements ITheory {
 		// recheck bound propagations
 		for (final LinVar lv : mLinvars) {
 			if (lv.hasTightUpperBound()) {
-				for (final BoundConstraint bc : lv.mConstraints.tailMap(lv.getTightUpperBound(), true).values()) {
+				final BoundIndex<BoundConstraint> constraints = lv.mConstraints;
+				for (int i = constraints.ceilingIndex(lv.getTightUpperBound()); i < constraints.size(); i++) {
+					final BoundConstraint bc = constraints.getValue(i);
 					assert lv.getTightUpperBound().lesseq(bc.getBound());
 					if (bc.getDecideStatus() == null) {
 						mProplist.add(bc);
 					}
 				}
-				for (final LAEquality laeq : lv.mEqualities.tailMap(lv.getTightUpperBound(), false).values()) {
+				final BoundIndex<LAEquality> equalities = lv.mEqualities;
+				for (int i = equalities.higherIndex(lv.getTightUpperBound()); i < equalities.size(); i++) {
+					final LAEquality laeq = equalities.getValue(i);
 					if (laeq.getDecideStatus() == null) {
 						mProplist.add(laeq.negate());
 					}
 				}
 			}
 			if (lv.hasTightLowerBound()) {
-				for (final BoundConstraint bc : lv.mConstraints.headMap(lv.getTightLowerBound(), false).values()) {
+				final BoundIndex<BoundConstraint> constraints = lv.mConstraints;
+				final int constraintsEnd = constraints.ceilingIndex(lv.getTightLowerBound());
+				for (int i = 0; i < constraintsEnd; i++) {
+					final BoundConstraint bc = constraints.getValue(i);
 					if (bc.getDecideStatus() == null) {
 						mProplist.add(bc.negate());
 					}
 				}
-				for (final LAEquality laeq : lv.mEqualities.headMap(lv.getTightLowerBound(), false).values()) {
+				final BoundIndex<LAEquality> equalities = lv.mEqualities;
+				final int equalitiesEnd = equalities.ceilingIndex(lv.getTightLowerBound());
+				for (int i = 0; i < equalitiesEnd; i++) {
+					final LAEquality laeq = equalities.getValue(i);
 					if (laeq.getDecideStatus() == null) {
 						mProplist.add(laeq.negate());
 					}
@@ -556,9 +639,9 @@ public class LinArSolve implements ITheory {
 
 			boolean hasUpper = true, hasLower = true;
 			final TableauxRow row = mTableaux.get(var.mMatrixpos);
-			final int sign = -row.getRawCoeff(0).signum();
+			final int sign = -row.getRawSignum(0);
 			for (int i = 1; i < row.size(); i++) {
-				final int coeffSign = row.getRawCoeff(i).signum();
+				final int coeffSign = row.getRawSignum(i);
 				final LinVar colvar = mLinvars.get(row.getRawIndex(i));
 				if (hasUpper) {
 					final InfinitesimalNumber colBound = coeffSign == sign ? colvar.getTightUpperBound()
@@ -583,7 +666,7 @@ public class LinArSolve implements ITheory {
 				InfinitesimalNumber upperBound = InfinitesimalNumber.ZERO;
 				InfinitesimalNumber lowerBound = InfinitesimalNumber.ZERO;
 				for (final MatrixEntry entry : var.getTableauxRow(this)) {
-					final Rational coeff = Rational.valueOf(entry.getCoeff(), entry.getHeadCoeff().negate());
+					final Rational coeff = entry.getFactor();
 					final LinVar colvar = entry.getColumn();
 					if (hasUpper) {
 						final InfinitesimalNumber colBound = coeff.signum() > 0 ? colvar.getUpperBound()
@@ -660,7 +743,7 @@ public class LinArSolve implements ITheory {
 			}
 		}
 		if (mSuggestions.isEmpty() && mProplist.isEmpty()) {
-			return mbtc(cong);
+			return mTheoryCombination == TheoryCombination.LAZY ? lazyMbtc(cong) : mbtc(cong);
 		}
 		assert compositesSatisfied();
 		return null;
@@ -915,15 +998,17 @@ public class LinArSolve implements ITheory {
 				mOob.add(var);
 			}
 
-			for (final BoundConstraint bc
-					: var.mConstraints.subMap(bound, oldBound).values()) {
+			final BoundIndex<BoundConstraint> constraints = var.mConstraints;
+			final int constraintsEnd = constraints.ceilingIndex(oldBound);
+			for (int i = constraints.ceilingIndex(bound); i < constraintsEnd; i++) {
+				final BoundConstraint bc = constraints.getValue(i);
 				assert var.getTightUpperBound().lesseq(bc.getBound());
 				mProplist.add(bc);
 			}
-			for (final LAEquality laeq
-					: var.mEqualities.subMap(bound.add(var.getEpsilon()),
-							oldBound.add(var.getEpsilon())).values()) {
-				mProplist.add(laeq.negate());
+			final BoundIndex<LAEquality> equalities = var.mEqualities;
+			final int equalitiesEnd = equalities.ceilingIndex(oldBound.add(var.getEpsilon()));
+			for (int i = equalities.ceilingIndex(bound.add(var.getEpsilon())); i < equalitiesEnd; i++) {
+				mProplist.add(equalities.getValue(i).negate());
 			}
 		} else {
 			// lower
@@ -957,14 +1042,17 @@ public class LinArSolve implements ITheory {
 				mOob.add(var);
 			}
 
-			for (final BoundConstraint bc
-					: var.mConstraints.subMap(oldBound, bound).values()) {
+			final BoundIndex<BoundConstraint> constraints = var.mConstraints;
+			final int constraintsEnd = constraints.ceilingIndex(bound);
+			for (int i = constraints.ceilingIndex(oldBound); i < constraintsEnd; i++) {
+				final BoundConstraint bc = constraints.getValue(i);
 				assert bc.getInverseBound().lesseq(var.getTightLowerBound());
 				mProplist.add(bc.negate());
 			}
-			for (final LAEquality laeq
-					: var.mEqualities.subMap(oldBound, bound).values()) {
-				mProplist.add(laeq.negate());
+			final BoundIndex<LAEquality> equalities = var.mEqualities;
+			final int equalitiesEnd = equalities.ceilingIndex(bound);
+			for (int i = equalities.ceilingIndex(oldBound); i < equalitiesEnd; i++) {
+				mProplist.add(equalities.getValue(i).negate());
 			}
 		}
 		final InfinitesimalNumber ubound = var.getTightUpperBound();
@@ -1111,6 +1199,14 @@ public class LinArSolve implements ITheory {
 		return value.getRealValue().addmul(value.getEpsilon(), mEps);
 	}
 
+	/**
+	 * Forget the value of epsilon chosen for the last model. This must be called if a model was built during the
+	 * search, since the bounds may change afterwards.
+	 */
+	public void invalidateModel() {
+		mEps = null;
+	}
+
 	public void dumpTableaux(final LogProxy logger) {
 		for (final TableauxRow row : mTableaux) {
 			if (row != null) {
@@ -1197,6 +1293,8 @@ public class LinArSolve implements ITheory {
 		if (logger.isInfoEnabled()) {
 			logger.info("Number of Bland pivoting-Operations: "
 					+ mNumPivotsBland + "/" + mNumPivots);
+			logger.info("Number of dual pivoting-Operations: " + mNumPivotsDual);
+			logger.info("Number of optimizations: " + mNumOptimizations + " pivots: " + mNumPivotsOpt);
 			int basicVars = 0;
 			for (final LinVar var : mLinvars) {
 				if (!var.isInitiallyBasic()) {
@@ -1206,6 +1304,7 @@ public class LinArSolve implements ITheory {
 			logger.info("Number of variables: " + mLinvars.size()
 					+ " nonbasic: " + basicVars + " shared: " + mSharedVars.size());
 			logger.info("Time for fix Oob          : " + mFixTime / 1000000);
+			logger.info("Time for dual fix Oob     : " + mDualFixTime / 1000000);
 			logger.info("Time for pivoting         : " + mPivotTime / 1000000);
 			logger.info("Time for bound computation: " + mPropBoundTime / 1000000);
 			logger.info("Time for bound setting    : " + mPropBoundSetTime / 1000000);
@@ -1215,6 +1314,9 @@ public class LinArSolve implements ITheory {
 			logger.info("Time for cut-generation: " + mCutGenTime / 1000000);
 			logger.info("Count/Time for getUpperBound: %d / %.3f", mCountGetUpperBound, mTimeGetUpperBound / 1e9);
 			logger.info("Number of branchings: " + mNumBranches);
+			logger.info("Number of Gomory cuts: " + mCutManager.mNumGomoryCuts);
+			logger.info("Number of reused/evicted pool cuts: " + mCutManager.mNumPoolCuts + "/"
+					+ mCutManager.mNumEvictedCuts);
 		}
 	}
 
@@ -1290,14 +1392,14 @@ public class LinArSolve implements ITheory {
 	 * @return Conflict clause or <code>null</code> if formula is satisfiable.
 	 */
 	private Clause ensureIntegrals() {
-		boolean isIntegral = true;
+		final ArrayList<LinVar> fractional = new ArrayList<>();
 		for (final LinVar lv : mIntVars) {
 			final ExactInfinitesimalNumber value = lv.getValue();
 			if (!value.getRealValue().isIntegral() || !value.getEpsilon().equals(Rational.ZERO)) {
-				isIntegral = false;
+				fractional.add(lv);
 			}
 		}
-		if (isIntegral) {
+		if (fractional.isEmpty()) {
 			return null;
 		}
 
@@ -1313,8 +1415,7 @@ public class LinArSolve implements ITheory {
 		if (Config.PROFILE_TIME) {
 			start = System.nanoTime();
 		}
-		final CutCreator cutter = new CutCreator(this);
-		cutter.generateCuts();
+		mCutManager.ensureIntegral(fractional);
 		if (Config.PROFILE_TIME) {
 			mCutGenTime += System.nanoTime() - start;
 		}
@@ -1359,14 +1460,19 @@ public class LinArSolve implements ITheory {
 			return null;
 		}
 
-		final Clause conflict = new SOIPivoter(this).fixOobs();
+		final Clause conflict = mSimplexStrategy == SimplexStrategy.DUAL ? new DualSimplexPivoter(this).fixOobs()
+				: new SOIPivoter(this).fixOobs();
 		if (conflict == null) {
 			mOob.clear();
 		}
 		assert checkClean();
 		assert !Config.EXPENSIVE_ASSERTS || checkoobcontent();
 		if (Config.PROFILE_TIME) {
-			mFixTime += System.nanoTime() - starttime;
+			final long time = System.nanoTime() - starttime;
+			mFixTime += time;
+			if (mSimplexStrategy == SimplexStrategy.DUAL) {
+				mDualFixTime += time;
+			}
 		}
 		return conflict;
 	}
@@ -1390,7 +1496,6 @@ public class LinArSolve implements ITheory {
 		}
 		if (isUpper ? bound.less(basic.getTightUpperBound()) : basic.getTightLowerBound().less(bound)) {
 			final TableauxRow row = mTableaux.get(basic.mMatrixpos);
-			final BigInteger denom = row.getRawCoeff(0).negate();
 
 			LAReason[] reasons;
 			Rational[] coeffs;
@@ -1402,7 +1507,7 @@ public class LinArSolve implements ITheory {
 				coeffs = new Rational[rowLength];
 				for (int i = 0; i < rowLength; i++) {
 					final LinVar nb = mLinvars.get(row.getRawIndex(i + 1));
-					final Rational coeff = Rational.valueOf(row.getRawCoeff(i + 1), denom);
+					final Rational coeff = row.getRawFactor(i + 1);
 					rowVars[i] = nb;
 					reasons[i] = coeff.isNegative() == isUpper ? nb.mLower : nb.mUpper;
 					coeffs[i] = coeff;
@@ -1469,7 +1574,7 @@ public class LinArSolve implements ITheory {
 		return generateConstraint(var,rbound,isLowerBound);
 	}
 
-	private Literal generateConstraint(final LinVar var, final InfinitesimalNumber rbound,
+	Literal generateConstraint(final LinVar var, final InfinitesimalNumber rbound,
 			final boolean isLowerBound) {
 		BoundConstraint bc = var.mConstraints.get(rbound);
 		if (bc == null) {
@@ -1527,9 +1632,8 @@ public class LinArSolve implements ITheory {
 		if (lv.mBasic) {
 			// currently basic variable
 			final TableauxRow row = mTableaux.get(lv.mMatrixpos);
-			final BigInteger denom = row.getRawCoeff(0).negate();
 			for (int i = 1; i < row.size(); i++) {
-				final Rational coeff = Rational.valueOf(row.getRawCoeff(i), denom);
+				final Rational coeff = row.getRawFactor(i);
 				unsimplifyAndAdd(mLinvars.get(row.getRawIndex(i)), fac.mul(coeff), facs);
 			}
 		} else {
@@ -1562,7 +1666,7 @@ public class LinArSolve implements ITheory {
 		for (final MatrixEntry me : var.getTableauxColumn(this)) {
 			assert min.signum() <= 0 && max.signum() >= 0;
 			final LinVar rowVar = me.getRow();
-			final Rational coeff = Rational.valueOf(me.getHeadCoeff().negate(), me.getCoeff());
+			final Rational coeff = me.getFactor().inverse();
 			final ExactInfinitesimalNumber rowvalue = rowVar.getValue();
 			final ExactInfinitesimalNumber below = rowvalue.isub(rowVar.getLowerBound()).mul(coeff);
 			final ExactInfinitesimalNumber above = rowvalue.isub(rowVar.getUpperBound()).mul(coeff);
@@ -1631,7 +1735,7 @@ public class LinArSolve implements ITheory {
 			}
 			for (final MatrixEntry it1 : mutatingLV.getTableauxColumn(this)) {
 				final LinVar basic = it1.getRow();
-				final Rational coeff = Rational.valueOf(it1.getCoeff().negate(), it1.getHeadCoeff());
+				final Rational coeff = it1.getFactor();
 				if (!basic.isInitiallyBasic()) {
 					basicFactors.put(basic, coeff);
 				}
@@ -1864,8 +1968,6 @@ public class LinArSolve implements ITheory {
 			LASharedTerm shared1OtherSort = null;
 			while (it.hasNext()) {
 				final LASharedTerm shared2 = it.next();
-				final EqualityProxy eq;
-				final CCEquality cceq;
 				Term lhs = shared1.getTerm();
 				final Term rhs = shared2.getTerm();
 				if (lhs.getSort() != rhs.getSort()) {
@@ -1883,31 +1985,90 @@ public class LinArSolve implements ITheory {
 						lhs = shared1OtherSort.getTerm();
 					}
 				}
-				assert lhs.getSort() == rhs.getSort();
-				eq = mClausifier.createEqualityProxy(lhs, rhs);
-				assert eq != EqualityProxy.getTrueProxy();
-				assert eq != EqualityProxy.getFalseProxy();
-				cceq = eq.createCCEquality(lhs, rhs);
-				if (cceq.getLASharedData().getDecideStatus() != null) { // NOPMD
-					if (cceq.getDecideStatus() == cceq.negate()) {
-						return generateEqualityClause(cceq);
-					} else if (cceq.getDecideStatus() == null) {
-						mProplist.add(cceq);
-					} else {
-						mClausifier.getLogger().debug(
-								new DebugMessage("already set: {0}",
-										cceq.getAtom().getDecideStatus()));
-					}
-				} else {
-					mClausifier.getLogger().debug(new DebugMessage(
-							"MBTC: Suggesting literal {0}",cceq));
-					mSuggestions.add(cceq.getLASharedData());
+				final Clause conflict = proposeEquality(lhs, rhs);
+				if (conflict != null) {
+					return conflict;
 				}
 			}
 		}
 		return null;
 	}
 
+	/**
+	 * Model-based theory combination that only proposes equalities on which the congruence closure disagrees with the
+	 * current model. For every set of shared terms with the same value, only one shared term per congruence class is
+	 * considered and these are linked to the first one of the same sort.
+	 */
+	private Clause lazyMbtc(final Map<ExactInfinitesimalNumber, List<LASharedTerm>> cong) {
+		for (final Map.Entry<ExactInfinitesimalNumber, List<LASharedTerm>> congclass : cong.entrySet()) {
+			final List<LASharedTerm> lcongclass = congclass.getValue();
+			if (lcongclass.size() <= 1) {
+				continue;
+			}
+			final Set<CCTerm> ccClasses = new HashSet<>();
+			final Map<Sort, Term> firstOfSort = new HashMap<>();
+			for (final LASharedTerm shared : lcongclass) {
+				final Term term = shared.getTerm();
+				final CCTerm ccTerm = mClausifier.getCCTerm(term);
+				assert ccTerm != null;
+				if (!ccClasses.add(ccTerm.getRepresentative())) {
+					// the congruence closure already agrees with the model
+					continue;
+				}
+				final Term first = firstOfSort.get(term.getSort());
+				if (first == null) {
+					firstOfSort.put(term.getSort(), term);
+					continue;
+				}
+				mClausifier.getLogger().debug("propagating lazy MBTC: %s = %s", first, term);
+				final Clause conflict = proposeEquality(first, term);
+				if (conflict != null) {
+					return conflict;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Propose the interface equality between two shared terms with the same value. The equality is propagated if its
+	 * linear arithmetic part is already set, and suggested as decision otherwise.
+	 *
+	 * @return a conflict clause if the congruence closure already set the equality to false, null otherwise.
+	 */
+	private Clause proposeEquality(final Term lhs, final Term rhs) {
+		assert lhs.getSort() == rhs.getSort();
+		final SymmetricPair<Term> key = new SymmetricPair<>(lhs, rhs);
+		CCEquality cceq = mInterfaceEqualities.get(key);
+		if (cceq == null) {
+			final EqualityProxy eq = mClausifier.createEqualityProxy(lhs, rhs);
+			assert eq != EqualityProxy.getTrueProxy();
+			assert eq != EqualityProxy.getFalseProxy();
+			cceq = eq.createCCEquality(lhs, rhs);
+			mInterfaceEqualities.put(key, cceq);
+			mNumMbtcCreated++;
+		}
+		if (cceq.getLASharedData().getDecideStatus() != null) { // NOPMD
+			if (cceq.getDecideStatus() == cceq.negate()) {
+				mNumMbtcUsed++;
+				return generateEqualityClause(cceq);
+			} else if (cceq.getDecideStatus() == null) {
+				mNumMbtcUsed++;
+				mProplist.add(cceq);
+			} else {
+				mClausifier.getLogger().debug(
+						new DebugMessage("already set: {0}",
+								cceq.getAtom().getDecideStatus()));
+			}
+		} else {
+			mClausifier.getLogger().debug(new DebugMessage(
+					"MBTC: Suggesting literal {0}",cceq));
+			mNumMbtcUsed++;
+			mSuggestions.add(cceq.getLASharedData());
+		}
+		return null;
+	}
+
 	@Override
 	public Literal getSuggestion() {
 		Literal res;
@@ -1992,6 +2153,7 @@ public class LinArSolve implements ITheory {
 	public Clause startCheck() {
 		mEps = null;
 		mInCheck = true;
+		mCutManager.startCheck();
 		return null; // simplifyTableau();
 	}
 
@@ -2071,10 +2233,12 @@ public class LinArSolve implements ITheory {
 		}
 		mLinvars.endScope();
 		mSharedVars.endScope();
+		mInterfaceEqualities.endScope();
 		mBasics.endScope();
 		// TODO This is a bit too much but should work
 		mSuggestions.clear();
 		mProplist.clear();
+		mCutManager.pop();
 		assert popPost();
 	}
 
@@ -2086,6 +2250,7 @@ public class LinArSolve implements ITheory {
 	public void push() {
 		mBasics.beginScope();
 		mSharedVars.beginScope();
+		mInterfaceEqualities.beginScope();
 		mLinvars.beginScope();
 	}
 
@@ -2095,14 +2260,23 @@ public class LinArSolve implements ITheory {
 			":LA", new Object[][] {
 				{"Pivot", mNumPivots},
 				{"PivotBland", mNumPivotsBland},
+				{"PivotDual", mNumPivotsDual},
+				{"PivotOpt", mNumPivotsOpt},
+				{"Optimize", mNumOptimizations},
 				{"Vars", mLinvars.size()},
 				{"CompLits", mCompositeCreateLit},
 				{"Cuts", mNumCuts},
 				{"Branches", mNumBranches},
+				{"GomoryCuts", mCutManager.mNumGomoryCuts},
+				{"PoolCuts", mCutManager.mNumPoolCuts},
+				{"EvictedCuts", mCutManager.mNumEvictedCuts},
 				{"GetUpperBound", mCountGetUpperBound},
+				{"MBTCEqs", mNumMbtcCreated},
+				{"MBTCUsed", mNumMbtcUsed},
 				{"Times", new Object[][]{
 					{"Pivot", mPivotTime / 1000000},
 					{"Fix", mFixTime / 1000000},
+					{"FixDual", mDualFixTime / 1000000},
 					{"BoundComp", mPropBoundTime / 1000000},
 					{"BoundSet", mPropBoundSetTime / 1000000},
 					{"BoundBack", mBacktrackPropTime / 1000000},
@@ -2159,21 +2333,33 @@ public class LinArSolve implements ITheory {
 		if (smtTerm.isConstant()) {
 			return new InfinitesimalNumber(smtTerm.getConstant(), 0);
 		}
+		final MutableAffineTerm at = createMutableAffineTerm(clausifier, smtTerm);
+		if (at == null) {
+			return InfinitesimalNumber.POSITIVE_INFINITY;
+		}
+		return getUpperBound(at);
+	}
+
+	/**
+	 * Convert an smt affine term into a mutable affine term over the variables of this solver.
+	 *
+	 * @return the mutable affine term, or null if some summand is not known to this solver.
+	 */
+	private static MutableAffineTerm createMutableAffineTerm(final Clausifier clausifier,
+			final SMTAffineTerm smtTerm) {
 		final MutableAffineTerm at = new MutableAffineTerm();
 		for (final Entry<Term, Rational> entry : smtTerm.getSummands().entrySet()) {
 			final LASharedTerm laShared = clausifier.getLATerm(entry.getKey());
 			final Rational coeff = entry.getValue();
-			if (laShared != null) {
-				assert laShared.getSummands().size() == 1 && laShared.getOffset() == Rational.ZERO
-						&& laShared.getSummands().values().iterator().next() == Rational.ONE;
-				at.add(coeff, laShared.getSummands().keySet().iterator().next());
-			} else {
-				return InfinitesimalNumber.POSITIVE_INFINITY;
+			if (laShared == null) {
+				return null;
 			}
+			assert laShared.getSummands().size() == 1 && laShared.getOffset() == Rational.ZERO
+					&& laShared.getSummands().values().iterator().next() == Rational.ONE;
+			at.add(coeff, laShared.getSummands().keySet().iterator().next());
 		}
 		at.add(smtTerm.getConstant());
-
-		return getUpperBound(at);
+		return at;
 	}
 
 	public InfinitesimalNumber getUpperBound(final MutableAffineTerm at) {
@@ -2196,4 +2382,118 @@ public class LinArSolve implements ITheory {
 		mTimeGetUpperBound += System.nanoTime() - start;
 		return bound.mul(normFactor).add(offset);
 	}
+
+	/**
+	 * Compute the maximum of an smt affine term under the current bounds. This must only be called when all variables
+	 * are within their bounds, e.g., after the engine found a model. The values of the variables are moved to a point
+	 * where the maximum is reached. Integrality, disequalities, and the other theories are ignored, so the maximum is
+	 * only an upper bound for the maximum of the term in the models that extend the current assignment.
+	 *
+	 * @param clausifier
+	 *            The Clausifier used to convert terms to shared terms.
+	 * @param smtTerm
+	 *            The SMT affine term to maximize.
+	 * @return the maximum, POSITIVE_INFINITY if the term is unbounded, or null if the term is not known to this
+	 *         solver.
+	 */
+	public InfinitesimalNumber maximize(final Clausifier clausifier, final SMTAffineTerm smtTerm) {
+		if (smtTerm.isConstant()) {
+			return new InfinitesimalNumber(smtTerm.getConstant(), 0);
+		}
+		final MutableAffineTerm at = createMutableAffineTerm(clausifier, smtTerm);
+		if (at == null) {
+			return null;
+		}
+		mNumOptimizations++;
+		final InfinitesimalNumber offset = at.getConstant();
+		final Rational normFactor = at.getGCD();
+		final MutableAffineTerm atNormalized = new MutableAffineTerm();
+		atNormalized.add(normFactor.inverse(), at);
+		final LinVar var = generateLinVar(atNormalized.getSummands());
+		final ExactInfinitesimalNumber optimum = optimizeVar(var, normFactor.signum() > 0);
+		if (optimum == null) {
+			return InfinitesimalNumber.POSITIVE_INFINITY;
+		}
+		// the epsilon part of the optimum is never positive, only its sign matters.
+		final InfinitesimalNumber bound =
+				new InfinitesimalNumber(optimum.getRealValue(), optimum.getEpsilon().signum());
+		return bound.mul(normFactor).add(offset);
+	}
+
+	/**
+	 * Move a variable as far as possible in one direction by the primal simplex algorithm. All variables stay within
+	 * their bounds. Bland's rule is used to choose the pivot elements, which guarantees termination.
+	 *
+	 * @param var
+	 *            the variable to optimize.
+	 * @param increase
+	 *            true if the variable is maximized, false if it is minimized.
+	 * @return the optimal value of the variable, or null if it is unbounded.
+	 */
+	private ExactInfinitesimalNumber optimizeVar(final LinVar var, final boolean increase) {
+		while (true) {
+			// choose the non-basic variable that improves the objective
+			LinVar entering = null;
+			boolean enteringIncrease = increase;
+			if (var.mBasic) {
+				for (final MatrixEntry entry : var.getTableauxRow(this)) {
+					final LinVar column = entry.getColumn();
+					final boolean columnIncrease = (entry.getFactor().signum() > 0) == increase;
+					if ((columnIncrease ? column.getValue().compareTo(column.getUpperBound()) < 0
+							: column.getValue().compareTo(column.getLowerBound()) > 0)
+							&& (entering == null || column.compareTo(entering) < 0)) {
+						entering = column;
+						enteringIncrease = columnIncrease;
+					}
+				}
+				if (entering == null) {
+					return var.getValue();
+				}
+			} else {
+				if (increase ? var.getValue().compareTo(var.getUpperBound()) >= 0
+						: var.getValue().compareTo(var.getLowerBound()) <= 0) {
+					return var.getValue();
+				}
+				entering = var;
+			}
+
+			// ratio test: find the first bound that is hit when moving the entering variable
+			final InfinitesimalNumber enteringBound =
+					enteringIncrease ? entering.getUpperBound() : entering.getLowerBound();
+			ExactInfinitesimalNumber delta =
+					enteringBound.isInfinity() ? null : entering.getValue().isub(enteringBound).abs();
+			LinVar leaving = null;
+			InfinitesimalNumber leavingBound = null;
+			for (final MatrixEntry entry : entering.getTableauxColumn(this)) {
+				final LinVar row = entry.getRow();
+				final boolean rowIncrease = (entry.getFactor().signum() > 0) == enteringIncrease;
+				final InfinitesimalNumber rowBound = rowIncrease ? row.getUpperBound() : row.getLowerBound();
+				if (rowBound.isInfinity()) {
+					continue;
+				}
+				final ExactInfinitesimalNumber rowDelta = row.getValue().isub(rowBound).div(entry.getFactor()).abs();
+				final int cmp = delta == null ? -1 : rowDelta.compareTo(delta);
+				if (cmp < 0 || (cmp == 0 && leaving != null && row.compareTo(leaving) < 0)) {
+					delta = rowDelta;
+					leaving = row;
+					leavingBound = rowBound;
+				}
+			}
+			if (delta == null) {
+				return null;
+			}
+			if (leaving == null) {
+				updateVariableValue(entering, new ExactInfinitesimalNumber(enteringBound));
+			} else if (leaving == var) {
+				// the objective reaches its own bound
+				updateVariableValue(entering,
+						entering.getValue().add(enteringIncrease ? delta : delta.negate()));
+				return var.getValue();
+			} else {
+				pivot(leaving.mMatrixpos, entering.mMatrixpos);
+				mNumPivotsOpt++;
+				updateVariableValue(leaving, new ExactInfinitesimalNumber(leavingBound));
+			}
+		}
+	}
 }
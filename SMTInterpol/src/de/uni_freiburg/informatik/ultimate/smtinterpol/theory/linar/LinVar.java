@@ -23,8 +23,6 @@ import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.NavigableMap;
-import java.util.TreeMap;
 
 import de.uni_freiburg.informatik.ultimate.logic.Rational;
 import de.uni_freiburg.informatik.ultimate.logic.Term;
@@ -64,11 +62,9 @@ public class LinVar implements Comparable<LinVar> {
 	// Is value required to be integer?
 	boolean mIsInt;
 	// List of all bounds on this variable
-	NavigableMap<InfinitesimalNumber, BoundConstraint> mConstraints =
-		new TreeMap<>();
+	final BoundIndex<BoundConstraint> mConstraints = new BoundIndex<>();
 	// List of all equalities known for this variable
-	NavigableMap<InfinitesimalNumber, LAEquality> mEqualities =
-		new TreeMap<>();
+	final BoundIndex<LAEquality> mEqualities = new BoundIndex<>();
 
 	/**
 	 * All disequalities asserted on this variable.
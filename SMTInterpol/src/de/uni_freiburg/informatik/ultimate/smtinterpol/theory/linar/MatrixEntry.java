@@ -20,6 +20,8 @@ package de.uni_freiburg.informatik.ultimate.smtinterpol.theory.linar;
 
 import java.math.BigInteger;
 
+import de.uni_freiburg.informatik.ultimate.logic.Rational;
+
 /**
  * This represents an entry in our sparse matrix.
  *
@@ -53,6 +55,15 @@ public class MatrixEntry {
 		return mRow.getRawCoeff(0);
 	}
 
+	/**
+	 * Returns the factor of the column variable in the value of the row variable, i.e., the coefficient divided by the
+	 * negated head coefficient.
+	 */
+	public Rational getFactor() {
+		assert mPosition != 0;
+		return mRow.getRawFactor(mPosition);
+	}
+
 	@Override
 	public String toString() {
 		if (mPosition == 0) {
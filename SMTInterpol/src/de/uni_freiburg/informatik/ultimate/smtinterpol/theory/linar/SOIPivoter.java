@@ -77,12 +77,8 @@ public class SOIPivoter {
 			// mSoiValue is already updated.
 			// Next step: Update soiVar by adding the row of coefficients.
 
-			BigInteger divisor = mSolver.mTableaux.get(var.mMatrixpos).getRawCoeff(0);
-			if (isUpper) {
-				divisor = divisor.negate();
-			}
 			for (final MatrixEntry entry : var.getTableauxRow(mSolver)) {
-				Rational coeff = Rational.valueOf(entry.getCoeff(), divisor);
+				Rational coeff = isUpper ? entry.getFactor() : entry.getFactor().negate();
 				final Rational oldValue = mSOIVar.get(entry.getColumn());
 				if (oldValue != null) {
 					coeff = coeff.add(oldValue);
@@ -116,7 +112,7 @@ public class SOIPivoter {
 
 			for (final MatrixEntry me : colVar.getTableauxColumn(mSolver)) {
 				final LinVar rowVar = me.getRow();
-				final Rational weight = Rational.valueOf(me.getCoeff(), me.getHeadCoeff().negate());
+				final Rational weight = me.getFactor();
 				final LAReason bound = weight.signum() == coeff.signum() ? rowVar.mLowerLiteral : rowVar.mUpperLiteral;
 				if (bound != null && rowVar.getValue().equals(new ExactInfinitesimalNumber(bound.getBound()))) {
 					// check if this entry would be used by Bland strategy (first column, smallest row variable)
@@ -193,7 +189,7 @@ public class SOIPivoter {
 				// row variable changes.
 				// freedom is the amount the column variable changes if the row variable would be used as bounds.
 				final LinVar rowVar = me.getRow();
-				Rational weight = Rational.valueOf(me.getCoeff(), me.getHeadCoeff());
+				Rational weight = me.getFactor().negate();
 				if (coeff.signum() < 0) {
 					weight = weight.negate();
 				}
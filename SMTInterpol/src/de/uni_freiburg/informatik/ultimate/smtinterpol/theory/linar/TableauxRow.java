@@ -18,18 +18,26 @@ public class TableauxRow {
 	final static int LIMIT_BITS = 30;
 	final static int LIMIT = 1 << LIMIT_BITS;
 	final static int MARKER = LIMIT + 1;
+	final static int LONG_LIMIT_BITS = 62;
+	final static long LONG_LIMIT = 1L << LONG_LIMIT_BITS;
 
 	/**
 	 * The entries are stored in a single integer array in the form {@code x0 c0 x1 c1 x2 c2 ...} where {@code xi} is
 	 * the matrixpos of the i-th variable and {@code ci} the i-th coefficient ({@code x0} is the matrix pos of the row
 	 * variable and {@code c0} is its coefficient). If the coefficient is big (doesn't fit in 31 bits), {@code ci} is
-	 * stored as {@code MARKER + j} where j is the index into the {@code mBigEntries} array. The xi are sorted by matrix
-	 * position, except that the row variable comes first.
+	 * stored as {@code MARKER + j} where j is the index into the {@code mLongEntries} or the {@code mBigEntries}
+	 * array. The xi are sorted by matrix position, except that the row variable comes first.
 	 */
 	private int[] mEntries;
 	/**
-	 * This array stores all big coefficients that don't fit in 31 bits. The order is random and it may contain
-	 * duplicates.
+	 * This array stores all big coefficients that don't fit in 31 bits, if all of them fit in 63 bits. Otherwise it is
+	 * null and the big coefficients are stored in {@code mBigEntries}.
+	 */
+	private long[] mLongEntries;
+	/**
+	 * This array stores all big coefficients that don't fit in 31 bits, if one of them doesn't fit in 63 bits. The
+	 * order is random and it may contain duplicates. At most one of {@code mLongEntries} and {@code mBigEntries} is
+	 * non-null.
 	 */
 	private BigInteger[] mBigEntries;
 
@@ -43,43 +51,111 @@ public class TableauxRow {
 	public TableauxRow(final LinVar rowVar, final SortedMap<LinVar, Rational> coeffs) {
 		assert !coeffs.containsKey(rowVar);
 		assert coeffs.size() >= 2;
-		mEntries = new int[coeffs.size() * 2 + 2];
+		final int size = coeffs.size() + 1;
+		final int[] vars = new int[size];
+		final BigInteger[] intCoeffs = new BigInteger[size];
 		Rational gcd = Rational.ONE;
 		for (final Rational c : coeffs.values()) {
 			gcd = gcd.gcd(c);
 		}
-		final ArrayList<BigInteger> bigInts = new ArrayList<>();
-		mEntries[0] = rowVar.mMatrixpos;
-		mEntries[1] = addBigInteger(bigInts, gcd.inverse().negate().numerator());
-		int i = 2;
+		vars[0] = rowVar.mMatrixpos;
+		intCoeffs[0] = gcd.inverse().negate().numerator();
+		int i = 1;
 		for (final Map.Entry<LinVar, Rational> entry : coeffs.entrySet()) {
 			assert entry.getValue().div(gcd).isIntegral();
-			final BigInteger coeff = entry.getValue().div(gcd).numerator();
-			mEntries[i] = entry.getKey().mMatrixpos;
-			mEntries[i + 1] = addBigInteger(bigInts, coeff);
-			i += 2;
-		}
-		if (bigInts.size() > 0) {
-			mBigEntries = bigInts.toArray(new BigInteger[bigInts.size()]);
+			vars[i] = entry.getKey().mMatrixpos;
+			intCoeffs[i] = entry.getValue().div(gcd).numerator();
+			i++;
 		}
+		setEntries(vars, intCoeffs, size, BigInteger.ONE);
 	}
 
-	private static int addBigInteger(final ArrayList<BigInteger> bigInts, final long coeff) {
-		if (coeff >= -LIMIT && coeff < LIMIT) {
-			return (int) coeff;
-		} else {
-			bigInts.add(BigInteger.valueOf(coeff));
-			return MARKER + bigInts.size() - 1;
+	/**
+	 * Set the entries of this row to the given variables and coefficients. The coefficients are divided by gcd and
+	 * stored in the smallest representation they fit in.
+	 *
+	 * @param vars
+	 *            the matrix positions of the variables, the row variable first.
+	 * @param coeffs
+	 *            the coefficients of the variables.
+	 * @param size
+	 *            the number of entries that are used from vars and coeffs.
+	 * @param gcd
+	 *            a common divisor of all coefficients.
+	 */
+	private void setEntries(final int[] vars, final long[] coeffs, final int size, final long gcd) {
+		final int[] result = new int[2 * size];
+		long[] longInts = null;
+		int numLongs = 0;
+		for (int i = 0; i < size; i++) {
+			final long coeff = coeffs[i] / gcd;
+			result[2 * i] = vars[i];
+			if (coeff >= -LIMIT && coeff < LIMIT) {
+				result[2 * i + 1] = (int) coeff;
+			} else if (coeff >= -LONG_LIMIT && coeff < LONG_LIMIT) {
+				if (longInts == null) {
+					longInts = new long[size - i];
+				}
+				longInts[numLongs] = coeff;
+				result[2 * i + 1] = MARKER + numLongs;
+				numLongs++;
+			} else {
+				final BigInteger[] bigCoeffs = new BigInteger[size];
+				for (int j = 0; j < size; j++) {
+					bigCoeffs[j] = BigInteger.valueOf(coeffs[j] / gcd);
+				}
+				setEntries(vars, bigCoeffs, size, BigInteger.ONE);
+				return;
+			}
 		}
+		mEntries = result;
+		mLongEntries = longInts;
+		mBigEntries = null;
 	}
 
-	private static int addBigInteger(final ArrayList<BigInteger> bigInts, final BigInteger coeff) {
-		if (coeff.bitLength() <= LIMIT_BITS) {
-			return coeff.intValueExact();
-		} else {
-			bigInts.add(coeff);
-			return MARKER + bigInts.size() - 1;
+	/**
+	 * Set the entries of this row to the given variables and coefficients. The coefficients are divided by gcd and
+	 * stored in the smallest representation they fit in.
+	 *
+	 * @param vars
+	 *            the matrix positions of the variables, the row variable first.
+	 * @param coeffs
+	 *            the coefficients of the variables.
+	 * @param size
+	 *            the number of entries that are used from vars and coeffs.
+	 * @param gcd
+	 *            a common divisor of all coefficients.
+	 */
+	private void setEntries(final int[] vars, final BigInteger[] coeffs, final int size, final BigInteger gcd) {
+		boolean fitsLong = true;
+		for (int i = 0; i < size; i++) {
+			coeffs[i] = coeffs[i].divide(gcd);
+			if (coeffs[i].bitLength() > LONG_LIMIT_BITS) {
+				fitsLong = false;
+			}
+		}
+		if (fitsLong) {
+			final long[] longCoeffs = new long[size];
+			for (int i = 0; i < size; i++) {
+				longCoeffs[i] = coeffs[i].longValue();
+			}
+			setEntries(vars, longCoeffs, size, 1);
+			return;
 		}
+		final int[] result = new int[2 * size];
+		final ArrayList<BigInteger> bigInts = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			result[2 * i] = vars[i];
+			if (coeffs[i].bitLength() <= LIMIT_BITS) {
+				result[2 * i + 1] = coeffs[i].intValue();
+			} else {
+				bigInts.add(coeffs[i]);
+				result[2 * i + 1] = MARKER + bigInts.size() - 1;
+			}
+		}
+		mEntries = result;
+		mLongEntries = null;
+		mBigEntries = bigInts.toArray(new BigInteger[bigInts.size()]);
 	}
 
 	public int findRawIndex(final int matrixPos) {
@@ -102,12 +178,50 @@ public class TableauxRow {
 	}
 
 	private BigInteger bigEntry(final int entry) {
-		return entry < MARKER ? BigInteger.valueOf(entry) : mBigEntries[entry - MARKER];
+		if (entry < MARKER) {
+			return BigInteger.valueOf(entry);
+		}
+		return mBigEntries != null ? mBigEntries[entry - MARKER] : BigInteger.valueOf(mLongEntries[entry - MARKER]);
+	}
+
+	private long longEntry(final int entry) {
+		assert mBigEntries == null;
+		return entry < MARKER ? entry : mLongEntries[entry - MARKER];
+	}
+
+	private int signumEntry(final int entry) {
+		if (entry < MARKER) {
+			return Integer.signum(entry);
+		}
+		return mBigEntries != null ? mBigEntries[entry - MARKER].signum() : Long.signum(mLongEntries[entry - MARKER]);
+	}
+
+	/**
+	 * Multiply two coefficients and throw an ArithmeticException if the result doesn't fit in 63 bits.
+	 */
+	private static long mulExact(final long c1, final long c2) {
+		final long result = Math.multiplyExact(c1, c2);
+		if (result == Long.MIN_VALUE) {
+			throw new ArithmeticException("long overflow");
+		}
+		return result;
+	}
+
+	/**
+	 * Add two coefficients and throw an ArithmeticException if the result doesn't fit in 63 bits.
+	 */
+	private static long addExact(final long c1, final long c2) {
+		final long result = Math.addExact(c1, c2);
+		if (result == Long.MIN_VALUE) {
+			throw new ArithmeticException("long overflow");
+		}
+		return result;
 	}
 
 	private void addRowInt(final LinArSolve solver, final TableauxRow other) {
 		final int matrixPos = other.mEntries[0];
-		assert mBigEntries == null && other.mBigEntries == null;
+		assert mLongEntries == null && mBigEntries == null;
+		assert other.mLongEntries == null && other.mBigEntries == null;
 		int myFactor = -other.mEntries[1];
 		int otherFactor = findEntry(matrixPos);
 		assert otherFactor != 0;
@@ -158,17 +272,69 @@ public class TableauxRow {
 				otherIndex += 2;
 			}
 		}
-		final int[] result = new int[2 * newIndex];
-		final ArrayList<BigInteger> bigInts = new ArrayList<>();
-		for (int i = 0; i < newIndex; i++) {
-			result[2 * i] = newVars[i];
-			result[2 * i + 1] = addBigInteger(bigInts, newCoeffs[i] / gcd);
-			assert result[2 * i + 1] >= -LIMIT && result[2 * i + 1] < MARKER + bigInts.size();
-		}
-		mEntries = result;
-		if (bigInts.size() > 0) {
-			mBigEntries = bigInts.toArray(new BigInteger[bigInts.size()]);
+		setEntries(newVars, newCoeffs, newIndex, gcd);
+	}
+
+	/**
+	 * Add the other row to this row using long arithmetic. This works only if both rows have no coefficients that
+	 * don't fit into 63 bits. If an intermediate result overflows, an ArithmeticException is thrown before this row is
+	 * changed. The dependent rows may already be partially updated in that case, but redoing the addition with big
+	 * integers gives the same updates.
+	 */
+	private void addRowLong(final LinArSolve solver, final TableauxRow other) {
+		final int matrixPos = other.mEntries[0];
+		assert mBigEntries == null && other.mBigEntries == null;
+		long myFactor = -other.longEntry(other.mEntries[1]);
+		long otherFactor = longEntry(findEntry(matrixPos));
+		assert otherFactor != 0;
+		final long gcdFactor = Rational.gcd(myFactor, otherFactor);
+		myFactor = myFactor / gcdFactor;
+		otherFactor = otherFactor / gcdFactor;
+
+		final int[] newVars = new int[mEntries.length / 2 + other.mEntries.length / 2];
+		final long[] newCoeffs = new long[mEntries.length / 2 + other.mEntries.length / 2];
+		int myIndex = 2;
+		int otherIndex = 2;
+		int newIndex = 1;
+		newVars[0] = mEntries[0];
+		newCoeffs[0] = mulExact(longEntry(mEntries[1]), myFactor);
+		long gcd = newCoeffs[0];
+		while (myIndex < mEntries.length || otherIndex < other.mEntries.length) {
+			if (otherIndex == other.mEntries.length
+					|| (myIndex < mEntries.length && mEntries[myIndex] < other.mEntries[otherIndex])) {
+				if (mEntries[myIndex] != matrixPos) {
+					newVars[newIndex] = mEntries[myIndex];
+					final long newCoeff = mulExact(longEntry(mEntries[myIndex + 1]), myFactor);
+					gcd = Rational.gcd(gcd, newCoeff);
+					newCoeffs[newIndex] = newCoeff;
+					newIndex++;
+				}
+				myIndex += 2;
+			} else if (myIndex == mEntries.length || mEntries[myIndex] > other.mEntries[otherIndex]) {
+				solver.mDependentRows.get(other.mEntries[otherIndex]).set(mEntries[0]);
+				newVars[newIndex] = other.mEntries[otherIndex];
+				final long newCoeff = mulExact(other.longEntry(other.mEntries[otherIndex + 1]), otherFactor);
+				gcd = Rational.gcd(gcd, newCoeff);
+				newCoeffs[newIndex] = newCoeff;
+				otherIndex += 2;
+				newIndex++;
+			} else {
+				assert mEntries[myIndex] == other.mEntries[otherIndex];
+				final long newCoeff = addExact(mulExact(longEntry(mEntries[myIndex + 1]), myFactor),
+						mulExact(other.longEntry(other.mEntries[otherIndex + 1]), otherFactor));
+				if (newCoeff != 0) {
+					newVars[newIndex] = mEntries[myIndex];
+					gcd = Rational.gcd(gcd, newCoeff);
+					newCoeffs[newIndex] = newCoeff;
+					newIndex++;
+				} else {
+					solver.mDependentRows.get(mEntries[myIndex]).clear(mEntries[0]);
+				}
+				myIndex += 2;
+				otherIndex += 2;
+			}
 		}
+		setEntries(newVars, newCoeffs, newIndex, gcd);
 	}
 
 	private void addRowBigInt(final LinArSolve solver, final TableauxRow other) {
@@ -224,20 +390,7 @@ public class TableauxRow {
 				otherIndex += 2;
 			}
 		}
-		final int[] result = new int[2 * newIndex];
-		final ArrayList<BigInteger> bigInts = new ArrayList<>();
-		for (int i = 0; i < newIndex; i++) {
-			result[2 * i] = newVars[i];
-			final BigInteger newCoeff = newCoeffs[i].divide(gcd);
-			result[2 * i + 1] = addBigInteger(bigInts, newCoeff);
-			assert result[2 * i + 1] >= -LIMIT && result[2 * i + 1] < MARKER + bigInts.size();
-		}
-		mEntries = result;
-		if (bigInts.size() > 0) {
-			mBigEntries = bigInts.toArray(new BigInteger[bigInts.size()]);
-		} else {
-			mBigEntries = null;
-		}
+		setEntries(newVars, newCoeffs, newIndex, gcd);
 	}
 
 	/**
@@ -253,10 +406,18 @@ public class TableauxRow {
 	 */
 	public void addRow(final LinArSolve solver, final TableauxRow other) {
 		if (mBigEntries == null && other.mBigEntries == null) {
-			addRowInt(solver, other);
-		} else {
-			addRowBigInt(solver, other);
+			if (mLongEntries == null && other.mLongEntries == null) {
+				addRowInt(solver, other);
+				return;
+			}
+			try {
+				addRowLong(solver, other);
+				return;
+			} catch (final ArithmeticException overflow) {
+				// some coefficient doesn't fit in 63 bits; fall through to the big integer case.
+			}
 		}
+		addRowBigInt(solver, other);
 	}
 
 	/**
@@ -309,6 +470,39 @@ public class TableauxRow {
 		return bigEntry(mEntries[2*idx + 1]);
 	}
 
+	int getRawSignum(final int idx) {
+		return signumEntry(mEntries[2 * idx + 1]);
+	}
+
+	/**
+	 * Check if some coefficient doesn't fit in 31 bits, but all of them fit in 63 bits.
+	 */
+	boolean hasLongEntries() {
+		return mLongEntries != null;
+	}
+
+	/**
+	 * Check if some coefficient doesn't fit in 63 bits.
+	 */
+	boolean hasBigEntries() {
+		return mBigEntries != null;
+	}
+
+	/**
+	 * Returns the factor of the idx-th column variable in the value of the row variable, i.e., {@code -ci/c0}. This
+	 * avoids creating big integers if the coefficients fit in 63 bits.
+	 *
+	 * @param idx
+	 *            the raw index of the column variable.
+	 * @return the factor of the column variable.
+	 */
+	Rational getRawFactor(final int idx) {
+		if (mBigEntries == null) {
+			return Rational.valueOf(longEntry(mEntries[2 * idx + 1]), -longEntry(mEntries[1]));
+		}
+		return Rational.valueOf(getRawCoeff(idx), getRawCoeff(0).negate());
+	}
+
 	int size() {
 		return mEntries.length / 2;
 	}
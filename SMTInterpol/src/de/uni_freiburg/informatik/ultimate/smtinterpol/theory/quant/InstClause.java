@@ -22,6 +22,8 @@ import java.util.List;
 
 import de.uni_freiburg.informatik.ultimate.logic.Term;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.Clause;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.ClauseDeletionHook;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.DPLLEngine;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.Literal;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.proof.LeafNode;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.theory.quant.QuantifierTheory.InstanceOrigin;
@@ -33,23 +35,39 @@ import de.uni_freiburg.informatik.ultimate.smtinterpol.theory.quant.QuantifierTh
  * It contains information about the number of yet undefined literals. It also contains information to build proofs
  * later, i.e., the quantified clause and the substitution this instance comes from.
  *
+ * The generation of an instance is one more than the highest generation of its substituted terms. A term has the
+ * generation of the instance that added it to the congruence closure, or 0 if it was added otherwise. An instance is
+ * kept by the garbage collection of the instantiation manager while its clause is learned by the DPLL engine or if it
+ * was used since the last collection.
+ *
  * @author Tanja Schindler
  *
  */
-class InstClause {
+class InstClause implements ClauseDeletionHook {
 	protected final QuantClause mQuantClause;
 	protected final List<Term> mSubs;
 	protected final List<Literal> mLits;
 	protected int mNumUndefLits;
 	protected InstanceOrigin mOrigin;
+	protected final int mGeneration;
+	/**
+	 * The clause of this instance that is currently learned by the DPLL engine, or null.
+	 */
+	Clause mLearnedClause;
+	/**
+	 * True if the instance was created or used as a conflict or unit clause since the last garbage collection.
+	 */
+	boolean mUsed;
 
 	InstClause(final QuantClause qClause, final List<Term> subs, final List<Literal> lits,
-			final int numUndefLits, final InstanceOrigin origin) {
+			final int numUndefLits, final InstanceOrigin origin, final int generation) {
 		mQuantClause = qClause;
 		mSubs = subs;
 		mLits = lits;
 		mNumUndefLits = numUndefLits;
 		mOrigin = origin;
+		mGeneration = generation;
+		mUsed = true;
 	}
 
 	@Override
@@ -103,6 +121,7 @@ class InstClause {
 	 * @return a Clause consisting of the literals of this InstClause, including the proof if enabled.
 	 */
 	Clause toClause(final boolean produceProofs) {
+		mUsed = true;
 		final Clause clause = new Clause(mLits.toArray(new Literal[mLits.size()]));
 		if (produceProofs) {
 			final Term[] subsAsTerm = new Term[mSubs.size()];
@@ -114,4 +133,27 @@ class InstClause {
 		}
 		return clause;
 	}
+
+	/**
+	 * Build a (DPLL) Clause from this InstClause that the caller learns. The instance remembers the clause until the
+	 * engine deletes it.
+	 *
+	 * @param produceProofs
+	 *            flag to determine if proofs have to be produced.
+	 * @return a Clause consisting of the literals of this InstClause, including the proof if enabled.
+	 */
+	Clause toLearnedClause(final boolean produceProofs) {
+		final Clause clause = toClause(produceProofs);
+		clause.setDeletionHook(this);
+		mLearnedClause = clause;
+		return clause;
+	}
+
+	@Override
+	public boolean clauseDeleted(final Clause c, final DPLLEngine engine) {
+		if (mLearnedClause == c) {
+			mLearnedClause = null;
+		}
+		return true;
+	}
 }
\ No newline at end of file
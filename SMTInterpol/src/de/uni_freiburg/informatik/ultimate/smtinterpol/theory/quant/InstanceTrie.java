@@ -0,0 +1,331 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.theory.quant;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.convert.Clausifier;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.theory.cclosure.CCTerm;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.theory.cclosure.CClosure;
+
+/**
+ * The instances of a quantified clause, indexed by their substitutions. The substitutions are stored in a trie whose
+ * edges are labelled with the substituted terms. A substitution is found if the trie contains a substitution whose
+ * terms are congruent to it in the current state of the congruence closure. Thus instances that become equal by a
+ * merge are detected as duplicates.
+ *
+ * The children of a node are kept in an open addressing hash table keyed on the representative of their label. For
+ * terms known to the congruence closure, the hash is computed from the id of the representative CCTerm; other terms
+ * are their own representatives. When the congruence classes change, the keys get stale. Therefore every node
+ * remembers the state of the congruence closure for which its table was built, and it is rebuilt when it is visited
+ * in a different state. After a merge, several children of a node may have the same key; a lookup tries all of
+ * them. Lookups do not allocate.
+ */
+class InstanceTrie {
+	private static final int INITIAL_SIZE = 4;
+
+	private static class Node {
+		final Term mLabel;
+		Object mKey;
+		Node[] mTable;
+		int mSize;
+		/**
+		 * The epoch of the trie in which the table of this node was built.
+		 */
+		long mEpoch;
+		InstClause mInstance;
+
+		Node(final Term label, final Object key, final long epoch) {
+			mLabel = label;
+			mKey = key;
+			mEpoch = epoch;
+		}
+
+		/**
+		 * Get the child with the given label.
+		 */
+		Node getChild(final Term label, final Object key) {
+			if (mTable == null) {
+				return null;
+			}
+			final int mask = mTable.length - 1;
+			for (int slot = hash(key) & mask; mTable[slot] != null; slot = (slot + 1) & mask) {
+				if (mTable[slot].mLabel == label) {
+					return mTable[slot];
+				}
+			}
+			return null;
+		}
+
+		void insert(final Node child) {
+			if (mTable == null) {
+				mTable = new Node[INITIAL_SIZE];
+			} else if (2 * (mSize + 1) > mTable.length) {
+				rebuild(2 * mTable.length);
+			}
+			final int mask = mTable.length - 1;
+			int slot = hash(child.mKey) & mask;
+			while (mTable[slot] != null) {
+				slot = (slot + 1) & mask;
+			}
+			mTable[slot] = child;
+			mSize++;
+		}
+
+		void rebuild(final int size) {
+			final Node[] oldTable = mTable;
+			mTable = new Node[size];
+			final int mask = size - 1;
+			for (final Node child : oldTable) {
+				if (child != null) {
+					int slot = hash(child.mKey) & mask;
+					while (mTable[slot] != null) {
+						slot = (slot + 1) & mask;
+					}
+					mTable[slot] = child;
+				}
+			}
+		}
+	}
+
+	private final Clausifier mClausifier;
+	private final CClosure mCClosure;
+	private final Node mRoot;
+	/**
+	 * The instances in the order in which they were added. This contains null for substitutions that result in
+	 * trivially true instances.
+	 */
+	private final List<InstClause> mInstances;
+
+	/**
+	 * The epoch is incremented whenever the congruence classes changed since the last operation.
+	 */
+	private long mEpoch;
+	private long mSyncedMergeCount;
+	private int mSyncedStackDepth;
+
+	/**
+	 * True if the last successful lookup found a substitution that is only congruent but not equal to the one looked
+	 * for.
+	 */
+	private boolean mFoundModuloCongruence;
+
+	InstanceTrie(final Clausifier clausifier) {
+		mClausifier = clausifier;
+		mCClosure = clausifier.getCClosure();
+		mRoot = new Node(null, null, 0);
+		mInstances = new ArrayList<>();
+		mSyncedMergeCount = mCClosure.getMergeCount();
+		mSyncedStackDepth = mCClosure.getStackDepth();
+	}
+
+	private static int hash(final Object key) {
+		if (key == null) {
+			return 0;
+		}
+		int hash = key instanceof CCTerm ? ((CCTerm) key).getId() : key.hashCode();
+		hash *= 0x9e3779b9;
+		return hash ^ (hash >>> 16);
+	}
+
+	private Object getKey(final Term term) {
+		if (term == null) {
+			return null;
+		}
+		final CCTerm ccTerm = mClausifier.getCCTerm(term);
+		return ccTerm == null ? term : ccTerm.getRepresentative();
+	}
+
+	private void sync() {
+		if (mCClosure.getMergeCount() != mSyncedMergeCount || mCClosure.getStackDepth() != mSyncedStackDepth) {
+			mEpoch++;
+			mSyncedMergeCount = mCClosure.getMergeCount();
+			mSyncedStackDepth = mCClosure.getStackDepth();
+		}
+	}
+
+	/**
+	 * Recompute the keys of the children of a node for the current congruence classes.
+	 */
+	private void rekey(final Node node) {
+		if (node.mTable != null) {
+			for (final Node child : node.mTable) {
+				if (child != null) {
+					child.mKey = getKey(child.mLabel);
+				}
+			}
+			node.rebuild(node.mTable.length);
+		}
+		node.mEpoch = mEpoch;
+	}
+
+	/**
+	 * Find the leaf for a substitution congruent to the given one.
+	 *
+	 * @param node
+	 *            the node for the first depth terms of the substitution.
+	 * @return the leaf, or null if there is no congruent substitution.
+	 */
+	private Node find(final Node node, final List<Term> subs, final int depth) {
+		if (depth == subs.size()) {
+			return node;
+		}
+		if (node.mEpoch != mEpoch) {
+			rekey(node);
+		}
+		if (node.mTable == null) {
+			return null;
+		}
+		final Term term = subs.get(depth);
+		final Object key = getKey(term);
+		final int mask = node.mTable.length - 1;
+		for (int slot = hash(key) & mask; node.mTable[slot] != null; slot = (slot + 1) & mask) {
+			final Node child = node.mTable[slot];
+			if (child.mKey == key) {
+				final Node leaf = find(child, subs, depth + 1);
+				if (leaf != null) {
+					if (child.mLabel != term) {
+						mFoundModuloCongruence = true;
+					}
+					return leaf;
+				}
+			}
+		}
+		return null;
+	}
+
+	private Node find(final List<Term> subs) {
+		sync();
+		mFoundModuloCongruence = false;
+		return find(mRoot, subs, 0);
+	}
+
+	/**
+	 * Check if an instance for a substitution congruent to the given one exists.
+	 */
+	boolean containsKey(final List<Term> subs) {
+		return find(subs) != null;
+	}
+
+	/**
+	 * Get the instance for a substitution congruent to the given one. Use {@link #containsKey} to distinguish a
+	 * missing instance from a trivially true instance.
+	 *
+	 * @return the instance, or null if it does not exist or is trivially true.
+	 */
+	InstClause get(final List<Term> subs) {
+		final Node node = find(subs);
+		return node == null ? null : node.mInstance;
+	}
+
+	/**
+	 * Add the instance for a substitution. There must not be an instance for a congruent substitution.
+	 *
+	 * @param inst
+	 *            the instance, or null if the instance is trivially true.
+	 */
+	void put(final List<Term> subs, final InstClause inst) {
+		assert !containsKey(subs);
+		sync();
+		Node node = mRoot;
+		for (int i = 0; i < subs.size(); i++) {
+			if (node.mEpoch != mEpoch) {
+				rekey(node);
+			}
+			final Term term = subs.get(i);
+			final Object key = getKey(term);
+			Node child = node.getChild(term, key);
+			if (child == null) {
+				child = new Node(term, key, mEpoch);
+				node.insert(child);
+			}
+			node = child;
+		}
+		assert inst == null || inst.mSubs == subs;
+		node.mInstance = inst;
+		mInstances.add(inst);
+	}
+
+	/**
+	 * Check if the last successful lookup matched a substitution that is only congruent to the one looked for.
+	 */
+	boolean isFoundModuloCongruence() {
+		return mFoundModuloCongruence;
+	}
+
+	/**
+	 * Remove the instances that satisfy the given condition. Their substitutions can be instantiated again later.
+	 * Trivially true instances are kept.
+	 */
+	void removeIf(final Predicate<InstClause> condition) {
+		if (mInstances.removeIf(inst -> inst != null && condition.test(inst))) {
+			prune(mRoot, condition);
+		}
+	}
+
+	/**
+	 * Remove the leaves below a node whose instances satisfy the given condition.
+	 *
+	 * @return true if no leaf is left below the node.
+	 */
+	private static boolean prune(final Node node, final Predicate<InstClause> condition) {
+		if (node.mTable == null) {
+			// a leaf, since inner nodes are removed when they become empty
+			return node.mInstance != null && condition.test(node.mInstance);
+		}
+		final Node[] oldTable = node.mTable;
+		int size = 0;
+		for (int i = 0; i < oldTable.length; i++) {
+			if (oldTable[i] != null) {
+				if (prune(oldTable[i], condition)) {
+					oldTable[i] = null;
+				} else {
+					size++;
+				}
+			}
+		}
+		if (size == node.mSize) {
+			return false;
+		}
+		node.mSize = size;
+		if (size == 0) {
+			node.mTable = null;
+			return true;
+		}
+		// reinsert the remaining children, since removing entries breaks the probe sequences
+		node.mTable = new Node[oldTable.length];
+		node.mSize = 0;
+		for (final Node child : oldTable) {
+			if (child != null) {
+				node.insert(child);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Get all instances in the order in which they were added. This contains null for trivially true instances.
+	 */
+	List<InstClause> getInstances() {
+		return mInstances;
+	}
+}
@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -71,16 +72,47 @@ public class InstantiationManager {
 	private final QuantifierTheory mQuantTheory;
 	private final EMatching mEMatching;
 
-	private final Map<QuantClause, Map<List<Term>, InstClause>> mClauseInstances;
+	private final Map<QuantClause, InstanceTrie> mClauseInstances;
+	/**
+	 * For incremental E-matching: the value of the ground literals of a clause when it was last evaluated.
+	 */
+	private final Map<QuantClause, InstanceValue> mEvaluatedGroundValues;
 
 	private final InstanceValue mDefaultValueForLitDawgs;
 	private final InstanceValue[] mRelevantValuesForCheckpoint;
 
+	/**
+	 * The number of (partial) substitutions that may still be evaluated in the current final check.
+	 */
+	private long mSubstitutionBudget;
+	/**
+	 * True if the last final check stopped before all substitutions were evaluated.
+	 */
+	private boolean mBudgetExhausted;
+	/**
+	 * The index of the quantified clause where the next final check starts.
+	 */
+	private int mFirstClauseForFinalCheck;
+	/**
+	 * True if an instance was skipped because of the generation limit since the start of the last final check.
+	 */
+	private boolean mGenerationLimitReached;
+
+	/**
+	 * The generations of the terms created by instances, as ranges of CCTerm ids. The terms whose ids are at least
+	 * mGenerationStarts[i] and less than mGenerationStarts[i + 1] have generation mGenerations[i]. Terms before the
+	 * first range have generation 0.
+	 */
+	private int[] mGenerationStarts = new int[16];
+	private int[] mGenerations = new int[16];
+	private int mNumGenerationRanges;
+
 	public InstantiationManager(final Clausifier clausifier, final QuantifierTheory quantTheory) {
 		mClausifier = clausifier;
 		mQuantTheory = quantTheory;
 		mEMatching = quantTheory.getEMatching();
 		mClauseInstances = new HashMap<>();
+		mEvaluatedGroundValues = new HashMap<>();
 		mDefaultValueForLitDawgs =
 				mQuantTheory.mUseUnknownTermValueInDawgs ? InstanceValue.UNKNOWN_TERM : InstanceValue.ONE_UNDEF;
 		mRelevantValuesForCheckpoint = mQuantTheory.mPropagateNewTerms
@@ -88,6 +120,24 @@ public class InstantiationManager {
 				: new InstanceValue[] { InstanceValue.FALSE, InstanceValue.ONE_UNDEF };
 	}
 
+	/**
+	 * Check if the last final check ran out of budget before it evaluated all interesting substitutions.
+	 *
+	 * @return true if some substitutions have not been evaluated.
+	 */
+	public boolean isBudgetExhausted() {
+		return mBudgetExhausted;
+	}
+
+	/**
+	 * Check if an instance exceeded the generation limit since the start of the last final check.
+	 *
+	 * @return true if some instances have not been created.
+	 */
+	public boolean isGenerationLimitReached() {
+		return mGenerationLimitReached;
+	}
+
 	/**
 	 * Add the clause to the instance map.
 	 *
@@ -95,7 +145,7 @@ public class InstantiationManager {
 	 *            the quantified clause.
 	 */
 	public void addClause(final QuantClause qClause) {
-		mClauseInstances.put(qClause, new LinkedHashMap<>());
+		mClauseInstances.put(qClause, new InstanceTrie(mClausifier));
 	}
 
 	/**
@@ -124,7 +174,15 @@ public class InstantiationManager {
 			if (mQuantTheory.getEngine().isTerminationRequested()) {
 				return Collections.emptySet();
 			}
-			final Dawg<Term, InstantiationInfo> dawg = computeClauseDawg(qClause);
+			final InstanceValue groundValue = computeGroundValueForCheckpoint(qClause);
+			if (mEMatching.isIncremental()) {
+				if (!mEMatching.isEvaluationNeeded(qClause) && mEvaluatedGroundValues.get(qClause) == groundValue) {
+					mQuantTheory.mNumClauseEvaluationsSkipped++;
+					continue;
+				}
+				mEvaluatedGroundValues.put(qClause, groundValue);
+			}
+			final Dawg<Term, InstantiationInfo> dawg = computeClauseDawg(qClause, groundValue);
 			final Collection<List<Term>> conflictOrUnitSubs = getConflictAndUnitSubsFromDawg(qClause, dawg);
 			if (conflictOrUnitSubs != null) {
 				for (final List<Term> subs : conflictOrUnitSubs) {
@@ -137,6 +195,7 @@ public class InstantiationManager {
 					}
 				}
 			}
+			mEMatching.setEvaluated(qClause);
 		}
 		return conflictAndUnitClauses;
 	}
@@ -156,20 +215,29 @@ public class InstantiationManager {
 			if (quantClause.hasTrueGroundLits()) {
 				continue;
 			}
-			final Set<List<Term>> allSubstitutions = computeAllSubstitutions(quantClause);
-			for (final List<Term> subs : allSubstitutions) {
-				if (mClausifier.getEngine().isTerminationRequested()) {
-					return Collections.emptySet();
+			// Only check clauses where all or all but one ground literals are set to false.
+			InstanceValue groundValue = InstanceValue.FALSE;
+			for (final Literal groundLit : quantClause.getGroundLits()) {
+				if (groundLit.getAtom().getDecideStatus() == null) {
+					groundValue = combineForCheckpoint(groundValue, InstanceValue.ONE_UNDEF);
+				} else {
+					assert groundLit.getAtom().getDecideStatus() != groundLit;
 				}
-				// TODO Don't evaluate existing instances
-				final InstanceValue clauseValue = evaluateClauseInstance(quantClause, subs);
-				if (clauseValue != InstanceValue.IRRELEVANT) {
-					final InstClause inst = computeClauseInstance(quantClause, subs, InstanceOrigin.CHECKPOINT);
-					if (inst != null) {
-						conflictAndUnitClauses.add(inst);
-					}
+			}
+			if (groundValue == InstanceValue.IRRELEVANT) {
+				continue;
+			}
+			// TODO Don't evaluate existing instances
+			final SubstitutionEnumerator substitutions = new SubstitutionEnumerator(quantClause, groundValue, false);
+			for (List<Term> subs = substitutions.next(); subs != null; subs = substitutions.next()) {
+				final InstClause inst = computeClauseInstance(quantClause, subs, InstanceOrigin.CHECKPOINT);
+				if (inst != null) {
+					conflictAndUnitClauses.add(inst);
 				}
 			}
+			if (mClausifier.getEngine().isTerminationRequested()) {
+				return Collections.emptySet();
+			}
 		}
 		return conflictAndUnitClauses;
 	}
@@ -194,8 +262,7 @@ public class InstantiationManager {
 		// First check if an existing instance leads to a conflict. TODO: checkpoint() should have detected it!
 		for (final QuantClause qClause : currentQuantClauses) {
 			assert mClauseInstances.containsKey(qClause);
-			for (final Entry<List<Term>, InstClause> existingInst : mClauseInstances.get(qClause).entrySet()) {
-				final InstClause instClause = existingInst.getValue();
+			for (final InstClause instClause : mClauseInstances.get(qClause).getInstances()) {
 				if (instClause != null) {
 					final int numUndef = instClause.countAndSetUndefLits();
 					assert numUndef == -1 || numUndef == 0;
@@ -203,48 +270,56 @@ public class InstantiationManager {
 						mQuantTheory.getLogger().warn(
 								"Conflict on existing clause instance hasn't been detected in checkpoint(): ",
 								instClause);
-						return instClause.toClause(mQuantTheory.getEngine().isProofGenerationEnabled());
+						return instClause.toLearnedClause(mQuantTheory.getEngine().isProofGenerationEnabled());
 					}
 				}
 			}
 		}
 
-		// If no existing instance lead to a conflict, check new instances.
-		for (final QuantClause quantClause : currentQuantClauses) {
+		// If no existing instance lead to a conflict, check new instances. If the budget ran out in the last final
+		// check, start with the clause following the one that exhausted it.
+		mBudgetExhausted = false;
+		mGenerationLimitReached = false;
+		mSubstitutionBudget = mQuantTheory.mFinalCheckBudget > 0 ? mQuantTheory.mFinalCheckBudget : Long.MAX_VALUE;
+		final int numClauses = currentQuantClauses.size();
+		final int firstClause = numClauses == 0 ? 0 : mFirstClauseForFinalCheck % numClauses;
+		for (int c = 0; c < numClauses && !mBudgetExhausted; c++) {
+			final QuantClause quantClause = currentQuantClauses.get((firstClause + c) % numClauses);
 			if (quantClause.hasTrueGroundLits()) {
 				continue;
 			}
-			final Set<List<Term>> allSubstitutions = computeAllSubstitutions(quantClause);
-			for (final List<Term> subs : allSubstitutions) {
-				if (mClausifier.getEngine().isTerminationRequested()) {
-					return null;
-				}
-				if (mClauseInstances.containsKey(quantClause) && mClauseInstances.get(quantClause).containsKey(subs)) {
+			final SubstitutionEnumerator substitutions =
+					new SubstitutionEnumerator(quantClause, InstanceValue.FALSE, true);
+			for (List<Term> subs = substitutions.next(); subs != null; subs = substitutions.next()) {
+				final InstanceTrie instances = mClauseInstances.get(quantClause);
+				if (instances != null && instances.containsKey(subs)) {
+					if (instances.isFoundModuloCongruence()) {
+						mQuantTheory.mNumCongruentDuplicates++;
+					}
 					continue; // Checked in the first loop over the quant clauses.
 				}
-				final Pair<InstanceValue, Boolean> candVal = evaluateNewClauseInstanceFinalCheck(quantClause, subs);
-				if (candVal.getFirst() == InstanceValue.TRUE) {
-					continue;
-				} else if (candVal.getFirst() == InstanceValue.FALSE || candVal.getFirst() == InstanceValue.ONE_UNDEF) {
+				final InstanceValue candVal = substitutions.getValue();
+				final boolean hasOnlyKnownTerms = substitutions.hasOnlyKnownTerms();
+				if (candVal == InstanceValue.FALSE || candVal == InstanceValue.ONE_UNDEF) {
 					// Always build conflict or unit clauses on known terms
-					assert candVal.getSecond().booleanValue();
+					assert hasOnlyKnownTerms;
 					final InstClause unitClause = computeClauseInstance(quantClause, subs, InstanceOrigin.FINALCHECK);
 					if (unitClause != null) { // TODO Some true literals are not detected at the moment.
 						final int numUndef = unitClause.countAndSetUndefLits();
 						if (numUndef == 0) { // TODO Can this happen in final check? (At the moment, yes.)
-							return unitClause.toClause(mQuantTheory.getEngine().isProofGenerationEnabled());
+							return unitClause.toLearnedClause(mQuantTheory.getEngine().isProofGenerationEnabled());
 						} else if (numUndef > 0) {
 							return null;
 						}
 					}
 				} else {
 					final Pair<QuantClause, List<Term>> clauseSubsPair = new Pair<>(quantClause, subs);
-					if (candVal.getFirst() == InstanceValue.UNKNOWN_TERM) {
-						assert !candVal.getSecond().booleanValue();
+					if (candVal == InstanceValue.UNKNOWN_TERM) {
+						assert !hasOnlyKnownTerms;
 						unitValueInstancesNewTerms.add(clauseSubsPair);
 					} else {
-						assert candVal.getFirst() == InstanceValue.OTHER;
-						if (candVal.getSecond().booleanValue()) {
+						assert candVal == InstanceValue.OTHER;
+						if (hasOnlyKnownTerms) {
 							otherValueInstancesOnKnownTerms.add(clauseSubsPair);
 						} else {
 							otherValueInstancesNewTerms.add(clauseSubsPair);
@@ -252,9 +327,22 @@ public class InstantiationManager {
 					}
 				}
 			}
+			if (mClausifier.getEngine().isTerminationRequested()) {
+				return null;
+			}
+			if (mBudgetExhausted) {
+				mQuantTheory.mNumBudgetExhausted++;
+				mFirstClauseForFinalCheck = (firstClause + c + 1) % numClauses;
+			}
 		}
 		// If we haven't found a conflict instance or a unit instance on known terms, first check other non-sat
-		// instances on known terms, then unit instances producing new terms, then other non-sat instances on new terms
+		// instances on known terms, then unit instances producing new terms, then other non-sat instances on new terms.
+		// Within each group, instances of lower generation come first.
+		final Comparator<Pair<QuantClause, List<Term>>> byGeneration =
+				Comparator.comparingInt(cand -> getGeneration(cand.getSecond()));
+		otherValueInstancesOnKnownTerms.sort(byGeneration);
+		unitValueInstancesNewTerms.sort(byGeneration);
+		otherValueInstancesNewTerms.sort(byGeneration);
 		final List<Pair<QuantClause, List<Term>>> sortedInstances = new ArrayList<>();
 		sortedInstances.addAll(otherValueInstancesOnKnownTerms);
 		sortedInstances.addAll(unitValueInstancesNewTerms);
@@ -264,7 +352,7 @@ public class InstantiationManager {
 			if (inst != null) {
 				final int numUndef = inst.countAndSetUndefLits();
 				if (numUndef == 0) {
-					return inst.toClause(mQuantTheory.getEngine().isProofGenerationEnabled());
+					return inst.toLearnedClause(mQuantTheory.getEngine().isProofGenerationEnabled());
 				} else if (numUndef > 0) {
 					return null;
 				}
@@ -286,23 +374,15 @@ public class InstantiationManager {
 	}
 
 	/**
-	 * Compute a clause dawg.
+	 * Compute the combined value of the ground literals of a clause.
 	 *
 	 * @param qClause
 	 *            the quantified clause.
-	 * @return the dawg that contains the evaluations of different potential instances.
+	 * @return the value of the ground part, restricted to the values relevant for a checkpoint.
 	 */
-	private Dawg<Term, InstantiationInfo> computeClauseDawg(final QuantClause qClause) {
-		final int numVars = qClause.getVars().length;
-		final List<Term> emptySubs = new ArrayList<>();
-		final Dawg<Term, InstantiationInfo> constIrrelDawg =
-				Dawg.createConst(qClause.getVars().length,
-						new InstantiationInfo(InstanceValue.IRRELEVANT, emptySubs));
-
+	private InstanceValue computeGroundValueForCheckpoint(final QuantClause qClause) {
 		// Initialize clause value to false for correct combination.
 		InstanceValue clauseValue = InstanceValue.FALSE;
-
-		// Check ground literals first
 		for (final Literal groundLit : qClause.getGroundLits()) {
 			if (groundLit.getAtom().getDecideStatus() == groundLit) {
 				clauseValue = combineForCheckpoint(clauseValue, InstanceValue.TRUE);
@@ -315,6 +395,25 @@ public class InstantiationManager {
 				break;
 			}
 		}
+		return clauseValue;
+	}
+
+	/**
+	 * Compute a clause dawg.
+	 *
+	 * @param qClause
+	 *            the quantified clause.
+	 * @param clauseValue
+	 *            the value of the ground literals of the clause.
+	 * @return the dawg that contains the evaluations of different potential instances.
+	 */
+	private Dawg<Term, InstantiationInfo> computeClauseDawg(final QuantClause qClause,
+			final InstanceValue clauseValue) {
+		final int numVars = qClause.getVars().length;
+		final List<Term> emptySubs = new ArrayList<>();
+		final Dawg<Term, InstantiationInfo> constIrrelDawg =
+				Dawg.createConst(qClause.getVars().length,
+						new InstantiationInfo(InstanceValue.IRRELEVANT, emptySubs));
 
 		// Create the partial clause dawg.
 		Dawg<Term, InstantiationInfo> clauseDawg =
@@ -802,105 +901,129 @@ public class InstantiationManager {
 	}
 
 	/**
-	 * Compute all interesting substitutions for a given clause.
-	 *
-	 * This should only be called after updating the interesting terms for the clause.
+	 * Check if an instance for a substitution congruent to the given one was already computed.
+	 */
+	boolean hasInstance(final QuantClause clause, final List<Term> subs) {
+		assert mClauseInstances.containsKey(clause);
+		return mClauseInstances.get(clause).containsKey(subs);
+	}
+
+	/**
+	 * Compute the instance for a substitution found in the final check outside of this class, e.g., by model-based
+	 * instantiation.
 	 *
-	 * @param quantClause
-	 *            the quantified clause.
-	 * @return a Set containing interesting substitutions for the clause.
+	 * @return the instance, or null if it is trivially true.
 	 */
-	private Set<List<Term>> computeAllSubstitutions(final QuantClause quantClause) {
-		final int nVars = quantClause.getVars().length;
-		final Set<List<Term>> allSubs = new LinkedHashSet<>();
-		allSubs.add(new ArrayList<Term>(nVars));
-		for (int i = 0; i < nVars; i++) {
-			final Set<List<Term>> partialSubs = new LinkedHashSet<>();
-			for (final List<Term> oldSub : allSubs) {
-				if (mClausifier.getEngine().isTerminationRequested()) {
-					return Collections.emptySet();
-				}
-				assert !quantClause.getInterestingTerms()[i].isEmpty();
-				for (final Term ground : quantClause.getInterestingTerms()[i].values()) {
-					final List<Term> newSub = new ArrayList<>(nVars);
-					newSub.addAll(oldSub);
-					newSub.add(ground);
-					partialSubs.add(newSub);
+	InstClause addFinalCheckInstance(final QuantClause clause, final List<Term> subs) {
+		return computeClauseInstance(clause, subs, InstanceOrigin.FINALCHECK);
+	}
+
+	/**
+	 * Remove the instances that contain a literal created on the given assertion stack level or above. This must be
+	 * called when the level is popped, since the engine removes these atoms.
+	 */
+	void removeInstancesOnLevel(final int stackLevel) {
+		for (final InstanceTrie instances : mClauseInstances.values()) {
+			instances.removeIf(inst -> {
+				for (final Literal lit : inst.mLits) {
+					if (lit.getAtom().getAssertionStackLevel() >= stackLevel) {
+						return true;
+					}
 				}
-			}
-			allSubs.clear();
-			allSubs.addAll(partialSubs);
+				return false;
+			});
 		}
-		return allSubs;
 	}
 
 	/**
-	 * Evaluate which value a potential instance of a given clause would have. We distinguish three values: FALSE if all
-	 * literals would be false, ONE_UNDEF if all but one literal would be false and this one undefined, and TRUE for all
-	 * other cases.
+	 * Delete the instances that are neither learned by the DPLL engine nor were used since the last call. Their
+	 * substitutions can be instantiated again if they become relevant.
 	 *
-	 * @param quantClause
-	 *            the quantified clause which we evaluate an instance for.
-	 * @param instantiation
-	 *            the ground terms to instantiate.
-	 * @return the InstanceValue of the potential instance.
+	 * @return the number of deleted instances.
 	 */
-	private InstanceValue evaluateClauseInstance(final QuantClause quantClause, final List<Term> instantiation) {
-		InstanceValue clauseValue = InstanceValue.FALSE;
-
-		// Check ground literals first.
-		for (final Literal groundLit : quantClause.getGroundLits()) {
-			if (groundLit.getAtom().getDecideStatus() == groundLit) {
-				return combineForCheckpoint(clauseValue, InstanceValue.TRUE);
-			} else if (groundLit.getAtom().getDecideStatus() == null) {
-				clauseValue = combineForCheckpoint(clauseValue, InstanceValue.ONE_UNDEF);
-			} else {
-				assert groundLit.getAtom().getDecideStatus() != groundLit;
+	int collectGarbage() {
+		int numDeleted = 0;
+		for (final InstanceTrie instances : mClauseInstances.values()) {
+			final int oldSize = instances.getInstances().size();
+			instances.removeIf(inst -> inst.mLearnedClause == null && !inst.mUsed);
+			numDeleted += oldSize - instances.getInstances().size();
+			for (final InstClause inst : instances.getInstances()) {
+				if (inst != null) {
+					inst.mUsed = false;
+				}
 			}
 		}
-		// Only check clauses where all or all but one ground literals are set to false.
-		if (clauseValue == InstanceValue.IRRELEVANT) {
-			return clauseValue;
-		}
+		return numDeleted;
+	}
 
-		// Check quantified literals. TODO: Use SubstitutionHelper
-		for (final QuantLiteral quantLit : quantClause.getQuantLits()) {
-			final InstanceValue litValue = evaluateLitInstance(quantLit, instantiation);
-			clauseValue = combineForCheckpoint(clauseValue, litValue);
-			if (clauseValue == InstanceValue.IRRELEVANT) {
-				return clauseValue;
+	/**
+	 * Get the number of instances that are not trivially true.
+	 */
+	int getNumInstances() {
+		int numInstances = 0;
+		for (final InstanceTrie instances : mClauseInstances.values()) {
+			for (final InstClause inst : instances.getInstances()) {
+				if (inst != null) {
+					numInstances++;
+				}
 			}
 		}
-		return clauseValue;
+		return numInstances;
 	}
 
-	private Pair<InstanceValue, Boolean> evaluateNewClauseInstanceFinalCheck(final QuantClause quantClause,
-			final List<Term> instantiation) {
-		assert !mClauseInstances.containsKey(quantClause)
-				|| !mClauseInstances.get(quantClause).containsKey(instantiation);
-		InstanceValue clauseValue = InstanceValue.FALSE;
-
-		// Check for true ground literals first.
-		for (final Literal groundLit : quantClause.getGroundLits()) {
-			assert groundLit.getAtom().getDecideStatus() != null;
-			if (groundLit.getAtom().getDecideStatus() == groundLit) {
-				return new Pair<>(InstanceValue.TRUE, null);
+	/**
+	 * Get the generation of a term. This is the generation of the instance that created the term, or 0 if the term
+	 * was not created by an instance.
+	 */
+	private int getGeneration(final Term term) {
+		final CCTerm ccTerm = mClausifier.getCCTerm(term);
+		if (ccTerm == null) {
+			return 0;
+		}
+		final int id = ccTerm.getId();
+		// binary search for the last range starting at or before id
+		int low = 0;
+		int high = mNumGenerationRanges;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (mGenerationStarts[mid] <= id) {
+				low = mid + 1;
+			} else {
+				high = mid;
 			}
 		}
+		return low == 0 ? 0 : mGenerations[low - 1];
+	}
 
-		// Check quantified literals. TODO: Use SubstitutionHelper
-		boolean hasOnlyKnownTerms = true;
-		for (final QuantLiteral quantLit : quantClause.getQuantLits()) {
-			final InstanceValue litValue = evaluateLitInstance(quantLit, instantiation); // TODO evaluateLitInstanceFinalCheck
-			if (litValue == InstanceValue.UNKNOWN_TERM) {
-				hasOnlyKnownTerms = false;
-			}
-			clauseValue = clauseValue.combine(litValue);
-			if (clauseValue == InstanceValue.TRUE) {
-				return new Pair<>(clauseValue, null);
-			}
+	/**
+	 * Get the generation of the instance for a substitution, i.e., one more than the highest generation of the
+	 * substituted terms.
+	 */
+	private int getGeneration(final List<Term> subs) {
+		int generation = 0;
+		for (final Term term : subs) {
+			generation = Math.max(generation, getGeneration(term));
 		}
-		return new Pair<>(clauseValue, hasOnlyKnownTerms);
+		return generation + 1;
+	}
+
+	/**
+	 * Remember that the terms with ids from start (inclusive) to end (exclusive) were created by an instance of the
+	 * given generation.
+	 */
+	private void addGenerationRange(final int start, final int end, final int generation) {
+		if (mNumGenerationRanges > 0 && mGenerationStarts[mNumGenerationRanges - 1] == start) {
+			mNumGenerationRanges--;
+		}
+		if (mNumGenerationRanges + 2 > mGenerationStarts.length) {
+			mGenerationStarts = Arrays.copyOf(mGenerationStarts, 2 * mGenerationStarts.length);
+			mGenerations = Arrays.copyOf(mGenerations, 2 * mGenerations.length);
+		}
+		mGenerationStarts[mNumGenerationRanges] = start;
+		mGenerations[mNumGenerationRanges] = generation;
+		mGenerationStarts[mNumGenerationRanges + 1] = end;
+		mGenerations[mNumGenerationRanges + 1] = 0;
+		mNumGenerationRanges += 2;
 	}
 
 	/**
@@ -916,10 +1039,25 @@ public class InstantiationManager {
 	private InstClause computeClauseInstance(final QuantClause clause, final List<Term> subs,
 			final InstanceOrigin origin) {
 		assert mClauseInstances.containsKey(clause);
-		if (mClauseInstances.get(clause).containsKey(subs)) {
-			return mClauseInstances.get(clause).get(subs);
+		final InstanceTrie instances = mClauseInstances.get(clause);
+		if (instances.containsKey(subs)) {
+			if (instances.isFoundModuloCongruence()) {
+				mQuantTheory.mNumCongruentDuplicates++;
+			}
+			final InstClause existing = instances.get(subs);
+			if (existing != null) {
+				existing.mUsed = true;
+			}
+			return existing;
+		}
+		final int generation = getGeneration(subs);
+		if (mQuantTheory.mMaxInstanceGeneration > 0 && generation > mQuantTheory.mMaxInstanceGeneration) {
+			mQuantTheory.mNumInstancesOverGenerationLimit++;
+			mGenerationLimitReached = true;
+			return null;
 		}
 
+		final int firstNewTermId = mQuantTheory.getCClosure().getNextTermId();
 		final Map<TermVariable, Term> sigma = new LinkedHashMap<>();
 		for (int i = 0; i < subs.size(); i++) {
 			sigma.put(clause.getVars()[i], subs.get(i));
@@ -933,9 +1071,14 @@ public class InstantiationManager {
 			resultingLits = instHelper.getResultingGroundLits();
 		}
 
-		final InstClause inst =
-				resultingLits != null ? new InstClause(clause, subs, Arrays.asList(resultingLits), -1, origin)
-						: null;
+		final int nextTermId = mQuantTheory.getCClosure().getNextTermId();
+		if (nextTermId > firstNewTermId) {
+			addGenerationRange(firstNewTermId, nextTermId, generation);
+		}
+		mQuantTheory.mMaxInstanceGenerationSeen = Math.max(mQuantTheory.mMaxInstanceGenerationSeen, generation);
+		final InstClause inst = resultingLits != null
+				? new InstClause(clause, subs, Arrays.asList(resultingLits), -1, origin, generation)
+				: null;
 		mClauseInstances.get(clause).put(subs, inst);
 		if (resultingLits != null) {
 			mQuantTheory.getLogger().debug("Quant: instantiating quant clause %s results in %s", clause,
@@ -1126,6 +1269,164 @@ public class InstantiationManager {
 		}
 	}
 
+	/**
+	 * Enumerates the interesting substitutions of a quantified clause lazily in depth-first order, where the first
+	 * variable changes slowest. Each quantified literal is evaluated as soon as all of its variables are instantiated.
+	 * A partial substitution is not extended any further if the evaluated literals already make all its instances
+	 * uninteresting, i.e., true in the final check, or irrelevant in the checkpoint.
+	 */
+	private class SubstitutionEnumerator {
+		private final boolean mIsFinalCheck;
+		/**
+		 * For each variable, the interesting terms.
+		 */
+		private final Term[][] mCandidates;
+		/**
+		 * For each length of a partial substitution, the literals whose last variable is instantiated at this length.
+		 */
+		private final List<List<QuantLiteral>> mLitsAtDepth;
+		/**
+		 * For each length of a partial substitution, the number of full substitutions that extend it.
+		 */
+		private final long[] mNumExtensions;
+		/**
+		 * For each length of a partial substitution, the index of the candidate to try next for the following variable.
+		 */
+		private final int[] mNextCandidate;
+		/**
+		 * For each length of a partial substitution, the combined value of the literals evaluated so far.
+		 */
+		private final InstanceValue[] mValues;
+		/**
+		 * For each length of a partial substitution, whether the literals evaluated so far only contain known terms.
+		 */
+		private final boolean[] mOnlyKnownTerms;
+		private final List<Term> mSubs;
+		private boolean mDone;
+
+		SubstitutionEnumerator(final QuantClause clause, final InstanceValue groundValue, final boolean isFinalCheck) {
+			mIsFinalCheck = isFinalCheck;
+			final TermVariable[] vars = clause.getVars();
+			final int numVars = vars.length;
+			assert numVars > 0;
+			mCandidates = new Term[numVars][];
+			for (int i = 0; i < numVars; i++) {
+				assert !clause.getInterestingTerms()[i].isEmpty();
+				final Collection<Term> terms = clause.getInterestingTerms()[i].values();
+				mCandidates[i] = terms.toArray(new Term[terms.size()]);
+			}
+			mLitsAtDepth = new ArrayList<>(numVars + 1);
+			for (int i = 0; i <= numVars; i++) {
+				mLitsAtDepth.add(new ArrayList<>());
+			}
+			final List<TermVariable> varList = Arrays.asList(vars);
+			for (final QuantLiteral lit : clause.getQuantLits()) {
+				int depth = 0;
+				for (final TermVariable var : lit.getTerm().getFreeVars()) {
+					depth = Math.max(depth, varList.indexOf(var) + 1);
+				}
+				mLitsAtDepth.get(depth).add(lit);
+			}
+			mNumExtensions = new long[numVars + 1];
+			mNumExtensions[numVars] = 1;
+			for (int i = numVars - 1; i >= 0; i--) {
+				final long product = mNumExtensions[i + 1] * mCandidates[i].length;
+				mNumExtensions[i] = product / mCandidates[i].length == mNumExtensions[i + 1] ? product : Long.MAX_VALUE;
+			}
+			mNextCandidate = new int[numVars + 1];
+			mValues = new InstanceValue[numVars + 1];
+			mOnlyKnownTerms = new boolean[numVars + 1];
+			mSubs = new ArrayList<>(numVars);
+			mValues[0] = groundValue;
+			mOnlyKnownTerms[0] = true;
+			mDone = !evaluate(0);
+		}
+
+		/**
+		 * Evaluate the literals that become ground at the current length of the partial substitution.
+		 *
+		 * @param depth
+		 *            the current length of the partial substitution.
+		 * @return false if no extension of the partial substitution is interesting.
+		 */
+		private boolean evaluate(final int depth) {
+			InstanceValue value = mValues[depth];
+			boolean onlyKnownTerms = mOnlyKnownTerms[depth];
+			for (final QuantLiteral lit : mLitsAtDepth.get(depth)) {
+				final InstanceValue litValue = evaluateLitInstance(lit, mSubs);
+				if (litValue == InstanceValue.UNKNOWN_TERM) {
+					onlyKnownTerms = false;
+				}
+				value = mIsFinalCheck ? value.combine(litValue) : combineForCheckpoint(value, litValue);
+				if (value == (mIsFinalCheck ? InstanceValue.TRUE : InstanceValue.IRRELEVANT)) {
+					return false;
+				}
+			}
+			mValues[depth] = value;
+			mOnlyKnownTerms[depth] = onlyKnownTerms;
+			return true;
+		}
+
+		/**
+		 * Compute the next interesting substitution. In the final check, this stops when the budget is exhausted.
+		 *
+		 * @return the next substitution, or null if there is none.
+		 */
+		List<Term> next() {
+			final int numVars = mCandidates.length;
+			if (mSubs.size() == numVars) {
+				mSubs.remove(numVars - 1);
+			}
+			while (!mDone) {
+				final int depth = mSubs.size();
+				if (mNextCandidate[depth] == mCandidates[depth].length) {
+					if (depth == 0) {
+						mDone = true;
+						return null;
+					}
+					mNextCandidate[depth] = 0;
+					mSubs.remove(depth - 1);
+					continue;
+				}
+				if (mClausifier.getEngine().isTerminationRequested()) {
+					mDone = true;
+					return null;
+				}
+				if (mIsFinalCheck && mSubstitutionBudget-- <= 0) {
+					mBudgetExhausted = true;
+					mDone = true;
+					return null;
+				}
+				mQuantTheory.mNumSubstitutionsVisited++;
+				mSubs.add(mCandidates[depth][mNextCandidate[depth]++]);
+				mValues[depth + 1] = mValues[depth];
+				mOnlyKnownTerms[depth + 1] = mOnlyKnownTerms[depth];
+				if (!evaluate(depth + 1)) {
+					mQuantTheory.mNumSubstitutionsPruned += mNumExtensions[depth + 1];
+					mSubs.remove(depth);
+				} else if (depth + 1 == numVars) {
+					return new ArrayList<>(mSubs);
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Get the value of the instance for the substitution last returned by {@link #next()}.
+		 */
+		InstanceValue getValue() {
+			return mValues[mCandidates.length];
+		}
+
+		/**
+		 * Check if the literals of the instance for the substitution last returned by {@link #next()} only contain
+		 * known terms.
+		 */
+		boolean hasOnlyKnownTerms() {
+			return mOnlyKnownTerms[mCandidates.length];
+		}
+	}
+
 	private class TermFinder extends NonRecursive {
 		private final SourceAnnotation mSource;
 		private final List<TermVariable> mVars;
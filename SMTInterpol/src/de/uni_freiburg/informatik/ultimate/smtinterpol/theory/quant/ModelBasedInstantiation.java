@@ -0,0 +1,475 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.theory.quant;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.uni_freiburg.informatik.ultimate.logic.ApplicationTerm;
+import de.uni_freiburg.informatik.ultimate.logic.ConstantTerm;
+import de.uni_freiburg.informatik.ultimate.logic.FunctionSymbol;
+import de.uni_freiburg.informatik.ultimate.logic.Logics;
+import de.uni_freiburg.informatik.ultimate.logic.Rational;
+import de.uni_freiburg.informatik.ultimate.logic.SMTLIBException;
+import de.uni_freiburg.informatik.ultimate.logic.Script;
+import de.uni_freiburg.informatik.ultimate.logic.Script.LBool;
+import de.uni_freiburg.informatik.ultimate.logic.Sort;
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+import de.uni_freiburg.informatik.ultimate.logic.TermTransformer;
+import de.uni_freiburg.informatik.ultimate.logic.TermVariable;
+import de.uni_freiburg.informatik.ultimate.logic.Theory;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.DefaultLogger;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.LogProxy;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.convert.SMTAffineTerm;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.Clause;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.model.Model;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2.SMTInterpol;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.theory.cclosure.CCTerm;
+
+/**
+ * Model-based quantifier instantiation. If the final check finds no instance on known terms, a candidate model is
+ * built from the assignment of the ground theories. Every quantified clause whose ground literals are false is
+ * checked against this model by an auxiliary solver: the variables are replaced by fresh constants, the free
+ * functions are fixed to their value in the model, and the solver searches for values of the constants that falsify
+ * all quantified literals. Such a counterexample is mapped back to ground terms with the same value, and only the
+ * resulting instance is added. If no clause has a counterexample, the candidate model is a model of the quantified
+ * clauses.
+ *
+ * The check supports variables and functions over Bool, Int, Real and uninterpreted sorts of arity zero. The values
+ * of an uninterpreted sort are the finite universe of the model. For other sorts, e.g. arrays and datatypes, the
+ * check is inconclusive.
+ */
+class ModelBasedInstantiation {
+	private static final String PREFIX = "mbqi!";
+
+	private final QuantifierTheory mQuantTheory;
+	private final Theory mTheory;
+
+	/**
+	 * The auxiliary solver. It is created on the first check and reused with a fresh assertion level for every check.
+	 */
+	private SMTInterpol mAuxSolver;
+	private Theory mAuxTheory;
+
+	/**
+	 * The candidate model of the current check.
+	 */
+	private Model mModel;
+	/**
+	 * The sorts of the auxiliary solver for the sorts of the main theory.
+	 */
+	private final Map<Sort, Sort> mAuxSorts = new HashMap<>();
+	/**
+	 * The constants of the auxiliary solver for the elements of each uninterpreted sort.
+	 */
+	private final Map<Sort, Term[]> mUniverses = new HashMap<>();
+	/**
+	 * The uninterpreted functions of the auxiliary solver for the functions of the main theory.
+	 */
+	private final Map<FunctionSymbol, FunctionSymbol> mAuxFunctions = new HashMap<>();
+	/**
+	 * The definitions of the functions in the candidate model, and the variables they are defined over.
+	 */
+	private final Map<FunctionSymbol, TermVariable[]> mDefinitionVars = new HashMap<>();
+	private final Map<FunctionSymbol, Term> mDefinitions = new HashMap<>();
+	/**
+	 * The applications of uninterpreted functions whose definition has to be asserted in the auxiliary solver.
+	 */
+	private final Map<Term, FunctionSymbol> mUndefinedApps = new LinkedHashMap<>();
+	/**
+	 * Ground terms known to the congruence closure, indexed by their value in the candidate model.
+	 */
+	private Map<Term, Term> mTermsForValues;
+	private int mNumAuxConstants;
+
+	/**
+	 * True if the last check showed that the candidate model satisfies all quantified clauses.
+	 */
+	private boolean mModelVerified;
+
+	ModelBasedInstantiation(final QuantifierTheory quantTheory) {
+		mQuantTheory = quantTheory;
+		mTheory = quantTheory.getTheory();
+	}
+
+	/**
+	 * Check the quantified clauses against a candidate model of the current assignment and add the instances for the
+	 * counterexamples. This must only be called in the final check.
+	 *
+	 * @return a conflict clause, if one of the new instances is false.
+	 */
+	Clause check() {
+		mModelVerified = false;
+		final long time = System.nanoTime();
+		try {
+			mModel = new Model(mQuantTheory.getClausifier(), mTheory, false, true);
+		} catch (final UnsupportedOperationException ex) {
+			mQuantTheory.getLogger().debug("MBQI: no candidate model: %s", ex.getMessage());
+			return null;
+		} finally {
+			if (mQuantTheory.getLinAr() != null) {
+				// the model fixed the value of epsilon for the current bounds
+				mQuantTheory.getLinAr().invalidateModel();
+			}
+		}
+		if (mAuxSolver == null) {
+			final DefaultLogger logger = new DefaultLogger();
+			logger.setLoglevel(LogProxy.LOGLEVEL_ERROR);
+			mAuxSolver = new SMTInterpol(logger, () -> mQuantTheory.getEngine().isTerminationRequested());
+			mAuxSolver.setOption(":produce-models", true);
+			mAuxSolver.setLogic(Logics.QF_UFLIRA);
+			mAuxTheory = mAuxSolver.getTheory();
+		}
+		mAuxSolver.push(1);
+		boolean verified = true;
+		Clause conflict = null;
+		try {
+			final List<QuantClause> clauses = new ArrayList<>(mQuantTheory.getQuantClauses());
+			for (final QuantClause clause : clauses) {
+				if (mQuantTheory.getEngine().isTerminationRequested()) {
+					return null;
+				}
+				if (clause.hasTrueGroundLits()) {
+					continue;
+				}
+				final List<Term> subs;
+				try {
+					subs = findCounterexample(clause);
+				} catch (final UnsupportedOperationException | SMTLIBException ex) {
+					mQuantTheory.getLogger().debug("MBQI: cannot check %s: %s", clause, ex.getMessage());
+					verified = false;
+					continue;
+				}
+				if (subs == null) {
+					continue;
+				}
+				verified = false;
+				final InstantiationManager instantiator = mQuantTheory.getInstantiator();
+				if (instantiator.hasInstance(clause, subs)) {
+					continue;
+				}
+				final InstClause inst = instantiator.addFinalCheckInstance(clause, subs);
+				mQuantTheory.mNumInstancesMBQI++;
+				if (inst != null) {
+					final int numUndef = inst.countAndSetUndefLits();
+					if (numUndef == 0) {
+						conflict = inst.toLearnedClause(mQuantTheory.getEngine().isProofGenerationEnabled());
+						break;
+					}
+				}
+			}
+		} finally {
+			mAuxSolver.pop(1);
+			mAuxSorts.clear();
+			mUniverses.clear();
+			mAuxFunctions.clear();
+			mDefinitionVars.clear();
+			mDefinitions.clear();
+			mTermsForValues = null;
+			mModel = null;
+			mQuantTheory.mMBQITime += System.nanoTime() - time;
+		}
+		mModelVerified = verified && conflict == null;
+		if (mModelVerified) {
+			mQuantTheory.mNumModelsVerified++;
+		}
+		return conflict;
+	}
+
+	/**
+	 * Check if the last check showed that the candidate model satisfies all quantified clauses.
+	 */
+	boolean isModelVerified() {
+		return mModelVerified;
+	}
+
+	/**
+	 * Forget the result of the last check, because the assignment changed.
+	 */
+	void reset() {
+		mModelVerified = false;
+	}
+
+	/**
+	 * Search for a substitution that makes all quantified literals of a clause false in the candidate model.
+	 *
+	 * @return the substitution, or null if the clause is satisfied by the candidate model.
+	 * @throws UnsupportedOperationException
+	 *             if the clause cannot be checked.
+	 */
+	private List<Term> findCounterexample(final QuantClause clause) {
+		final TermVariable[] vars = clause.getVars();
+		final Map<TermVariable, Term> varConsts = new HashMap<>();
+		final Term[] consts = new Term[vars.length];
+		for (int i = 0; i < vars.length; i++) {
+			final Sort sort = vars[i].getSort().getRealSort();
+			consts[i] = declareAuxConstant(translateSort(sort));
+			varConsts.put(vars[i], consts[i]);
+			final Term[] universe = mUniverses.get(sort);
+			if (universe != null) {
+				final Term[] choices = new Term[universe.length];
+				for (int j = 0; j < universe.length; j++) {
+					choices[j] = mAuxTheory.equals(consts[i], universe[j]);
+				}
+				mAuxSolver.assertTerm(mAuxTheory.or(choices));
+			}
+		}
+		final QuantLiteral[] qLits = clause.getQuantLits();
+		final Term[] negLits = new Term[qLits.length];
+		final Translator translator = new Translator(varConsts);
+		for (int i = 0; i < qLits.length; i++) {
+			negLits[i] = mAuxTheory.not(translator.transform(qLits[i].getTerm()));
+		}
+		assertDefinitions();
+		final Term guard = declareAuxConstant(mAuxTheory.getBooleanSort());
+		mAuxSolver.assertTerm(mAuxTheory.implies(guard, mAuxTheory.and(negLits)));
+
+		mQuantTheory.mNumMBQIChecks++;
+		final LBool result = mAuxSolver.checkSatAssuming(guard);
+		if (result == LBool.UNSAT) {
+			return null;
+		}
+		if (result != LBool.SAT) {
+			throw new UnsupportedOperationException("auxiliary check returned " + result);
+		}
+		final Map<Term, Term> values = mAuxSolver.getValue(consts);
+		final List<Term> subs = new ArrayList<>(vars.length);
+		for (int i = 0; i < vars.length; i++) {
+			subs.add(getTermForValue(vars[i].getSort().getRealSort(), values.get(consts[i])));
+		}
+		return subs;
+	}
+
+	private Term declareAuxConstant(final Sort auxSort) {
+		final String name = PREFIX + "c" + mNumAuxConstants++;
+		mAuxSolver.declareFun(name, Script.EMPTY_SORT_ARRAY, auxSort);
+		return mAuxSolver.term(name);
+	}
+
+	/**
+	 * Assert for every application of an uninterpreted function in the auxiliary solver that it equals the definition
+	 * of the function in the candidate model.
+	 */
+	private void assertDefinitions() {
+		for (final Map.Entry<Term, FunctionSymbol> entry : mUndefinedApps.entrySet()) {
+			final ApplicationTerm app = (ApplicationTerm) entry.getKey();
+			final FunctionSymbol fsym = entry.getValue();
+			final Term definition = translateDefinition(fsym, app.getParameters());
+			mAuxSolver.assertTerm(mAuxTheory.equals(app, definition));
+		}
+		mUndefinedApps.clear();
+	}
+
+	/**
+	 * Translate the definition of a function in the candidate model for the given arguments in the auxiliary theory.
+	 */
+	private Term translateDefinition(final FunctionSymbol fsym, final Term[] auxArgs) {
+		Term definition = mDefinitions.get(fsym);
+		TermVariable[] defVars = mDefinitionVars.get(fsym);
+		if (definition == null) {
+			final Sort[] paramSorts = fsym.getParameterSorts();
+			defVars = new TermVariable[paramSorts.length];
+			for (int i = 0; i < paramSorts.length; i++) {
+				defVars[i] = mTheory.createTermVariable("@mbqi" + i, paramSorts[i]);
+			}
+			definition = mModel.getFunctionDefinition(fsym, defVars);
+			mDefinitionVars.put(fsym, defVars);
+			mDefinitions.put(fsym, definition);
+		}
+		final Map<TermVariable, Term> argMap = new HashMap<>();
+		for (int i = 0; i < defVars.length; i++) {
+			argMap.put(defVars[i], auxArgs[i]);
+		}
+		return new Translator(argMap).transform(definition);
+	}
+
+	/**
+	 * Get the sort of the auxiliary solver for a sort of the main theory. For an uninterpreted sort, this declares the
+	 * sort and the constants for the elements of its universe in the candidate model.
+	 */
+	private Sort translateSort(final Sort sort) {
+		final Sort realSort = sort.getRealSort();
+		Sort auxSort = mAuxSorts.get(realSort);
+		if (auxSort != null) {
+			return auxSort;
+		}
+		if (realSort == mTheory.getBooleanSort()) {
+			auxSort = mAuxTheory.getBooleanSort();
+		} else if (realSort.isNumericSort()) {
+			auxSort = mAuxTheory.getSort(realSort.getName());
+		} else if (!realSort.isInternal() && realSort.getArguments().length == 0
+				&& !realSort.getSortSymbol().isDatatype()) {
+			final String name = PREFIX + "s" + mAuxSorts.size();
+			mAuxSolver.declareSort(name, 0);
+			auxSort = mAuxSolver.sort(name);
+			// the sorts of the model are never empty
+			final int size = mModel.provideSortInterpretation(realSort).ensureCapacity(1);
+			final Term[] universe = new Term[size];
+			for (int i = 0; i < size; i++) {
+				universe[i] = declareAuxConstant(auxSort);
+			}
+			if (size > 1) {
+				mAuxSolver.assertTerm(mAuxTheory.distinct(universe));
+			}
+			mUniverses.put(realSort, universe);
+		} else {
+			throw new UnsupportedOperationException("unsupported sort " + sort);
+		}
+		mAuxSorts.put(realSort, auxSort);
+		return auxSort;
+	}
+
+	private Term translateApplication(final FunctionSymbol fsym, final Term[] auxArgs) {
+		final Sort resultSort = translateSort(fsym.getReturnSort());
+		if (fsym.isModelValue()) {
+			final Term[] universe = mUniverses.get(fsym.getReturnSort().getRealSort());
+			final int index = Integer.parseInt(fsym.getName().substring(1));
+			if (universe == null || index >= universe.length) {
+				throw new UnsupportedOperationException("unknown value " + fsym);
+			}
+			return universe[index];
+		}
+		if (fsym.isInterpreted()) {
+			final Sort[] auxParamSorts = new Sort[auxArgs.length];
+			for (int i = 0; i < auxArgs.length; i++) {
+				auxParamSorts[i] = auxArgs[i].getSort();
+			}
+			final FunctionSymbol auxFsym = mAuxTheory.getFunctionWithResult(fsym.getName(), fsym.getIndices(),
+					fsym.isReturnOverload() ? resultSort : null, auxParamSorts);
+			if (auxFsym == null) {
+				throw new UnsupportedOperationException("unsupported function " + fsym);
+			}
+			return mAuxTheory.term(auxFsym, auxArgs);
+		}
+		if (mModel.getFunctionValue(fsym) == null) {
+			throw new UnsupportedOperationException("no value for " + fsym);
+		}
+		if (auxArgs.length == 0) {
+			return translateDefinition(fsym, auxArgs);
+		}
+		FunctionSymbol auxFsym = mAuxFunctions.get(fsym);
+		if (auxFsym == null) {
+			final Sort[] auxParamSorts = new Sort[auxArgs.length];
+			for (int i = 0; i < auxArgs.length; i++) {
+				auxParamSorts[i] = translateSort(fsym.getParameterSorts()[i]);
+			}
+			final String name = PREFIX + "f" + mAuxFunctions.size();
+			mAuxSolver.declareFun(name, auxParamSorts, resultSort);
+			auxFsym = mAuxTheory.getFunction(name, auxParamSorts);
+			mAuxFunctions.put(fsym, auxFsym);
+		}
+		final Term app = mAuxTheory.term(auxFsym, auxArgs);
+		mUndefinedApps.put(app, fsym);
+		return app;
+	}
+
+	/**
+	 * Find a ground term of the main theory with the given value of the auxiliary solver.
+	 */
+	private Term getTermForValue(final Sort sort, final Term auxValue) {
+		final Term value;
+		if (sort == mTheory.getBooleanSort()) {
+			return auxValue == mAuxTheory.mTrue ? mTheory.mTrue : mTheory.mFalse;
+		} else if (sort.isNumericSort()) {
+			final Rational rat = SMTAffineTerm.convertConstant((ConstantTerm) SMTAffineTerm.parseConstant(auxValue));
+			value = rat.toTerm(sort);
+		} else {
+			final Term[] universe = mUniverses.get(sort);
+			final Map<Term, Term> universeValues = mAuxSolver.getValue(universe);
+			int index = 0;
+			while (universeValues.get(universe[index]) != auxValue) {
+				index++;
+			}
+			value = mModel.toModelTerm(index, sort);
+		}
+		if (mTermsForValues == null) {
+			collectTermsForValues();
+		}
+		final Term term = mTermsForValues.get(value);
+		if (term != null) {
+			return term;
+		}
+		return sort.isNumericSort() ? value : mQuantTheory.getLambda(sort);
+	}
+
+	/**
+	 * Evaluate one member of every congruence class in the candidate model. Model values, in particular the lambdas,
+	 * are skipped, since their value in the model is not necessarily the one they are named after.
+	 */
+	private void collectTermsForValues() {
+		mTermsForValues = new HashMap<>();
+		final Set<CCTerm> visitedReps = new HashSet<>();
+		for (final CCTerm ccTerm : mQuantTheory.getCClosure().getAllTerms()) {
+			final Term flat = ccTerm.getFlatTerm();
+			if (flat == null || flat.getSort() == mTheory.getBooleanSort()
+					|| flat instanceof ApplicationTerm && ((ApplicationTerm) flat).getFunction().isModelValue()
+					|| !visitedReps.add(ccTerm.getRepresentative())) {
+				continue;
+			}
+			try {
+				mTermsForValues.putIfAbsent(mModel.evaluate(flat), flat);
+			} catch (final UnsupportedOperationException ex) {
+				// the term has no value in the candidate model
+				visitedReps.remove(ccTerm.getRepresentative());
+			}
+		}
+	}
+
+	/**
+	 * Translates a term of the main theory into the auxiliary theory. Variables are replaced by the given terms,
+	 * model values by the universe constants and uninterpreted functions by the auxiliary functions.
+	 */
+	private class Translator extends TermTransformer {
+		private final Map<TermVariable, Term> mVarMap;
+
+		Translator(final Map<TermVariable, Term> varMap) {
+			mVarMap = varMap;
+		}
+
+		@Override
+		protected void convert(final Term term) {
+			if (term instanceof TermVariable) {
+				final Term value = mVarMap.get(term);
+				if (value == null) {
+					throw new UnsupportedOperationException("unknown variable " + term);
+				}
+				setResult(value);
+			} else if (term instanceof ConstantTerm) {
+				if (!term.getSort().isNumericSort()) {
+					throw new UnsupportedOperationException("unsupported constant " + term);
+				}
+				setResult(SMTAffineTerm.convertConstant((ConstantTerm) term).toTerm(translateSort(term.getSort())));
+			} else if (term instanceof ApplicationTerm) {
+				super.convert(term);
+			} else {
+				throw new UnsupportedOperationException("unsupported term " + term);
+			}
+		}
+
+		@Override
+		public void convertApplicationTerm(final ApplicationTerm appTerm, final Term[] newArgs) {
+			setResult(translateApplication(appTerm.getFunction(), newArgs));
+		}
+	}
+}
@@ -44,6 +44,7 @@ import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.ILiteral;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.ITheory;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.Literal;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.proof.SourceAnnotation;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.theory.cclosure.CCEquality;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.theory.cclosure.CCTerm;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.theory.cclosure.CClosure;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.theory.epr.util.Pair;
@@ -71,6 +72,10 @@ public class QuantifierTheory implements ITheory {
 
 	private final EMatching mEMatching;
 	private final InstantiationManager mInstantiationManager;
+	/**
+	 * The engine for model-based instantiation, or null if it is disabled.
+	 */
+	private ModelBasedInstantiation mModelBasedInstantiation;
 	private final Map<Sort, Term> mLambdas;
 
 	/**
@@ -90,6 +95,11 @@ public class QuantifierTheory implements ITheory {
 
 	// Statistics
 	long mNumInstancesProduced, mNumInstancesDER, mNumInstancesProducedCP, mNumInstancesProducedFC;
+	long mNumSubstitutionsVisited, mNumSubstitutionsPruned, mNumBudgetExhausted, mNumCongruentDuplicates;
+	long mNumClauseEvaluationsSkipped;
+	long mNumInstancesMBQI, mNumMBQIChecks, mNumModelsVerified, mMBQITime;
+	long mNumInstancesOverGenerationLimit, mNumInstancesDeleted, mNumGarbageCollections;
+	int mMaxInstanceGenerationSeen;
 	private long mNumCheckpoints, mNumCheckpointsWithNewEval, mNumConflicts, mNumProps, mNumFinalcheck;
 	private long mCheckpointTime, mFindEmatchingTime, mFinalCheckTime, mEMatchingTime, mDawgTime;
 
@@ -98,6 +108,13 @@ public class QuantifierTheory implements ITheory {
 	boolean mUseUnknownTermValueInDawgs;
 	boolean mPropagateNewAux;
 	boolean mPropagateNewTerms;
+	long mFinalCheckBudget;
+	int mMaxInstanceGeneration;
+	long mInstanceGCInterval;
+	/**
+	 * The number of produced instances at which the next garbage collection of instances is due.
+	 */
+	private long mNextInstanceGC;
 
 	public QuantifierTheory(final Theory th, final DPLLEngine engine, final Clausifier clausifier,
 			final boolean useEMatching, final boolean useUnknownTermDawgs, final boolean propagateNewTerms,
@@ -127,7 +144,7 @@ public class QuantifierTheory implements ITheory {
 
 	@Override
 	public Clause startCheck() {
-		// TODO Auto-generated method stub
+		collectGarbageIfDue();
 		return null;
 	}
 
@@ -139,6 +156,10 @@ public class QuantifierTheory implements ITheory {
 
 	@Override
 	public Clause setLiteral(final Literal literal) {
+		if (mEMatching.isIncremental() && literal != literal.getAtom() && literal.getAtom() instanceof CCEquality) {
+			final CCEquality eq = (CCEquality) literal.getAtom();
+			mEMatching.addDisequality(eq.getLhs(), eq.getRhs());
+		}
 		// Remove clauses that have become true from potential conflict and unit clauses.
 		if (mPotentialConflictAndUnitClauses.containsKey(literal)) {
 			for (final InstClause instClause : mPotentialConflictAndUnitClauses.remove(literal)) {
@@ -216,7 +237,7 @@ public class QuantifierTheory implements ITheory {
 		final Clause conflict = addPotentialConflictAndUnitClauses(conflictAndUnitInstances);
 		if (conflict != null) {
 			mLogger.debug("Quant conflict: %s", conflict);
-			mEngine.learnClause(conflict);
+			learnInstanceClause(conflict);
 			mNumConflicts++;
 		}
 		if (Config.PROFILE_TIME) {
@@ -239,10 +260,19 @@ public class QuantifierTheory implements ITheory {
 			}
 			clause.updateInterestingTermsAllVars();
 		}
-		final Clause conflict = mInstantiationManager.instantiateSomeNotSat();
+		final long numInstancesBefore = mNumInstancesProducedFC;
+		Clause conflict = mInstantiationManager.instantiateSomeNotSat();
+		// Only check the candidate model if instantiation on known terms made no progress. Counterexamples may
+		// introduce new terms, so preferring them would keep growing the set of terms.
+		if (mModelBasedInstantiation != null) {
+			mModelBasedInstantiation.reset();
+			if (conflict == null && numInstancesBefore == mNumInstancesProducedFC) {
+				conflict = mModelBasedInstantiation.check();
+			}
+		}
 		if (conflict != null) {
 			mNumConflicts++;
-			mEngine.learnClause(conflict);
+			learnInstanceClause(conflict);
 		}
 		if (Config.PROFILE_TIME) {
 			mFinalCheckTime += System.nanoTime() - time;
@@ -260,9 +290,9 @@ public class QuantifierTheory implements ITheory {
 			for (final InstClause inst : entry.getValue()) {
 				if (inst.isUnit()) {
 					assert !Config.EXPENSIVE_ASSERTS || inst.countAndSetUndefLits() == 1;
-					final Clause expl = inst.toClause(mEngine.isProofGenerationEnabled());
+					final Clause expl = inst.toLearnedClause(mEngine.isProofGenerationEnabled());
 					lit.getAtom().mExplanation = expl;
-					mEngine.learnClause(expl);
+					learnInstanceClause(expl);
 					mNumProps++;
 					mLogger.debug("Quant Prop: %s Reason: %s", lit, lit.getAtom().mExplanation);
 					return lit;
@@ -289,14 +319,23 @@ public class QuantifierTheory implements ITheory {
 	@Override
 	public void printStatistics(final LogProxy logger) {
 		logger.info("Quant: DER produced %d ground clause(s).", mNumInstancesDER);
-		logger.info("Quant: Instances produced: %d (Checkpoint: %d, Final check: %d)", mNumInstancesProduced,
-				mNumInstancesProducedCP, mNumInstancesProducedFC);
+		logger.info("Quant: Instances produced: %d (Checkpoint: %d, Final check: %d) Duplicates modulo congruence: %d",
+				mNumInstancesProduced, mNumInstancesProducedCP, mNumInstancesProducedFC, mNumCongruentDuplicates);
+		logger.info("Quant: Substitutions visited: %d pruned: %d Final check budget exhausted: %d",
+				mNumSubstitutionsVisited, mNumSubstitutionsPruned, mNumBudgetExhausted);
 		logger.info("Quant: Conflicts: %d Props: %d Checkpoints (with new evaluation): %d (%d) Final Checks: %d",
 				mNumConflicts, mNumProps, mNumCheckpoints, mNumCheckpointsWithNewEval, mNumFinalcheck);
+		logger.info("Quant: Unaffected clause evaluations skipped: %d", mNumClauseEvaluationsSkipped);
+		logger.info("Quant: MBQI instances: %d Auxiliary checks: %d Models verified: %d", mNumInstancesMBQI,
+				mNumMBQIChecks, mNumModelsVerified);
+		logger.info("Quant: Max generation: %d Over generation limit: %d Deleted instances: %d (%d collections)",
+				mMaxInstanceGenerationSeen, mNumInstancesOverGenerationLimit, mNumInstancesDeleted,
+				mNumGarbageCollections);
 		logger.info(
 				"Quant times: Checkpoint: %.3f Find with E-matching: %.3f E-Matching: %.3f Dawg: %.3f Final Check: %.3f",
 				mCheckpointTime / 1000 / 1000.0, mFindEmatchingTime / 1000 / 1000.0, mEMatchingTime / 1000 / 1000.0,
 				mDawgTime / 1000 / 1000.0, mFinalCheckTime / 1000 / 1000.0);
+		logger.info("Quant times: MBQI: %.3f", mMBQITime / 1000 / 1000.0);
 	}
 
 	@Override
@@ -322,14 +361,44 @@ public class QuantifierTheory implements ITheory {
 		final int decisionLevel = mClausifier.getEngine().getDecideLevel();
 		mEMatching.undo(decisionLevel);
 		mInstantiationManager.resetInterestingTerms();
+		if (mModelBasedInstantiation != null) {
+			mModelBasedInstantiation.reset();
+		}
 		mPotentialConflictAndUnitClauses.clear();
 		return null;
 	}
 
 	@Override
 	public void restart(final int iteration) {
-		// TODO Auto-generated method stub
+		collectGarbageIfDue();
+	}
+
+	/**
+	 * Learn the clause of an instance. If the garbage collection of instances is enabled, the engine may delete the
+	 * clause again when it is not used in conflicts.
+	 */
+	private void learnInstanceClause(final Clause clause) {
+		if (mInstanceGCInterval > 0) {
+			mEngine.learnDeletableClause(clause);
+		} else {
+			mEngine.learnClause(clause);
+		}
+	}
 
+	/**
+	 * Delete the instances that were not relevant since the last garbage collection, if enough instances were produced
+	 * since then. The interval grows with the number of remaining instances.
+	 */
+	private void collectGarbageIfDue() {
+		if (mInstanceGCInterval <= 0 || mNumInstancesProduced < mNextInstanceGC) {
+			return;
+		}
+		final long numDeleted = mInstantiationManager.collectGarbage();
+		mNumInstancesDeleted += numDeleted;
+		mNumGarbageCollections++;
+		mNextInstanceGC =
+				mNumInstancesProduced + Math.max(mInstanceGCInterval, mInstantiationManager.getNumInstances());
+		mLogger.debug("Quant: deleted %d instances", numDeleted);
 	}
 
 	@Override
@@ -346,6 +415,11 @@ public class QuantifierTheory implements ITheory {
 	@Override
 	public void pop() {
 		mQuantClauses.endScope();
+		// the engine removes the atoms of the popped level after this call
+		mInstantiationManager.removeInstancesOnLevel(mEngine.getAssertionStackLevel());
+		if (mModelBasedInstantiation != null) {
+			mModelBasedInstantiation.reset();
+		}
 	}
 
 	@Override
@@ -354,14 +428,25 @@ public class QuantifierTheory implements ITheory {
 				new Object[][] { { "DER ground results", mNumInstancesDER },
 						{ "Instances produced", mNumInstancesProduced },
 						{ "thereof in checkpoint", mNumInstancesProducedCP },
-						{ "and in final check", mNumInstancesProducedFC }, { "Conflicts", mNumConflicts },
+						{ "and in final check", mNumInstancesProducedFC },
+						{ "Duplicates modulo congruence", mNumCongruentDuplicates }, { "Conflicts", mNumConflicts },
 						{ "Propagations", mNumProps }, { "Checkpoints", mNumCheckpoints },
 						{ "Checkpoints with new evaluation", mNumCheckpointsWithNewEval },
+						{ "Clause evaluations skipped", mNumClauseEvaluationsSkipped },
 						{ "Final Checks", mNumFinalcheck },
+						{ "Substitutions visited", mNumSubstitutionsVisited },
+						{ "Substitutions pruned", mNumSubstitutionsPruned },
+						{ "Final check budget exhausted", mNumBudgetExhausted },
+						{ "MBQI instances", mNumInstancesMBQI }, { "MBQI checks", mNumMBQIChecks },
+						{ "MBQI models verified", mNumModelsVerified },
+						{ "Max instance generation", (long) mMaxInstanceGenerationSeen },
+						{ "Instances over generation limit", mNumInstancesOverGenerationLimit },
+						{ "Instances deleted", mNumInstancesDeleted },
+						{ "Instance garbage collections", mNumGarbageCollections },
 						{ "Times",
 								new Object[][] { { "Checkpoint", mCheckpointTime },
 										{ "Find E-matching", mFindEmatchingTime }, { "E-Matching", mEMatchingTime },
-										{ "Final Check", mFinalCheckTime } } } } };
+										{ "Final Check", mFinalCheckTime }, { "MBQI", mMBQITime } } } } };
 
 	}
 
@@ -628,6 +713,9 @@ public class QuantifierTheory implements ITheory {
 		final QuantClause clause = new QuantClause(groundLits.toArray(new Literal[groundLits.size()]),
 				quantLits.toArray(new QuantLiteral[quantLits.size()]), this, source);
 		mQuantClauses.add(clause);
+		if (mModelBasedInstantiation != null) {
+			mModelBasedInstantiation.reset();
+		}
 
 		mEMatching.addPatterns(clause);
 		mInstantiationManager.addClause(clause);
@@ -645,6 +733,54 @@ public class QuantifierTheory implements ITheory {
 		mDawgTime += time;
 	}
 
+	/**
+	 * Set the number of (partial) substitutions that may be evaluated in one final check.
+	 *
+	 * @param budget
+	 *            the budget; values &lt;= 0 mean that the number is not limited.
+	 */
+	public void setFinalCheckBudget(final long budget) {
+		mFinalCheckBudget = budget;
+	}
+
+	/**
+	 * Set the maximal generation of instances. Instances on input terms have generation 1, and an instance on terms
+	 * created by an instance of generation n has generation n + 1.
+	 *
+	 * @param maxGeneration
+	 *            the maximal generation; values &lt;= 0 mean that the generation is not limited.
+	 */
+	public void setMaxInstanceGeneration(final int maxGeneration) {
+		mMaxInstanceGeneration = maxGeneration;
+	}
+
+	/**
+	 * Set the number of instances produced between two garbage collections of instances.
+	 *
+	 * @param interval
+	 *            the interval; values &lt;= 0 keep all instances and their clauses.
+	 */
+	public void setInstanceGCInterval(final long interval) {
+		mInstanceGCInterval = interval;
+		mNextInstanceGC = mNumInstancesProduced + interval;
+	}
+
+	/**
+	 * Only evaluate the clauses affected by changes of the congruence closure in a checkpoint. This must be set before
+	 * the first clause is added.
+	 */
+	public void setIncrementalEMatching(final boolean incremental) {
+		mEMatching.setIncremental(incremental);
+	}
+
+	/**
+	 * Check candidate models against the quantified clauses if the final check finds no instance on known terms, and
+	 * instantiate the clauses on the counterexamples. If a candidate model is verified, the result is complete.
+	 */
+	public void setModelBasedInstantiation(final boolean enable) {
+		mModelBasedInstantiation = enable ? new ModelBasedInstantiation(this) : null;
+	}
+
 	public Clausifier getClausifier() {
 		return mClausifier;
 	}
@@ -698,12 +834,19 @@ public class QuantifierTheory implements ITheory {
 
 	/**
 	 * Check if there exists a not yet satisfied clause that contains a literal outside of the almost uninterpreted
-	 * fragment. If so, returns INCOMPLETE to inform the DPLL engine of incompleteness.
+	 * fragment, or if the last final check ran out of budget before all substitutions were evaluated. If so, returns
+	 * INCOMPLETE to inform the DPLL engine of incompleteness.
 	 *
 	 * @return DPLLEngine.COMPLETE, if a model exists, DPLLEngine.INCOMPLETE_* if unsure.
 	 */
 	@Override
 	public int checkCompleteness() {
+		if (mModelBasedInstantiation != null && mModelBasedInstantiation.isModelVerified()) {
+			return DPLLEngine.COMPLETE;
+		}
+		if (mInstantiationManager.isBudgetExhausted() || mInstantiationManager.isGenerationLimitReached()) {
+			return DPLLEngine.INCOMPLETE_QUANTIFIER;
+		}
 		for (final QuantClause qClause : mQuantClauses) {
 			if (!qClause.hasTrueGroundLits()) {
 				for (final QuantLiteral qLit : qClause.getQuantLits()) {
@@ -745,7 +888,7 @@ public class QuantifierTheory implements ITheory {
 				continue;
 			}
 			if (numUndefLits == 0) {
-				return inst.toClause(mEngine.isProofGenerationEnabled());
+				return inst.toLearnedClause(mEngine.isProofGenerationEnabled());
 			}
 			for (final Literal lit : inst.mLits) {
 				if (lit.getAtom().getDecideStatus() == null) {
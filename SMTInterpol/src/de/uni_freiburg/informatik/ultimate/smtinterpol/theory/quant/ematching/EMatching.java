@@ -18,10 +18,8 @@
  */
 package de.uni_freiburg.informatik.ultimate.smtinterpol.theory.quant.ematching;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -32,14 +30,15 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import de.uni_freiburg.informatik.ultimate.logic.ApplicationTerm;
 import de.uni_freiburg.informatik.ultimate.logic.FunctionSymbol;
 import de.uni_freiburg.informatik.ultimate.logic.Term;
 import de.uni_freiburg.informatik.ultimate.logic.TermVariable;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.Config;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.convert.SMTAffineTerm;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.theory.cclosure.CClosure;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.theory.cclosure.CCTerm;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.theory.epr.util.Pair;
-import de.uni_freiburg.informatik.ultimate.smtinterpol.theory.epr.util.Triple;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.theory.quant.QuantBoundConstraint;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.theory.quant.QuantClause;
 import de.uni_freiburg.informatik.ultimate.smtinterpol.theory.quant.QuantEquality;
@@ -53,12 +52,25 @@ import de.uni_freiburg.informatik.ultimate.smtinterpol.theory.quant.dawg.Dawg;
  * interesting substitutions for the variables in the patterns. Some pieces of code may install triggers in the
  * congruence closure such that the remaining code is only executed when the trigger is activated.
  *
+ * In incremental mode, the engine additionally keeps an index from function symbols to the quantified clauses whose
+ * E-matching literals compare applications of these symbols. Before each checkpoint, the congruence classes changed
+ * by merges or new disequalities are scanned for their function symbols, and only the clauses affected by them (or
+ * by new substitutions) have to be evaluated again.
+ *
  * @author Tanja Schindler
  */
 public class EMatching {
 
 	private final QuantifierTheory mQuantTheory;
-	private Deque<Triple<ICode, CCTerm[], Integer>> mTodoStack;
+	/**
+	 * The queue of code to execute, stored as a ring buffer of code, register and decision level. The entries from
+	 * mTodoHead to mTodoHead + mTodoSize - 1 (modulo the capacity, which is a power of two) are filled.
+	 */
+	private ICode[] mTodoCode;
+	private CCTerm[][] mTodoRegisters;
+	private int[] mTodoLevels;
+	private int mTodoHead;
+	private int mTodoSize;
 	private final Map<Integer, EMUndoInformation> mUndoInformation;
 
 	/**
@@ -69,13 +81,56 @@ public class EMatching {
 	private final Set<QuantLiteral> mEmatchingLiterals;
 	final SubstitutionInfo mEmptySubs;
 
+	/**
+	 * True if only the clauses affected by changes of the congruence closure are evaluated in a checkpoint.
+	 */
+	private boolean mIncremental;
+	/**
+	 * The clauses whose evaluation only depends on the congruence classes of applications of the indexed symbols.
+	 */
+	private final Set<QuantClause> mIncrementalClauses;
+	/**
+	 * The inverted index from function symbols to the incremental clauses containing a literal that compares an
+	 * application of the symbol.
+	 */
+	private final Map<FunctionSymbol, Set<QuantClause>> mClausesForSymbol;
+	/**
+	 * The incremental clauses that must be evaluated in the next checkpoint.
+	 */
+	private final Set<QuantClause> mDirtyClauses;
+	/**
+	 * Terms whose congruence class got a new disequality since the last synchronization.
+	 */
+	private final List<CCTerm> mTouchedTerms;
+	/**
+	 * The depth of the merge stack in the congruence closure at the last synchronization.
+	 */
+	private int mSyncedStackDepth;
+
 	public EMatching(final QuantifierTheory quantifierTheory) {
 		mQuantTheory = quantifierTheory;
-		mTodoStack = new ArrayDeque<>();
+		mTodoCode = new ICode[16];
+		mTodoRegisters = new CCTerm[16][];
+		mTodoLevels = new int[16];
 		mAtomSubsDawgs = new HashMap<>();
 		mUndoInformation = new LinkedHashMap<>();
 		mEmptySubs = new SubstitutionInfo(new ArrayList<CCTerm>(), new LinkedHashMap<>());
 		mEmatchingLiterals = new HashSet<>();
+		mIncrementalClauses = new HashSet<>();
+		mClausesForSymbol = new HashMap<>();
+		mDirtyClauses = new HashSet<>();
+		mTouchedTerms = new ArrayList<>();
+	}
+
+	/**
+	 * Enable or disable the incremental mode. This must be set before the first clause is added.
+	 */
+	public void setIncremental(final boolean incremental) {
+		mIncremental = incremental;
+	}
+
+	public boolean isIncremental() {
+		return mIncremental;
 	}
 
 	/**
@@ -86,8 +141,11 @@ public class EMatching {
 	 * function symbol.
 	 */
 	public void addPatterns(final QuantClause qClause) {
+		final Set<FunctionSymbol> symbols = new HashSet<>();
+		boolean isIncremental = mIncremental;
 		for (final QuantLiteral qLit : qClause.getQuantLits()) {
 			final QuantLiteral qAtom = qLit.getAtom();
+			isIncremental &= collectComparedSymbols(qAtom, symbols);
 			if (QuantifiedTermInfo.containsArithmeticOnlyAtTopLevel(qAtom)
 					&& QuantifiedTermInfo.containsAppTermsForEachVar(qAtom)) {
 				mEmatchingLiterals.add(qLit);
@@ -117,7 +175,44 @@ public class EMatching {
 					addCode(newCode.getFirst(), newCode.getSecond(), 0);
 				}
 			}
+			isIncremental &= mEmatchingLiterals.contains(qLit);
+		}
+		if (isIncremental) {
+			mIncrementalClauses.add(qClause);
+			mDirtyClauses.add(qClause);
+			for (final FunctionSymbol symbol : symbols) {
+				Set<QuantClause> clauses = mClausesForSymbol.get(symbol);
+				if (clauses == null) {
+					clauses = new HashSet<>();
+					mClausesForSymbol.put(symbol, clauses);
+				}
+				clauses.add(qClause);
+			}
+		}
+	}
+
+	/**
+	 * Collect the top level function symbols of both sides of an uninterpreted equality. The value of the literal for
+	 * a substitution found by E-matching only changes if a congruence class containing an application of one of them
+	 * is changed.
+	 *
+	 * @return false if the literal may depend on other theories or on the classes of arbitrary terms.
+	 */
+	private static boolean collectComparedSymbols(final QuantLiteral qAtom, final Set<FunctionSymbol> symbols) {
+		if (!(qAtom instanceof QuantEquality)) {
+			return false;
+		}
+		final QuantEquality eq = (QuantEquality) qAtom;
+		if (eq.getLhs().getSort().isNumericSort()) {
+			return false;
+		}
+		for (final Term side : new Term[] { eq.getLhs(), eq.getRhs() }) {
+			if (!(side instanceof ApplicationTerm)) {
+				return false;
+			}
+			symbols.add(((ApplicationTerm) side).getFunction());
 		}
+		return true;
 	}
 
 	private Collection<Term> getSubPatterns(final SMTAffineTerm at) {
@@ -139,9 +234,18 @@ public class EMatching {
 		if (Config.PROFILE_TIME) {
 			time = System.nanoTime();
 		}
-		while (!mTodoStack.isEmpty() && !mQuantTheory.getEngine().isTerminationRequested()) {
-			final Triple<ICode, CCTerm[], Integer> code = mTodoStack.pop();
-			code.getFirst().execute(code.getSecond(), code.getThird());
+		while (mTodoSize > 0 && !mQuantTheory.getEngine().isTerminationRequested()) {
+			final int head = mTodoHead;
+			final ICode code = mTodoCode[head];
+			final CCTerm[] register = mTodoRegisters[head];
+			mTodoCode[head] = null;
+			mTodoRegisters[head] = null;
+			mTodoHead = (head + 1) & (mTodoCode.length - 1);
+			mTodoSize--;
+			code.execute(register, mTodoLevels[head]);
+		}
+		if (mIncremental) {
+			collectAffectedClauses();
 		}
 		if (Config.PROFILE_TIME) {
 			mQuantTheory.addEMatchingTime(System.nanoTime() - time);
@@ -166,13 +270,88 @@ public class EMatching {
 				it.remove();
 			}
 		}
-		final Deque<Triple<ICode, CCTerm[], Integer>> undoneTodoStack = new ArrayDeque<>();
-		for (final Triple<ICode, CCTerm[], Integer> todo : mTodoStack) {
-			if (todo.getThird() <= decisionLevel) {
-				undoneTodoStack.add(todo);
+		// Compact the queue in place, keeping the order of the remaining entries.
+		final int mask = mTodoCode.length - 1;
+		int kept = 0;
+		for (int i = 0; i < mTodoSize; i++) {
+			final int from = (mTodoHead + i) & mask;
+			if (mTodoLevels[from] <= decisionLevel) {
+				final int to = (mTodoHead + kept) & mask;
+				mTodoCode[to] = mTodoCode[from];
+				mTodoRegisters[to] = mTodoRegisters[from];
+				mTodoLevels[to] = mTodoLevels[from];
+				kept++;
 			}
 		}
-		mTodoStack = undoneTodoStack;
+		for (int i = kept; i < mTodoSize; i++) {
+			final int slot = (mTodoHead + i) & mask;
+			mTodoCode[slot] = null;
+			mTodoRegisters[slot] = null;
+		}
+		mTodoSize = kept;
+		if (mIncremental) {
+			// Backtracking removes substitutions and makes literals undefined; evaluate everything again.
+			mDirtyClauses.addAll(mIncrementalClauses);
+			mTouchedTerms.clear();
+			mSyncedStackDepth = mQuantTheory.getCClosure().getStackDepth();
+		}
+	}
+
+	/**
+	 * Remember that a new disequality between the congruence classes of the given terms was set. Only needed in
+	 * incremental mode.
+	 */
+	public void addDisequality(final CCTerm lhs, final CCTerm rhs) {
+		assert mIncremental;
+		mTouchedTerms.add(lhs);
+		mTouchedTerms.add(rhs);
+	}
+
+	/**
+	 * Mark the clauses as dirty that contain a literal comparing an application of a function symbol that occurs in
+	 * a congruence class changed since the last call. This scans every changed class once.
+	 */
+	private void collectAffectedClauses() {
+		final CClosure cclosure = mQuantTheory.getCClosure();
+		final int stackDepth = cclosure.getStackDepth();
+		if (stackDepth < mSyncedStackDepth) {
+			mDirtyClauses.addAll(mIncrementalClauses);
+		} else {
+			mTouchedTerms.addAll(cclosure.getMergedTermsSince(mSyncedStackDepth));
+			final Set<CCTerm> visited = new HashSet<>();
+			for (final CCTerm touched : mTouchedTerms) {
+				final CCTerm rep = touched.getRepresentative();
+				if (!visited.add(rep)) {
+					continue;
+				}
+				for (final CCTerm member : rep.getMembers()) {
+					final Term flat = member.getFlatTerm();
+					if (flat instanceof ApplicationTerm) {
+						final Set<QuantClause> clauses = mClausesForSymbol.get(((ApplicationTerm) flat).getFunction());
+						if (clauses != null) {
+							mDirtyClauses.addAll(clauses);
+						}
+					}
+				}
+			}
+		}
+		mTouchedTerms.clear();
+		mSyncedStackDepth = stackDepth;
+	}
+
+	/**
+	 * Check if a clause must be evaluated in the current checkpoint. Outside of incremental mode, and for clauses that
+	 * depend on more than the congruence classes, this is always the case.
+	 */
+	public boolean isEvaluationNeeded(final QuantClause qClause) {
+		return !mIncremental || !mIncrementalClauses.contains(qClause) || mDirtyClauses.contains(qClause);
+	}
+
+	/**
+	 * Remember that a clause was evaluated for the current state.
+	 */
+	public void setEvaluated(final QuantClause qClause) {
+		mDirtyClauses.remove(qClause);
 	}
 
 	/**
@@ -208,9 +387,31 @@ public class EMatching {
 	 *            the decision level that is relevant for this execution.
 	 */
 	void addCode(final ICode code, final CCTerm[] register, final int decisionLevel) {
-		final Triple<ICode, CCTerm[], Integer> todo =
-				new Triple<>(code, register, decisionLevel);
-		mTodoStack.add(todo);
+		if (mTodoSize == mTodoCode.length) {
+			growTodoQueue();
+		}
+		final int tail = (mTodoHead + mTodoSize) & (mTodoCode.length - 1);
+		mTodoCode[tail] = code;
+		mTodoRegisters[tail] = register;
+		mTodoLevels[tail] = decisionLevel;
+		mTodoSize++;
+	}
+
+	private void growTodoQueue() {
+		final int capacity = mTodoCode.length;
+		final ICode[] code = new ICode[2 * capacity];
+		final CCTerm[][] registers = new CCTerm[2 * capacity][];
+		final int[] levels = new int[2 * capacity];
+		for (int i = 0; i < mTodoSize; i++) {
+			final int slot = (mTodoHead + i) & (capacity - 1);
+			code[i] = mTodoCode[slot];
+			registers[i] = mTodoRegisters[slot];
+			levels[i] = mTodoLevels[slot];
+		}
+		mTodoCode = code;
+		mTodoRegisters = registers;
+		mTodoLevels = levels;
+		mTodoHead = 0;
 	}
 
 	/**
@@ -239,6 +440,9 @@ public class EMatching {
 		subsDawg = subsDawg.insert(sharedTermSubs, subsInfo);
 
 		mAtomSubsDawgs.put(qLit, subsDawg);
+		if (mIncremental) {
+			mDirtyClauses.add(qLit.getClause());
+		}
 		mQuantTheory.addDawgTime(System.nanoTime() - time);
 		addUndoInformation(qLit, sharedTermSubs, decisionLevel);
 	}
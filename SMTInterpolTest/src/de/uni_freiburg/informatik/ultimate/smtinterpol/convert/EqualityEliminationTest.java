@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.convert;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.uni_freiburg.informatik.ultimate.logic.ConstantTerm;
+import de.uni_freiburg.informatik.ultimate.logic.Logics;
+import de.uni_freiburg.informatik.ultimate.logic.Rational;
+import de.uni_freiburg.informatik.ultimate.logic.Script;
+import de.uni_freiburg.informatik.ultimate.logic.Script.LBool;
+import de.uni_freiburg.informatik.ultimate.logic.Sort;
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.option.SolverOptions;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2.SMTInterpol;
+
+@RunWith(JUnit4.class)
+public class EqualityEliminationTest {
+
+	private static SMTInterpol createSolver(final Logics logic, final boolean eliminate, final String sort,
+			final String... vars) {
+		final SMTInterpol solver = new SMTInterpol();
+		solver.setOption(":produce-models", true);
+		solver.setOption(":produce-proofs", true);
+		solver.setOption(SolverOptions.MODEL_CHECK_MODE, true);
+		solver.setOption(SolverOptions.PROOF_CHECK_MODE, true);
+		solver.setOption(SolverOptions.EQUALITY_ELIMINATION, eliminate);
+		solver.setLogic(logic);
+		for (final String var : vars) {
+			solver.declareFun(var, Script.EMPTY_SORT_ARRAY, solver.sort(sort));
+		}
+		return solver;
+	}
+
+	private static Rational getValue(final SMTInterpol solver, final Term term) {
+		return SMTAffineTerm.convertConstant((ConstantTerm) SMTAffineTerm
+				.parseConstant(solver.getModel().evaluate(term)));
+	}
+
+	/**
+	 * 3x + y = 2z defines x. The model must give x a value satisfying the equality, and conflicts involving the
+	 * eliminated variable must be provable. The definition is removed by pop.
+	 */
+	@Test
+	public void testReal() {
+		final SMTInterpol solver = createSolver(Logics.QF_UFLRA, true, "Real", "x", "y", "z");
+		final Term x = solver.term("x");
+		final Term y = solver.term("y");
+		final Term z = solver.term("z");
+		final Term three = solver.decimal("3");
+		final Term zero = solver.decimal("0");
+		solver.push(1);
+		solver.assertTerm(solver.term("=", solver.term("+", solver.term("*", three, x), y),
+				solver.term("*", solver.decimal("2"), z)));
+		solver.assertTerm(solver.term(">", x, zero));
+		solver.assertTerm(solver.term(">", y, zero));
+		Assert.assertSame(LBool.SAT, solver.checkSat());
+		final Rational xValue = getValue(solver, x);
+		final Rational yValue = getValue(solver, y);
+		final Rational zValue = getValue(solver, z);
+		Assert.assertEquals(zValue.mul(Rational.TWO), xValue.mul(Rational.valueOf(3, 1)).add(yValue));
+
+		solver.push(1);
+		solver.assertTerm(solver.term("<", z, zero));
+		Assert.assertSame(LBool.UNSAT, solver.checkSat());
+		Assert.assertNotNull(solver.getProof());
+		solver.pop(1);
+		Assert.assertSame(LBool.SAT, solver.checkSat());
+		solver.pop(1);
+
+		// x is unconstrained again
+		solver.assertTerm(solver.term("<", x, zero));
+		solver.assertTerm(solver.term("<", z, zero));
+		Assert.assertSame(LBool.SAT, solver.checkSat());
+	}
+
+	/**
+	 * x - 2y = 1 defines x, which only occurs under an uninterpreted function afterwards. The elimination must not
+	 * change the result compared to the solver without elimination.
+	 */
+	@Test
+	public void testIntegerUnderFunction() {
+		for (final boolean eliminate : new boolean[] { true, false }) {
+			final SMTInterpol solver = createSolver(Logics.QF_UFLIA, eliminate, "Int", "x", "y");
+			solver.declareFun("f", new Sort[] { solver.sort("Int") }, solver.sort("Int"));
+			final Term x = solver.term("x");
+			final Term y = solver.term("y");
+			final Term one = solver.numeral("1");
+			solver.assertTerm(solver.term("=", solver.term("-", x, solver.term("*", solver.numeral("2"), y)), one));
+			solver.assertTerm(solver.term("distinct", solver.term("f", x),
+					solver.term("f", solver.term("+", solver.term("*", solver.numeral("2"), y), one))));
+			Assert.assertSame(LBool.UNSAT, solver.checkSat());
+			Assert.assertNotNull(solver.getProof());
+		}
+	}
+
+	/**
+	 * The equality 3x + y = 2z is asserted after x was used, so x is already known to the solver and must not be
+	 * eliminated. The results must be the same as without elimination, and the model must satisfy the equality.
+	 */
+	@Test
+	public void testEqualityAfterUse() {
+		for (final boolean eliminate : new boolean[] { true, false }) {
+			final SMTInterpol solver = createSolver(Logics.QF_LRA, eliminate, "Real", "x", "y", "z");
+			final Term x = solver.term("x");
+			final Term y = solver.term("y");
+			final Term z = solver.term("z");
+			final Term zero = solver.decimal("0");
+			solver.assertTerm(solver.term(">", x, zero));
+			solver.assertTerm(solver.term(">", y, zero));
+			solver.assertTerm(solver.term("=", solver.term("+", solver.term("*", solver.decimal("3"), x), y),
+					solver.term("*", solver.decimal("2"), z)));
+			Assert.assertSame(LBool.SAT, solver.checkSat());
+			final Rational xValue = getValue(solver, x);
+			final Rational yValue = getValue(solver, y);
+			final Rational zValue = getValue(solver, z);
+			Assert.assertEquals(zValue.mul(Rational.TWO), xValue.mul(Rational.valueOf(3, 1)).add(yValue));
+
+			solver.assertTerm(solver.term("<", z, zero));
+			Assert.assertSame(LBool.UNSAT, solver.checkSat());
+			Assert.assertNotNull(solver.getProof());
+		}
+	}
+}
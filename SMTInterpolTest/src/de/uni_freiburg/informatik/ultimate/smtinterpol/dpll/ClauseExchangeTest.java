@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.dpll;
+
+import java.util.HashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.uni_freiburg.informatik.ultimate.logic.Logics;
+import de.uni_freiburg.informatik.ultimate.logic.Script;
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+import de.uni_freiburg.informatik.ultimate.logic.Theory;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.DefaultLogger;
+
+/**
+ * Tests the exchange of learned clauses between two engines that share a theory: the translation of the literals over
+ * their terms and the assertion stack level of an imported clause.
+ */
+@RunWith(JUnit4.class)
+public class ClauseExchangeTest {
+	Theory mTheory;
+	Term[] mTerms;
+
+	/**
+	 * An engine with its own atoms for the shared terms.
+	 */
+	class Engine implements ClauseExchange.TermMapping {
+		DPLLEngine mEngine;
+		DPLLAtom[] mAtoms;
+		HashMap<Term, Literal> mTermLiterals = new HashMap<>();
+		HashMap<Literal, Term> mLiteralTerms = new HashMap<>();
+
+		Engine() {
+			mEngine = new DPLLEngine(mTheory, new DefaultLogger(), () -> false);
+			mAtoms = new DPLLAtom[mTerms.length];
+			for (int i = 0; i < mTerms.length; i++) {
+				mAtoms[i] = new BooleanVarAtom(mTerms[i], 0);
+				mEngine.addAtom(mAtoms[i]);
+				mTermLiterals.put(mTerms[i], mAtoms[i]);
+				mLiteralTerms.put(mAtoms[i], mTerms[i]);
+			}
+		}
+
+		@Override
+		public Term getLiteralTerm(final Literal lit) {
+			return mLiteralTerms.get(lit);
+		}
+
+		@Override
+		public Literal getTermLiteral(final Term term) {
+			return mTermLiterals.get(term);
+		}
+	}
+
+	public ClauseExchangeTest() {
+		mTheory = new Theory(Logics.CORE);
+		mTerms = new Term[3];
+		for (int i = 0; i < mTerms.length; i++) {
+			mTheory.declareFunction("p" + i, Script.EMPTY_SORT_ARRAY, mTheory.getBooleanSort());
+			mTerms[i] = mTheory.term("p" + i);
+		}
+	}
+
+	private static int getImported(final ClauseExchange.Port port) {
+		return (Integer) ((Object[][]) port.getStatistics())[1][1];
+	}
+
+	/**
+	 * A clause learned on assertion stack level 1 is imported on the same level. It propagates in the importing
+	 * engine and is removed there when level 1 is popped, although its atoms were created on level 0.
+	 */
+	@Test
+	public void testImportedClauseIsPopped() {
+		final Engine source = new Engine();
+		final Engine target = new Engine();
+		final ClauseExchange exchange = new ClauseExchange();
+		final ClauseExchange.Port sourcePort = exchange.connect(0, source);
+		final ClauseExchange.Port targetPort = exchange.connect(1, target);
+		source.mEngine.push();
+		target.mEngine.push();
+		final Clause learned = new Clause(new Literal[] { source.mAtoms[0].negate(), source.mAtoms[1] },
+				source.mEngine.getAssertionStackLevel());
+		sourcePort.publish(learned);
+		Assert.assertTrue(targetPort.hasPending());
+		targetPort.importClauses(target.mEngine);
+		Assert.assertFalse(targetPort.hasPending());
+		Assert.assertEquals(1, getImported(targetPort));
+
+		final DPLLAtom a = target.mAtoms[0], b = target.mAtoms[1];
+		target.mEngine.increaseDecideLevel();
+		Assert.assertNull(target.mEngine.setLiteral(a));
+		Assert.assertTrue(target.mEngine.quickCheck());
+		Assert.assertSame(b, b.getDecideStatus());
+
+		target.mEngine.pop(1);
+		target.mEngine.increaseDecideLevel();
+		Assert.assertNull(target.mEngine.setLiteral(a));
+		Assert.assertTrue(target.mEngine.quickCheck());
+		Assert.assertNull(b.getDecideStatus());
+	}
+
+	/**
+	 * A clause is not imported by the engine that published it, and a clause over a term without a literal in the
+	 * importing engine is dropped.
+	 */
+	@Test
+	public void testUnmappedClause() {
+		final Engine source = new Engine();
+		final Engine target = new Engine();
+		target.mTermLiterals.remove(mTerms[2]);
+		final ClauseExchange exchange = new ClauseExchange();
+		final ClauseExchange.Port sourcePort = exchange.connect(0, source);
+		final ClauseExchange.Port targetPort = exchange.connect(1, target);
+		sourcePort.publish(new Clause(new Literal[] { source.mAtoms[0], source.mAtoms[2].negate() }));
+		sourcePort.importClauses(source.mEngine);
+		Assert.assertEquals(0, getImported(sourcePort));
+		targetPort.importClauses(target.mEngine);
+		Assert.assertEquals(0, getImported(targetPort));
+		Assert.assertEquals(1, (int) (Integer) ((Object[][]) targetPort.getStatistics())[2][1]);
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.dpll;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.uni_freiburg.informatik.ultimate.logic.Logics;
+import de.uni_freiburg.informatik.ultimate.logic.Script;
+import de.uni_freiburg.informatik.ultimate.logic.Script.LBool;
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+import de.uni_freiburg.informatik.ultimate.logic.Theory;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.option.SolverOptions;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2.SMTInterpol;
+
+@RunWith(JUnit4.class)
+public class DecisionHeuristicTest {
+
+	private static class TestAtom extends DPLLAtom {
+		public TestAtom(final int hash) {
+			super(hash, 0);
+		}
+
+		@Override
+		public Term getSMTFormula(final Theory smtTheory, final boolean quoted) {
+			return smtTheory.mTrue;
+		}
+	}
+
+	/**
+	 * The heuristics that are implemented by a {@link DecisionQueue}.
+	 */
+	private static final DecisionQueue.Heuristic[] QUEUE_HEURISTICS = { DecisionQueue.Heuristic.VSIDS,
+		DecisionQueue.Heuristic.EVSIDS, DecisionQueue.Heuristic.VMTF };
+
+	private static TestAtom[] createAtoms(final DecisionQueue queue, final int count) {
+		final TestAtom[] atoms = new TestAtom[count];
+		for (int i = 0; i < count; i++) {
+			atoms[i] = new TestAtom(i);
+			queue.add(atoms[i]);
+		}
+		return atoms;
+	}
+
+	/**
+	 * A bumped atom is decided before the atoms that were not bumped, and the queue only returns atoms that were
+	 * added.
+	 */
+	@Test
+	public void bumpedAtomFirst() {
+		for (final DecisionQueue.Heuristic heuristic : QUEUE_HEURISTICS) {
+			final DecisionQueue queue = heuristic.create();
+			final TestAtom[] atoms = createAtoms(queue, 500);
+			queue.conflict();
+			queue.bumpActivity(atoms[137]);
+			Assert.assertSame(heuristic.name(), atoms[137], queue.poll());
+			Assert.assertEquals(499, queue.size());
+			Assert.assertFalse(queue.contains(atoms[137]));
+			queue.conflict();
+			queue.bumpActivity(atoms[42]);
+			queue.remove(atoms[42]);
+			Assert.assertNotSame(atoms[42], queue.peek());
+			queue.add(atoms[42]);
+			queue.add(atoms[137]);
+			Assert.assertSame(heuristic.name(), atoms[42], queue.peek());
+			int count = 0;
+			while (queue.poll() != null) {
+				count++;
+			}
+			Assert.assertEquals(500, count);
+		}
+	}
+
+	/**
+	 * Forgotten atoms release their ids, which are reused for new atoms.
+	 */
+	@Test
+	public void forgetReusesIds() {
+		for (final DecisionQueue.Heuristic heuristic : QUEUE_HEURISTICS) {
+			final DecisionQueue queue = heuristic.create();
+			final TestAtom[] atoms = createAtoms(queue, 300);
+			queue.conflict();
+			for (int i = 0; i < 300; i += 3) {
+				queue.bumpActivity(atoms[i]);
+			}
+			for (int i = 100; i < 300; i++) {
+				queue.forget(atoms[i]);
+				Assert.assertEquals(-1, atoms[i].mAtomId);
+			}
+			Assert.assertEquals(100, queue.size());
+			final TestAtom[] fresh = createAtoms(queue, 200);
+			for (final TestAtom atom : fresh) {
+				Assert.assertTrue(atom.mAtomId < 300);
+			}
+			Assert.assertEquals(300, queue.size());
+			Assert.assertEquals(300, queue.clearIds().size());
+		}
+	}
+
+	/**
+	 * Every heuristic solves the pigeon hole problem with six holes, also after switching the heuristic between
+	 * checks and after popping atoms.
+	 */
+	@Test
+	public void pigeonHole() {
+		for (final DecisionQueue.Heuristic heuristic : DecisionQueue.Heuristic.values()) {
+			final SMTInterpol solver = new SMTInterpol();
+			solver.setOption(":produce-proofs", true);
+			solver.setOption(SolverOptions.PROOF_CHECK_MODE, true);
+			solver.setOption(SolverOptions.DECISION_HEURISTIC, heuristic.name());
+			solver.setLogic(Logics.QF_UF);
+			final int holes = 6;
+			final Term[][] in = new Term[holes + 1][holes];
+			for (int p = 0; p <= holes; p++) {
+				for (int h = 0; h < holes; h++) {
+					solver.declareFun("p" + p + "h" + h, Script.EMPTY_SORT_ARRAY, solver.sort("Bool"));
+					in[p][h] = solver.term("p" + p + "h" + h);
+				}
+			}
+			for (int h = 0; h < holes; h++) {
+				for (int p = 0; p <= holes; p++) {
+					for (int q = p + 1; q <= holes; q++) {
+						solver.assertTerm(
+								solver.term("or", solver.term("not", in[p][h]), solver.term("not", in[q][h])));
+					}
+				}
+			}
+			for (int p = 0; p < holes; p++) {
+				solver.assertTerm(solver.term("or", in[p]));
+			}
+			solver.push(1);
+			solver.assertTerm(solver.term("or", in[holes]));
+			Assert.assertSame(heuristic.name(), LBool.UNSAT, solver.checkSat());
+			Assert.assertNotNull(solver.getProof());
+			solver.pop(1);
+			Assert.assertSame(heuristic.name(), LBool.SAT, solver.checkSat());
+		}
+	}
+}
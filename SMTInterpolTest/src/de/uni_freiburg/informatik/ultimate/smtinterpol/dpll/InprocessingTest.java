@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.dpll;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.uni_freiburg.informatik.ultimate.logic.Logics;
+import de.uni_freiburg.informatik.ultimate.logic.Script;
+import de.uni_freiburg.informatik.ultimate.logic.Script.LBool;
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.option.SolverOptions;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2.SMTInterpol;
+
+@RunWith(JUnit4.class)
+public class InprocessingTest {
+
+	private static Object getCoreStatistic(final SMTInterpol solver, final String name) {
+		final Object[] stats = (Object[]) solver.getInfo(":all-statistics");
+		final Object[] core = (Object[]) stats[0];
+		Assert.assertEquals(":Core", core[0]);
+		for (final Object[] entry : (Object[][]) core[1]) {
+			if (entry[0].equals(name)) {
+				return entry[1];
+			}
+		}
+		Assert.fail("No statistics for " + name);
+		return null;
+	}
+
+	private static int getInprocessingStatistic(final SMTInterpol solver, final String name) {
+		for (final Object[] entry : (Object[][]) getCoreStatistic(solver, "Inprocessing")) {
+			if (entry[0].equals(name)) {
+				return (Integer) entry[1];
+			}
+		}
+		Assert.fail("No statistics for " + name);
+		return 0;
+	}
+
+	private static void assertPigeonHole(final SMTInterpol solver, final int holes) {
+		final Term[][] in = new Term[holes + 1][holes];
+		for (int p = 0; p <= holes; p++) {
+			for (int h = 0; h < holes; h++) {
+				solver.declareFun("p" + p + "h" + h, Script.EMPTY_SORT_ARRAY, solver.sort("Bool"));
+				in[p][h] = solver.term("p" + p + "h" + h);
+			}
+			solver.assertTerm(solver.term("or", in[p]));
+		}
+		for (int h = 0; h < holes; h++) {
+			for (int p = 0; p <= holes; p++) {
+				for (int q = p + 1; q <= holes; q++) {
+					solver.assertTerm(solver.term("or", solver.term("not", in[p][h]), solver.term("not", in[q][h])));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Inprocessing simplifies the learned clauses of the pigeon hole problem. The strengthened clauses need a valid
+	 * resolution proof.
+	 */
+	@Test
+	public void strengthenedClausesHaveProofs() {
+		final SMTInterpol solver = new SMTInterpol();
+		solver.setOption(":produce-proofs", true);
+		solver.setOption(SolverOptions.PROOF_CHECK_MODE, true);
+		solver.setOption(SolverOptions.INPROCESSING_INTERVAL, 50);
+		solver.setLogic(Logics.QF_UF);
+		assertPigeonHole(solver, 7);
+		Assert.assertSame(LBool.UNSAT, solver.checkSat());
+		Assert.assertNotNull(solver.getProof());
+		Assert.assertTrue(getInprocessingStatistic(solver, "Rounds") > 0);
+		Assert.assertTrue(getInprocessingStatistic(solver, "Subsumed") + getInprocessingStatistic(solver, "Strengthened")
+				+ getInprocessingStatistic(solver, "Vivified") > 0);
+	}
+
+	/**
+	 * An input clause must not be strengthened by a clause that is popped later. The clause (or a b x) could be
+	 * strengthened to (or a b) with the clause (or a b (not x)) on the next assertion stack level. After the pop, the
+	 * original clause has to be back.
+	 */
+	@Test
+	public void respectsStackLevels() {
+		final SMTInterpol solver = new SMTInterpol();
+		solver.setOption(SolverOptions.INPROCESSING_INTERVAL, 50);
+		solver.setLogic(Logics.QF_UF);
+		for (final String name : new String[] { "a", "b", "x" }) {
+			solver.declareFun(name, Script.EMPTY_SORT_ARRAY, solver.sort("Bool"));
+		}
+		final Term a = solver.term("a");
+		final Term b = solver.term("b");
+		final Term x = solver.term("x");
+		solver.assertTerm(solver.term("or", a, b, x));
+		solver.push(1);
+		solver.assertTerm(solver.term("or", a, b, solver.term("not", x)));
+		assertPigeonHole(solver, 7);
+		Assert.assertSame(LBool.UNSAT, solver.checkSat());
+		Assert.assertTrue(getInprocessingStatistic(solver, "Rounds") > 0);
+		solver.pop(1);
+		Assert.assertSame(LBool.SAT, solver.checkSatAssuming(solver.term("not", a), solver.term("not", b)));
+		Assert.assertSame(LBool.UNSAT,
+				solver.checkSatAssuming(solver.term("not", a), solver.term("not", b), solver.term("not", x)));
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.dpll;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.uni_freiburg.informatik.ultimate.logic.Logics;
+import de.uni_freiburg.informatik.ultimate.logic.Script;
+import de.uni_freiburg.informatik.ultimate.logic.Script.LBool;
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.option.SolverOptions;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2.SMTInterpol;
+
+@RunWith(JUnit4.class)
+public class LearnedClauseReductionTest {
+
+	private static Object getCoreStatistic(final SMTInterpol solver, final String name) {
+		final Object[] stats = (Object[]) solver.getInfo(":all-statistics");
+		final Object[] core = (Object[]) stats[0];
+		Assert.assertEquals(":Core", core[0]);
+		for (final Object[] entry : (Object[][]) core[1]) {
+			if (entry[0].equals(name)) {
+				return entry[1];
+			}
+		}
+		Assert.fail("No statistics for " + name);
+		return null;
+	}
+
+	/**
+	 * The pigeon hole problem with seven holes needs enough conflicts for a reduction. The proof still has to be
+	 * valid, since only clauses that are not reasons are removed.
+	 */
+	@Test
+	public void reductionKeepsProofValid() {
+		final SMTInterpol solver = new SMTInterpol();
+		solver.setOption(":produce-proofs", true);
+		solver.setOption(SolverOptions.PROOF_CHECK_MODE, true);
+		solver.setLogic(Logics.QF_UF);
+		final int holes = 7;
+		final Term[][] in = new Term[holes + 1][holes];
+		for (int p = 0; p <= holes; p++) {
+			for (int h = 0; h < holes; h++) {
+				solver.declareFun("p" + p + "h" + h, Script.EMPTY_SORT_ARRAY, solver.sort("Bool"));
+				in[p][h] = solver.term("p" + p + "h" + h);
+			}
+			solver.assertTerm(solver.term("or", in[p]));
+		}
+		for (int h = 0; h < holes; h++) {
+			for (int p = 0; p <= holes; p++) {
+				for (int q = p + 1; q <= holes; q++) {
+					solver.assertTerm(solver.term("or", solver.term("not", in[p][h]), solver.term("not", in[q][h])));
+				}
+			}
+		}
+		Assert.assertSame(LBool.UNSAT, solver.checkSat());
+		Assert.assertNotNull(solver.getProof());
+		Assert.assertTrue((Integer) getCoreStatistic(solver, "Reductions") > 0);
+		Assert.assertTrue((Integer) getCoreStatistic(solver, "Deleted_Clauses") > 0);
+		final Object[][] tiers = (Object[][]) getCoreStatistic(solver, "Learned_Tiers");
+		int learned = 0;
+		for (final Object[] tier : tiers) {
+			learned += (Integer) tier[1];
+		}
+		Assert.assertEquals(getCoreStatistic(solver, "Clauses"), learned);
+	}
+}
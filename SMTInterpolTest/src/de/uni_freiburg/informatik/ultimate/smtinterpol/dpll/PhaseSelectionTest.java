@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.dpll;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.uni_freiburg.informatik.ultimate.logic.Logics;
+import de.uni_freiburg.informatik.ultimate.logic.Script;
+import de.uni_freiburg.informatik.ultimate.logic.Script.LBool;
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.option.SolverOptions;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2.SMTInterpol;
+
+@RunWith(JUnit4.class)
+public class PhaseSelectionTest {
+
+	private static Object getCoreStatistic(final SMTInterpol solver, final String name) {
+		final Object[] stats = (Object[]) solver.getInfo(":all-statistics");
+		final Object[] core = (Object[]) stats[0];
+		Assert.assertEquals(":Core", core[0]);
+		for (final Object[] entry : (Object[][]) core[1]) {
+			if (entry[0].equals(name)) {
+				return entry[1];
+			}
+		}
+		Assert.fail("No statistics for " + name);
+		return null;
+	}
+
+	/**
+	 * Assert a random 3-SAT problem with a planted solution. The ratio of clauses to variables is close to the
+	 * threshold, so the solver needs some conflicts to find a model.
+	 */
+	private static void assertPlanted(final SMTInterpol solver, final int numVars, final long seed) {
+		final Random random = new Random(seed);
+		final Term[] vars = new Term[numVars];
+		final boolean[] solution = new boolean[numVars];
+		for (int i = 0; i < numVars; i++) {
+			solver.declareFun("x" + i, Script.EMPTY_SORT_ARRAY, solver.sort("Bool"));
+			vars[i] = solver.term("x" + i);
+			solution[i] = random.nextBoolean();
+		}
+		int numClauses = 0;
+		while (numClauses < 4.2 * numVars) {
+			final Term[] lits = new Term[3];
+			boolean satisfied = false;
+			for (int j = 0; j < 3; j++) {
+				final int var = random.nextInt(numVars);
+				final boolean positive = random.nextBoolean();
+				lits[j] = positive ? vars[var] : solver.term("not", vars[var]);
+				satisfied |= positive == solution[var];
+			}
+			if (satisfied) {
+				solver.assertTerm(solver.term("or", lits));
+				numClauses++;
+			}
+		}
+	}
+
+	@Test
+	public void targetPhasesAndRephasing() {
+		final SMTInterpol solver = new SMTInterpol();
+		solver.setOption(":produce-models", true);
+		solver.setOption(SolverOptions.MODEL_CHECK_MODE, true);
+		solver.setOption(SolverOptions.PHASE_TARGET, true);
+		solver.setOption(SolverOptions.REPHASE_INTERVAL, 10);
+		solver.setLogic(Logics.QF_UF);
+		assertPlanted(solver, 200, 42);
+		Assert.assertSame(LBool.SAT, solver.checkSat());
+		final Object[][] phases = (Object[][]) getCoreStatistic(solver, "Phases");
+		Assert.assertEquals("Rephases", phases[0][0]);
+		Assert.assertTrue((Integer) phases[0][1] > 0);
+	}
+
+	@Test
+	public void rephasingKeepsProofValid() {
+		final SMTInterpol solver = new SMTInterpol();
+		solver.setOption(":produce-proofs", true);
+		solver.setOption(SolverOptions.PROOF_CHECK_MODE, true);
+		solver.setOption(SolverOptions.PHASE_TARGET, true);
+		solver.setOption(SolverOptions.REPHASE_INTERVAL, 10);
+		solver.setLogic(Logics.QF_UF);
+		final int holes = 6;
+		final Term[][] in = new Term[holes + 1][holes];
+		for (int p = 0; p <= holes; p++) {
+			for (int h = 0; h < holes; h++) {
+				solver.declareFun("p" + p + "h" + h, Script.EMPTY_SORT_ARRAY, solver.sort("Bool"));
+				in[p][h] = solver.term("p" + p + "h" + h);
+			}
+			solver.assertTerm(solver.term("or", in[p]));
+		}
+		for (int h = 0; h < holes; h++) {
+			for (int p = 0; p <= holes; p++) {
+				for (int q = p + 1; q <= holes; q++) {
+					solver.assertTerm(solver.term("or", solver.term("not", in[p][h]), solver.term("not", in[q][h])));
+				}
+			}
+		}
+		Assert.assertSame(LBool.UNSAT, solver.checkSat());
+		Assert.assertNotNull(solver.getProof());
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.dpll;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.uni_freiburg.informatik.ultimate.logic.Logics;
+import de.uni_freiburg.informatik.ultimate.logic.Script;
+import de.uni_freiburg.informatik.ultimate.logic.Script.LBool;
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.option.SolverOptions;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2.SMTInterpol;
+
+@RunWith(JUnit4.class)
+public class RestartPolicyTest {
+
+	private static Object getCoreStatistic(final SMTInterpol solver, final String name) {
+		final Object[] stats = (Object[]) solver.getInfo(":all-statistics");
+		final Object[] core = (Object[]) stats[0];
+		Assert.assertEquals(":Core", core[0]);
+		for (final Object[] entry : (Object[][]) core[1]) {
+			if (entry[0].equals(name)) {
+				return entry[1];
+			}
+		}
+		Assert.fail("No statistics for " + name);
+		return null;
+	}
+
+	private static SMTInterpol createPigeonHole(final RestartPolicy.Strategy strategy, final boolean reuseTrail) {
+		final SMTInterpol solver = new SMTInterpol();
+		solver.setOption(":produce-proofs", true);
+		solver.setOption(SolverOptions.PROOF_CHECK_MODE, true);
+		solver.setOption(SolverOptions.RESTART_STRATEGY, strategy.name());
+		solver.setOption(SolverOptions.RESTART_REUSE_TRAIL, reuseTrail);
+		solver.setLogic(Logics.QF_UF);
+		final int holes = 6;
+		final Term[][] in = new Term[holes + 1][holes];
+		for (int p = 0; p <= holes; p++) {
+			for (int h = 0; h < holes; h++) {
+				solver.declareFun("p" + p + "h" + h, Script.EMPTY_SORT_ARRAY, solver.sort("Bool"));
+				in[p][h] = solver.term("p" + p + "h" + h);
+			}
+			solver.assertTerm(solver.term("or", in[p]));
+		}
+		for (int h = 0; h < holes; h++) {
+			for (int p = 0; p <= holes; p++) {
+				for (int q = p + 1; q <= holes; q++) {
+					solver.assertTerm(solver.term("or", solver.term("not", in[p][h]), solver.term("not", in[q][h])));
+				}
+			}
+		}
+		return solver;
+	}
+
+	/**
+	 * Every strategy has to restart on the pigeon hole problem with six holes and still produce a valid proof.
+	 */
+	@Test
+	public void allStrategies() {
+		for (final RestartPolicy.Strategy strategy : RestartPolicy.Strategy.values()) {
+			for (final boolean reuseTrail : new boolean[] { true, false }) {
+				final SMTInterpol solver = createPigeonHole(strategy, reuseTrail);
+				Assert.assertSame(LBool.UNSAT, solver.checkSat());
+				Assert.assertNotNull(solver.getProof());
+				if (strategy != RestartPolicy.Strategy.GLUCOSE) {
+					Assert.assertTrue(strategy.name(), (Integer) getCoreStatistic(solver, "Restarts") > 0);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void lubySequence() {
+		final RestartPolicy policy = RestartPolicy.Strategy.LUBY.create(2);
+		policy.reset();
+		final int[] expected = { 2, 2, 4, 2, 2, 4, 8, 2 };
+		for (final int interval : expected) {
+			for (int i = 1; i < interval; i++) {
+				policy.conflict(3, 10);
+				Assert.assertFalse(policy.isRestartDue());
+			}
+			policy.conflict(3, 10);
+			Assert.assertTrue(policy.isRestartDue());
+			policy.restarted();
+		}
+	}
+
+	@Test
+	public void glucoseRestartsOnWorseClauses() {
+		final RestartPolicy policy = RestartPolicy.Strategy.GLUCOSE.create(0);
+		policy.reset();
+		for (int i = 0; i < 1000; i++) {
+			policy.conflict(2, 10);
+			Assert.assertFalse(policy.isRestartDue());
+		}
+		int conflicts = 0;
+		while (!policy.isRestartDue()) {
+			policy.conflict(20, 10);
+			conflicts++;
+		}
+		Assert.assertTrue(conflicts <= 50);
+		policy.restarted();
+		Assert.assertFalse(policy.isRestartDue());
+	}
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.dpll;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.uni_freiburg.informatik.ultimate.logic.Logics;
+import de.uni_freiburg.informatik.ultimate.logic.Script;
+import de.uni_freiburg.informatik.ultimate.logic.Theory;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.DefaultLogger;
+
+/**
+ * Tests the watch lists of the DPLL engine: the propagation over binary and long clauses, the removal of the watchers
+ * of deleted clauses, and the resume position in the watch list of the literal that is currently visited.
+ */
+@RunWith(JUnit4.class)
+public class WatchListTest {
+	Theory mTheory;
+	DPLLEngine mEngine;
+	DPLLAtom[] mAtoms;
+
+	public WatchListTest() {
+		mTheory = new Theory(Logics.CORE);
+		mEngine = new DPLLEngine(mTheory, new DefaultLogger(), () -> false);
+		mAtoms = new DPLLAtom[6];
+		for (int i = 0; i < mAtoms.length; i++) {
+			mTheory.declareFunction("p" + i, Script.EMPTY_SORT_ARRAY, mTheory.getBooleanSort());
+			mAtoms[i] = new BooleanVarAtom(mTheory.term("p" + i), 0);
+			mEngine.addAtom(mAtoms[i]);
+		}
+	}
+
+	private Clause addClause(final Literal... lits) {
+		mEngine.addFormulaClause(lits, null);
+		return mEngine.getClauses().iterator().next();
+	}
+
+	private Clause learnClause(final Literal... lits) {
+		final Clause clause = new Clause(lits, mEngine.getAssertionStackLevel());
+		mEngine.learnDeletableClause(clause);
+		return clause;
+	}
+
+	/**
+	 * Collect the clauses in the binary and long watch lists of a literal. Deleted clauses must not be in the lists.
+	 */
+	private static Set<Clause> getWatchedClauses(final Literal lit) {
+		final Set<Clause> clauses = new HashSet<>();
+		for (final Clause.WatchList list : new Clause.WatchList[] { lit.mBinaryWatchers, lit.mWatchers }) {
+			for (int i = 0; i < list.size(); i++) {
+				Assert.assertNotNull("watcher of deleted clause", list.mClauses[i].mNext);
+				Assert.assertTrue(list.mClauses[i].contains(lit));
+				clauses.add(list.mClauses[i]);
+			}
+		}
+		return clauses;
+	}
+
+	/**
+	 * Check that every clause is watched by exactly two of its literals and no deleted clause is watched.
+	 */
+	private void checkWatchers(final Clause... clauses) {
+		final Set<Clause> expected = new HashSet<>();
+		for (final Clause clause : clauses) {
+			expected.add(clause);
+		}
+		final Set<Clause> watched = new HashSet<>();
+		int count = 0;
+		for (final DPLLAtom atom : mAtoms) {
+			for (final Literal lit : new Literal[] { atom, atom.negate() }) {
+				final Set<Clause> litClauses = getWatchedClauses(lit);
+				count += litClauses.size();
+				watched.addAll(litClauses);
+			}
+		}
+		Assert.assertEquals(expected, watched);
+		Assert.assertEquals(2 * clauses.length, count);
+	}
+
+	/**
+	 * Binary clauses are watched in the binary watch lists and propagate a chain of implications. A conflict in a
+	 * binary clause is learned and backtracked, and the learned unit leads to a conflict on level 0.
+	 */
+	@Test
+	public void testBinaryClauses() {
+		final DPLLAtom a = mAtoms[0], b = mAtoms[1], c = mAtoms[2];
+		final Clause ab = addClause(a.negate(), b);
+		final Clause bc = addClause(b.negate(), c);
+		Assert.assertTrue(mEngine.quickCheck());
+		Assert.assertTrue(a.negate().mBinaryWatchers.size() == 1 && a.negate().mWatchers.isEmpty());
+		checkWatchers(ab, bc);
+		mEngine.increaseDecideLevel();
+		Assert.assertNull(mEngine.setLiteral(a));
+		Assert.assertTrue(mEngine.quickCheck());
+		Assert.assertSame(b, b.getDecideStatus());
+		Assert.assertSame(ab, b.mExplanation);
+		Assert.assertSame(c, c.getDecideStatus());
+		Assert.assertSame(bc, c.mExplanation);
+		Assert.assertEquals(1, c.getDecideLevel());
+
+		// b and c can't both be true. This learns not b and backtracks to level 0, where not b and not a are
+		// propagated.
+		addClause(b.negate(), c.negate());
+		Assert.assertTrue(mEngine.quickCheck());
+		Assert.assertNull(b.getDecideStatus());
+		Assert.assertTrue(mEngine.quickCheck());
+		Assert.assertSame(b.negate(), b.getDecideStatus());
+		Assert.assertSame(a.negate(), a.getDecideStatus());
+		Assert.assertEquals(0, a.getDecideLevel());
+		Assert.assertNull(c.getDecideStatus());
+
+		// a or b makes the problem unsatisfiable.
+		addClause(a, b);
+		Assert.assertFalse(mEngine.quickCheck());
+	}
+
+	/**
+	 * A long clause only visits its watchers. When its other watched literal is true, it stays in the watch list and
+	 * doesn't propagate.
+	 */
+	@Test
+	public void testLongClauses() {
+		final DPLLAtom a = mAtoms[0], b = mAtoms[1], c = mAtoms[2], d = mAtoms[3];
+		final Clause abc = addClause(a.negate(), b.negate(), c);
+		final Clause bd = addClause(b.negate(), d);
+		Assert.assertTrue(mEngine.quickCheck());
+		checkWatchers(abc, bd);
+		mEngine.increaseDecideLevel();
+		Assert.assertNull(mEngine.setLiteral(a));
+		Assert.assertTrue(mEngine.quickCheck());
+		Assert.assertNull(c.getDecideStatus());
+		mEngine.increaseDecideLevel();
+		Assert.assertNull(mEngine.setLiteral(b));
+		Assert.assertTrue(mEngine.quickCheck());
+		Assert.assertSame(c, c.getDecideStatus());
+		Assert.assertSame(abc, c.mExplanation);
+		Assert.assertSame(d, d.getDecideStatus());
+		Assert.assertSame(bd, d.mExplanation);
+		checkWatchers(abc, bd);
+	}
+
+	/**
+	 * The watchers of the learned clauses that are deleted by the clause reduction are purged from the watch lists.
+	 */
+	@Test
+	public void testPurgeAfterReduction() {
+		final DPLLAtom[] p = mAtoms;
+		final Clause input = addClause(p[0], p[1], p[2]);
+		final Clause[] learned = new Clause[4];
+		learned[0] = learnClause(p[0].negate(), p[1], p[3]);
+		learned[1] = learnClause(p[1].negate(), p[2], p[4]);
+		learned[2] = learnClause(p[2].negate(), p[3], p[5]);
+		learned[3] = learnClause(p[3].negate(), p[4].negate(), p[5].negate());
+		Assert.assertTrue(mEngine.quickCheck());
+		checkWatchers(input, learned[0], learned[1], learned[2], learned[3]);
+		// the less active half of the local clauses is deleted.
+		learned[0].mActivity = learned[2].mActivity = 1.0;
+		learned[1].mActivity = learned[3].mActivity = 0.0;
+		mEngine.reduceLearnedClauses();
+		Assert.assertNull(learned[1].mNext);
+		Assert.assertNull(learned[3].mNext);
+		checkWatchers(input, learned[0], learned[2]);
+		// the kept clauses still propagate.
+		mEngine.increaseDecideLevel();
+		Assert.assertNull(mEngine.setLiteral(p[2]));
+		Assert.assertNull(mEngine.setLiteral(p[3].negate()));
+		Assert.assertTrue(mEngine.quickCheck());
+		Assert.assertSame(p[5], p[5].getDecideStatus());
+		Assert.assertSame(learned[2], p[5].mExplanation);
+	}
+
+	/**
+	 * The watchers of the clauses that are removed on pop are purged from the watch lists, and the remaining clauses
+	 * still propagate.
+	 */
+	@Test
+	public void testPurgeAfterPop() {
+		final DPLLAtom[] p = mAtoms;
+		final Clause binary = addClause(p[0].negate(), p[1]);
+		final Clause ternary = addClause(p[1].negate(), p[2].negate(), p[3]);
+		Assert.assertTrue(mEngine.quickCheck());
+		mEngine.push();
+		final Clause[] popped = new Clause[3];
+		popped[0] = addClause(p[0].negate(), p[4]);
+		popped[1] = addClause(p[0].negate(), p[4], p[5]);
+		popped[2] = addClause(p[1].negate(), p[3].negate(), p[5]);
+		Assert.assertTrue(mEngine.quickCheck());
+		checkWatchers(binary, ternary, popped[0], popped[1], popped[2]);
+		mEngine.increaseDecideLevel();
+		Assert.assertNull(mEngine.setLiteral(p[0]));
+		Assert.assertTrue(mEngine.quickCheck());
+		Assert.assertSame(p[4], p[4].getDecideStatus());
+		mEngine.pop(1);
+		for (final Clause clause : popped) {
+			Assert.assertNull(clause.mNext);
+		}
+		checkWatchers(binary, ternary);
+		mEngine.increaseDecideLevel();
+		Assert.assertNull(mEngine.setLiteral(p[0]));
+		Assert.assertNull(mEngine.setLiteral(p[2]));
+		Assert.assertTrue(mEngine.quickCheck());
+		Assert.assertSame(p[1], p[1].getDecideStatus());
+		Assert.assertSame(p[3], p[3].getDecideStatus());
+		Assert.assertNull(p[4].getDecideStatus());
+		Assert.assertNull(p[5].getDecideStatus());
+	}
+
+	/**
+	 * The visit of the watch list of a literal is interrupted after each propagation and continues at the resume
+	 * position. If the literals set after it are backtracked while the literal itself stays true, the visit must
+	 * start again at the beginning of the watch list. Here, a is set on level 0 but not propagated before the
+	 * lookahead of d. The lookahead propagates b and c from the binary watch list of not a and then finds a conflict
+	 * in the long watch list. After the lookahead, b and c are unset and the watchers must be visited again.
+	 */
+	@Test
+	public void testResumeAfterBacktrack() {
+		final DPLLAtom a = mAtoms[0], b = mAtoms[1], c = mAtoms[2], d = mAtoms[3];
+		addClause(a.negate(), b);
+		addClause(a.negate(), c);
+		addClause(a.negate(), d.negate(), b.negate());
+		Assert.assertTrue(mEngine.quickCheck());
+		a.mExplanation = new Clause(new Literal[] { a });
+		Assert.assertNull(mEngine.setLiteral(a));
+		Assert.assertEquals(-1, mEngine.lookahead(d));
+		Assert.assertSame(a, a.getDecideStatus());
+		Assert.assertNull(b.getDecideStatus());
+		Assert.assertNull(c.getDecideStatus());
+		Assert.assertTrue(mEngine.quickCheck());
+		Assert.assertSame(b, b.getDecideStatus());
+		Assert.assertSame(c, c.getDecideStatus());
+		Assert.assertSame(d.negate(), d.getDecideStatus());
+	}
+}
@@ -178,4 +178,41 @@ public class AssumptionTest {
 		isSat = solver.checkSat();
 		Assert.assertSame(LBool.SAT, isSat);
 	}
+
+	@Test
+	public void testAssumptionTrueOnLevel0() {
+		final SMTInterpol solver = new SMTInterpol();
+		solver.setOption(":produce-unsat-assumptions", true);
+		solver.setLogic(Logics.QF_UF);
+		final Sort boolsort = solver.sort("Bool");
+		solver.declareFun("P", Script.EMPTY_SORT_ARRAY, boolsort);
+		solver.declareFun("Q", Script.EMPTY_SORT_ARRAY, boolsort);
+		final Term p = solver.term("P");
+		final Term q = solver.term("Q");
+		solver.assertTerm(p);
+		// P is already set on level 0, so assuming it creates no assumption level
+		Assert.assertSame(LBool.SAT, solver.checkSatAssuming(p));
+		solver.assertTerm(solver.term("or", solver.term("not", p), solver.term("not", q)));
+		Assert.assertSame(LBool.UNSAT, solver.checkSatAssuming(q));
+		// P is no longer an assumption
+		Assert.assertArrayEquals(new Term[] { q }, solver.getUnsatAssumptions());
+	}
+
+	@Test
+	public void testAssumptionFalseOnLevel0() {
+		final SMTInterpol solver = new SMTInterpol();
+		solver.setLogic(Logics.QF_UF);
+		final Sort boolsort = solver.sort("Bool");
+		solver.declareFun("P", Script.EMPTY_SORT_ARRAY, boolsort);
+		solver.declareFun("G", Script.EMPTY_SORT_ARRAY, boolsort);
+		final Term p = solver.term("P");
+		final Term g = solver.term("G");
+		solver.assertTerm(solver.term("=>", g, p));
+		solver.assertTerm(solver.term("not", p));
+		// G is propagated to false on level 0
+		Assert.assertSame(LBool.UNSAT, solver.checkSatAssuming(g));
+		// the unsatisfiability only holds under the assumption
+		Assert.assertSame(LBool.SAT, solver.checkSat());
+		Assert.assertSame(LBool.UNSAT, solver.checkSatAssuming(g));
+	}
 }
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.uni_freiburg.informatik.ultimate.logic.Annotation;
+import de.uni_freiburg.informatik.ultimate.logic.Logics;
+import de.uni_freiburg.informatik.ultimate.logic.Model;
+import de.uni_freiburg.informatik.ultimate.logic.Script;
+import de.uni_freiburg.informatik.ultimate.logic.Script.LBool;
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.option.SolverOptions;
+
+@RunWith(JUnit4.class)
+public class CubeSolverTest {
+
+	private SMTInterpol createSolver(final Logics logic, final boolean proofs) {
+		final SMTInterpol solver = new SMTInterpol();
+		solver.setOption(":produce-proofs", proofs);
+		solver.setOption(SolverOptions.PROOF_CHECK_MODE, proofs);
+		solver.setOption(":produce-models", true);
+		solver.setOption(":produce-unsat-cores", true);
+		solver.setOption(":produce-unsat-assumptions", true);
+		solver.setOption(SolverOptions.CUBE_THREADS, 4);
+		solver.setLogic(logic);
+		return solver;
+	}
+
+	/**
+	 * Assert that the given number of pigeons cannot be put into one hole less. Every pigeon constraint is named "p"
+	 * followed by the number of the pigeon and every hole constraint is named "h" followed by the number of the hole.
+	 */
+	private Term[][] assertPigeonHole(final SMTInterpol solver, final int holes) {
+		final Term[][] in = new Term[holes + 1][holes];
+		for (int p = 0; p <= holes; p++) {
+			for (int h = 0; h < holes; h++) {
+				solver.declareFun("p" + p + "h" + h, Script.EMPTY_SORT_ARRAY, solver.sort("Bool"));
+				in[p][h] = solver.term("p" + p + "h" + h);
+			}
+			solver.assertTerm(solver.annotate(solver.term("or", in[p]), new Annotation(":named", "p" + p)));
+		}
+		for (int h = 0; h < holes; h++) {
+			final Term[] atMostOne = new Term[holes * (holes + 1) / 2];
+			int i = 0;
+			for (int p = 0; p <= holes; p++) {
+				for (int q = p + 1; q <= holes; q++) {
+					atMostOne[i++] = solver.term("or", solver.term("not", in[p][h]), solver.term("not", in[q][h]));
+				}
+			}
+			solver.assertTerm(solver.annotate(solver.term("and", atMostOne), new Annotation(":named", "h" + h)));
+		}
+		return in;
+	}
+
+	@Test
+	public void unsatWithProofAndCore() {
+		final SMTInterpol solver = createSolver(Logics.QF_UF, true);
+		assertPigeonHole(solver, 5);
+		Assert.assertSame(LBool.UNSAT, solver.checkSat());
+		Assert.assertNotNull(solver.getProof());
+		final String core = Arrays.toString(solver.getUnsatCore());
+		for (int p = 0; p <= 5; p++) {
+			Assert.assertTrue(core, core.contains("p" + p));
+		}
+		final Object[] stats = (Object[]) solver.getInfo(":all-statistics");
+		final Object[] cubes = (Object[]) stats[stats.length - 1];
+		Assert.assertEquals(":CubeAndConquer", cubes[0]);
+	}
+
+	/**
+	 * The proof check mode alone enables proofs. The workers must produce the proofs of their cubes, since the parent
+	 * combines them into the proof it checks.
+	 */
+	@Test
+	public void proofCheckModeWithoutProduceProofs() {
+		final SMTInterpol solver = new SMTInterpol();
+		solver.setOption(SolverOptions.PROOF_CHECK_MODE, true);
+		solver.setOption(SolverOptions.CUBE_THREADS, 4);
+		solver.setLogic(Logics.QF_UF);
+		assertPigeonHole(solver, 5);
+		Assert.assertSame(LBool.UNSAT, solver.checkSat());
+		final Object[] stats = (Object[]) solver.getInfo(":all-statistics");
+		final Object[] cubes = (Object[]) stats[stats.length - 1];
+		Assert.assertEquals(":CubeAndConquer", cubes[0]);
+	}
+
+	@Test
+	public void satModelFromCube() {
+		final SMTInterpol solver = createSolver(Logics.QF_LIA, true);
+		solver.declareFun("x", Script.EMPTY_SORT_ARRAY, solver.sort("Int"));
+		solver.declareFun("y", Script.EMPTY_SORT_ARRAY, solver.sort("Int"));
+		final Term x = solver.term("x");
+		final Term y = solver.term("y");
+		final Term[] asserted = new Term[13];
+		final Term[] choices = new Term[6];
+		for (int i = 0; i < choices.length; i++) {
+			solver.declareFun("c" + i, Script.EMPTY_SORT_ARRAY, solver.sort("Bool"));
+			choices[i] = solver.term("c" + i);
+			final Term bound = solver.numeral(BigInteger.valueOf(i));
+			asserted[2 * i] = solver.term("=>", choices[i], solver.term(">", x, bound));
+			asserted[2 * i + 1] = solver.term("=>", solver.term("not", choices[i]), solver.term("<", y, bound));
+		}
+		asserted[12] = solver.term("and", solver.term("or", choices),
+				solver.term("<", solver.term("+", x, y), solver.numeral(BigInteger.valueOf(3))));
+		for (final Term t : asserted) {
+			solver.assertTerm(t);
+		}
+		Assert.assertSame(LBool.SAT, solver.checkSat());
+		final Model model = solver.getModel();
+		for (final Term t : asserted) {
+			Assert.assertSame(solver.term("true"), model.evaluate(t));
+		}
+	}
+
+	@Test
+	public void unsatAssumptions() {
+		final SMTInterpol solver = createSolver(Logics.QF_UF, false);
+		final Term[][] in = assertPigeonHole(solver, 4);
+		solver.declareFun("a", Script.EMPTY_SORT_ARRAY, solver.sort("Bool"));
+		solver.declareFun("b", Script.EMPTY_SORT_ARRAY, solver.sort("Bool"));
+		final Term a = solver.term("a");
+		final Term b = solver.term("b");
+		Assert.assertNotNull(in);
+		Assert.assertSame(LBool.UNSAT, solver.checkSatAssuming(a, b));
+		final Term[] unsatAssumptions = solver.getUnsatAssumptions();
+		Assert.assertEquals(0, unsatAssumptions.length);
+	}
+
+	@Test
+	public void satWithAssumptions() {
+		final SMTInterpol solver = createSolver(Logics.QF_UF, false);
+		solver.declareFun("a", Script.EMPTY_SORT_ARRAY, solver.sort("Bool"));
+		final Term a = solver.term("a");
+		final Term[] vars = new Term[6];
+		for (int i = 0; i < vars.length; i++) {
+			solver.declareFun("v" + i, Script.EMPTY_SORT_ARRAY, solver.sort("Bool"));
+			vars[i] = solver.term("v" + i);
+		}
+		for (int i = 0; i + 2 < vars.length; i++) {
+			solver.assertTerm(solver.term("or", vars[i], solver.term("not", vars[i + 1]), vars[i + 2]));
+			solver.assertTerm(solver.term("or", solver.term("not", vars[i]), vars[i + 1], a));
+		}
+		solver.assertTerm(solver.term("=>", a, vars[0]));
+		Assert.assertSame(LBool.SAT, solver.checkSatAssuming(a));
+		final Model model = solver.getModel();
+		Assert.assertSame(solver.term("true"), model.evaluate(vars[0]));
+		Assert.assertSame(LBool.UNSAT, solver.checkSatAssuming(a, solver.term("not", vars[0])));
+		final Term[] unsatAssumptions = solver.getUnsatAssumptions();
+		Assert.assertEquals(2, unsatAssumptions.length);
+	}
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.uni_freiburg.informatik.ultimate.logic.ConstantTerm;
+import de.uni_freiburg.informatik.ultimate.logic.LoggingScript;
+import de.uni_freiburg.informatik.ultimate.logic.Logics;
+import de.uni_freiburg.informatik.ultimate.logic.Rational;
+import de.uni_freiburg.informatik.ultimate.logic.SMTLIBException;
+import de.uni_freiburg.informatik.ultimate.logic.Script;
+import de.uni_freiburg.informatik.ultimate.logic.Script.LBool;
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.DefaultLogger;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.convert.SMTAffineTerm;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.option.OptionMap;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.option.SolverOptions;
+
+@RunWith(JUnit4.class)
+public class OptimizationTest {
+
+	private static SMTInterpol createSolver(final Logics logic, final String sort, final String... vars) {
+		final SMTInterpol solver = new SMTInterpol();
+		solver.setOption(":produce-models", true);
+		solver.setOption(SolverOptions.MODEL_CHECK_MODE, true);
+		solver.setLogic(logic);
+		for (final String var : vars) {
+			solver.declareFun(var, Script.EMPTY_SORT_ARRAY, solver.sort(sort));
+		}
+		return solver;
+	}
+
+	private static Rational getValue(final SMTInterpol solver, final Term term) {
+		return SMTAffineTerm.convertConstant((ConstantTerm) solver.getModel().evaluate(term));
+	}
+
+	private static Object getOptimum(final SMTInterpol solver, final int objective) {
+		final Object[] objectives = (Object[]) solver.getInfo(":objectives");
+		return ((Object[]) objectives[objective])[1];
+	}
+
+	/**
+	 * 3x + 2y <= 17 with x, y >= 0 and (x < 3 or y > 4). The maximum of x + y is 8, and the minimum of x among these
+	 * solutions is 0.
+	 */
+	@Test
+	public void testLexicographic() {
+		final SMTInterpol solver = createSolver(Logics.QF_LIA, "Int", "x", "y");
+		final Term x = solver.term("x");
+		final Term y = solver.term("y");
+		final Term zero = solver.numeral("0");
+		solver.assertTerm(solver.term("<=", solver.term("+", solver.term("*", solver.numeral("3"), x),
+				solver.term("*", solver.numeral("2"), y)), solver.numeral("17")));
+		solver.assertTerm(solver.term(">=", x, zero));
+		solver.assertTerm(solver.term(">=", y, zero));
+		solver.assertTerm(
+				solver.term("or", solver.term("<", x, solver.numeral("3")), solver.term(">", y, solver.numeral("4"))));
+		final Term sum = solver.term("+", x, y);
+		solver.maximize(sum);
+		solver.minimize(x);
+		Assert.assertSame(LBool.SAT, solver.checkSat());
+		Assert.assertEquals(Rational.valueOf(8, 1), getValue(solver, sum));
+		Assert.assertEquals(Rational.ZERO, getValue(solver, x));
+		Assert.assertEquals(solver.numeral("8"), getOptimum(solver, 0));
+		Assert.assertEquals(zero, getOptimum(solver, 1));
+
+		// the objectives are optimized under the new assertions
+		solver.push(1);
+		solver.assertTerm(solver.term("<", y, solver.numeral("2")));
+		Assert.assertSame(LBool.SAT, solver.checkSat());
+		Assert.assertEquals(Rational.valueOf(3, 1), getValue(solver, sum));
+		Assert.assertEquals(Rational.valueOf(2, 1), getValue(solver, x));
+		solver.pop(1);
+
+		// objectives are removed by pop
+		solver.push(1);
+		solver.maximize(x);
+		Assert.assertSame(LBool.SAT, solver.checkSat());
+		Assert.assertEquals(3, ((Object[]) solver.getInfo(":objectives")).length);
+		solver.pop(1);
+		Assert.assertSame(LBool.SAT, solver.checkSat());
+		Assert.assertEquals(2, ((Object[]) solver.getInfo(":objectives")).length);
+	}
+
+	/**
+	 * x + y < 10 with x <= 4 and y >= 0. The maximum of x is 4, the supremum of y is 6, but it is not reached. The
+	 * objective w does not occur in the assertions and is unbounded.
+	 */
+	@Test
+	public void testSupremumAndUnbounded() {
+		final SMTInterpol solver = createSolver(Logics.QF_LRA, "Real", "x", "y", "w");
+		final Term x = solver.term("x");
+		final Term y = solver.term("y");
+		solver.assertTerm(solver.term("<", solver.term("+", x, y), solver.decimal("10")));
+		solver.assertTerm(solver.term("<=", x, solver.decimal("4")));
+		solver.assertTerm(solver.term(">=", y, solver.decimal("0")));
+		solver.maximize(x);
+		solver.maximize(y);
+		Assert.assertSame(LBool.SAT, solver.checkSat());
+		Assert.assertEquals(Rational.valueOf(4, 1), getValue(solver, x));
+		final Rational yValue = getValue(solver, y);
+		Assert.assertTrue(yValue.compareTo(Rational.ZERO) > 0 && yValue.compareTo(Rational.valueOf(6, 1)) < 0);
+		final Object[] supremum = (Object[]) getOptimum(solver, 1);
+		Assert.assertEquals("-", supremum[0]);
+		Assert.assertEquals(solver.decimal("6"), supremum[1]);
+		Assert.assertEquals("epsilon", supremum[2]);
+
+		solver.minimize(solver.term("w"));
+		Assert.assertSame(LBool.SAT, solver.checkSat());
+		Assert.assertArrayEquals(new Object[] { "-", "oo" }, (Object[]) getOptimum(solver, 2));
+	}
+
+	/**
+	 * x + 2y <= 10 and 2x + y <= 10 with x, y >= 0 have five Pareto optimal points for maximizing x and y.
+	 */
+	@Test
+	public void testPareto() {
+		final SMTInterpol solver = createSolver(Logics.QF_LIA, "Int", "x", "y");
+		solver.setOption(SolverOptions.OPT_PRIORITY, "pareto");
+		final Term x = solver.term("x");
+		final Term y = solver.term("y");
+		final Term two = solver.numeral("2");
+		final Term ten = solver.numeral("10");
+		solver.assertTerm(solver.term("<=", solver.term("+", x, solver.term("*", two, y)), ten));
+		solver.assertTerm(solver.term("<=", solver.term("+", solver.term("*", two, x), y), ten));
+		solver.assertTerm(solver.term(">=", x, solver.numeral("0")));
+		solver.assertTerm(solver.term(">=", y, solver.numeral("0")));
+		solver.maximize(x);
+		solver.maximize(y);
+		final Set<String> points = new HashSet<>();
+		while (solver.checkSat() == LBool.SAT) {
+			points.add(getValue(solver, x) + "," + getValue(solver, y));
+			Assert.assertTrue(points.size() <= 5);
+		}
+		final Set<String> expected = new HashSet<>();
+		expected.add("5,0");
+		expected.add("4,2");
+		expected.add("3,3");
+		expected.add("2,4");
+		expected.add("0,5");
+		Assert.assertEquals(expected, points);
+
+		// a new assertion restarts the enumeration
+		solver.assertTerm(solver.term("<=", x, solver.numeral("3")));
+		Assert.assertSame(LBool.SAT, solver.checkSat());
+	}
+
+	/**
+	 * The minimize and maximize commands are part of the script interface, so the parser also supports them if the
+	 * solver is wrapped by another script, and the logging script writes them to the log.
+	 */
+	@Test
+	public void testParseWrappedScript() throws IOException {
+		final OptionMap options = new OptionMap(new DefaultLogger(), true);
+		final SMTInterpol solver = new SMTInterpol(options);
+		final File log = File.createTempFile("optimization", ".smt2");
+		log.deleteOnExit();
+		final LoggingScript wrapper = new LoggingScript(solver, log.getPath(), true);
+		final ParseEnvironment pe = new ParseEnvironment(wrapper, options) {
+			@Override
+			public void printError(final String message) {
+				Assert.fail(message);
+			}
+
+			@Override
+			public void printResponse(final Object response) {
+				Assert.assertNotEquals("unsupported", response);
+				super.printResponse(response);
+			}
+		};
+		pe.parseStream(new StringReader("(set-logic QF_LIA)(declare-fun x () Int)(declare-fun y () Int)"
+				+ "(assert (and (<= x 5) (<= 2 y)))(maximize x)(minimize y)(check-sat)"), "TestStream");
+		Assert.assertEquals(solver.numeral("5"), getOptimum(solver, 0));
+		Assert.assertEquals(solver.numeral("2"), getOptimum(solver, 1));
+		wrapper.exit();
+		final String logged = new String(Files.readAllBytes(log.toPath()), StandardCharsets.UTF_8);
+		Assert.assertTrue(logged.contains("(maximize x)"));
+		Assert.assertTrue(logged.contains("(minimize y)"));
+	}
+
+	@Test(expected = SMTLIBException.class)
+	public void testNonNumericObjective() {
+		final SMTInterpol solver = createSolver(Logics.QF_LIA, "Int", "x");
+		solver.maximize(solver.term("true"));
+	}
+}
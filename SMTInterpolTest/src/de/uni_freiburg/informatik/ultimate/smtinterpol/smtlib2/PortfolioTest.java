@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.uni_freiburg.informatik.ultimate.logic.Annotation;
+import de.uni_freiburg.informatik.ultimate.logic.ConstantTerm;
+import de.uni_freiburg.informatik.ultimate.logic.Logics;
+import de.uni_freiburg.informatik.ultimate.logic.Model;
+import de.uni_freiburg.informatik.ultimate.logic.Rational;
+import de.uni_freiburg.informatik.ultimate.logic.Script;
+import de.uni_freiburg.informatik.ultimate.logic.Script.LBool;
+import de.uni_freiburg.informatik.ultimate.logic.Sort;
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.option.SolverOptions;
+
+@RunWith(JUnit4.class)
+public class PortfolioTest {
+
+	private SMTInterpol createSolver() {
+		final SMTInterpol solver = new SMTInterpol();
+		solver.setOption(":produce-models", true);
+		solver.setOption(":produce-unsat-cores", true);
+		solver.setOption(SolverOptions.PORTFOLIO_THREADS, 4);
+		solver.setLogic(Logics.QF_LIA);
+		return solver;
+	}
+
+	@Test
+	public void satWithModel() {
+		final SMTInterpol solver = createSolver();
+		final Sort intSort = solver.sort("Int");
+		solver.declareFun("x", Script.EMPTY_SORT_ARRAY, intSort);
+		solver.declareFun("y", Script.EMPTY_SORT_ARRAY, intSort);
+		final Term x = solver.term("x");
+		final Term y = solver.term("y");
+		solver.assertTerm(solver.term("=", solver.term("+", x, y), solver.numeral(BigInteger.TEN)));
+		solver.assertTerm(solver.term(">", x, solver.numeral(BigInteger.valueOf(7))));
+		Assert.assertSame(LBool.SAT, solver.checkSat());
+		final Model model = solver.getModel();
+		final Rational xval = (Rational) ((ConstantTerm) model.evaluate(x)).getValue();
+		final Rational yval = (Rational) ((ConstantTerm) model.evaluate(y)).getValue();
+		Assert.assertEquals(Rational.valueOf(10, 1), xval.add(yval));
+		Assert.assertTrue(xval.compareTo(Rational.valueOf(7, 1)) > 0);
+	}
+
+	@Test
+	public void unsatCoreFromWinner() {
+		final SMTInterpol solver = createSolver();
+		final Sort intSort = solver.sort("Int");
+		solver.declareFun("x", Script.EMPTY_SORT_ARRAY, intSort);
+		final Term x = solver.term("x");
+		solver.assertTerm(solver.annotate(solver.term(">", x, solver.numeral(BigInteger.TEN)),
+				new Annotation(":named", "A")));
+		solver.assertTerm(solver.annotate(solver.term(">", x, solver.numeral(BigInteger.ONE)),
+				new Annotation(":named", "B")));
+		solver.assertTerm(solver.annotate(solver.term("<", x, solver.numeral(BigInteger.valueOf(5))),
+				new Annotation(":named", "C")));
+		Assert.assertSame(LBool.UNSAT, solver.checkSat());
+		final Term[] core = solver.getUnsatCore();
+		final String coreString = Arrays.toString(core);
+		Assert.assertTrue(coreString, coreString.contains("A"));
+		Assert.assertTrue(coreString, coreString.contains("C"));
+	}
+
+	@Test
+	public void perWorkerStatistics() {
+		final SMTInterpol solver = createSolver();
+		solver.declareFun("x", Script.EMPTY_SORT_ARRAY, solver.sort("Int"));
+		solver.assertTerm(solver.term(">", solver.term("x"), solver.numeral(BigInteger.ONE)));
+		Assert.assertSame(LBool.SAT, solver.checkSat());
+		final Object[] stats = (Object[]) solver.getInfo(":all-statistics");
+		final Object[] portfolio = (Object[]) stats[stats.length - 1];
+		Assert.assertEquals(":Portfolio", portfolio[0]);
+		final Object[][] entries = (Object[][]) portfolio[1];
+		Assert.assertEquals(4, entries[0][1]);
+		Assert.assertEquals(4, ((Object[]) entries[2][1]).length);
+	}
+
+	/**
+	 * Pigeon hole problem with enough conflicts to make the workers restart and exchange clauses. The proof of the
+	 * winner then contains clauses learned by other workers and has to pass the proof checker.
+	 */
+	@Test
+	public void sharedClausesWithProofs() {
+		final SMTInterpol solver = new SMTInterpol();
+		solver.setOption(":produce-proofs", true);
+		solver.setOption(SolverOptions.PROOF_CHECK_MODE, true);
+		solver.setOption(SolverOptions.PORTFOLIO_THREADS, 4);
+		solver.setLogic(Logics.QF_UF);
+		final int holes = 6;
+		final Term[][] in = new Term[holes + 1][holes];
+		for (int p = 0; p <= holes; p++) {
+			for (int h = 0; h < holes; h++) {
+				solver.declareFun("p" + p + "h" + h, Script.EMPTY_SORT_ARRAY, solver.sort("Bool"));
+				in[p][h] = solver.term("p" + p + "h" + h);
+			}
+			solver.assertTerm(solver.term("or", in[p]));
+		}
+		for (int h = 0; h < holes; h++) {
+			for (int p = 0; p <= holes; p++) {
+				for (int q = p + 1; q <= holes; q++) {
+					solver.assertTerm(solver.term("or", solver.term("not", in[p][h]), solver.term("not", in[q][h])));
+				}
+			}
+		}
+		Assert.assertSame(LBool.UNSAT, solver.checkSat());
+		Assert.assertNotNull(solver.getProof());
+		final Object[] stats = (Object[]) solver.getInfo(":all-statistics");
+		final String portfolio = Arrays.deepToString((Object[]) stats[stats.length - 1]);
+		Assert.assertTrue(portfolio, portfolio.contains(":ClauseExchange"));
+	}
+
+	/**
+	 * The workers follow the push and pop operations of the parent between the check-sat calls. The portfolio is
+	 * created on level 1 and dropped when this level is popped.
+	 */
+	@Test
+	public void pushPopAcrossChecks() {
+		final SMTInterpol solver = createSolver();
+		final Sort intSort = solver.sort("Int");
+		solver.declareFun("x", Script.EMPTY_SORT_ARRAY, intSort);
+		final Term x = solver.term("x");
+		solver.push(1);
+		solver.assertTerm(solver.term(">", x, solver.numeral(BigInteger.ONE)));
+		Assert.assertSame(LBool.SAT, solver.checkSat());
+		solver.push(1);
+		solver.declareFun("y", Script.EMPTY_SORT_ARRAY, intSort);
+		final Term y = solver.term("y");
+		solver.assertTerm(solver.term("=", solver.term("+", x, y), solver.numeral(BigInteger.TEN)));
+		solver.assertTerm(solver.term(">", y, solver.numeral(BigInteger.valueOf(8))));
+		Assert.assertSame(LBool.UNSAT, solver.checkSat());
+		solver.pop(1);
+		solver.push(1);
+		solver.assertTerm(solver.term("<", x, solver.numeral(BigInteger.valueOf(4))));
+		Assert.assertSame(LBool.SAT, solver.checkSat());
+		Rational xval = (Rational) ((ConstantTerm) solver.getModel().evaluate(x)).getValue();
+		Assert.assertTrue(xval.equals(Rational.valueOf(2, 1)) || xval.equals(Rational.valueOf(3, 1)));
+		solver.pop(2);
+		solver.assertTerm(solver.term("<", x, solver.numeral(BigInteger.ZERO)));
+		Assert.assertSame(LBool.SAT, solver.checkSat());
+		xval = (Rational) ((ConstantTerm) solver.getModel().evaluate(x)).getValue();
+		Assert.assertTrue(xval.isNegative());
+	}
+
+	/**
+	 * The clauses exchanged while the at-most-one constraints of a pigeon hole problem are on the stack are removed
+	 * when these constraints are popped.
+	 */
+	@Test
+	public void sharedClausesArePopped() {
+		final SMTInterpol solver = new SMTInterpol();
+		solver.setOption(SolverOptions.PORTFOLIO_THREADS, 4);
+		solver.setLogic(Logics.QF_UF);
+		final int holes = 6;
+		final Term[][] in = new Term[holes + 1][holes];
+		for (int p = 0; p <= holes; p++) {
+			for (int h = 0; h < holes; h++) {
+				solver.declareFun("p" + p + "h" + h, Script.EMPTY_SORT_ARRAY, solver.sort("Bool"));
+				in[p][h] = solver.term("p" + p + "h" + h);
+			}
+			solver.assertTerm(solver.term("or", in[p]));
+		}
+		Assert.assertSame(LBool.SAT, solver.checkSat());
+		for (int round = 0; round < 3; round++) {
+			solver.push(1);
+			for (int h = 0; h < holes; h++) {
+				for (int p = 0; p <= holes; p++) {
+					for (int q = p + 1; q <= holes; q++) {
+						solver.assertTerm(
+								solver.term("or", solver.term("not", in[p][h]), solver.term("not", in[q][h])));
+					}
+				}
+			}
+			Assert.assertSame(LBool.UNSAT, solver.checkSat());
+			solver.pop(1);
+			Assert.assertSame(LBool.SAT, solver.checkSat());
+		}
+	}
+
+	/**
+	 * The proof check mode alone enables proofs. The workers must produce proofs, although only the parent checks them.
+	 */
+	@Test
+	public void proofCheckModeWithoutProduceProofs() {
+		final SMTInterpol solver = new SMTInterpol();
+		solver.setOption(SolverOptions.PROOF_CHECK_MODE, true);
+		solver.setOption(SolverOptions.PORTFOLIO_THREADS, 3);
+		solver.setLogic(Logics.QF_UF);
+		solver.declareSort("U", 0);
+		final Sort u = solver.sort("U");
+		solver.declareFun("a", Script.EMPTY_SORT_ARRAY, u);
+		solver.declareFun("b", Script.EMPTY_SORT_ARRAY, u);
+		solver.declareFun("f", new Sort[] { u }, u);
+		final Term a = solver.term("a");
+		final Term b = solver.term("b");
+		final Term fa = solver.term("f", a);
+		final Term fb = solver.term("f", b);
+		solver.assertTerm(solver.term("or", solver.term("=", a, b), solver.term("=", fa, b)));
+		solver.assertTerm(solver.term("or", solver.term("=", a, b), solver.term("not", solver.term("=", fa, b))));
+		solver.assertTerm(solver.term("or", solver.term("not", solver.term("=", a, b)), solver.term("=", fa, a)));
+		solver.assertTerm(solver.term("not", solver.term("=", fa, fb)));
+		Assert.assertSame(LBool.UNSAT, solver.checkSat());
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.theory.cclosure;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.uni_freiburg.informatik.ultimate.logic.FunctionSymbol;
+import de.uni_freiburg.informatik.ultimate.logic.Logics;
+import de.uni_freiburg.informatik.ultimate.logic.Script;
+import de.uni_freiburg.informatik.ultimate.logic.Sort;
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+import de.uni_freiburg.informatik.ultimate.logic.Theory;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.DefaultLogger;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.LogProxy;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.convert.Clausifier;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.DPLLEngine;
+
+/**
+ * Tests the signature table of the congruence closure.
+ *
+ * Tests:
+ *
+ * 1: f(x0), f(x1), g(f(x0)), g(f(x1)) exist, then x0=x1 finds both congruences and backtracking x0=x1 restores the
+ * signatures 2: f(x0), f(x1) are created under x0=x1 and f(x2) under x1=x2, then both merges are backtracked, the
+ * terms get their own signatures back, and the merges in the other order find the congruences again 3: f(x1) and
+ * g(f(x1)) are created after a push and removed from the table on pop
+ */
+@RunWith(JUnit4.class)
+public class CCSignatureTableTest {
+	Theory mTheory;
+	LogProxy mLogger;
+	Clausifier mClausifier;
+	DPLLEngine mDPLL;
+	CClosure mClosure;
+	CCTerm[] mTerms;
+	FunctionSymbol mF, mG;
+	CCEquality mEq01, mEq12;
+
+	public CCSignatureTableTest() {
+		mTheory = new Theory(Logics.QF_UF);
+		mLogger = new DefaultLogger();
+		mDPLL = new DPLLEngine(mTheory, mLogger, () -> false);
+		mClausifier = new Clausifier(mDPLL, 0);
+		mClausifier.setLogic(Logics.QF_UF);
+		mClosure = mClausifier.getCClosure();
+		mTheory.declareSort("U", 0);
+		final Sort sort = mTheory.getSort("U");
+		final Sort[] paramSort = { sort };
+		mF = mTheory.declareFunction("f", paramSort, sort);
+		mG = mTheory.declareFunction("g", paramSort, sort);
+		mTerms = new CCTerm[3];
+		for (int i = 0; i < mTerms.length; ++i) {
+			final String xi = "x" + i;
+			mTheory.declareFunction(xi, Script.EMPTY_SORT_ARRAY, sort);
+			mTerms[i] = mClausifier.createCCTerm(mTheory.term(xi), null);
+		}
+		mEq01 = mClosure.createCCEquality(0, mTerms[0], mTerms[1]);
+		mEq12 = mClosure.createCCEquality(0, mTerms[1], mTerms[2]);
+	}
+
+	private CCAppTerm createApp(final FunctionSymbol func, final CCTerm arg) {
+		return mClosure.createAppTerm(false, mClosure.getFuncTerm(func), arg);
+	}
+
+	/**
+	 * Check that the term is the root of its signature.
+	 */
+	private void assertRoot(final CCAppTerm app) {
+		Assert.assertSame(app, mClosure.mSignatures.get(app.getFunc().mRepStar, app.getArg().mRepStar));
+	}
+
+	@Test
+	public void testCase1() {
+		final CCAppTerm f0 = createApp(mF, mTerms[0]);
+		final CCAppTerm f1 = createApp(mF, mTerms[1]);
+		final CCAppTerm gf0 = createApp(mG, f0);
+		final CCAppTerm gf1 = createApp(mG, f1);
+		assertRoot(f0);
+		assertRoot(f1);
+		mDPLL.increaseDecideLevel();
+		Assert.assertNull(mDPLL.setLiteral(mEq01));
+		Assert.assertNull(mClosure.checkpoint());
+		Assert.assertSame(f0.getRepresentative(), f1.getRepresentative());
+		Assert.assertSame(gf0.getRepresentative(), gf1.getRepresentative());
+		// only one of the congruent terms is the root of the signature.
+		final CCAppTerm root = mClosure.mSignatures.get(f0.getFunc().mRepStar, f0.getArg().mRepStar);
+		Assert.assertTrue(root == f0 || root == f1);
+		// creating the term again finds the existing term, even though it is not the root.
+		Assert.assertSame(f0, createApp(mF, mTerms[0]));
+		Assert.assertSame(f1, createApp(mF, mTerms[1]));
+		mDPLL.backtrackLiteral(mEq01);
+		mClosure.backtrackComplete();
+		mDPLL.decreaseDecideLevel();
+		Assert.assertNull(mClosure.checkpoint());
+		Assert.assertNotSame(f0.getRepresentative(), f1.getRepresentative());
+		Assert.assertNotSame(gf0.getRepresentative(), gf1.getRepresentative());
+		assertRoot(f0);
+		assertRoot(f1);
+		assertRoot(gf0);
+		assertRoot(gf1);
+	}
+
+	@Test
+	public void testCase2() {
+		mDPLL.increaseDecideLevel();
+		Assert.assertNull(mDPLL.setLiteral(mEq01));
+		Assert.assertNull(mClosure.checkpoint());
+		final CCAppTerm f0 = createApp(mF, mTerms[0]);
+		final CCAppTerm f1 = createApp(mF, mTerms[1]);
+		Assert.assertNotSame(f0, f1);
+		Assert.assertNull(mClosure.checkpoint());
+		Assert.assertSame(f0.getRepresentative(), f1.getRepresentative());
+		mDPLL.increaseDecideLevel();
+		Assert.assertNull(mDPLL.setLiteral(mEq12));
+		final CCAppTerm f2 = createApp(mF, mTerms[2]);
+		Assert.assertNull(mClosure.checkpoint());
+		Assert.assertSame(f0.getRepresentative(), f2.getRepresentative());
+		mDPLL.backtrackLiteral(mEq12);
+		mDPLL.decreaseDecideLevel();
+		mDPLL.backtrackLiteral(mEq01);
+		mClosure.backtrackComplete();
+		mDPLL.decreaseDecideLevel();
+		Assert.assertNull(mClosure.checkpoint());
+		// the terms created under the merges are in the table with their restored signatures.
+		Assert.assertNotSame(f0.getRepresentative(), f1.getRepresentative());
+		Assert.assertNotSame(f1.getRepresentative(), f2.getRepresentative());
+		assertRoot(f0);
+		assertRoot(f1);
+		assertRoot(f2);
+		// the merge in a different order finds the congruences again.
+		mDPLL.increaseDecideLevel();
+		Assert.assertNull(mDPLL.setLiteral(mEq12));
+		Assert.assertNull(mClosure.checkpoint());
+		Assert.assertSame(f1.getRepresentative(), f2.getRepresentative());
+		Assert.assertNotSame(f0.getRepresentative(), f1.getRepresentative());
+		mDPLL.increaseDecideLevel();
+		Assert.assertNull(mDPLL.setLiteral(mEq01));
+		Assert.assertNull(mClosure.checkpoint());
+		Assert.assertSame(f0.getRepresentative(), f2.getRepresentative());
+	}
+
+	@Test
+	public void testCase3() {
+		final CCAppTerm f0 = createApp(mF, mTerms[0]);
+		mClausifier.push();
+		final Term termF1 = mTheory.term(mF, mTheory.term("x1"));
+		final CCAppTerm f1 = (CCAppTerm) mClausifier.createCCTerm(termF1, null);
+		final CCAppTerm gf1 = (CCAppTerm) mClausifier.createCCTerm(mTheory.term(mG, termF1), null);
+		assertRoot(f1);
+		assertRoot(gf1);
+		mClausifier.pop(1);
+		assertRoot(f0);
+		Assert.assertNull(mClosure.mSignatures.get(f1.getFunc().mRepStar, mTerms[1].mRepStar));
+		Assert.assertNull(mClosure.mSignatures.get(gf1.getFunc().mRepStar, f1.mRepStar));
+		// the popped terms are created again and are congruent on merge.
+		final CCAppTerm newF1 = (CCAppTerm) mClausifier.createCCTerm(termF1, null);
+		Assert.assertNotSame(f1, newF1);
+		assertRoot(newF1);
+		mDPLL.increaseDecideLevel();
+		Assert.assertNull(mDPLL.setLiteral(mEq01));
+		Assert.assertNull(mClosure.checkpoint());
+		Assert.assertSame(f0.getRepresentative(), newF1.getRepresentative());
+	}
+}
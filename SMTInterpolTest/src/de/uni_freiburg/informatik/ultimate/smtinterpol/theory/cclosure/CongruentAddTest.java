@@ -44,7 +44,9 @@ import de.uni_freiburg.informatik.ultimate.smtinterpol.proof.SourceAnnotation;
  *
  * 1: x0=x1 and f(x0) then add f(x1) 2: x2=x3 then add f(x2) and f(x3) 3: x4=x5 then add g(f(x4)) and g(f(x5)) 4: add
  * h(x0,x2,x4) and h(x1,x2,x3) 5: a=b and b=c with terms f(b), and f(c) then create f(a), retract b=c, build congruence,
- * and check f(a)=f(b)
+ * and check f(a)=f(b) 6: the decide levels of congruence paths are recomputed after the merges are undone and
+ * redone in a different order 7: the explanations of propagated equalities and disequalities are cached until a merge
+ * on their path is undone
  *
  * @author Juergen Christ
  */
@@ -231,4 +233,66 @@ public class CongruentAddTest {
 		Assert.assertSame(mFc.getRepresentative(), mFd.getRepresentative());
 		Assert.assertSame(mFa.getRepresentative(), mFb.getRepresentative());
 	}
+
+	@Test
+	public void testCase6() {
+		mDPLL.increaseDecideLevel();
+		Assert.assertNull(mDPLL.setLiteral(mAB));
+		mDPLL.increaseDecideLevel();
+		Assert.assertNull(mDPLL.setLiteral(mCD));
+		mDPLL.increaseDecideLevel();
+		Assert.assertNull(mDPLL.setLiteral(mBC));
+		Assert.assertNull(mClosure.checkpoint());
+		Assert.assertEquals(1, mClosure.getDecideLevelForPath(mA, mB));
+		Assert.assertEquals(3, mClosure.getDecideLevelForPath(mA, mC));
+		Assert.assertEquals(3, mClosure.getDecideLevelForPath(mC, mA));
+		mDPLL.backtrackLiteral(mBC);
+		mDPLL.decreaseDecideLevel();
+		mDPLL.backtrackLiteral(mCD);
+		mDPLL.decreaseDecideLevel();
+		mClosure.backtrackComplete();
+		mDPLL.increaseDecideLevel();
+		Assert.assertNull(mDPLL.setLiteral(mBC));
+		mDPLL.increaseDecideLevel();
+		Assert.assertNull(mDPLL.setLiteral(mCD));
+		Assert.assertNull(mClosure.checkpoint());
+		Assert.assertEquals(2, mClosure.getDecideLevelForPath(mA, mC));
+		Assert.assertEquals(3, mClosure.getDecideLevelForPath(mA, mD));
+	}
+
+	@Test
+	public void testCase7() {
+		mDPLL.increaseDecideLevel();
+		Assert.assertNull(mDPLL.setLiteral(mAB));
+		mDPLL.increaseDecideLevel();
+		Assert.assertNull(mDPLL.setLiteral(mBC));
+		Assert.assertNull(mClosure.checkpoint());
+		while (mClosure.getPropagatedLiteral() != null) {
+			// skip the propagations of the decided literals
+		}
+		final CCEquality ac = mClosure.createCCEquality(0, mA, mC);
+		Assert.assertSame(ac, mClosure.getPropagatedLiteral());
+		final Clause acExpl = mClosure.getUnitClause(ac);
+		Assert.assertEquals(3, acExpl.getSize());
+		Assert.assertSame(acExpl, mClosure.getUnitClause(ac));
+		// a != d is propagated by the disequality c != d
+		Assert.assertNull(mDPLL.setLiteral(mCD.negate()));
+		final CCEquality ad = mClosure.createCCEquality(0, mA, mD);
+		Assert.assertSame(ad.negate(), mClosure.getPropagatedLiteral());
+		final Clause adExpl = mClosure.getUnitClause(ad.negate());
+		Assert.assertTrue(adExpl.contains(mCD));
+		Assert.assertSame(adExpl, mClosure.getUnitClause(ad.negate()));
+		// undo the merge of b and c; the explanations are computed again after it is redone
+		mDPLL.backtrackLiteral(mCD.negate());
+		mDPLL.backtrackLiteral(mBC);
+		mDPLL.decreaseDecideLevel();
+		mClosure.backtrackComplete();
+		mDPLL.increaseDecideLevel();
+		Assert.assertNull(mDPLL.setLiteral(mBC));
+		Assert.assertNull(mClosure.checkpoint());
+		final Clause acExpl2 = mClosure.getUnitClause(ac);
+		Assert.assertNotSame(acExpl, acExpl2);
+		Assert.assertEquals(3, acExpl2.getSize());
+		Assert.assertSame(acExpl2, mClosure.getUnitClause(ac));
+	}
 }
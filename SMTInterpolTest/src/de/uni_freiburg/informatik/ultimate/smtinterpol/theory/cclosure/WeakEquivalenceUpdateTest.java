@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.theory.cclosure;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.uni_freiburg.informatik.ultimate.logic.Logics;
+import de.uni_freiburg.informatik.ultimate.logic.Script;
+import de.uni_freiburg.informatik.ultimate.logic.Script.LBool;
+import de.uni_freiburg.informatik.ultimate.logic.Sort;
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.DefaultLogger;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.ITheory;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2.SMTInterpol;
+
+/**
+ * Tests the incremental update of the weak equivalence graph of the array theory. Random problems with store chains
+ * and disjunctions of index and array equalities make the congruence closure merge and unmerge terms between the
+ * checkpoints of the array theory. After every incremental update, the array theory compares the graph with a graph
+ * built from scratch.
+ */
+@RunWith(JUnit4.class)
+public class WeakEquivalenceUpdateTest {
+
+	private static final int NUM_ARRAYS = 5;
+	private static final int NUM_INDICES = 4;
+	private static final int NUM_VALUES = 3;
+
+	private SMTInterpol mSolver;
+	private Term[] mArrays;
+	private Term[] mIndices;
+	private Term[] mValues;
+
+	private void setupSolver(final boolean checkUpdates) {
+		mSolver = new SMTInterpol(new DefaultLogger());
+		mSolver.setOption(":verbosity", 2);
+		mSolver.setLogic(Logics.QF_AX);
+		mSolver.declareSort("I", 0);
+		mSolver.declareSort("E", 0);
+		final Sort indexSort = mSolver.sort("I");
+		final Sort valueSort = mSolver.sort("E");
+		final Sort arraySort = mSolver.sort("Array", indexSort, valueSort);
+		mArrays = declare("a", NUM_ARRAYS, arraySort);
+		mIndices = declare("i", NUM_INDICES, indexSort);
+		mValues = declare("v", NUM_VALUES, valueSort);
+		getArrayTheory().mCheckWeakEqUpdates = checkUpdates;
+	}
+
+	private Term[] declare(final String prefix, final int count, final Sort sort) {
+		final Term[] terms = new Term[count];
+		for (int i = 0; i < count; i++) {
+			mSolver.declareFun(prefix + i, Script.EMPTY_SORT_ARRAY, sort);
+			terms[i] = mSolver.term(prefix + i);
+		}
+		return terms;
+	}
+
+	private ArrayTheory getArrayTheory() {
+		for (final ITheory theory : mSolver.getEngine().getAttachedTheories()) {
+			if (theory instanceof ArrayTheory) {
+				return (ArrayTheory) theory;
+			}
+		}
+		Assert.fail("No array theory");
+		return null;
+	}
+
+	private long getArrayStatistic(final String name) {
+		for (final Object stat : (Object[]) mSolver.getInfo(":all-statistics")) {
+			final Object[] theory = (Object[]) stat;
+			if (theory[0].equals(":Array")) {
+				for (final Object[] entry : (Object[][]) theory[1]) {
+					if (entry[0].equals(name)) {
+						return ((Number) entry[1]).longValue();
+					}
+				}
+			}
+		}
+		Assert.fail("No statistics for " + name);
+		return 0;
+	}
+
+	private static Term pick(final Term[] terms, final Random rng) {
+		return terms[rng.nextInt(terms.length)];
+	}
+
+	/**
+	 * Create a random literal over the arrays: an index equality, an array equality, an equality between an array
+	 * and a store on another array, or a disequality between two selects.
+	 */
+	private Term randomLiteral(final Random rng) {
+		switch (rng.nextInt(4)) {
+		case 0:
+			return mSolver.term("=", pick(mIndices, rng), pick(mIndices, rng));
+		case 1:
+			return mSolver.term("=", pick(mArrays, rng), pick(mArrays, rng));
+		case 2:
+			return mSolver.term("=", pick(mArrays, rng),
+					mSolver.term("store", pick(mArrays, rng), pick(mIndices, rng), pick(mValues, rng)));
+		default:
+			final Term index = pick(mIndices, rng);
+			return mSolver.term("not", mSolver.term("=", mSolver.term("select", pick(mArrays, rng), index),
+					mSolver.term("select", pick(mArrays, rng), index)));
+		}
+	}
+
+	private void assertRandomClauses(final Random rng, final int count) {
+		for (int i = 0; i < count; i++) {
+			mSolver.assertTerm(mSolver.term("or", randomLiteral(rng), randomLiteral(rng), randomLiteral(rng)));
+		}
+	}
+
+	/**
+	 * Solve a random problem in several push/pop scopes and return the results of the check-sat calls.
+	 */
+	private LBool[] solveRandom(final long seed, final boolean checkUpdates) {
+		final Random rng = new Random(seed);
+		setupSolver(checkUpdates);
+		final LBool[] results = new LBool[6];
+		// a store chain a1 = store(a0, i0, v0), a2 = store(a1, i1, v1) as the base of the problem.
+		mSolver.assertTerm(mSolver.term("=", mArrays[1],
+				mSolver.term("store", mArrays[0], mIndices[0], mValues[0])));
+		mSolver.assertTerm(mSolver.term("=", mArrays[2],
+				mSolver.term("store", mArrays[1], mIndices[1], mValues[1])));
+		for (int round = 0; round < 3; round++) {
+			mSolver.push(1);
+			assertRandomClauses(rng, 8);
+			results[2 * round] = mSolver.checkSat();
+			mSolver.push(1);
+			assertRandomClauses(rng, 4);
+			results[2 * round + 1] = mSolver.checkSat();
+			mSolver.pop(2);
+		}
+		return results;
+	}
+
+	/**
+	 * Check the incremental updates on random problems and compare the results with the solver that doesn't check
+	 * them.
+	 */
+	@Test
+	public void testRandom() {
+		long updates = 0;
+		for (long seed = 0; seed < 40; seed++) {
+			final LBool[] expected = solveRandom(seed, false);
+			final LBool[] results = solveRandom(seed, true);
+			Assert.assertArrayEquals("seed " + seed, expected, results);
+			updates += getArrayStatistic("UpdateWeakEQ");
+		}
+		Assert.assertTrue(updates > 0);
+	}
+
+	/**
+	 * The decisions a1 = a3 or a0 = a2 merge the weak equivalence classes of the two stores after the graph was
+	 * built. They are unmerged on backtracking when the select disequality makes them inconsistent, and again when the
+	 * scope asserting a0 = a2 is popped.
+	 */
+	@Test
+	public void testMergeUnmerge() {
+		setupSolver(true);
+		mSolver.assertTerm(mSolver.term("=", mArrays[1],
+				mSolver.term("store", mArrays[0], mIndices[0], mValues[0])));
+		mSolver.assertTerm(mSolver.term("=", mArrays[3],
+				mSolver.term("store", mArrays[2], mIndices[1], mValues[1])));
+		mSolver.assertTerm(mSolver.term("or", mSolver.term("=", mArrays[1], mArrays[3]),
+				mSolver.term("=", mArrays[0], mArrays[2])));
+		mSolver.assertTerm(mSolver.term("or", mSolver.term("=", mIndices[0], mIndices[2]),
+				mSolver.term("=", mIndices[1], mIndices[2])));
+		mSolver.assertTerm(mSolver.term("not", mSolver.term("=", mSolver.term("select", mArrays[0], mIndices[2]),
+				mSolver.term("select", mArrays[2], mIndices[2]))));
+		Assert.assertEquals(LBool.SAT, mSolver.checkSat());
+		mSolver.push(1);
+		mSolver.assertTerm(mSolver.term("=", mArrays[0], mArrays[2]));
+		Assert.assertEquals(LBool.UNSAT, mSolver.checkSat());
+		mSolver.pop(1);
+		Assert.assertEquals(LBool.SAT, mSolver.checkSat());
+		Assert.assertTrue(getArrayStatistic("UpdateWeakEQ") > 0);
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.theory.linar;
+
+import java.math.BigInteger;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.uni_freiburg.informatik.ultimate.logic.Rational;
+
+@RunWith(JUnit4.class)
+public class BoundIndexTest {
+
+	private static InfinitesimalNumber randomBound(final Random rng) {
+		Rational real;
+		switch (rng.nextInt(4)) {
+		case 0:
+			real = Rational.valueOf(rng.nextInt(50) - 25, 1);
+			break;
+		case 1:
+			real = Rational.valueOf(rng.nextInt(200) - 100, rng.nextInt(6) + 1);
+			break;
+		case 2:
+			// big rationals that are very close to each other
+			real = Rational.valueOf(BigInteger.ONE.shiftLeft(70).add(BigInteger.valueOf(rng.nextInt(5))),
+					BigInteger.ONE.shiftLeft(69));
+			break;
+		default:
+			real = Rational.valueOf(Integer.MAX_VALUE - rng.nextInt(3), Integer.MAX_VALUE - rng.nextInt(3));
+			break;
+		}
+		return new InfinitesimalNumber(real, rng.nextInt(3) - 1);
+	}
+
+	private static void checkEqual(final TreeMap<InfinitesimalNumber, Integer> expected,
+			final BoundIndex<Integer> index, final InfinitesimalNumber probe) {
+		Assert.assertEquals(expected.isEmpty(), index.isEmpty());
+		Assert.assertEquals(expected.get(probe), index.get(probe));
+		Assert.assertEquals(expected.size(), index.size());
+		int i = 0;
+		for (final Entry<InfinitesimalNumber, Integer> entry : expected.entrySet()) {
+			Assert.assertEquals(entry.getKey(), index.getBound(i));
+			Assert.assertEquals(entry.getValue(), index.getValue(i));
+			i++;
+		}
+		Assert.assertEquals(expected.headMap(probe, false).size(), index.ceilingIndex(probe));
+		Assert.assertEquals(expected.headMap(probe, true).size(), index.higherIndex(probe));
+	}
+
+	@Test
+	public void testRandom() {
+		final Random rng = new Random(4711);
+		for (int round = 0; round < 50; round++) {
+			final TreeMap<InfinitesimalNumber, Integer> expected = new TreeMap<>();
+			final BoundIndex<Integer> index = new BoundIndex<>();
+			for (int step = 0; step < 500; step++) {
+				final InfinitesimalNumber bound = randomBound(rng);
+				if (rng.nextInt(3) == 0) {
+					expected.remove(bound);
+					index.remove(bound);
+				} else {
+					expected.put(bound, step);
+					index.put(bound, step);
+				}
+				Assert.assertEquals(expected.get(bound), index.get(bound));
+				if (rng.nextInt(20) == 0) {
+					checkEqual(expected, index, randomBound(rng));
+				}
+			}
+			checkEqual(expected, index, randomBound(rng));
+		}
+	}
+
+	@Test
+	public void testInfiniteProbe() {
+		final BoundIndex<Integer> index = new BoundIndex<>();
+		for (int i = 0; i < 100; i++) {
+			index.put(new InfinitesimalNumber(Rational.valueOf(i, 1), 0), i);
+		}
+		Assert.assertEquals(0, index.ceilingIndex(InfinitesimalNumber.NEGATIVE_INFINITY));
+		Assert.assertEquals(100, index.ceilingIndex(InfinitesimalNumber.POSITIVE_INFINITY));
+		Assert.assertEquals(42, index.ceilingIndex(new InfinitesimalNumber(Rational.valueOf(83, 2), 0)));
+		Assert.assertEquals(42, index.higherIndex(new InfinitesimalNumber(Rational.valueOf(41, 1), 0)));
+		Assert.assertEquals(41, index.higherIndex(new InfinitesimalNumber(Rational.valueOf(41, 1), -1)));
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.theory.linar;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.uni_freiburg.informatik.ultimate.logic.Logics;
+import de.uni_freiburg.informatik.ultimate.logic.Rational;
+import de.uni_freiburg.informatik.ultimate.logic.Script;
+import de.uni_freiburg.informatik.ultimate.logic.Script.LBool;
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.option.SolverOptions;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2.SMTInterpol;
+
+@RunWith(JUnit4.class)
+public class CutManagerTest {
+
+	private static int getLAStatistic(final SMTInterpol solver, final String name) {
+		for (final Object stat : (Object[]) solver.getInfo(":all-statistics")) {
+			final Object[] theory = (Object[]) stat;
+			if (theory[0].equals(":LA")) {
+				for (final Object[] entry : (Object[][]) theory[1]) {
+					if (entry[0].equals(name)) {
+						return (Integer) entry[1];
+					}
+				}
+			}
+		}
+		Assert.fail("No statistics for " + name);
+		return 0;
+	}
+
+	private static SMTInterpol createSolver(final BranchingPolicy.Strategy policy, final boolean gomory) {
+		final SMTInterpol solver = new SMTInterpol();
+		solver.setOption(":produce-models", true);
+		solver.setOption(":produce-proofs", true);
+		solver.setOption(SolverOptions.MODEL_CHECK_MODE, true);
+		solver.setOption(SolverOptions.PROOF_CHECK_MODE, true);
+		solver.setOption(SolverOptions.BRANCHING_POLICY, policy.name());
+		solver.setOption(SolverOptions.GOMORY_CUTS, gomory);
+		solver.setLogic(Logics.QF_LIA);
+		return solver;
+	}
+
+	/**
+	 * 5x + 3y <= 8, 5x + y >= 8, x >= 0, y >= 0 has the rational solution x = 8/5, y = 0, but no integer solution.
+	 * The Gomory cut from the row of x refutes it without branching.
+	 */
+	@Test
+	public void testGomoryCut() {
+		for (final boolean gomory : new boolean[] { false, true }) {
+			final SMTInterpol solver = createSolver(BranchingPolicy.Strategy.CUTS_FROM_PROOFS, gomory);
+			solver.declareFun("x", Script.EMPTY_SORT_ARRAY, solver.sort("Int"));
+			solver.declareFun("y", Script.EMPTY_SORT_ARRAY, solver.sort("Int"));
+			final Term x = solver.term("x");
+			final Term y = solver.term("y");
+			solver.assertTerm(solver.term(">=", x, solver.numeral("0")));
+			solver.assertTerm(solver.term(">=", y, solver.numeral("0")));
+			solver.assertTerm(solver.term("<=",
+					solver.term("+", solver.term("*", solver.numeral("5"), x), solver.term("*", solver.numeral("3"), y)),
+					solver.numeral("8")));
+			solver.assertTerm(solver.term(">=", solver.term("+", solver.term("*", solver.numeral("5"), x), y),
+					solver.numeral("8")));
+			Assert.assertSame(LBool.UNSAT, solver.checkSat());
+			Assert.assertNotNull(solver.getProof());
+			Assert.assertEquals(gomory, getLAStatistic(solver, "GomoryCuts") > 0);
+		}
+	}
+
+	private static Term linearSum(final SMTInterpol solver, final Term[] vars, final int[] coeffs) {
+		final Term[] summands = new Term[vars.length];
+		for (int i = 0; i < vars.length; i++) {
+			summands[i] = solver.term("*", Rational.valueOf(coeffs[i], 1).toTerm(solver.sort("Int")), vars[i]);
+		}
+		return solver.term("+", summands);
+	}
+
+	/**
+	 * Assert linear equalities and inequalities over six integer variables and check them without Gomory cuts under
+	 * every branching policy.
+	 *
+	 * @param equalities
+	 *            the coefficients of the variables followed by the constant of each equality.
+	 * @param inequalities
+	 *            the coefficients of the variables followed by the lower bound of each inequality.
+	 */
+	private static void checkAllPolicies(final int[][] equalities, final int[][] inequalities, final LBool expected) {
+		for (final BranchingPolicy.Strategy policy : BranchingPolicy.Strategy.values()) {
+			final SMTInterpol solver = createSolver(policy, false);
+			final Term[] vars = new Term[6];
+			for (int i = 0; i < vars.length; i++) {
+				solver.declareFun("x" + i, Script.EMPTY_SORT_ARRAY, solver.sort("Int"));
+				vars[i] = solver.term("x" + i);
+			}
+			for (final int[] eq : equalities) {
+				solver.assertTerm(solver.term("=", linearSum(solver, vars, eq),
+						Rational.valueOf(eq[vars.length], 1).toTerm(solver.sort("Int"))));
+			}
+			for (final int[] ineq : inequalities) {
+				solver.assertTerm(solver.term(">=", linearSum(solver, vars, ineq),
+						Rational.valueOf(ineq[vars.length], 1).toTerm(solver.sort("Int"))));
+			}
+			Assert.assertSame(expected, solver.checkSat());
+		}
+	}
+
+	/**
+	 * The integer solutions of these constraints are unbounded, and branching alone does not find one. Every branching
+	 * policy must create the cuts from proofs periodically, even without Gomory cuts.
+	 */
+	@Test
+	public void testUnboundedBranchingSat() {
+		checkAllPolicies(
+				new int[][] { { 0, 0, -5, 0, 4, -9, 1 }, { 0, 0, 9, -2, 0, -9, 9 }, { 0, -4, -3, 2, 0, 0, -9 } },
+				new int[][] { { 2, 8, 0, 0, 0, 0, 2 }, { -8, 0, 0, 0, 0, 8, -3 } }, LBool.SAT);
+	}
+
+	/**
+	 * These equalities have unbounded rational solutions but no integer solution. Branching alone does not terminate.
+	 */
+	@Test
+	public void testUnboundedBranchingUnsat() {
+		checkAllPolicies(
+				new int[][] { { -6, -7, 0, 9, 0, 0, 1 }, { -7, 5, 0, 0, -8, 0, 3 }, { 9, 5, 0, 0, 0, -8, 8 } },
+				new int[0][], LBool.UNSAT);
+	}
+
+	private static Term randomSum(final SMTInterpol solver, final Term[] vars, final Random rng) {
+		final Term[] summands = new Term[2 + rng.nextInt(2)];
+		for (int i = 0; i < summands.length; i++) {
+			final int coeff = rng.nextInt(5) + 1;
+			final Term coeffTerm = solver.numeral(String.valueOf(coeff));
+			summands[i] = solver.term("*", rng.nextBoolean() ? coeffTerm : solver.term("-", coeffTerm),
+					vars[rng.nextInt(vars.length)]);
+		}
+		return solver.term("+", summands);
+	}
+
+	/**
+	 * Assert random disjunctions of linear constraints and check incrementally after each push, and pop back to check
+	 * that the cut pool forgets removed cuts. The results must not depend on the branching policy and the Gomory cuts,
+	 * and the models and proofs are checked.
+	 */
+	private static LBool[] runRandom(final BranchingPolicy.Strategy policy, final boolean gomory, final long seed) {
+		final Random rng = new Random(seed);
+		final SMTInterpol solver = createSolver(policy, gomory);
+		final Term[] vars = new Term[5];
+		for (int i = 0; i < vars.length; i++) {
+			solver.declareFun("x" + i, Script.EMPTY_SORT_ARRAY, solver.sort("Int"));
+			vars[i] = solver.term("x" + i);
+		}
+		final LBool[] results = new LBool[6];
+		for (int level = 0; level < 4; level++) {
+			solver.push(1);
+			for (int i = 0; i < 4; i++) {
+				final Term bound1 = Rational.valueOf(rng.nextInt(25) - 12, 1).toTerm(solver.sort("Int"));
+				final Term bound2 = Rational.valueOf(rng.nextInt(25) - 12, 1).toTerm(solver.sort("Int"));
+				solver.assertTerm(solver.term("or", solver.term("<=", randomSum(solver, vars, rng), bound1),
+						solver.term(">=", randomSum(solver, vars, rng), bound2)));
+			}
+			results[level] = solver.checkSat();
+		}
+		solver.pop(2);
+		results[4] = solver.checkSat();
+		solver.pop(1);
+		results[5] = solver.checkSat();
+		return results;
+	}
+
+	@Test
+	public void testSameResults() {
+		for (long seed = 0; seed < 10; seed++) {
+			final LBool[] expected = runRandom(BranchingPolicy.Strategy.CUTS_FROM_PROOFS, false, seed);
+			for (final BranchingPolicy.Strategy policy : BranchingPolicy.Strategy.values()) {
+				Assert.assertArrayEquals(expected, runRandom(policy, true, seed));
+			}
+		}
+	}
+}
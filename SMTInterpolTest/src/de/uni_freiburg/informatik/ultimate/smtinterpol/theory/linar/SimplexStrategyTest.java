@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.theory.linar;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.uni_freiburg.informatik.ultimate.logic.Logics;
+import de.uni_freiburg.informatik.ultimate.logic.Rational;
+import de.uni_freiburg.informatik.ultimate.logic.Script;
+import de.uni_freiburg.informatik.ultimate.logic.Script.LBool;
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.option.SolverOptions;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2.SMTInterpol;
+
+@RunWith(JUnit4.class)
+public class SimplexStrategyTest {
+
+	private static int getLAStatistic(final SMTInterpol solver, final String name) {
+		for (final Object stat : (Object[]) solver.getInfo(":all-statistics")) {
+			final Object[] theory = (Object[]) stat;
+			if (theory[0].equals(":LA")) {
+				for (final Object[] entry : (Object[][]) theory[1]) {
+					if (entry[0].equals(name)) {
+						return (Integer) entry[1];
+					}
+				}
+			}
+		}
+		Assert.fail("No statistics for " + name);
+		return 0;
+	}
+
+	private static SMTInterpol createSolver(final LinArSolve.SimplexStrategy strategy) {
+		final SMTInterpol solver = new SMTInterpol();
+		solver.setOption(":produce-models", true);
+		solver.setOption(":produce-proofs", true);
+		solver.setOption(SolverOptions.MODEL_CHECK_MODE, true);
+		solver.setOption(SolverOptions.PROOF_CHECK_MODE, true);
+		solver.setOption(SolverOptions.SIMPLEX_STRATEGY, strategy.name());
+		solver.setLogic(Logics.QF_LRA);
+		return solver;
+	}
+
+	private static Term randomSum(final SMTInterpol solver, final Term[] vars, final Random rng) {
+		final Term[] summands = new Term[3];
+		for (int i = 0; i < summands.length; i++) {
+			final int coeff = rng.nextInt(9) + 1;
+			final Term coeffTerm = Rational.valueOf(rng.nextBoolean() ? coeff : -coeff, 1).toTerm(solver.sort("Real"));
+			summands[i] = solver.term("*", coeffTerm, vars[rng.nextInt(vars.length)]);
+		}
+		return solver.term("+", summands);
+	}
+
+	/**
+	 * Assert random disjunctions of linear constraints and check incrementally after each push. Both pivoting engines
+	 * must give the same results, and the models and proofs are checked.
+	 */
+	private static LBool[] runRandom(final LinArSolve.SimplexStrategy strategy, final long seed) {
+		final Random rng = new Random(seed);
+		final SMTInterpol solver = createSolver(strategy);
+		final Term[] vars = new Term[8];
+		for (int i = 0; i < vars.length; i++) {
+			solver.declareFun("x" + i, Script.EMPTY_SORT_ARRAY, solver.sort("Real"));
+			vars[i] = solver.term("x" + i);
+		}
+		final LBool[] results = new LBool[6];
+		for (int level = 0; level < results.length; level++) {
+			solver.push(1);
+			for (int i = 0; i < 8; i++) {
+				final Term bound1 = Rational.valueOf(rng.nextInt(41) - 20, 1).toTerm(solver.sort("Real"));
+				final Term bound2 = Rational.valueOf(rng.nextInt(41) - 20, 1).toTerm(solver.sort("Real"));
+				solver.assertTerm(solver.term("or", solver.term("<=", randomSum(solver, vars, rng), bound1),
+						solver.term(">=", randomSum(solver, vars, rng), bound2)));
+			}
+			results[level] = solver.checkSat();
+		}
+		if (strategy == LinArSolve.SimplexStrategy.DUAL) {
+			Assert.assertEquals(getLAStatistic(solver, "Pivot"), getLAStatistic(solver, "PivotDual"));
+		} else {
+			Assert.assertEquals(0, getLAStatistic(solver, "PivotDual"));
+		}
+		return results;
+	}
+
+	@Test
+	public void testSameResults() {
+		for (long seed = 0; seed < 10; seed++) {
+			Assert.assertArrayEquals(runRandom(LinArSolve.SimplexStrategy.SOI, seed),
+					runRandom(LinArSolve.SimplexStrategy.DUAL, seed));
+		}
+	}
+
+	/**
+	 * x + y >= 4, x - y <= 1, y <= 1.4 is unsatisfiable, since x + y <= 2y + 1 <= 3.8. The conflict is found by the dual
+	 * engine after pivoting the slack variable of x + y.
+	 */
+	@Test
+	public void testConflict() {
+		final SMTInterpol solver = createSolver(LinArSolve.SimplexStrategy.DUAL);
+		solver.declareFun("x", Script.EMPTY_SORT_ARRAY, solver.sort("Real"));
+		solver.declareFun("y", Script.EMPTY_SORT_ARRAY, solver.sort("Real"));
+		final Term x = solver.term("x");
+		final Term y = solver.term("y");
+		solver.assertTerm(solver.term(">=", solver.term("+", x, y), solver.decimal("4")));
+		solver.assertTerm(solver.term("<=", solver.term("-", x, y), solver.decimal("1")));
+		Assert.assertSame(LBool.SAT, solver.checkSat());
+		solver.assertTerm(solver.term("<=", y, solver.decimal("1.4")));
+		Assert.assertSame(LBool.UNSAT, solver.checkSat());
+		Assert.assertNotNull(solver.getProof());
+	}
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.theory.linar;
+
+import java.math.BigInteger;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.uni_freiburg.informatik.ultimate.logic.Rational;
+
+/**
+ * Tests the representation of the coefficients of a tableaux row in int, long, or big integer arrays and the fallback
+ * from long to big integer arithmetic when adding rows.
+ */
+@RunWith(JUnit4.class)
+public class TableauxRowTest {
+
+	private static final int NUM_VARS = 8;
+
+	private LinArSolve mSolver;
+	private LinVar[] mVars;
+
+	@Before
+	public void setUp() {
+		mSolver = new LinArSolve(null);
+		mVars = new LinVar[NUM_VARS];
+		for (int i = 0; i < NUM_VARS; i++) {
+			mVars[i] = new LinVar("x" + i, false, 0, i);
+			mSolver.mDependentRows.add(new BitSet());
+		}
+	}
+
+	private static Rational big(final int exponent) {
+		return Rational.valueOf(BigInteger.ONE.shiftLeft(exponent), BigInteger.ONE);
+	}
+
+	/**
+	 * Create the row rowVar = sum coeffs[i] * x_cols[i].
+	 */
+	private TableauxRow createRow(final int rowVar, final int[] cols, final Rational[] coeffs) {
+		final TreeMap<LinVar, Rational> map = new TreeMap<>();
+		for (int i = 0; i < cols.length; i++) {
+			map.put(mVars[cols[i]], coeffs[i]);
+		}
+		return new TableauxRow(mVars[rowVar], map);
+	}
+
+	/**
+	 * Get the value of the row variable as a map from the matrix position of each column variable to its factor.
+	 */
+	private static TreeMap<Integer, Rational> getFactors(final TableauxRow row) {
+		final TreeMap<Integer, Rational> factors = new TreeMap<>();
+		for (int i = 1; i < row.size(); i++) {
+			factors.put(row.getRawIndex(i), row.getRawFactor(i));
+		}
+		return factors;
+	}
+
+	/**
+	 * Compute the factors of the row after substituting the row variable of other.
+	 */
+	private static TreeMap<Integer, Rational> substitute(final TableauxRow row, final TableauxRow other) {
+		final TreeMap<Integer, Rational> result = getFactors(row);
+		final Rational factor = result.remove(other.getRawIndex(0));
+		for (final Map.Entry<Integer, Rational> entry : getFactors(other).entrySet()) {
+			final Rational old = result.containsKey(entry.getKey()) ? result.get(entry.getKey()) : Rational.ZERO;
+			final Rational sum = old.add(factor.mul(entry.getValue()));
+			if (sum.equals(Rational.ZERO)) {
+				result.remove(entry.getKey());
+			} else {
+				result.put(entry.getKey(), sum);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Check that the row is in the representation that fits its coefficients and that getRawFactor gives the same
+	 * result as the computation with big integers.
+	 */
+	private static void checkRow(final TableauxRow row) {
+		boolean fitsInt = true;
+		boolean fitsLong = true;
+		for (int i = 0; i < row.size(); i++) {
+			final BigInteger coeff = row.getRawCoeff(i);
+			Assert.assertEquals(coeff.signum(), row.getRawSignum(i));
+			fitsInt &= coeff.bitLength() <= TableauxRow.LIMIT_BITS;
+			fitsLong &= coeff.bitLength() <= TableauxRow.LONG_LIMIT_BITS;
+			if (i > 0) {
+				Assert.assertEquals(coeff, row.getCoeffForPos(row.getRawIndex(i)));
+				Assert.assertEquals(Rational.valueOf(coeff, row.getRawCoeff(0).negate()), row.getRawFactor(i));
+			}
+		}
+		Assert.assertEquals(!fitsInt && fitsLong, row.hasLongEntries());
+		Assert.assertEquals(!fitsLong, row.hasBigEntries());
+	}
+
+	/**
+	 * Add other to row and compare the result to the substitution computed with rationals. The column variables of
+	 * the result must be exactly the variables whose dependent rows contain the row variable.
+	 */
+	private void checkAddRow(final TableauxRow row, final TableauxRow other) {
+		final int rowVar = row.getRawIndex(0);
+		final int pivot = other.getRawIndex(0);
+		for (int i = 0; i < NUM_VARS; i++) {
+			mSolver.mDependentRows.get(i).clear(rowVar);
+		}
+		for (final Integer col : getFactors(row).keySet()) {
+			mSolver.mDependentRows.get(col).set(rowVar);
+		}
+		final TreeMap<Integer, Rational> expected = substitute(row, other);
+		row.addRow(mSolver, other);
+		checkRow(row);
+		Assert.assertEquals(expected, getFactors(row));
+		for (int i = 0; i < NUM_VARS; i++) {
+			if (i != rowVar && i != pivot) {
+				Assert.assertEquals(expected.containsKey(i), mSolver.mDependentRows.get(i).get(rowVar));
+			}
+		}
+	}
+
+	@Test
+	public void testRepresentation() {
+		final TableauxRow intRow =
+				createRow(0, new int[] { 1, 2 }, new Rational[] { Rational.ONE, Rational.valueOf(-3, 1) });
+		checkRow(intRow);
+		Assert.assertFalse(intRow.hasLongEntries());
+		final TableauxRow longRow = createRow(0, new int[] { 1, 2 }, new Rational[] { Rational.ONE, big(40) });
+		checkRow(longRow);
+		Assert.assertTrue(longRow.hasLongEntries());
+		final TableauxRow bigRow = createRow(0, new int[] { 1, 2 }, new Rational[] { Rational.ONE, big(70) });
+		checkRow(bigRow);
+		Assert.assertTrue(bigRow.hasBigEntries());
+		// 2^62 is the first value that doesn't fit in the long representation, -2^62 still fits.
+		checkRow(createRow(0, new int[] { 1, 2 }, new Rational[] { Rational.ONE, big(62) }));
+		checkRow(createRow(0, new int[] { 1, 2 }, new Rational[] { Rational.ONE, big(62).negate() }));
+		// the coefficients are made integral and divided by their gcd.
+		final Rational tiny = Rational.valueOf(BigInteger.ONE, BigInteger.ONE.shiftLeft(40));
+		final TableauxRow fracRow = createRow(0, new int[] { 1, 2 }, new Rational[] { tiny, Rational.valueOf(3, 2) });
+		checkRow(fracRow);
+		Assert.assertEquals(Rational.valueOf(3, 2), fracRow.getRawFactor(2));
+	}
+
+	/**
+	 * Adding two int rows creates long coefficients, and adding two long rows creates big coefficients.
+	 */
+	@Test
+	public void testPromotion() {
+		final TableauxRow row = createRow(0, new int[] { 1, 2 }, new Rational[] { Rational.valueOf(3, 1), big(29) });
+		final TableauxRow other = createRow(1, new int[] { 3, 4 }, new Rational[] { big(29), Rational.ONE });
+		checkAddRow(row, other);
+		Assert.assertTrue(row.hasLongEntries());
+		final TableauxRow longOther = createRow(2, new int[] { 5, 6 }, new Rational[] { big(60), Rational.ONE });
+		checkAddRow(row, longOther);
+		Assert.assertTrue(row.hasBigEntries());
+	}
+
+	/**
+	 * The product 2^61 * -4 is exactly Long.MIN_VALUE. It doesn't overflow in Java, but it doesn't fit in 63 bits, so
+	 * the long addition must be aborted. The row must be unchanged so that the addition can be redone with big
+	 * integers.
+	 */
+	@Test
+	public void testLongMinValue() {
+		final TableauxRow row =
+				createRow(0, new int[] { 1, 2 }, new Rational[] { Rational.valueOf(-4, 1), Rational.ONE });
+		final TableauxRow other = createRow(1, new int[] { 3, 4 }, new Rational[] { big(61), Rational.ONE });
+		Assert.assertFalse(row.hasLongEntries());
+		Assert.assertTrue(other.hasLongEntries());
+		checkAddRow(row, other);
+		Assert.assertTrue(row.hasBigEntries());
+		Assert.assertEquals(BigInteger.valueOf(Long.MIN_VALUE), row.getCoeffForPos(3));
+	}
+
+	/**
+	 * The coefficient of the row variable becomes -2^61 * 4 = Long.MIN_VALUE. The gcd of the new coefficients cannot
+	 * be computed with longs in this case, since Long.MIN_VALUE has no positive counterpart.
+	 */
+	@Test
+	public void testLongMinValueHead() {
+		final Rational inv61 = big(61).inverse();
+		final TableauxRow row =
+				createRow(0, new int[] { 1, 2 }, new Rational[] { inv61, inv61.mul(Rational.valueOf(3, 1)) });
+		final TableauxRow other =
+				createRow(1, new int[] { 3, 4 }, new Rational[] { Rational.valueOf(1, 4), Rational.valueOf(3, 4) });
+		Assert.assertTrue(row.hasLongEntries());
+		Assert.assertEquals(big(61).negate().numerator(), row.getRawCoeff(0));
+		Assert.assertEquals(BigInteger.valueOf(-4), other.getRawCoeff(0));
+		checkAddRow(row, other);
+		Assert.assertEquals(BigInteger.valueOf(Long.MIN_VALUE), row.getRawCoeff(0));
+	}
+
+	/**
+	 * The overflow happens after some entries of the row were already computed. The addition with big integers must
+	 * give the same result as if there were no long arithmetic.
+	 */
+	@Test
+	public void testOverflowFallback() {
+		final TableauxRow row = createRow(0, new int[] { 1, 2, 5 },
+				new Rational[] { big(40), Rational.valueOf(7, 1), Rational.valueOf(-5, 1) });
+		final TableauxRow other = createRow(1, new int[] { 2, 3, 6 },
+				new Rational[] { Rational.valueOf(-7, 1), big(50), big(45) });
+		checkAddRow(row, other);
+		Assert.assertTrue(row.hasBigEntries());
+	}
+
+	/**
+	 * Add random rows with coefficients of all sizes and compare the results to the rational computation.
+	 */
+	@Test
+	public void testRandom() {
+		final Random rng = new Random(4711);
+		final int[] exponents = { 3, 20, 35, 55, 61, 62, 63, 80 };
+		for (int round = 0; round < 500; round++) {
+			setUp();
+			final Rational[] rowCoeffs = new Rational[3];
+			final Rational[] otherCoeffs = new Rational[3];
+			for (int i = 0; i < 3; i++) {
+				rowCoeffs[i] = randomCoeff(rng, exponents);
+				otherCoeffs[i] = randomCoeff(rng, exponents);
+			}
+			final TableauxRow row = createRow(0, new int[] { 1, 2, 3 }, rowCoeffs);
+			final TableauxRow other = createRow(1, new int[] { 2, 3 + rng.nextInt(2), 5 }, otherCoeffs);
+			checkRow(row);
+			checkRow(other);
+			checkAddRow(row, other);
+		}
+	}
+
+	private static Rational randomCoeff(final Random rng, final int[] exponents) {
+		final BigInteger value = new BigInteger(exponents[rng.nextInt(exponents.length)], rng).add(BigInteger.ONE);
+		return Rational.valueOf(rng.nextBoolean() ? value : value.negate(), BigInteger.ONE);
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.theory.linar;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.uni_freiburg.informatik.ultimate.logic.Logics;
+import de.uni_freiburg.informatik.ultimate.logic.Script;
+import de.uni_freiburg.informatik.ultimate.logic.Script.LBool;
+import de.uni_freiburg.informatik.ultimate.logic.Sort;
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.option.SolverOptions;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2.SMTInterpol;
+
+@RunWith(JUnit4.class)
+public class TheoryCombinationTest {
+
+	private static int getLAStatistic(final SMTInterpol solver, final String name) {
+		for (final Object stat : (Object[]) solver.getInfo(":all-statistics")) {
+			final Object[] theory = (Object[]) stat;
+			if (theory[0].equals(":LA")) {
+				for (final Object[] entry : (Object[][]) theory[1]) {
+					if (entry[0].equals(name)) {
+						return (Integer) entry[1];
+					}
+				}
+			}
+		}
+		Assert.fail("No statistics for " + name);
+		return 0;
+	}
+
+	private static SMTInterpol createSolver(final LinArSolve.TheoryCombination mode) {
+		final SMTInterpol solver = new SMTInterpol();
+		solver.setOption(":produce-models", true);
+		solver.setOption(":produce-proofs", true);
+		solver.setOption(SolverOptions.MODEL_CHECK_MODE, true);
+		solver.setOption(SolverOptions.PROOF_CHECK_MODE, true);
+		solver.setOption(SolverOptions.THEORY_COMBINATION, mode.name());
+		solver.setLogic(Logics.QF_UFLIA);
+		solver.declareFun("f", new Sort[] { solver.sort("Int") }, solver.sort("Int"));
+		for (int i = 0; i < 4; i++) {
+			solver.declareFun("x" + i, Script.EMPTY_SORT_ARRAY, solver.sort("Int"));
+		}
+		return solver;
+	}
+
+	/**
+	 * x0, x1, x2 are forced to the same value by their bounds, x3 is bounded away from them. The arguments of f only
+	 * become equal in the congruence closure after theory combination proposed the interface equalities. The lazy mode
+	 * links equal arguments only once per congruence class and must not create more equalities than the default.
+	 */
+	private static int run(final LinArSolve.TheoryCombination mode) {
+		final SMTInterpol solver = createSolver(mode);
+		final Term[] vars = new Term[4];
+		final Term[] apps = new Term[4];
+		for (int i = 0; i < vars.length; i++) {
+			vars[i] = solver.term("x" + i);
+			apps[i] = solver.term("f", vars[i]);
+		}
+		final Term two = solver.numeral("2");
+		final Term three = solver.numeral("3");
+		for (int i = 0; i < 3; i++) {
+			solver.assertTerm(solver.term(">=", solver.term("+", vars[i], apps[3]), two));
+			solver.assertTerm(solver.term("<=", solver.term("+", vars[i], apps[3]), two));
+		}
+		solver.assertTerm(solver.term(">=", vars[3], three));
+		Assert.assertSame(LBool.SAT, solver.checkSat());
+		solver.push(1);
+		solver.assertTerm(solver.term("distinct", apps[0], apps[2]));
+		Assert.assertSame(LBool.UNSAT, solver.checkSat());
+		Assert.assertNotNull(solver.getProof());
+		solver.pop(1);
+		solver.assertTerm(solver.term("distinct", apps[0], apps[3]));
+		Assert.assertSame(LBool.SAT, solver.checkSat());
+		final int created = getLAStatistic(solver, "MBTCEqs");
+		Assert.assertTrue(getLAStatistic(solver, "MBTCUsed") >= created);
+		return created;
+	}
+
+	@Test
+	public void testLazyCreatesFewerEqualities() {
+		final int modelBased = run(LinArSolve.TheoryCombination.MODEL_BASED);
+		final int lazy = run(LinArSolve.TheoryCombination.LAZY);
+		Assert.assertTrue(lazy <= modelBased);
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.theory.quant;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.uni_freiburg.informatik.ultimate.logic.Script;
+import de.uni_freiburg.informatik.ultimate.logic.Script.LBool;
+import de.uni_freiburg.informatik.ultimate.logic.Sort;
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+import de.uni_freiburg.informatik.ultimate.logic.TermVariable;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.option.SolverOptions;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2.SMTInterpol;
+
+@RunWith(JUnit4.class)
+public class FinalCheckBudgetTest {
+
+	private static long getQuantStatistic(final SMTInterpol solver, final String name) {
+		for (final Object stat : (Object[]) solver.getInfo(":all-statistics")) {
+			final Object[] theory = (Object[]) stat;
+			if (theory[0].equals(":Quant")) {
+				for (final Object[] entry : (Object[][]) theory[1]) {
+					if (entry[0].equals(name)) {
+						return (Long) entry[1];
+					}
+				}
+			}
+		}
+		Assert.fail("No statistics for " + name);
+		return 0;
+	}
+
+	/**
+	 * Assert (forall x y. Q(x) or R(x,y)) where Q(a) and Q(b) are true and R(c,y) is true for every y. The
+	 * substitutions for x = a and x = b are pruned before y is instantiated. The problem is satisfiable, but a final
+	 * check that runs out of budget must not claim this.
+	 */
+	private static SMTInterpol createSolver(final long budget) {
+		final SMTInterpol solver = new SMTInterpol();
+		solver.setOption(SolverOptions.E_MATCHING, false);
+		solver.setOption(SolverOptions.FINAL_CHECK_BUDGET, budget);
+		solver.setLogic("UF");
+		solver.declareSort("U", 0);
+		final Sort u = solver.sort("U");
+		solver.declareFun("a", Script.EMPTY_SORT_ARRAY, u);
+		solver.declareFun("b", Script.EMPTY_SORT_ARRAY, u);
+		solver.declareFun("c", Script.EMPTY_SORT_ARRAY, u);
+		solver.declareFun("Q", new Sort[] { u }, solver.sort("Bool"));
+		solver.declareFun("R", new Sort[] { u, u }, solver.sort("Bool"));
+		final TermVariable x = solver.variable("x", u);
+		final TermVariable y = solver.variable("y", u);
+		solver.assertTerm(solver.quantifier(Script.FORALL, new TermVariable[] { x, y },
+				solver.term("or", solver.term("Q", x), solver.term("R", x, y))));
+		final Term a = solver.term("a");
+		final Term b = solver.term("b");
+		final Term c = solver.term("c");
+		solver.assertTerm(solver.term("Q", a));
+		solver.assertTerm(solver.term("Q", b));
+		solver.assertTerm(solver.term("not", solver.term("Q", c)));
+		for (final Term t : new Term[] { a, b, c }) {
+			solver.assertTerm(solver.term("R", c, t));
+		}
+		return solver;
+	}
+
+	@Test
+	public void testPruning() {
+		final SMTInterpol solver = createSolver(0);
+		Assert.assertSame(LBool.SAT, solver.checkSat());
+		Assert.assertTrue(getQuantStatistic(solver, "Substitutions pruned") > 0);
+		Assert.assertEquals(0, getQuantStatistic(solver, "Final check budget exhausted"));
+	}
+
+	@Test
+	public void testBudgetExhausted() {
+		final SMTInterpol solver = createSolver(1);
+		Assert.assertSame(LBool.UNKNOWN, solver.checkSat());
+		Assert.assertTrue(getQuantStatistic(solver, "Final check budget exhausted") > 0);
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.theory.quant;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.uni_freiburg.informatik.ultimate.logic.Script;
+import de.uni_freiburg.informatik.ultimate.logic.Script.LBool;
+import de.uni_freiburg.informatik.ultimate.logic.Sort;
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+import de.uni_freiburg.informatik.ultimate.logic.TermVariable;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.option.SolverOptions;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2.SMTInterpol;
+
+/**
+ * Tests that incremental E-matching only evaluates the clauses affected by merges, and still finds the conflicts.
+ */
+@RunWith(JUnit4.class)
+public class IncrementalEMatchingTest {
+
+	private static long getQuantStatistic(final SMTInterpol solver, final String name) {
+		for (final Object stat : (Object[]) solver.getInfo(":all-statistics")) {
+			final Object[] theory = (Object[]) stat;
+			if (theory[0].equals(":Quant")) {
+				for (final Object[] entry : (Object[][]) theory[1]) {
+					if (entry[0].equals(name)) {
+						return (Long) entry[1];
+					}
+				}
+			}
+		}
+		Assert.fail("No statistics for " + name);
+		return 0;
+	}
+
+	/**
+	 * Assert (forall x. f(g(x)) = h(x)) and (forall y. k(y) != m(y)) together with a chain of disjunctions
+	 * (a_i = a_{i+1} or p_i) that forces several checkpoints, and (f(g(a_0)) != h(a_n) or p). The second quantified
+	 * clause is never affected by a merge.
+	 */
+	private static SMTInterpol createSolver(final boolean incremental, final int n) {
+		final SMTInterpol solver = new SMTInterpol();
+		solver.setOption(SolverOptions.E_MATCHING_INCREMENTAL, incremental);
+		solver.setLogic("UF");
+		solver.declareSort("U", 0);
+		final Sort u = solver.sort("U");
+		final Sort bool = solver.sort("Bool");
+		for (final String fun : new String[] { "f", "g", "h", "k", "m" }) {
+			solver.declareFun(fun, new Sort[] { u }, u);
+		}
+		final TermVariable x = solver.variable("x", u);
+		final TermVariable y = solver.variable("y", u);
+		solver.assertTerm(solver.quantifier(Script.FORALL, new TermVariable[] { x },
+				solver.term("=", solver.term("f", solver.term("g", x)), solver.term("h", x))));
+		solver.assertTerm(solver.quantifier(Script.FORALL, new TermVariable[] { y },
+				solver.term("not", solver.term("=", solver.term("k", y), solver.term("m", y)))));
+		final Term[] a = new Term[n + 1];
+		for (int i = 0; i <= n; i++) {
+			solver.declareFun("a" + i, Script.EMPTY_SORT_ARRAY, u);
+			a[i] = solver.term("a" + i);
+		}
+		for (int i = 0; i < n; i++) {
+			solver.declareFun("p" + i, Script.EMPTY_SORT_ARRAY, bool);
+			solver.assertTerm(solver.term("or", solver.term("=", a[i], a[i + 1]), solver.term("p" + i)));
+		}
+		final Term goal = solver.term("not",
+				solver.term("=", solver.term("f", solver.term("g", a[0])), solver.term("h", a[n])));
+		solver.declareFun("p", Script.EMPTY_SORT_ARRAY, bool);
+		solver.assertTerm(solver.term("or", goal, solver.term("p")));
+		return solver;
+	}
+
+	@Test
+	public void testSkipUnaffected() {
+		final SMTInterpol solver = createSolver(true, 5);
+		solver.assertTerm(solver.term("not", solver.term("p")));
+		for (int i = 0; i < 5; i++) {
+			solver.assertTerm(solver.term("not", solver.term("p" + i)));
+		}
+		Assert.assertSame(LBool.UNSAT, solver.checkSat());
+		Assert.assertTrue(getQuantStatistic(solver, "Clause evaluations skipped") > 0);
+	}
+
+	@Test
+	public void testSameResults() {
+		for (final boolean incremental : new boolean[] { false, true }) {
+			final SMTInterpol solver = createSolver(incremental, 5);
+			Assert.assertSame(LBool.SAT, solver.checkSat());
+			solver.push(1);
+			solver.assertTerm(solver.term("not", solver.term("p")));
+			solver.assertTerm(solver.term("not", solver.term("p2")));
+			Assert.assertSame(LBool.SAT, solver.checkSat());
+			for (int i = 0; i < 5; i++) {
+				solver.assertTerm(solver.term("not", solver.term("p" + i)));
+			}
+			Assert.assertSame(LBool.UNSAT, solver.checkSat());
+			solver.pop(1);
+			Assert.assertSame(LBool.SAT, solver.checkSat());
+			Assert.assertEquals(incremental, getQuantStatistic(solver, "Clause evaluations skipped") > 0);
+		}
+	}
+}
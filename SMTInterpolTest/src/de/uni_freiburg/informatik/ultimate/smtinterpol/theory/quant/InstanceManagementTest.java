@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.theory.quant;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.uni_freiburg.informatik.ultimate.logic.Script;
+import de.uni_freiburg.informatik.ultimate.logic.Script.LBool;
+import de.uni_freiburg.informatik.ultimate.logic.Sort;
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+import de.uni_freiburg.informatik.ultimate.logic.TermVariable;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.option.SolverOptions;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2.SMTInterpol;
+
+/**
+ * Tests the generation limit of quantifier instances and the garbage collection of unused instances.
+ */
+@RunWith(JUnit4.class)
+public class InstanceManagementTest {
+
+	private static long getQuantStatistic(final SMTInterpol solver, final String name) {
+		for (final Object stat : (Object[]) solver.getInfo(":all-statistics")) {
+			final Object[] theory = (Object[]) stat;
+			if (theory[0].equals(":Quant")) {
+				for (final Object[] entry : (Object[][]) theory[1]) {
+					if (entry[0].equals(name)) {
+						return (Long) entry[1];
+					}
+				}
+			}
+		}
+		Assert.fail("No statistics for " + name);
+		return 0;
+	}
+
+	/**
+	 * Declare the sort U with f : U -> U and P : U -> Bool, and assert (forall x. P(x) => P(f(x))).
+	 */
+	private static SMTInterpol createChainSolver(final int maxGeneration) {
+		final SMTInterpol solver = new SMTInterpol();
+		solver.setOption(SolverOptions.MAX_INSTANCE_GENERATION, maxGeneration);
+		solver.setLogic("UF");
+		solver.declareSort("U", 0);
+		final Sort u = solver.sort("U");
+		solver.declareFun("f", new Sort[] { u }, u);
+		solver.declareFun("P", new Sort[] { u }, solver.sort("Bool"));
+		solver.declareFun("a", Script.EMPTY_SORT_ARRAY, u);
+		final TermVariable x = solver.variable("x", u);
+		solver.assertTerm(solver.quantifier(Script.FORALL, new TermVariable[] { x },
+				solver.term("=>", solver.term("P", x), solver.term("P", solver.term("f", x)))));
+		solver.assertTerm(solver.term("P", solver.term("a")));
+		return solver;
+	}
+
+	/**
+	 * Every instance creates the term for the next instance, so the instantiation only stops at the limit.
+	 */
+	@Test
+	public void testGenerationLimit() {
+		final SMTInterpol solver = createChainSolver(3);
+		Assert.assertSame(LBool.UNKNOWN, solver.checkSat());
+		Assert.assertEquals(3, getQuantStatistic(solver, "Max instance generation"));
+		Assert.assertTrue(getQuantStatistic(solver, "Instances over generation limit") > 0);
+	}
+
+	/**
+	 * The instances needed for the proof are on a and f(a). The term f(a) only enters the congruence closure with the
+	 * instance for a, so the second instance has generation 2. Without a limit, the solver would follow the chain
+	 * beyond f(f(a)) forever.
+	 */
+	@Test
+	public void testUnsatWithinLimit() {
+		final SMTInterpol solver = createChainSolver(2);
+		final Term a = solver.term("a");
+		solver.assertTerm(solver.term("not", solver.term("P", solver.term("f", solver.term("f", a)))));
+		Assert.assertSame(LBool.UNSAT, solver.checkSat());
+		Assert.assertEquals(2, getQuantStatistic(solver, "Max instance generation"));
+	}
+
+	/**
+	 * Assert (forall x. P(x) or Q(f(x))) and check several constants incrementally. Instances that are no longer
+	 * needed are deleted, and the deleted instances do not change the results.
+	 */
+	@Test
+	public void testGarbageCollection() {
+		final SMTInterpol solver = new SMTInterpol();
+		solver.setOption(SolverOptions.INSTANCE_GC_INTERVAL, 1);
+		solver.setLogic("UF");
+		solver.declareSort("U", 0);
+		final Sort u = solver.sort("U");
+		final Sort bool = solver.sort("Bool");
+		solver.declareFun("f", new Sort[] { u }, u);
+		solver.declareFun("P", new Sort[] { u }, bool);
+		solver.declareFun("Q", new Sort[] { u }, bool);
+		final TermVariable x = solver.variable("x", u);
+		solver.assertTerm(solver.quantifier(Script.FORALL, new TermVariable[] { x },
+				solver.term("or", solver.term("P", x), solver.term("Q", solver.term("f", x)))));
+		for (int i = 0; i < 6; i++) {
+			solver.declareFun("c" + i, Script.EMPTY_SORT_ARRAY, u);
+			final Term c = solver.term("c" + i);
+			solver.push(1);
+			solver.assertTerm(solver.term("not", solver.term("P", c)));
+			Assert.assertSame(LBool.SAT, solver.checkSat());
+			solver.pop(1);
+			solver.assertTerm(solver.term("P", c));
+			Assert.assertSame(LBool.SAT, solver.checkSat());
+		}
+		Assert.assertTrue(getQuantStatistic(solver, "Instance garbage collections") > 0);
+		Assert.assertTrue(getQuantStatistic(solver, "Instances deleted") > 0);
+		solver.declareFun("d", Script.EMPTY_SORT_ARRAY, u);
+		final Term d = solver.term("d");
+		solver.assertTerm(solver.term("not", solver.term("P", d)));
+		solver.assertTerm(solver.term("not", solver.term("Q", solver.term("f", d))));
+		Assert.assertSame(LBool.UNSAT, solver.checkSat());
+	}
+}
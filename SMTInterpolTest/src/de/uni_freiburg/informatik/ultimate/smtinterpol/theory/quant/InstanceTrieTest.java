@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.theory.quant;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.uni_freiburg.informatik.ultimate.logic.Logics;
+import de.uni_freiburg.informatik.ultimate.logic.Script;
+import de.uni_freiburg.informatik.ultimate.logic.Sort;
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+import de.uni_freiburg.informatik.ultimate.logic.Theory;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.DefaultLogger;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.convert.Clausifier;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.dpll.DPLLEngine;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.proof.SourceAnnotation;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.theory.cclosure.CCEquality;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.theory.cclosure.CClosure;
+
+/**
+ * Tests that the instance trie finds substitutions modulo the current congruence classes.
+ */
+@RunWith(JUnit4.class)
+public class InstanceTrieTest {
+	Theory mTheory;
+	DPLLEngine mDPLL;
+	Clausifier mClausifier;
+	CClosure mClosure;
+	Term mA, mB, mC, mLambda;
+	CCEquality mAB, mBC;
+
+	public InstanceTrieTest() {
+		mTheory = new Theory(Logics.QF_UF);
+		mDPLL = new DPLLEngine(mTheory, new DefaultLogger(), () -> false);
+		mClausifier = new Clausifier(mDPLL, 0);
+		mClausifier.setLogic(Logics.QF_UF);
+		mClosure = mClausifier.getCClosure();
+		mTheory.declareSort("U", 0);
+		final Sort sort = mTheory.getSort("U");
+		final Term[] terms = new Term[3];
+		for (int i = 0; i < 3; i++) {
+			final String name = "abc".substring(i, i + 1);
+			mTheory.declareFunction(name, Script.EMPTY_SORT_ARRAY, sort);
+			terms[i] = mTheory.term(name);
+			mClausifier.createCCTerm(terms[i], null);
+		}
+		mA = terms[0];
+		mB = terms[1];
+		mC = terms[2];
+		// a term without a CCTerm is its own representative
+		mTheory.declareFunction("l", Script.EMPTY_SORT_ARRAY, sort);
+		mLambda = mTheory.term("l");
+		final SourceAnnotation source = new SourceAnnotation("", null);
+		mAB = (CCEquality) mClausifier.createEqualityProxy(mA, mB).getLiteral(source);
+		mBC = (CCEquality) mClausifier.createEqualityProxy(mB, mC).getLiteral(source);
+	}
+
+	private static List<Term> subs(final Term... terms) {
+		return Arrays.asList(terms);
+	}
+
+	@Test
+	public void testModuloCongruence() {
+		final InstanceTrie trie = new InstanceTrie(mClausifier);
+		trie.put(subs(mA, mLambda), null);
+		trie.put(subs(mC, mB), null);
+		Assert.assertTrue(trie.containsKey(subs(mA, mLambda)));
+		Assert.assertFalse(trie.isFoundModuloCongruence());
+		Assert.assertFalse(trie.containsKey(subs(mB, mLambda)));
+		Assert.assertFalse(trie.containsKey(subs(mC, mA)));
+
+		mDPLL.increaseDecideLevel();
+		Assert.assertNull(mDPLL.setLiteral(mAB));
+		Assert.assertTrue(trie.containsKey(subs(mB, mLambda)));
+		Assert.assertTrue(trie.isFoundModuloCongruence());
+		Assert.assertTrue(trie.containsKey(subs(mC, mA)));
+		Assert.assertFalse(trie.containsKey(subs(mA, mC)));
+
+		// Now a and c have the same key, but only the child for a leads to (c, l) and only the child for c to (a, a).
+		mDPLL.increaseDecideLevel();
+		Assert.assertNull(mDPLL.setLiteral(mBC));
+		Assert.assertTrue(trie.containsKey(subs(mC, mLambda)));
+		Assert.assertTrue(trie.containsKey(subs(mA, mA)));
+
+		mDPLL.backtrackLiteral(mBC);
+		mDPLL.decreaseDecideLevel();
+		mDPLL.backtrackLiteral(mAB);
+		mDPLL.decreaseDecideLevel();
+		mClosure.backtrackComplete();
+		Assert.assertFalse(trie.containsKey(subs(mB, mLambda)));
+		Assert.assertFalse(trie.containsKey(subs(mA, mA)));
+		Assert.assertTrue(trie.containsKey(subs(mC, mB)));
+		Assert.assertFalse(trie.isFoundModuloCongruence());
+		Assert.assertEquals(2, trie.getInstances().size());
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2020 University of Freiburg
+ *
+ * This file is part of SMTInterpol.
+ *
+ * SMTInterpol is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SMTInterpol is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SMTInterpol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.uni_freiburg.informatik.ultimate.smtinterpol.theory.quant;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import de.uni_freiburg.informatik.ultimate.logic.Script;
+import de.uni_freiburg.informatik.ultimate.logic.Script.LBool;
+import de.uni_freiburg.informatik.ultimate.logic.Sort;
+import de.uni_freiburg.informatik.ultimate.logic.Term;
+import de.uni_freiburg.informatik.ultimate.logic.TermVariable;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.option.SolverOptions;
+import de.uni_freiburg.informatik.ultimate.smtinterpol.smtlib2.SMTInterpol;
+
+/**
+ * Tests that model-based instantiation verifies candidate models and finds the instances for counterexamples.
+ */
+@RunWith(JUnit4.class)
+public class ModelBasedInstantiationTest {
+
+	private static long getQuantStatistic(final SMTInterpol solver, final String name) {
+		for (final Object stat : (Object[]) solver.getInfo(":all-statistics")) {
+			final Object[] theory = (Object[]) stat;
+			if (theory[0].equals(":Quant")) {
+				for (final Object[] entry : (Object[][]) theory[1]) {
+					if (entry[0].equals(name)) {
+						return (Long) entry[1];
+					}
+				}
+			}
+		}
+		Assert.fail("No statistics for " + name);
+		return 0;
+	}
+
+	/**
+	 * Assert (forall x. P(x) or f(x) = a) and (forall x y. not P(x) or not P(y) or x = y) together with P(b) and
+	 * a != b. The second clause is not in the almost uninterpreted fragment.
+	 */
+	private static SMTInterpol createSolver(final boolean mbqi) {
+		final SMTInterpol solver = new SMTInterpol();
+		solver.setOption(SolverOptions.MBQI, mbqi);
+		solver.setLogic("UF");
+		solver.declareSort("U", 0);
+		final Sort u = solver.sort("U");
+		solver.declareFun("f", new Sort[] { u }, u);
+		solver.declareFun("P", new Sort[] { u }, solver.sort("Bool"));
+		solver.declareFun("a", Script.EMPTY_SORT_ARRAY, u);
+		solver.declareFun("b", Script.EMPTY_SORT_ARRAY, u);
+		final TermVariable x = solver.variable("x", u);
+		final TermVariable y = solver.variable("y", u);
+		final Term a = solver.term("a");
+		final Term b = solver.term("b");
+		solver.assertTerm(solver.quantifier(Script.FORALL, new TermVariable[] { x },
+				solver.term("or", solver.term("P", x), solver.term("=", solver.term("f", x), a))));
+		solver.assertTerm(solver.quantifier(Script.FORALL, new TermVariable[] { x, y }, solver.term("or",
+				solver.term("not", solver.term("P", x)), solver.term("not", solver.term("P", y)),
+				solver.term("=", x, y))));
+		solver.assertTerm(solver.term("not", solver.term("=", a, b)));
+		solver.assertTerm(solver.term("P", b));
+		return solver;
+	}
+
+	@Test
+	public void testModelVerified() {
+		Assert.assertSame(LBool.UNKNOWN, createSolver(false).checkSat());
+		final SMTInterpol solver = createSolver(true);
+		Assert.assertSame(LBool.SAT, solver.checkSat());
+		Assert.assertTrue(getQuantStatistic(solver, "MBQI models verified") > 0);
+	}
+
+	@Test
+	public void testIncremental() {
+		final SMTInterpol solver = createSolver(true);
+		solver.push(1);
+		// f(b) is not constrained, since P(b) holds
+		solver.assertTerm(solver.term("not", solver.term("=", solver.term("f", solver.term("b")),
+				solver.term("a"))));
+		Assert.assertSame(LBool.SAT, solver.checkSat());
+		solver.pop(1);
+		solver.push(1);
+		// now a and b are in P, but they are different
+		solver.assertTerm(solver.term("P", solver.term("a")));
+		Assert.assertSame(LBool.UNSAT, solver.checkSat());
+		Assert.assertTrue(getQuantStatistic(solver, "MBQI checks") > 0);
+	}
+
+	/**
+	 * The instance of the second clause for b and c contains the atoms P(c) and b = c, which are removed when the
+	 * scope that declares c is popped. The instance must be removed as well, otherwise it is propagated in the next
+	 * check.
+	 */
+	@Test
+	public void testInstancesRemovedOnPop() {
+		for (final boolean mbqi : new boolean[] { false, true }) {
+			final SMTInterpol solver = createSolver(mbqi);
+			solver.push(1);
+			solver.declareFun("c", Script.EMPTY_SORT_ARRAY, solver.sort("U"));
+			final Term c = solver.term("c");
+			solver.assertTerm(solver.term("P", c));
+			solver.assertTerm(solver.term("not", solver.term("=", solver.term("b"), c)));
+			Assert.assertSame(LBool.UNSAT, solver.checkSat());
+			solver.pop(1);
+			Assert.assertSame(mbqi ? LBool.SAT : LBool.UNKNOWN, solver.checkSat());
+		}
+	}
+
+	/**
+	 * Assert (forall x. x = a or f(x) = b) with f(a) = a and f(c) = b for distinct a, b, c. In the first candidate
+	 * model, the default value of f is not b, so the check finds a counterexample whose instance fixes the model.
+	 */
+	@Test
+	public void testCounterexampleInstance() {
+		final SMTInterpol solver = new SMTInterpol();
+		solver.setOption(SolverOptions.MBQI, true);
+		solver.setLogic("UF");
+		solver.declareSort("U", 0);
+		final Sort u = solver.sort("U");
+		solver.declareFun("f", new Sort[] { u }, u);
+		final Term[] consts = new Term[3];
+		for (int i = 0; i < 3; i++) {
+			final String name = "abc".substring(i, i + 1);
+			solver.declareFun(name, Script.EMPTY_SORT_ARRAY, u);
+			consts[i] = solver.term(name);
+		}
+		final Term a = consts[0];
+		final Term b = consts[1];
+		final Term c = consts[2];
+		final TermVariable x = solver.variable("x", u);
+		solver.assertTerm(solver.quantifier(Script.FORALL, new TermVariable[] { x },
+				solver.term("or", solver.term("=", x, a), solver.term("=", solver.term("f", x), b))));
+		solver.assertTerm(solver.term("distinct", a, b, c));
+		solver.assertTerm(solver.term("=", solver.term("f", a), a));
+		solver.assertTerm(solver.term("=", solver.term("f", c), b));
+		Assert.assertSame(LBool.SAT, solver.checkSat());
+		Assert.assertTrue(getQuantStatistic(solver, "MBQI instances") > 0);
+		Assert.assertTrue(getQuantStatistic(solver, "MBQI models verified") > 0);
+	}
+}